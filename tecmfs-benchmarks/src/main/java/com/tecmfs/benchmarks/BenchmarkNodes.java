@@ -0,0 +1,77 @@
+package com.tecmfs.benchmarks;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Utilidades para levantar Disk Nodes locales en los benchmarks.
+ */
+final class BenchmarkNodes {
+
+    private BenchmarkNodes() {
+    }
+
+    /**
+     * @return un puerto TCP libre en este momento
+     */
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Deja solo advertencias en el log: los nodos registran cada petición y eso dominaría la medición.
+     */
+    static void quietLogs() {
+        Logger root = Logger.getLogger("");
+        root.setLevel(Level.WARNING);
+        for (Handler handler : root.getHandlers()) {
+            handler.setLevel(Level.WARNING);
+        }
+    }
+
+    static Path tempDirectory(String prefix) throws IOException {
+        return Files.createTempDirectory("tecmfs-bench-" + prefix);
+    }
+
+    /**
+     * Apaga el nodo con POST /shutdown y borra su almacenamiento.
+     */
+    static void shutdown(String endpoint, Path storage) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(endpoint + "/shutdown").openConnection();
+        try {
+            conn.setRequestMethod("POST");
+            conn.getResponseCode();
+        } finally {
+            conn.disconnect();
+        }
+        try {
+            // El nodo cierra su almacenamiento poco después de responder
+            Thread.sleep(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        deleteRecursively(storage);
+    }
+
+    static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
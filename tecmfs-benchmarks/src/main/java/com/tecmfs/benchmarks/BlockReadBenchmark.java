@@ -0,0 +1,127 @@
+package com.tecmfs.benchmarks;
+
+import com.tecmfs.disknode.storage.BlockStore;
+import com.tecmfs.disknode.storage.FileBlockStore;
+import com.tecmfs.disknode.storage.MappedBlockStore;
+import com.tecmfs.disknode.storage.SegmentLogBlockStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bloques por segundo servidos desde cada motor a un socket local, como responde un GET:
+ * readCopy lee el bloque a un arreglo del heap y lo escribe, como hacía GetHandler antes de
+ * {@link BlockStore#transferTo}; transferTo lo envía con FileChannel.transferTo o la región mapeada.
+ * Un hilo aparte vacía el otro extremo del socket. Bytes por segundo = ops/s × blockSize.
+ * <p>
+ * java -jar benchmarks.jar BlockReadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockReadBenchmark {
+    private static final int BLOCKS = 64;
+
+    @Param({"file", "segment", "mapped"})
+    public String engine;
+
+    @Param({"65536", "1048576"})
+    public int blockSize;
+
+    private Path storage;
+    private BlockStore store;
+    private ServerSocketChannel listener;
+    private SocketChannel socket;
+    private Thread drainer;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        BenchmarkNodes.quietLogs();
+        storage = BenchmarkNodes.tempDirectory("read-" + engine);
+        if ("segment".equals(engine)) {
+            store = new SegmentLogBlockStore(storage, SegmentLogBlockStore.DEFAULT_SEGMENT_BYTES);
+        } else if ("mapped".equals(engine)) {
+            store = new MappedBlockStore(storage, blockSize, (long) BLOCKS * blockSize,
+                    MappedBlockStore.ForcePolicy.NEVER);
+        } else {
+            store = new FileBlockStore(storage);
+        }
+        byte[] block = new byte[blockSize];
+        Random random = new Random(1);
+        for (int i = 0; i < BLOCKS; i++) {
+            random.nextBytes(block);
+            store.store(blockId(i), ByteBuffer.wrap(block));
+        }
+
+        listener = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        socket = SocketChannel.open(listener.getLocalAddress());
+        SocketChannel peer = listener.accept();
+        drainer = new Thread(() -> {
+            ByteBuffer sink = ByteBuffer.allocateDirect(1 << 20);
+            try (peer) {
+                while (peer.read(sink) >= 0) {
+                    sink.clear();
+                }
+            } catch (IOException e) {
+                // El socket se cerró al terminar
+            }
+        }, "read-bench-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        socket.close();
+        listener.close();
+        drainer.join(1000);
+        store.close();
+        BenchmarkNodes.deleteRecursively(storage);
+    }
+
+    @Benchmark
+    public int readCopy() throws IOException {
+        ByteBuffer data = store.read(randomBlockId());
+        int size = data.remaining();
+        while (data.hasRemaining()) {
+            socket.write(data);
+        }
+        return size;
+    }
+
+    @Benchmark
+    public boolean transferTo() throws IOException {
+        return store.transferTo(randomBlockId(), socket, size -> { });
+    }
+
+    private static String blockId(int i) {
+        return "read_stripe" + i + "_block0";
+    }
+
+    private static String randomBlockId() {
+        return blockId(ThreadLocalRandom.current().nextInt(BLOCKS));
+    }
+}
@@ -0,0 +1,101 @@
+package com.tecmfs.benchmarks;
+
+import com.tecmfs.common.models.RaidLevel;
+import com.tecmfs.common.models.StripeLayout;
+import com.tecmfs.controller.metadata.MetadataStore;
+import com.tecmfs.controller.models.StoredFile;
+import com.tecmfs.controller.models.StripeDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Altas de archivos por segundo en un {@link MetadataStore}: cada alta espera el fsync de su grupo
+ * en el WAL. Con un hilo hay un fsync por alta; con varios, el hilo del WAL junta las altas pendientes
+ * en un solo fsync y las aplica en el orden del archivo. Al cerrar se imprime cuántos registros
+ * entraron en cada fsync.
+ * <p>
+ * java -jar benchmarks.jar MetadataCommitBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataCommitBenchmark {
+    private static final List<String> NODES = List.of("http://n1", "http://n2", "http://n3", "http://n4");
+    private static final StripeLayout LAYOUT = StripeLayout.of(RaidLevel.RAID5, NODES.size());
+
+    /** Stripes por archivo: define el tamaño de cada registro del WAL */
+    @Param({"1", "64"})
+    public int stripes;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, StoredFile> files = new ConcurrentHashMap<>();
+    private Path dir;
+    private MetadataStore store;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        BenchmarkNodes.quietLogs();
+        dir = BenchmarkNodes.tempDirectory("tecmfs-metadata-bench");
+        store = new MetadataStore(dir);
+        store.recover();
+        store.start(files::values, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        long[] stats = store.getWalStats();
+        System.out.printf("WAL: %d registros en %d fsync%n", stats[0], stats[1]);
+        store.close();
+        BenchmarkNodes.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void createSingle() throws IOException {
+        create();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void createConcurrent() throws IOException {
+        create();
+    }
+
+    private void create() throws IOException {
+        StoredFile file = newFile();
+        store.logCreate(file, () -> files.put(file.getFileId(), file));
+    }
+
+    private StoredFile newFile() {
+        String fileId = "bench-" + sequence.incrementAndGet();
+        List<StripeDescriptor> descriptors = new ArrayList<>(stripes);
+        for (int s = 0; s < stripes; s++) {
+            descriptors.add(new StripeDescriptor(fileId, s, LAYOUT, 65536, new long[]{s, s + 1, s + 2, s + 3}));
+        }
+        return new StoredFile(fileId, fileId + ".bin", 65536L * 3 * stripes, descriptors, NODES, LAYOUT);
+    }
+}
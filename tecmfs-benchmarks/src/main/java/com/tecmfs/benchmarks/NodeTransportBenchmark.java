@@ -0,0 +1,145 @@
+package com.tecmfs.benchmarks;
+
+import com.tecmfs.controller.NodeClient;
+import com.tecmfs.disknode.config.DiskNodeConfig;
+import com.tecmfs.disknode.server.DiskNodeServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bloques por segundo entre el controller y un Disk Node local, antes y después del cliente compartido:
+ * los métodos perConnection* abren un HttpURLConnection por bloque y lo desconectan, como hacían
+ * FileDistributor y DeleteHandler; los métodos pooled* usan {@link NodeClient} con keep-alive.
+ * Cada operación es un bloque, también en los lotes.
+ * <p>
+ * java -jar benchmarks.jar NodeTransportBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class NodeTransportBenchmark {
+    private static final int BLOCK_SIZE = 4096;
+    private static final int READ_BLOCKS = 256;
+    private static final int BATCH = 8;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private Path storage;
+    private String endpoint;
+    private NodeClient nodeClient;
+    private byte[] block;
+
+    @Setup(Level.Trial)
+    public void startNode() throws Exception {
+        BenchmarkNodes.quietLogs();
+        int port = BenchmarkNodes.freePort();
+        storage = BenchmarkNodes.tempDirectory("transport");
+        DiskNodeConfig config = new DiskNodeConfig("127.0.0.1", port, storage.toString(), BLOCK_SIZE, Long.MAX_VALUE);
+        new DiskNodeServer(config).start();
+        endpoint = "http://127.0.0.1:" + port;
+        nodeClient = new NodeClient(2000, 10000);
+
+        block = new byte[BLOCK_SIZE];
+        new Random(1).nextBytes(block);
+        for (int i = 0; i < READ_BLOCKS; i++) {
+            nodeClient.storeBlockAsync(endpoint, readId(i), ByteBuffer.wrap(block)).join();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopNode() throws IOException {
+        BenchmarkNodes.shutdown(endpoint, storage);
+    }
+
+    @Benchmark
+    public int perConnectionStore() throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(endpoint + "/storeBlock?blockId=" + nextId()).openConnection();
+        try {
+            conn.setDoOutput(true);
+            conn.setRequestMethod("POST");
+            try (OutputStream os = conn.getOutputStream()) {
+                os.write(block);
+            }
+            return conn.getResponseCode();
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    @Benchmark
+    public void pooledStore() {
+        nodeClient.storeBlockAsync(endpoint, nextId(), ByteBuffer.wrap(block)).join();
+    }
+
+    /**
+     * Lote de {@link #BATCH} bloques en una petición /storeBlocks, como escribe BlockWriteEngine.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void pooledStoreBatch() {
+        Map<String, ByteBuffer> blocks = new LinkedHashMap<>();
+        for (int i = 0; i < BATCH; i++) {
+            blocks.put(nextId(), ByteBuffer.wrap(block));
+        }
+        nodeClient.storeBlocksAsync(endpoint, blocks).join();
+    }
+
+    @Benchmark
+    public byte[] perConnectionGet() throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(endpoint + "/getBlock?blockId=" + randomReadId()).openConnection();
+        try {
+            conn.setRequestMethod("GET");
+            try (InputStream is = conn.getInputStream()) {
+                return is.readAllBytes();
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    @Benchmark
+    public byte[] pooledGet() {
+        return nodeClient.getBlockAsync(endpoint, randomReadId()).join();
+    }
+
+    private String nextId() {
+        return "bench_stripe" + sequence.getAndIncrement() + "_block0";
+    }
+
+    private static String readId(int i) {
+        return "read_stripe" + i + "_block0";
+    }
+
+    private static String randomReadId() {
+        return readId(ThreadLocalRandom.current().nextInt(READ_BLOCKS));
+    }
+}
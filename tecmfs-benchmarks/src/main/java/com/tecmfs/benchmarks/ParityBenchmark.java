@@ -0,0 +1,105 @@
+package com.tecmfs.benchmarks;
+
+import com.tecmfs.common.util.ErasureCodec;
+import com.tecmfs.common.util.ParityCodec;
+import com.tecmfs.common.util.ReedSolomonCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Codificación y reconstrucción de un stripe de {@link #dataCount} bloques de datos en un hilo:
+ * RAID 5 (P), RAID 6 (P y Q de {@code Raid6Calculator}) y Reed-Solomon k+2, para ver cuánto cuesta Q
+ * frente a la paridad XOR. decodeOne pierde un bloque de datos, que los tres resuelven con P;
+ * decodeWorst pierde m bloques de datos, el peor caso de cada código.
+ * MB/s de datos = ops/s × dataCount × length / 1e6.
+ * <p>
+ * java -jar benchmarks.jar ParityBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@Threads(1)
+public class ParityBenchmark {
+
+    @Param({"raid5", "raid6", "rs"})
+    public String codec;
+
+    @Param({"4", "8"})
+    public int dataCount;
+
+    @Param({"65536", "1048576"})
+    public int length;
+
+    private ErasureCodec erasureCodec;
+    private byte[][] data;
+    private byte[][] parity;
+    private byte[][] stripe;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        erasureCodec = switch (codec) {
+            case "raid5" -> new ParityCodec(dataCount, 1);
+            case "raid6" -> new ParityCodec(dataCount, 2);
+            case "rs" -> new ReedSolomonCodec(dataCount, 2);
+            default -> throw new IllegalArgumentException("Código desconocido: " + codec);
+        };
+        Random random = new Random(1);
+        data = new byte[dataCount][length];
+        for (byte[] block : data) {
+            random.nextBytes(block);
+        }
+        parity = new byte[erasureCodec.getParityCount()][length];
+        erasureCodec.encode(data, parity, length);
+
+        stripe = new byte[dataCount + parity.length][];
+        System.arraycopy(data, 0, stripe, 0, dataCount);
+        System.arraycopy(parity, 0, stripe, dataCount, parity.length);
+    }
+
+    @Benchmark
+    public byte[][] encode() {
+        erasureCodec.encode(data, parity, length);
+        return parity;
+    }
+
+    @Benchmark
+    public byte[][] decodeOne() {
+        return decode(1);
+    }
+
+    @Benchmark
+    public byte[][] decodeWorst() {
+        return decode(erasureCodec.getParityCount());
+    }
+
+    /**
+     * Reconstruye los primeros lost bloques de datos; decode los reemplaza por arreglos nuevos,
+     * así que cada invocación parte de una copia del arreglo de bloques.
+     */
+    private byte[][] decode(int lost) {
+        byte[][] shards = stripe.clone();
+        boolean[] present = new boolean[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            present[i] = i >= lost;
+        }
+        erasureCodec.decode(shards, present, length);
+        return shards;
+    }
+}
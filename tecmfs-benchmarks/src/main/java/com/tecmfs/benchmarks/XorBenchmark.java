@@ -0,0 +1,78 @@
+package com.tecmfs.benchmarks;
+
+import com.tecmfs.common.util.XorKernel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * XOR de paridad de un stripe de {@link #SOURCES} bloques en un hilo: el bucle byte a byte que
+ * usaba ParityCalculator, el núcleo por palabras de 8 bytes y el núcleo SIMD de {@link XorKernel}.
+ * Los dos últimos llaman a la misma API; cada uno corre en su propia JVM, con la Vector API
+ * desactivada o agregada. GB/s por núcleo = ops/s × SOURCES × length / 1e9.
+ * <p>
+ * java -jar benchmarks.jar XorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+public class XorBenchmark {
+    private static final int SOURCES = 4;
+
+    @Param({"4096", "65536", "1048576"})
+    public int length;
+
+    private byte[][] sources;
+    private byte[] parity;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        Random random = new Random(1);
+        sources = new byte[SOURCES][length];
+        for (byte[] source : sources) {
+            random.nextBytes(source);
+        }
+        parity = new byte[length];
+    }
+
+    @Benchmark
+    @Fork(1)
+    public byte[] byteLoop() {
+        for (byte[] source : sources) {
+            for (int i = 0; i < length; i++) {
+                parity[i] ^= source[i];
+            }
+        }
+        return parity;
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "-Dtecmfs.xor.vector=false")
+    public byte[] wordKernel() {
+        XorKernel.xorInto(parity, sources);
+        return parity;
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+    public byte[] vectorKernel() {
+        XorKernel.xorInto(parity, sources);
+        return parity;
+    }
+}
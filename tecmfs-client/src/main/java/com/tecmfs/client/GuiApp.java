@@ -21,6 +21,13 @@ public class GuiApp extends JFrame {
     private JTextField searchField;
     private JCheckBox[] nodeBoxes;
     private JButton startNodesBtn;
+    private JButton nextPageBtn;
+
+    // Paginación de la lista de archivos
+    private static final int PAGE_SIZE = 100;
+    private String currentFilter;   // Nombre buscado, o null para listar todo
+    private String nextCursor;      // after de la página siguiente, o null si no hay más
+    private int pageNumber;
 
     public GuiApp() {
         setTitle("TEC Media File System");
@@ -57,6 +64,8 @@ public class GuiApp extends JFrame {
         JButton deleteBtn = new JButton("Eliminar PDF");
         JButton refreshBtn = new JButton("Actualizar lista");
         JButton searchBtn = new JButton("Buscar por nombre");
+        nextPageBtn = new JButton("Página siguiente");
+        nextPageBtn.setEnabled(false);
         JButton statusBtn = new JButton("Ver estado RAID");  // Nuevo botón
 
         bottomPanel.add(uploadBtn);
@@ -67,6 +76,7 @@ public class GuiApp extends JFrame {
         bottomPanel.add(new JLabel("Nombre contiene:"));
         bottomPanel.add(searchField);
         bottomPanel.add(searchBtn);
+        bottomPanel.add(nextPageBtn);
         bottomPanel.add(statusBtn);  // Añadir al panel
 
         add(bottomPanel, BorderLayout.SOUTH);
@@ -77,6 +87,7 @@ public class GuiApp extends JFrame {
         deleteBtn.addActionListener(e -> deleteFile());
         refreshBtn.addActionListener(e -> listFiles());
         searchBtn.addActionListener(e -> listFilesByName());
+        nextPageBtn.addActionListener(e -> nextPage());
         statusBtn.addActionListener(e -> showRaidStatus()); // Acción para ver estado RAID
 
         listFiles();
@@ -231,48 +242,8 @@ public class GuiApp extends JFrame {
     }
 
     private void listFiles() {
-        try {
-            URL url = new URL("http://localhost:7000/listFiles");
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-
-            if (conn.getResponseCode() == 200) {
-                StringBuilder sb = new StringBuilder();
-                try (BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(conn.getInputStream()))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        sb.append(line);
-                    }
-                }
-
-                // Parseo muy básico, suponiendo JSON como: [{"fileId":"abc","fileName":"x.pdf"},...]
-                String json = sb.toString();
-                json = json.replace("[", "").replace("]", "");
-                String[] items = json.split("\\},\\{");
-
-                StringBuilder output = new StringBuilder();
-                for (String item : items) {
-                    String cleaned = item.replace("{", "").replace("}", "").replace("\"", "");
-                    String[] parts = cleaned.split(",");
-                    String fileId = "", fileName = "";
-                    for (String p : parts) {
-                        if (p.startsWith("fileId:")) fileId = p.substring(7);
-                        else if (p.startsWith("fileName:")) fileName = p.substring(9);
-                    }
-                    output.append("Archivo: ").append(fileName)
-                            .append(" (id: ").append(fileId).append(")\n");
-                }
-
-                fileListArea.setText(output.toString());
-            } else {
-                fileListArea.setText("Error al obtener archivos (código " + conn.getResponseCode() + ")");
-            }
-
-        } catch (Exception e) {
-            fileListArea.setText("Error: " + e.getMessage());
-            e.printStackTrace();
-        }
+        currentFilter = null;
+        loadPage(null);
     }
 
     private void listFilesByName() {
@@ -281,43 +252,59 @@ public class GuiApp extends JFrame {
             listFiles(); // Si está vacío, lista todo
             return;
         }
+        currentFilter = nameFilter;
+        loadPage(null);
+    }
 
+    private void nextPage() {
+        if (nextCursor != null) {
+            loadPage(nextCursor);
+        }
+    }
+
+    /**
+     * Pide una página de /listFiles con el filtro actual a partir del cursor after.
+     * El servidor indica en X-Next-Cursor desde dónde sigue la página siguiente.
+     */
+    private void loadPage(String after) {
         try {
-            String encoded = URLEncoder.encode(nameFilter, "UTF-8");
-            URL url = new URL("http://localhost:7000/listFiles?name=" + encoded);
+            StringBuilder query = new StringBuilder("?limit=").append(PAGE_SIZE);
+            if (currentFilter != null) {
+                query.append("&name=").append(URLEncoder.encode(currentFilter, "UTF-8"));
+            }
+            if (after != null) {
+                query.append("&after=").append(URLEncoder.encode(after, "UTF-8"));
+            }
+            URL url = new URL("http://localhost:7000/listFiles" + query);
             HttpURLConnection conn = (HttpURLConnection) url.openConnection();
             conn.setRequestMethod("GET");
 
             if (conn.getResponseCode() == 200) {
                 StringBuilder sb = new StringBuilder();
                 try (BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(conn.getInputStream()))) {
+                        new InputStreamReader(conn.getInputStream(), "UTF-8"))) {
                     String line;
                     while ((line = reader.readLine()) != null) {
                         sb.append(line);
                     }
                 }
 
-                String json = sb.toString();
-                json = json.replace("[", "").replace("]", "");
-                String[] items = json.split("\\},\\{");
-
+                JSONArray files = new JSONArray(sb.toString());
                 StringBuilder output = new StringBuilder();
-                for (String item : items) {
-                    String cleaned = item.replace("{", "").replace("}", "").replace("\"", "");
-                    String[] parts = cleaned.split(",");
-                    String fileId = "", fileName = "";
-                    for (String p : parts) {
-                        if (p.startsWith("fileId:")) fileId = p.substring(7);
-                        else if (p.startsWith("fileName:")) fileName = p.substring(9);
-                    }
-                    output.append("Archivo: ").append(fileName)
-                            .append(" (id: ").append(fileId).append(")\n");
+                for (int i = 0; i < files.length(); i++) {
+                    JSONObject file = files.getJSONObject(i);
+                    output.append("Archivo: ").append(file.getString("fileName"))
+                            .append(" (id: ").append(file.getString("fileId")).append(")\n");
                 }
 
+                pageNumber = after == null ? 1 : pageNumber + 1;
+                nextCursor = conn.getHeaderField("X-Next-Cursor");
+                nextPageBtn.setEnabled(nextCursor != null);
+                output.append("\n-- Página ").append(pageNumber)
+                        .append(nextCursor != null ? " (hay más: \"Página siguiente\")" : "").append(" --");
                 fileListArea.setText(output.toString());
             } else {
-                fileListArea.setText("Error al buscar archivos (código " + conn.getResponseCode() + ")");
+                fileListArea.setText("Error al obtener archivos (código " + conn.getResponseCode() + ")");
             }
 
         } catch (Exception e) {
@@ -1,7 +1,16 @@
 package com.tecmfs.common.models;
+
+import com.tecmfs.common.util.PooledBuffer;
+
+import java.nio.ByteBuffer;
+
 /**
  * Representa un bloque individual de datos o paridad en el sistema RAID 5
  * Cada bloque tiene un tamaño fijo y puede contener datos del archivo original o información de paridad
+ * <p>
+ * Los constructores y getData() copian los datos. En las rutas de subida y descarga se usan
+ * {@link #wrap} y {@link #dataView()}, que no copian, y {@link #releaseData()} cuando los bytes
+ * ya no hacen falta y solo quedan los metadatos (id, tipo, tamaño y checksum).
  */
 
 public class Block {
@@ -11,6 +20,7 @@ public class Block {
     private int size;                // Tamaño del bloque en bytes
     private String checksum;         // Checksum para verificar integridad
     private boolean isCorrupted;     // Indica si el bloque está corrupto
+    private PooledBuffer pooled;     // Buffer del pool que respalda data, si lo hay
 
     // Enum para tipos de bloque
     public enum BlockType {
@@ -33,6 +43,34 @@ public class Block {
         this.checksum = calculateChecksum();
     }
 
+    // Constructor sin copia: el bloque usa data tal cual
+    private Block(String blockId, byte[] data, int size, BlockType type, PooledBuffer pooled) {
+        this.blockId = blockId;
+        this.data = data;
+        this.type = type;
+        this.size = size;
+        this.pooled = pooled;
+        this.isCorrupted = false;
+        this.checksum = calculateChecksum();
+    }
+
+    /**
+     * Crea un bloque que usa data sin copiarlo; quien llama no debe modificarlo después.
+     */
+    public static Block wrap(String blockId, byte[] data, BlockType type) {
+        return new Block(blockId, data, data != null ? data.length : 0, type, null);
+    }
+
+    /**
+     * Crea un bloque respaldado por un buffer del pool, sin copiarlo. El bloque toma la referencia
+     * del llamador y la devuelve en {@link #releaseData()}.
+     * @param buffer buffer en heap cuyo arreglo completo es el contenido del bloque
+     */
+    public static Block wrap(String blockId, PooledBuffer buffer, BlockType type) {
+        byte[] array = buffer.array();
+        return new Block(blockId, array, array.length, type, buffer);
+    }
+
     // Constructor para crear bloque vacío con tamaño específico
     public Block(String blockId, int size, BlockType type) {
         this.blockId = blockId;
@@ -48,6 +86,16 @@ public class Block {
      * @return checksum como string hexadecimal
      */
     private String calculateChecksum() {
+        return checksumOf(data);
+    }
+
+    /**
+     * Calcula el checksum de un arreglo de bytes con el mismo algoritmo que usan los bloques.
+     * Permite validar datos leídos de un nodo contra el checksum registrado en los metadatos.
+     * @param data bytes a verificar
+     * @return checksum como string hexadecimal
+     */
+    public static String checksumOf(byte[] data) {
         if (data == null) return "0";
 
         long sum = 0;
@@ -57,6 +105,26 @@ public class Block {
         return Long.toHexString(sum);
     }
 
+    /**
+     * Igual que {@link #checksumOf(byte[])} sobre los bytes restantes de data, sin mover su posición.
+     */
+    public static String checksumOf(ByteBuffer data) {
+        if (data == null) return "0";
+        return Long.toHexString(checksumValueOf(data));
+    }
+
+    /**
+     * Valor numérico del checksum de los bytes restantes de data, sin mover su posición;
+     * su representación hexadecimal es {@link #checksumOf(ByteBuffer)}.
+     */
+    public static long checksumValueOf(ByteBuffer data) {
+        long sum = 0;
+        for (int i = data.position(); i < data.limit(); i++) {
+            sum += (data.get(i) & 0xFF);
+        }
+        return sum;
+    }
+
     /**
      * Verifica si el bloque está íntegro comparando checksums
      * @return true si el bloque no está corrupto
@@ -74,6 +142,7 @@ public class Block {
      */
     public void updateData(byte[] newData) {
         if (newData != null && newData.length <= this.size) {
+            releasePooled();
             this.data = newData.clone();
             this.checksum = calculateChecksum();
             this.isCorrupted = false;
@@ -107,6 +176,42 @@ public class Block {
         return data != null ? data.clone() : null;
     }
 
+    /**
+     * @return vista de solo lectura de los datos, sin copia, o null si el bloque no tiene datos
+     */
+    public ByteBuffer dataView() {
+        return data != null ? ByteBuffer.wrap(data).asReadOnlyBuffer() : null;
+    }
+
+    /**
+     * Acceso sin copia para Stripe; no debe modificarse.
+     */
+    byte[] rawData() {
+        return data;
+    }
+
+    /**
+     * @return true si el bloque conserva sus datos
+     */
+    public boolean hasData() {
+        return data != null;
+    }
+
+    /**
+     * Suelta los datos y devuelve su buffer al pool; el bloque conserva id, tipo, tamaño y checksum.
+     */
+    public void releaseData() {
+        releasePooled();
+        this.data = null;
+    }
+
+    private void releasePooled() {
+        if (pooled != null) {
+            pooled.release();
+            pooled = null;
+        }
+    }
+
     public void setData(byte[] data) {
         updateData(data);
     }
@@ -126,6 +231,7 @@ public class Block {
     public void setSize(int size) {
         this.size = size;
         if (data == null || data.length != size) {
+            releasePooled();
             this.data = new byte[size];
             this.checksum = calculateChecksum();
         }
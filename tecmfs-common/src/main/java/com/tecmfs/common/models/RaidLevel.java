@@ -0,0 +1,37 @@
+package com.tecmfs.common.models;
+
+import java.util.Locale;
+
+/**
+ * Nivel de redundancia de un archivo: cuántos bloques de paridad lleva cada stripe.
+ */
+public enum RaidLevel {
+    RAID5(1),   // paridad P (XOR): tolera un bloque perdido por stripe
+    RAID6(2);   // paridades P y Q (Reed-Solomon en GF(2^8)): tolera dos
+
+    private final int parityCount;
+
+    RaidLevel(int parityCount) {
+        this.parityCount = parityCount;
+    }
+
+    public int getParityCount() {
+        return parityCount;
+    }
+
+    /**
+     * @return ancho mínimo del stripe: dos bloques de datos más las paridades
+     */
+    public int getMinWidth() {
+        return 2 + parityCount;
+    }
+
+    /**
+     * Acepta "5", "6", "raid5" o "RAID6".
+     * @throws IllegalArgumentException si el valor no es un nivel conocido
+     */
+    public static RaidLevel fromString(String value) {
+        String v = value.trim().toUpperCase(Locale.ROOT);
+        return valueOf(v.startsWith("RAID") ? v : "RAID" + v);
+    }
+}
@@ -1,42 +1,104 @@
 package com.tecmfs.common.models;
 
+import com.tecmfs.common.util.Raid6Calculator;
+import com.tecmfs.common.util.XorKernel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
- * Representa un stripe en RAID 5 - un conjunto de bloques distribuidos entre los nodos
- * incluyendo bloques de datos y un bloque de paridad
- * En RAID 5 con 4 nodos: 3 bloques de datos + 1 bloque de paridad
+ * Representa un stripe: un conjunto de bloques de datos y de paridad distribuidos entre los nodos,
+ * uno por nodo. Su forma la da la {@link StripeLayout} del archivo, fija para todos sus stripes:
+ * el ancho (totalBlocks) va de MIN_TOTAL_BLOCKS a MAX_TOTAL_BLOCKS (3 a 16 bloques), de los
+ * cuales k son datos y m paridad.
+ * - RAID 5: una paridad P (XOR); p. ej. con 4 nodos, 3 bloques de datos + P
+ * - RAID 6: P y Q, desde 4 bloques (2+2)
+ * - Reed-Solomon k+m: cualquier k >= 2 y m >= 1 con k+m dentro del rango
+ * Las paridades ocupan posiciones consecutivas a partir de la de P, que rota con el índice del stripe.
  */
 public class Stripe {
     private String stripeId;                    // Identificador único del stripe
     private Block[] blocks;                     // Array de bloques que conforman el stripe
-    private int parityPosition;                 // Posición del bloque de paridad (0-3)
-    private int dataBlockCount;                 // Número de bloques de datos (3 en RAID 5)
-    private int totalBlocks;                    // Total de bloques incluyendo paridad (4)
+    private int parityPosition;                 // Posición del bloque de paridad (0 a totalBlocks-1)
+    private int qPosition;                      // Posición de la paridad Q en RAID 6, -1 en otro caso
+    private int[] parityPositions;              // Posición de cada paridad, en orden de paridad
+    private StripeLayout layout;                // Datos y paridades del stripe, y su código
+    private int dataBlockCount;                 // Número de bloques de datos (totalBlocks - paridades)
+    private int totalBlocks;                    // Total de bloques incluyendo paridad
     private boolean isComplete;                 // Indica si el stripe tiene todos sus bloques
     private String fileId;                      // ID del archivo al que pertenece este stripe
     private int stripeIndex;                    // Índice del stripe dentro del archivo
+    private boolean[] degraded;                 // Posiciones cuya escritura en el nodo falló
 
-    public static final int RAID5_TOTAL_BLOCKS = 4;  // 4 nodos en total
+    public static final int RAID5_TOTAL_BLOCKS = 4;  // ancho por defecto: 4 nodos en total
     public static final int RAID5_DATA_BLOCKS = 3;   // 3 bloques de datos
+    public static final int MIN_TOTAL_BLOCKS = 3;    // 2 bloques de datos + paridad
+    public static final int MAX_TOTAL_BLOCKS = 16;
 
-    // Constructor
+    // Constructor con el ancho por defecto
     public Stripe(String stripeId, String fileId, int stripeIndex) {
+        this(stripeId, fileId, stripeIndex, RAID5_TOTAL_BLOCKS);
+    }
+
+    /**
+     * @param totalBlocks ancho del stripe, entre MIN_TOTAL_BLOCKS y MAX_TOTAL_BLOCKS
+     */
+    public Stripe(String stripeId, String fileId, int stripeIndex, int totalBlocks) {
+        this(stripeId, fileId, stripeIndex, totalBlocks, RaidLevel.RAID5);
+    }
+
+    /**
+     * @param totalBlocks ancho del stripe, entre el mínimo del nivel y MAX_TOTAL_BLOCKS
+     * @param raidLevel   RAID5 (P) o RAID6 (P y Q)
+     */
+    public Stripe(String stripeId, String fileId, int stripeIndex, int totalBlocks, RaidLevel raidLevel) {
+        this(stripeId, fileId, stripeIndex, StripeLayout.of(raidLevel, totalBlocks));
+    }
+
+    /**
+     * @param layout disposición del stripe; su ancho es el total de bloques
+     */
+    public Stripe(String stripeId, String fileId, int stripeIndex, StripeLayout layout) {
         this.stripeId = stripeId;
         this.fileId = fileId;
         this.stripeIndex = stripeIndex;
-        this.totalBlocks = RAID5_TOTAL_BLOCKS;
-        this.dataBlockCount = RAID5_DATA_BLOCKS;
+        this.totalBlocks = layout.getWidth();
+        this.layout = layout;
+        this.dataBlockCount = layout.getDataBlocks();
         this.blocks = new Block[totalBlocks];
+        this.degraded = new boolean[totalBlocks];
         this.isComplete = false;
 
         // Calcular posición de paridad rotando para balancear carga
         // En RAID 5 la paridad se distribuye entre todos los discos
-        this.parityPosition = stripeIndex % totalBlocks;
+        updateParityPositions();
+    }
+
+    private void updateParityPositions() {
+        this.parityPositions = layout.parityPositions(stripeIndex);
+        this.parityPosition = parityPositions[0];
+        this.qPosition = layout.getRaidLevel() == RaidLevel.RAID6 ? parityPositions[1] : -1;
+    }
+
+    /**
+     * @return true si width es un ancho de stripe admitido
+     */
+    public static boolean isValidWidth(int width) {
+        return width >= MIN_TOTAL_BLOCKS && width <= MAX_TOTAL_BLOCKS;
+    }
+
+    /**
+     * @return true si width es un ancho admitido para el nivel indicado
+     */
+    public static boolean isValidWidth(int width, RaidLevel raidLevel) {
+        return width >= raidLevel.getMinWidth() && width <= MAX_TOTAL_BLOCKS;
     }
 
     /**
      * Agrega un bloque al stripe en la posición especificada
      *
-     * @param position posición del nodo (0-3)
+     * @param position posición del nodo (0 a totalBlocks-1)
      * @param block    bloque a agregar
      */
     public void setBlock(int position, Block block) {
@@ -51,7 +113,7 @@ public class Stripe {
     /**
      * Obtiene el bloque en la posición especificada
      *
-     * @param position posición del nodo (0-3)
+     * @param position posición del nodo (0 a totalBlocks-1)
      * @return bloque en esa posición o null si no existe
      */
     public Block getBlock(int position) {
@@ -71,7 +133,7 @@ public class Stripe {
         int dataIndex = 0;
 
         for (int i = 0; i < totalBlocks; i++) {
-            if (i != parityPosition && blocks[i] != null) {
+            if (!isParityPosition(i) && blocks[i] != null) {
                 dataBlocks[dataIndex++] = blocks[i];
             }
         }
@@ -79,6 +141,27 @@ public class Stripe {
         return dataBlocks;
     }
 
+    /**
+     * @return posición de cada bloque de datos, en orden de datos
+     */
+    public int[] getDataPositions() {
+        return layout.dataPositions(stripeIndex);
+    }
+
+    /**
+     * @return posiciones de paridad en orden de uso: P y, en RAID 6, Q; en Reed-Solomon las m paridades
+     */
+    public int[] getParityPositions() {
+        return parityPositions.clone();
+    }
+
+    /**
+     * @return true si la posición guarda una paridad
+     */
+    public boolean isParityPosition(int position) {
+        return layout.isParityPosition(stripeIndex, position);
+    }
+
     /**
      * Obtiene el bloque de paridad
      *
@@ -88,6 +171,13 @@ public class Stripe {
         return blocks[parityPosition];
     }
 
+    /**
+     * @return bloque de paridad Q, o null si no existe o el stripe es RAID 5
+     */
+    public Block getQBlock() {
+        return qPosition < 0 ? null : blocks[qPosition];
+    }
+
     /**
      * Calcula la paridad XOR de todos los bloques de datos
      *
@@ -125,17 +215,35 @@ public class Stripe {
         byte[] parityData = new byte[blockSize];
 
         for (Block block : dataBlocks) {
-            if (block != null && block.getData() != null) {
-                byte[] blockData = block.getData();
-                for (int i = 0; i < Math.min(blockSize, blockData.length); i++) {
-                    parityData[i] ^= blockData[i];
-                }
+            if (block != null && block.rawData() != null) {
+                byte[] blockData = block.rawData();
+                XorKernel.xorInto(parityData, blockData, Math.min(blockSize, blockData.length));
             }
         }
 
         // Crear bloque de paridad
         String parityBlockId = stripeId + "_parity";
-        return new Block(parityBlockId, parityData, Block.BlockType.PARITY);
+        return Block.wrap(parityBlockId, parityData, Block.BlockType.PARITY);
+    }
+
+    /**
+     * Calcula la paridad Q (RAID 6) de todos los bloques de datos
+     *
+     * @return bloque Q calculado
+     * @throws IllegalStateException si el stripe es RAID 5 o faltan bloques de datos
+     */
+    public Block calculateQ() {
+        if (layout.getRaidLevel() != RaidLevel.RAID6) {
+            throw new IllegalStateException("El stripe " + stripeId + " no tiene paridad Q");
+        }
+        List<byte[]> data = new ArrayList<>(dataBlockCount);
+        for (int pos : getDataPositions()) {
+            if (!isUsable(pos)) {
+                throw new IllegalStateException("No hay suficientes bloques de datos válidos para calcular paridad");
+            }
+            data.add(blocks[pos].rawData());
+        }
+        return Block.wrap(stripeId + "_q", Raid6Calculator.calculateQ(data), Block.BlockType.PARITY);
     }
 
     /**
@@ -145,49 +253,116 @@ public class Stripe {
      * @return bloque reconstruido
      */
     public Block reconstructBlock(int missingPosition) {
-        if (missingPosition < 0 || missingPosition >= totalBlocks) {
-            throw new IllegalArgumentException("Posición inválida: " + missingPosition);
-        }
+        return reconstructBlocks(missingPosition)[0];
+    }
 
-        // Verificar que tenemos suficientes bloques para reconstruir
-        int availableBlocks = 0;
-        for (int i = 0; i < totalBlocks; i++) {
-            if (i != missingPosition && blocks[i] != null && !blocks[i].isCorrupted()) {
-                availableBlocks++;
+    /**
+     * Reconstruye uno o varios bloques a partir de los demás con el código de la disposición.
+     * Las posiciones pedidas, y las que no tengan un bloque válido, se consideran perdidas.
+     * Con un bloque de datos perdido y P disponible se usa XOR; las paridades pedidas se
+     * recalculan a partir de los datos completos.
+     *
+     * @param positions posiciones a reconstruir
+     * @return bloques reconstruidos, en el orden de positions
+     * @throws IllegalStateException si se perdieron más bloques de los que la paridad cubre
+     */
+    public Block[] reconstructBlocks(int... positions) {
+        boolean[] wanted = new boolean[totalBlocks];
+        for (int pos : positions) {
+            if (pos < 0 || pos >= totalBlocks) {
+                throw new IllegalArgumentException("Posición inválida: " + pos);
             }
+            wanted[pos] = true;
         }
 
-        if (availableBlocks < (totalBlocks - 1)) {
-            throw new IllegalStateException("No hay suficientes bloques válidos para reconstruir");
-        }
-
-        // Determinar tamaño del bloque
+        // Bloques en el orden del código: datos y luego paridades
+        int[] order = shardOrder();
+        byte[][] shards = new byte[totalBlocks][];
+        boolean[] present = new boolean[totalBlocks];
         int blockSize = 0;
         for (int i = 0; i < totalBlocks; i++) {
-            if (i != missingPosition && blocks[i] != null) {
-                blockSize = blocks[i].getSize();
-                break;
+            int pos = order[i];
+            if (!wanted[pos] && isUsable(pos)) {
+                shards[i] = blocks[pos].rawData();
+                present[i] = true;
+                blockSize = shards[i].length;
             }
         }
+        layout.codec().decode(shards, present, blockSize);
+
+        Block[] rebuilt = new Block[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            int pos = positions[i];
+            byte[] bytes = shards[indexOf(order, pos)];
+            // Determinar tipo del bloque reconstruido
+            Block.BlockType blockType = isParityPosition(pos) ? Block.BlockType.PARITY : Block.BlockType.DATA;
+            rebuilt[i] = Block.wrap(stripeId + "_block_" + pos, bytes, blockType);
+        }
+        return rebuilt;
+    }
 
-        // Reconstruir usando XOR de todos los bloques disponibles
-        byte[] reconstructedData = new byte[blockSize];
+    /**
+     * @return posición de cada bloque en el orden del código: datos y luego paridades
+     */
+    private int[] shardOrder() {
+        int[] order = Arrays.copyOf(getDataPositions(), totalBlocks);
+        System.arraycopy(parityPositions, 0, order, dataBlockCount, parityPositions.length);
+        return order;
+    }
 
-        for (int i = 0; i < totalBlocks; i++) {
-            if (i != missingPosition && blocks[i] != null && blocks[i].getData() != null) {
-                byte[] blockData = blocks[i].getData();
-                for (int j = 0; j < Math.min(blockSize, blockData.length); j++) {
-                    reconstructedData[j] ^= blockData[j];
-                }
+    private static int indexOf(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return i;
             }
         }
+        return -1;
+    }
+
+    private boolean isUsable(int position) {
+        Block block = blocks[position];
+        return block != null && !block.isCorrupted() && block.rawData() != null;
+    }
+
+    /**
+     * Marca una posición como degradada: el bloque no quedó almacenado en su nodo
+     * y debe reconstruirse a partir de la paridad al leer.
+     *
+     * @param position posición del nodo (0 a totalBlocks-1)
+     */
+    public void markDegraded(int position) {
+        if (position < 0 || position >= totalBlocks) {
+            throw new IllegalArgumentException("Posición inválida: " + position);
+        }
+        degraded[position] = true;
+    }
+
+    /**
+     * Quita la marca de degradado, por ejemplo después de reescribir el bloque en su nodo.
+     *
+     * @param position posición del nodo (0 a totalBlocks-1)
+     */
+    public void clearDegraded(int position) {
+        if (position >= 0 && position < totalBlocks) {
+            degraded[position] = false;
+        }
+    }
 
-        // Determinar tipo del bloque reconstruido
-        Block.BlockType blockType = (missingPosition == parityPosition) ?
-                Block.BlockType.PARITY : Block.BlockType.DATA;
+    /**
+     * @return true si la posición indicada fue marcada como degradada
+     */
+    public boolean isDegraded(int position) {
+        return position >= 0 && position < totalBlocks && degraded[position];
+    }
 
-        String blockId = stripeId + "_block_" + missingPosition;
-        return new Block(blockId, reconstructedData, blockType);
+    /**
+     * @return true si alguna posición del stripe está degradada
+     */
+    public boolean isDegraded() {
+        for (boolean d : degraded) {
+            if (d) return true;
+        }
+        return false;
     }
 
     /**
@@ -214,26 +389,23 @@ public class Stripe {
         }
 
         try {
-            Block calculatedParity = calculateParity();
-            Block storedParity = getParityBlock();
-
-            if (storedParity == null || calculatedParity == null) {
-                return false;
-            }
-
-            byte[] calculated = calculatedParity.getData();
-            byte[] stored = storedParity.getData();
-
-            if (calculated.length != stored.length) {
-                return false;
+            List<byte[]> data = new ArrayList<>(dataBlockCount);
+            for (int pos : getDataPositions()) {
+                if (!isUsable(pos)) {
+                    return false;
+                }
+                data.add(blocks[pos].rawData());
             }
+            int blockSize = data.get(0).length;
+            byte[][] calculated = new byte[parityPositions.length][blockSize];
+            layout.codec().encode(data.toArray(new byte[0][]), calculated, blockSize);
 
-            for (int i = 0; i < calculated.length; i++) {
-                if (calculated[i] != stored[i]) {
+            for (int j = 0; j < parityPositions.length; j++) {
+                Block stored = blocks[parityPositions[j]];
+                if (stored == null || !Arrays.equals(calculated[j], stored.rawData())) {
                     return false;
                 }
             }
-
             return true;
         } catch (Exception e) {
             return false;
@@ -257,6 +429,31 @@ public class Stripe {
         return parityPosition;
     }
 
+    /**
+     * @return posición de Q, o -1 si el stripe no es RAID 6
+     */
+    public int getQPosition() {
+        return qPosition;
+    }
+
+    /**
+     * @return RAID5 o RAID6, o null si la disposición es Reed-Solomon
+     */
+    public RaidLevel getRaidLevel() {
+        return layout.getRaidLevel();
+    }
+
+    public StripeLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return bloques perdidos por stripe que se pueden recuperar
+     */
+    public int getParityCount() {
+        return layout.getParityBlocks();
+    }
+
     public int getDataBlockCount() {
         return dataBlockCount;
     }
@@ -284,13 +481,14 @@ public class Stripe {
     public void setStripeIndex(int stripeIndex) {
         this.stripeIndex = stripeIndex;
         // Recalcular posición de paridad
-        this.parityPosition = stripeIndex % totalBlocks;
+        updateParityPositions();
     }
 
     @Override
     public String toString() {
-        return String.format("Stripe{id='%s', fileId='%s', index=%d, parityPos=%d, complete=%s}",
-                stripeId, fileId, stripeIndex, parityPosition, isComplete);
+        return String.format("Stripe{id='%s', fileId='%s', index=%d, layout=%s, parityPos=%d, qPos=%d, "
+                        + "complete=%s, degraded=%s}",
+                stripeId, fileId, stripeIndex, layout, parityPosition, qPosition, isComplete, isDegraded());
     }
 
     @Override
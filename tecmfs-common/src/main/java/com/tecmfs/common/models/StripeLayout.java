@@ -0,0 +1,203 @@
+package com.tecmfs.common.models;
+
+import com.tecmfs.common.util.ErasureCodec;
+import com.tecmfs.common.util.ParityCodec;
+import com.tecmfs.common.util.ReedSolomonCodec;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Disposición de los bloques de un stripe: k bloques de datos más m de paridad y el código
+ * que las calcula. RAID 5 y RAID 6 usan P (XOR) y P+Q; Reed-Solomon admite cualquier k+m.
+ * En todas las disposiciones la paridad j va en la posición (índice del stripe + j) mod ancho.
+ */
+public final class StripeLayout {
+    private static final Map<StripeLayout, ErasureCodec> codecs = new ConcurrentHashMap<>();
+
+    private final RaidLevel raidLevel;  // RAID5 o RAID6; null en Reed-Solomon
+    private final int dataBlocks;       // k
+    private final int parityBlocks;     // m
+
+    private StripeLayout(RaidLevel raidLevel, int dataBlocks, int parityBlocks) {
+        this.raidLevel = raidLevel;
+        this.dataBlocks = dataBlocks;
+        this.parityBlocks = parityBlocks;
+    }
+
+    /**
+     * @param width ancho del stripe, entre el mínimo del nivel y Stripe.MAX_TOTAL_BLOCKS
+     */
+    public static StripeLayout of(RaidLevel raidLevel, int width) {
+        if (!Stripe.isValidWidth(width, raidLevel)) {
+            throw new IllegalArgumentException("Ancho de stripe inválido para " + raidLevel + ": " + width
+                    + " (debe estar entre " + raidLevel.getMinWidth() + " y " + Stripe.MAX_TOTAL_BLOCKS + ")");
+        }
+        return new StripeLayout(raidLevel, width - raidLevel.getParityCount(), raidLevel.getParityCount());
+    }
+
+    /**
+     * @param dataBlocks   k, al menos 2
+     * @param parityBlocks m, al menos 1; k+m no puede superar Stripe.MAX_TOTAL_BLOCKS
+     */
+    public static StripeLayout reedSolomon(int dataBlocks, int parityBlocks) {
+        if (dataBlocks < 2 || parityBlocks < 1 || dataBlocks + parityBlocks > Stripe.MAX_TOTAL_BLOCKS) {
+            throw new IllegalArgumentException("Disposición Reed-Solomon inválida: " + dataBlocks + "+" + parityBlocks
+                    + " (k >= 2, m >= 1, k+m <= " + Stripe.MAX_TOTAL_BLOCKS + ")");
+        }
+        return new StripeLayout(null, dataBlocks, parityBlocks);
+    }
+
+    /**
+     * Acepta "k+m" (por ejemplo "6+2"), opcionalmente con prefijo "rs:".
+     * @throws IllegalArgumentException si el valor no tiene ese formato o la disposición no es válida
+     */
+    public static StripeLayout parse(String value) {
+        String v = value.trim().toLowerCase(Locale.ROOT);
+        if (v.startsWith("rs:")) {
+            v = v.substring(3);
+        }
+        int plus = v.indexOf('+');
+        if (plus <= 0) {
+            throw new IllegalArgumentException("Disposición inválida, se espera k+m: " + value);
+        }
+        try {
+            return reedSolomon(Integer.parseInt(v.substring(0, plus).trim()),
+                    Integer.parseInt(v.substring(plus + 1).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Disposición inválida, se espera k+m: " + value);
+        }
+    }
+
+    /**
+     * @return RAID5 o RAID6, o null si la disposición es Reed-Solomon
+     */
+    public RaidLevel getRaidLevel() {
+        return raidLevel;
+    }
+
+    public boolean isReedSolomon() {
+        return raidLevel == null;
+    }
+
+    public int getDataBlocks() {
+        return dataBlocks;
+    }
+
+    public int getParityBlocks() {
+        return parityBlocks;
+    }
+
+    public int getWidth() {
+        return dataBlocks + parityBlocks;
+    }
+
+    /**
+     * @return posición de cada paridad del stripe stripeIndex, en orden de paridad
+     */
+    public int[] parityPositions(int stripeIndex) {
+        int[] positions = new int[parityBlocks];
+        for (int j = 0; j < parityBlocks; j++) {
+            positions[j] = (stripeIndex + j) % getWidth();
+        }
+        return positions;
+    }
+
+    /**
+     * @return posición de cada bloque de datos del stripe stripeIndex, en orden de datos
+     */
+    public int[] dataPositions(int stripeIndex) {
+        int[] positions = new int[dataBlocks];
+        for (int pos = 0, d = 0; pos < getWidth(); pos++) {
+            if (!isParityPosition(stripeIndex, pos)) {
+                positions[d++] = pos;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * @return true si la posición guarda una paridad en el stripe stripeIndex
+     */
+    public boolean isParityPosition(int stripeIndex, int position) {
+        return Math.floorMod(position - stripeIndex, getWidth()) < parityBlocks;
+    }
+
+    /**
+     * Sufijo del id del bloque en una posición: "_d" y su índice de datos, o el de su paridad.
+     */
+    public String blockSuffix(int stripeIndex, int position) {
+        int j = Math.floorMod(position - stripeIndex, getWidth());
+        if (j < parityBlocks) {
+            return parityBlockSuffix(j);
+        }
+        int d = 0;
+        for (int pos = 0; pos < position; pos++) {
+            if (!isParityPosition(stripeIndex, pos)) {
+                d++;
+            }
+        }
+        return "_d" + d;
+    }
+
+    /**
+     * Inverso de {@link #blockSuffix(int, int)}: posición del bloque con ese sufijo en el stripe stripeIndex.
+     * @return la posición, o -1 si el sufijo no corresponde a esta disposición
+     */
+    public int positionOf(int stripeIndex, String suffix) {
+        try {
+            if (suffix.startsWith("_d")) {
+                int d = Integer.parseInt(suffix.substring(2));
+                return d >= 0 && d < dataBlocks ? dataPositions(stripeIndex)[d] : -1;
+            }
+            for (int j = 0; j < parityBlocks; j++) {
+                if (parityBlockSuffix(j).equals(suffix)) {
+                    return parityPositions(stripeIndex)[j];
+                }
+            }
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Sufijo del id de la paridad j: "_p" y "_q" en RAID 5/6, "_p0".."_p(m-1)" en Reed-Solomon.
+     */
+    public String parityBlockSuffix(int j) {
+        if (isReedSolomon()) {
+            return "_p" + j;
+        }
+        return j == 0 ? "_p" : "_q";
+    }
+
+    /**
+     * @return código de la disposición; se comparte entre todos los stripes iguales
+     */
+    public ErasureCodec codec() {
+        return codecs.computeIfAbsent(this, l -> l.isReedSolomon()
+                ? new ReedSolomonCodec(dataBlocks, parityBlocks)
+                : new ParityCodec(dataBlocks, parityBlocks));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof StripeLayout other)) return false;
+        return raidLevel == other.raidLevel && dataBlocks == other.dataBlocks && parityBlocks == other.parityBlocks;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (raidLevel == null ? 0 : raidLevel.hashCode()) + dataBlocks) + parityBlocks;
+    }
+
+    /**
+     * @return por ejemplo "RAID5(3+1)" o "RS(6+2)"
+     */
+    @Override
+    public String toString() {
+        return (isReedSolomon() ? "RS" : raidLevel.name()) + "(" + dataBlocks + "+" + parityBlocks + ")";
+    }
+}
@@ -0,0 +1,112 @@
+package com.tecmfs.common.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Arena de buffers de tamaño fijo, en heap o directos, que se reutilizan entre peticiones.
+ * Cada {@link PooledBuffer} tiene un contador de referencias; cuando llega a cero el buffer
+ * vuelve al pool. Como mucho se conservan maxPooled buffers libres: los que sobran, o los que
+ * nunca se liberan, simplemente los recolecta el GC. Un pedido mayor que bufferSize recibe un
+ * buffer a medida que tampoco vuelve al pool.
+ * <p>
+ * El contenido de un buffer reutilizado no se limpia: quien lo adquiere debe escribirlo completo.
+ */
+public final class BufferPool {
+    private final int bufferSize;
+    private final boolean direct;
+    private final BlockingQueue<PooledBuffer> free;
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong oversized = new AtomicLong();
+
+    /**
+     * @param bufferSize tamaño de cada buffer en bytes
+     * @param maxPooled  máximo de buffers libres que se conservan
+     * @param direct     true para buffers fuera del heap (sin array accesible)
+     */
+    public BufferPool(int bufferSize, int maxPooled, boolean direct) {
+        if (bufferSize <= 0 || maxPooled <= 0) {
+            throw new IllegalArgumentException("bufferSize y maxPooled deben ser positivos");
+        }
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+        this.free = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * @return buffer con una referencia, posición 0 y límite igual a su capacidad
+     */
+    public PooledBuffer acquire() {
+        PooledBuffer buf = free.poll();
+        if (buf == null) {
+            allocated.incrementAndGet();
+            ByteBuffer bb = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+            buf = new PooledBuffer(this, bb);
+        } else {
+            reused.incrementAndGet();
+        }
+        buf.reset();
+        return buf;
+    }
+
+    /**
+     * @return buffer de al menos minSize bytes con una referencia, posición 0 y límite igual a su
+     *         capacidad; si minSize supera bufferSize se crea uno a medida
+     */
+    public PooledBuffer acquire(int minSize) {
+        if (minSize <= bufferSize) {
+            return acquire();
+        }
+        oversized.incrementAndGet();
+        PooledBuffer buf = new PooledBuffer(this,
+                direct ? ByteBuffer.allocateDirect(minSize) : ByteBuffer.allocate(minSize));
+        buf.reset();
+        return buf;
+    }
+
+    /** Llamado por PooledBuffer cuando su contador llega a cero. */
+    void recycle(PooledBuffer buf) {
+        if (buf.capacity() == bufferSize) {
+            free.offer(buf);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /** @return buffers creados desde el arranque */
+    public long getAllocated() {
+        return allocated.get();
+    }
+
+    /** @return adquisiciones atendidas con un buffer reutilizado */
+    public long getReused() {
+        return reused.get();
+    }
+
+    /** @return buffers a medida creados por pedidos mayores que bufferSize */
+    public long getOversized() {
+        return oversized.get();
+    }
+
+    /** @return buffers libres en este momento */
+    public int getPooled() {
+        return free.size();
+    }
+
+    /**
+     * @return estadísticas del pool como objeto JSON
+     */
+    public String toJson() {
+        return String.format("{\"bufferSize\":%d,\"allocated\":%d,\"reused\":%d,\"oversized\":%d,\"pooled\":%d}",
+                bufferSize, getAllocated(), getReused(), getOversized(), getPooled());
+    }
+}
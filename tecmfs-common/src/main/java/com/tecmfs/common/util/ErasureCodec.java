@@ -0,0 +1,44 @@
+package com.tecmfs.common.util;
+
+import java.util.List;
+
+/**
+ * Código de borrado de un stripe con k bloques de datos y m de paridad.
+ * Los bloques ("shards") se numeran 0..k-1 para los datos, en orden de datos,
+ * y k..k+m-1 para las paridades.
+ */
+public interface ErasureCodec {
+
+    /** @return k, bloques de datos por stripe */
+    int getDataCount();
+
+    /** @return m, bloques de paridad por stripe; se pueden perder hasta m bloques */
+    int getParityCount();
+
+    /**
+     * Calcula las m paridades de un stripe.
+     * @param data   k bloques de datos de al menos length bytes
+     * @param parity m arreglos donde se escriben las paridades (se sobrescriben los primeros length bytes)
+     */
+    void encode(byte[][] data, byte[][] parity, int length);
+
+    /**
+     * Codifica varios stripes seguidos; las implementaciones pueden recorrerlos juntos
+     * para reutilizar coeficientes y tablas entre stripes.
+     * @param data   bloques de datos de cada stripe
+     * @param parity arreglos de paridad de cada stripe
+     */
+    default void encodeBatch(List<byte[][]> data, List<byte[][]> parity, int length) {
+        for (int s = 0; s < data.size(); s++) {
+            encode(data.get(s), parity.get(s), length);
+        }
+    }
+
+    /**
+     * Reconstruye en su lugar los bloques ausentes de un stripe, datos y paridades.
+     * @param shards  k+m bloques; los ausentes se reemplazan por arreglos nuevos de length bytes
+     * @param present qué posiciones de shards tienen datos válidos
+     * @throws IllegalStateException si faltan más de m bloques
+     */
+    void decode(byte[][] shards, boolean[] present, int length);
+}
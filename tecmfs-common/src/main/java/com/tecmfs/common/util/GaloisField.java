@@ -0,0 +1,92 @@
+package com.tecmfs.common.util;
+
+/**
+ * Aritmética en GF(2^8) con el polinomio x^8 + x^4 + x^3 + x^2 + 1 (0x11D), el mismo de RAID 6.
+ * La suma es XOR; la multiplicación usa una tabla completa de 256×256 productos (64 KB),
+ * de modo que multiplicar una región por una constante es una búsqueda por byte.
+ */
+public final class GaloisField {
+    private static final int POLYNOMIAL = 0x11D;
+
+    private static final int[] EXP = new int[512];
+    private static final int[] LOG = new int[256];
+    private static final byte[][] MUL = new byte[256][256];
+
+    static {
+        int x = 1;
+        for (int i = 0; i < 255; i++) {
+            EXP[i] = x;
+            LOG[x] = i;
+            x <<= 1;
+            if ((x & 0x100) != 0) {
+                x ^= POLYNOMIAL;
+            }
+        }
+        for (int i = 255; i < EXP.length; i++) {
+            EXP[i] = EXP[i - 255];
+        }
+        for (int a = 1; a < 256; a++) {
+            for (int b = 1; b < 256; b++) {
+                MUL[a][b] = (byte) EXP[LOG[a] + LOG[b]];
+            }
+        }
+    }
+
+    private GaloisField() {
+    }
+
+    public static int mul(int a, int b) {
+        return MUL[a & 0xFF][b & 0xFF] & 0xFF;
+    }
+
+    /**
+     * @throws ArithmeticException si b es cero
+     */
+    public static int div(int a, int b) {
+        if (b == 0) {
+            throw new ArithmeticException("División por cero en GF(2^8)");
+        }
+        if (a == 0) {
+            return 0;
+        }
+        return EXP[LOG[a] + 255 - LOG[b]];
+    }
+
+    public static int inv(int a) {
+        return div(1, a);
+    }
+
+    /**
+     * @return g^e con el generador g = 2; e puede ser negativo
+     */
+    public static int exp(int e) {
+        return EXP[Math.floorMod(e, 255)];
+    }
+
+    /**
+     * dest[i] ^= coef · src[i] para i en [0, length).
+     */
+    public static void mulAddInto(byte[] dest, byte[] src, int coef, int length) {
+        if (coef == 0) {
+            return;
+        }
+        if (coef == 1) {
+            XorKernel.xorInto(dest, src, length);
+            return;
+        }
+        byte[] row = MUL[coef & 0xFF];
+        for (int i = 0; i < length; i++) {
+            dest[i] ^= row[src[i] & 0xFF];
+        }
+    }
+
+    /**
+     * dest[i] = coef · src[i] para i en [0, length); dest y src pueden ser el mismo arreglo.
+     */
+    public static void mulInto(byte[] dest, byte[] src, int coef, int length) {
+        byte[] row = MUL[coef & 0xFF];
+        for (int i = 0; i < length; i++) {
+            dest[i] = row[src[i] & 0xFF];
+        }
+    }
+}
@@ -1,8 +1,9 @@
 package com.tecmfs.common.util;
+import java.util.Arrays;
 import java.util.List;
 
 /**
- * Utilidad para cálculo de paridad XOR en bloques de datos.
+ * Utilidad para cálculo de paridad XOR en bloques de datos (ver {@link XorKernel}).
  */
 public class ParityCalculator {
 
@@ -16,18 +17,30 @@ public class ParityCalculator {
         if (dataBlocks == null || dataBlocks.isEmpty()) {
             throw new IllegalArgumentException("Debe proveer al menos un bloque de datos.");
         }
+        byte[] parity = new byte[dataBlocks.get(0).length];
+        calculateParity(dataBlocks, parity);
+        return parity;
+    }
 
-        int length = dataBlocks.get(0).length;
-        byte[] parity = new byte[length];
+    /**
+     * Igual que {@link #calculateParity(List)} pero escribe la paridad en un arreglo existente,
+     * por ejemplo un buffer del pool. dest se sobrescribe por completo.
+     *
+     * @param dataBlocks listas de bytes de cada bloque de datos, del mismo tamaño que dest
+     * @param dest       arreglo donde queda la paridad
+     */
+    public static void calculateParity(List<byte[]> dataBlocks, byte[] dest) {
+        if (dataBlocks == null || dataBlocks.isEmpty()) {
+            throw new IllegalArgumentException("Debe proveer al menos un bloque de datos.");
+        }
 
+        int length = dest.length;
+        Arrays.fill(dest, (byte) 0);
         for (byte[] block : dataBlocks) {
             if (block.length != length) {
                 throw new IllegalArgumentException("Todos los bloques deben tener el mismo tamaño.");
             }
-            for (int i = 0; i < length; i++) {
-                parity[i] ^= block[i];
-            }
+            XorKernel.xorInto(dest, block, length);
         }
-        return parity;
     }
 }
@@ -0,0 +1,116 @@
+package com.tecmfs.common.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Código de RAID 5 (m = 1, paridad P por XOR) y RAID 6 (m = 2, paridades P y Q),
+ * sobre {@link ParityCalculator} y {@link Raid6Calculator}.
+ */
+public class ParityCodec implements ErasureCodec {
+    private final int dataCount;
+    private final int parityCount;
+
+    /**
+     * @param dataCount   bloques de datos por stripe
+     * @param parityCount 1 (RAID 5) o 2 (RAID 6)
+     */
+    public ParityCodec(int dataCount, int parityCount) {
+        if (dataCount < 1 || parityCount < 1 || parityCount > 2) {
+            throw new IllegalArgumentException("ParityCodec admite 1 o 2 paridades: " + dataCount + "+" + parityCount);
+        }
+        this.dataCount = dataCount;
+        this.parityCount = parityCount;
+    }
+
+    @Override
+    public int getDataCount() {
+        return dataCount;
+    }
+
+    @Override
+    public int getParityCount() {
+        return parityCount;
+    }
+
+    @Override
+    public void encode(byte[][] data, byte[][] parity, int length) {
+        List<byte[]> blocks = trimmed(data, length);
+        byte[] p = parity[0].length == length ? parity[0] : new byte[length];
+        ParityCalculator.calculateParity(blocks, p);
+        if (p != parity[0]) {
+            System.arraycopy(p, 0, parity[0], 0, length);
+        }
+        if (parityCount == 2) {
+            byte[] q = parity[1].length == length ? parity[1] : new byte[length];
+            Raid6Calculator.calculateQ(blocks, q);
+            if (q != parity[1]) {
+                System.arraycopy(q, 0, parity[1], 0, length);
+            }
+        }
+    }
+
+    @Override
+    public void decode(byte[][] shards, boolean[] present, int length) {
+        List<Integer> lost = new ArrayList<>();
+        byte[][] data = new byte[dataCount][];
+        for (int d = 0; d < dataCount; d++) {
+            if (present[d]) {
+                data[d] = shards[d];
+            } else {
+                lost.add(d);
+            }
+        }
+        byte[] p = present[dataCount] ? shards[dataCount] : null;
+        byte[] q = parityCount == 2 && present[dataCount + 1] ? shards[dataCount + 1] : null;
+
+        if (lost.size() == 1 && p != null) {
+            // Reconstruir usando XOR de todos los bloques disponibles
+            int x = lost.get(0);
+            byte[] reconstructed = Arrays.copyOf(p, length);
+            for (int d = 0; d < dataCount; d++) {
+                if (d != x) {
+                    XorKernel.xorInto(reconstructed, data[d], length);
+                }
+            }
+            data[x] = reconstructed;
+        } else if (lost.size() == 1 && q != null) {
+            byte[][] work = trimmedArray(data, length);
+            Raid6Calculator.recoverWithQ(work, Arrays.copyOf(q, length), lost.get(0));
+            data[lost.get(0)] = work[lost.get(0)];
+        } else if (lost.size() == 2 && p != null && q != null) {
+            byte[][] work = trimmedArray(data, length);
+            Raid6Calculator.recoverTwo(work, Arrays.copyOf(p, length), Arrays.copyOf(q, length),
+                    lost.get(0), lost.get(1));
+            data[lost.get(0)] = work[lost.get(0)];
+            data[lost.get(1)] = work[lost.get(1)];
+        } else if (!lost.isEmpty()) {
+            throw new IllegalStateException("No hay suficientes bloques válidos para reconstruir");
+        }
+        System.arraycopy(data, 0, shards, 0, dataCount);
+
+        boolean parityLost = !present[dataCount] || (parityCount == 2 && !present[dataCount + 1]);
+        if (parityLost) {
+            byte[][] parity = new byte[parityCount][length];
+            encode(data, parity, length);
+            for (int j = 0; j < parityCount; j++) {
+                if (!present[dataCount + j]) {
+                    shards[dataCount + j] = parity[j];
+                }
+            }
+        }
+    }
+
+    private static byte[][] trimmedArray(byte[][] data, int length) {
+        byte[][] out = new byte[data.length][];
+        for (int i = 0; i < data.length; i++) {
+            out[i] = data[i] == null || data[i].length == length ? data[i] : Arrays.copyOf(data[i], length);
+        }
+        return out;
+    }
+
+    private static List<byte[]> trimmed(byte[][] data, int length) {
+        return Arrays.asList(trimmedArray(data, length));
+    }
+}
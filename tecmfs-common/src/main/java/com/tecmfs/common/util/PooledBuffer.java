@@ -0,0 +1,86 @@
+package com.tecmfs.common.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Buffer prestado por un {@link BufferPool}, con contador de referencias.
+ * Se entrega con una referencia; cada {@link #retain()} debe equilibrarse con un {@link #release()}
+ * y al liberar la última el buffer vuelve al pool. Usarlo después de eso es un error.
+ */
+public final class PooledBuffer {
+    private final BufferPool pool;
+    private final ByteBuffer buffer;
+    private final AtomicInteger refCnt = new AtomicInteger();
+
+    PooledBuffer(BufferPool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    void reset() {
+        buffer.clear();
+        refCnt.set(1);
+    }
+
+    /**
+     * @return el buffer subyacente; posición y límite los maneja el dueño actual
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return arreglo del buffer (solo buffers en heap)
+     * @throws UnsupportedOperationException si el buffer es directo
+     */
+    public byte[] array() {
+        if (!buffer.hasArray()) {
+            throw new UnsupportedOperationException("Buffer directo sin arreglo accesible");
+        }
+        return buffer.array();
+    }
+
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    public boolean isDirect() {
+        return buffer.isDirect();
+    }
+
+    /**
+     * Agrega una referencia.
+     * @return este buffer
+     * @throws IllegalStateException si ya fue devuelto al pool
+     */
+    public PooledBuffer retain() {
+        int prev;
+        do {
+            prev = refCnt.get();
+            if (prev <= 0) {
+                throw new IllegalStateException("Buffer ya liberado");
+            }
+        } while (!refCnt.compareAndSet(prev, prev + 1));
+        return this;
+    }
+
+    /**
+     * Quita una referencia; con la última el buffer vuelve al pool.
+     * @throws IllegalStateException si ya fue devuelto al pool
+     */
+    public void release() {
+        int left = refCnt.decrementAndGet();
+        if (left == 0) {
+            pool.recycle(this);
+        } else if (left < 0) {
+            refCnt.incrementAndGet();
+            throw new IllegalStateException("Buffer liberado más veces de las retenidas");
+        }
+    }
+
+    /** @return referencias vivas */
+    public int refCnt() {
+        return refCnt.get();
+    }
+}
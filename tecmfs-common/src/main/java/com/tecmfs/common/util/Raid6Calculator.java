@@ -0,0 +1,118 @@
+package com.tecmfs.common.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Segunda paridad de RAID 6. Con k bloques de datos D0..Dk-1:
+ * P = D0 ^ D1 ^ ... (ver {@link ParityCalculator}) y Q = g^0·D0 ^ g^1·D1 ^ ... en GF(2^8), con g = 2.
+ * Con P y Q se recupera cualquier par de bloques perdidos.
+ * <p>
+ * Q se calcula por Horner (Q = (...(Dk-1·g ^ Dk-2)·g ...) ^ D0), multiplicando por g
+ * ocho bytes a la vez dentro de un long; la recuperación, que es poco frecuente, usa las tablas
+ * de {@link GaloisField}.
+ */
+public final class Raid6Calculator {
+    private static final VarHandle LONGS =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private Raid6Calculator() {
+    }
+
+    /**
+     * @param dataBlocks bloques de datos en orden de datos, todos del mismo tamaño
+     * @return Q
+     */
+    public static byte[] calculateQ(List<byte[]> dataBlocks) {
+        if (dataBlocks == null || dataBlocks.isEmpty()) {
+            throw new IllegalArgumentException("Debe proveer al menos un bloque de datos.");
+        }
+        byte[] q = new byte[dataBlocks.get(0).length];
+        calculateQ(dataBlocks, q);
+        return q;
+    }
+
+    /**
+     * Escribe Q en dest, que se sobrescribe por completo.
+     */
+    public static void calculateQ(List<byte[]> dataBlocks, byte[] dest) {
+        byte[][] data = dataBlocks.toArray(new byte[0][]);
+        int length = dest.length;
+        for (byte[] block : data) {
+            if (block.length != length) {
+                throw new IllegalArgumentException("Todos los bloques deben tener el mismo tamaño.");
+            }
+        }
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            long q = 0;
+            for (int d = data.length - 1; d >= 0; d--) {
+                q = mul2(q) ^ (long) LONGS.get(data[d], i);
+            }
+            LONGS.set(dest, i, q);
+        }
+        for (; i < length; i++) {
+            int q = 0;
+            for (int d = data.length - 1; d >= 0; d--) {
+                q = GaloisField.mul(q, 2) ^ (data[d][i] & 0xFF);
+            }
+            dest[i] = (byte) q;
+        }
+    }
+
+    /**
+     * Recupera el bloque de datos x con Q, cuando P tampoco está disponible.
+     * @param data bloques de datos; data[x] se reemplaza por el bloque recuperado
+     */
+    public static void recoverWithQ(byte[][] data, byte[] q, int x) {
+        int length = q.length;
+        byte[] qx = q.clone();
+        for (int i = 0; i < data.length; i++) {
+            if (i != x) {
+                GaloisField.mulAddInto(qx, data[i], GaloisField.exp(i), length);
+            }
+        }
+        // qx = g^x · Dx
+        GaloisField.mulInto(qx, qx, GaloisField.exp(-x), length);
+        data[x] = qx;
+    }
+
+    /**
+     * Recupera los bloques de datos x e y (x != y) con P y Q.
+     * @param data bloques de datos; data[x] y data[y] se reemplazan por los bloques recuperados
+     */
+    public static void recoverTwo(byte[][] data, byte[] p, byte[] q, int x, int y) {
+        int length = p.length;
+        // pxy = Dx ^ Dy, qxy = g^x·Dx ^ g^y·Dy
+        byte[] pxy = p.clone();
+        byte[] qxy = q.clone();
+        for (int i = 0; i < data.length; i++) {
+            if (i != x && i != y) {
+                XorKernel.xorInto(pxy, data[i], length);
+                GaloisField.mulAddInto(qxy, data[i], GaloisField.exp(i), length);
+            }
+        }
+        // Dx = (g^(y-x)·pxy ^ g^-x·qxy) / (g^(y-x) ^ 1)
+        int gyx = GaloisField.exp(y - x);
+        int denominator = GaloisField.inv(gyx ^ 1);
+        int a = GaloisField.mul(gyx, denominator);
+        int b = GaloisField.mul(GaloisField.exp(-x), denominator);
+        byte[] dx = new byte[length];
+        GaloisField.mulAddInto(dx, pxy, a, length);
+        GaloisField.mulAddInto(dx, qxy, b, length);
+        // Dy = pxy ^ Dx
+        XorKernel.xorInto(pxy, dx, length);
+        data[x] = dx;
+        data[y] = pxy;
+    }
+
+    /**
+     * Multiplica por g = 2 cada uno de los 8 bytes de v.
+     */
+    private static long mul2(long v) {
+        long high = (v >>> 7) & 0x0101010101010101L;
+        return ((v & 0x7F7F7F7F7F7F7F7FL) << 1) ^ (high * 0x1D);
+    }
+}
@@ -0,0 +1,208 @@
+package com.tecmfs.common.util;
+
+import com.tecmfs.common.models.Stripe;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Código Reed-Solomon sistemático k+m sobre GF(2^8): tolera la pérdida de m bloques cualesquiera.
+ * <p>
+ * La matriz de paridad es una matriz de Cauchy con cada columna escalada para que la primera fila
+ * sea de unos; escalar columnas conserva la propiedad MDS, y así la paridad 0 es el XOR de los datos.
+ * Una sola pérdida de datos con la paridad 0 disponible se resuelve con XOR, igual que en RAID 5.
+ * Para las demás combinaciones se invierte la submatriz de los k bloques sobrevivientes elegidos;
+ * la inversa se guarda por combinación, ya que las mismas pérdidas se repiten en todos los stripes.
+ * La combinación se identifica con un int de un bit por bloque, por eso k+m no supera
+ * {@link Stripe#MAX_TOTAL_BLOCKS}.
+ */
+public class ReedSolomonCodec implements ErasureCodec {
+    private final int dataCount;
+    private final int parityCount;
+    private final int[][] parityMatrix;                 // m × k
+    private final Map<Integer, int[][]> inverses = new ConcurrentHashMap<>();
+
+    /**
+     * @param dataCount   k, bloques de datos por stripe
+     * @param parityCount m, bloques de paridad por stripe; k+m no puede superar Stripe.MAX_TOTAL_BLOCKS
+     */
+    public ReedSolomonCodec(int dataCount, int parityCount) {
+        if (dataCount < 1 || parityCount < 1 || dataCount + parityCount > Stripe.MAX_TOTAL_BLOCKS) {
+            throw new IllegalArgumentException("Código Reed-Solomon inválido: " + dataCount + "+" + parityCount);
+        }
+        this.dataCount = dataCount;
+        this.parityCount = parityCount;
+        this.parityMatrix = new int[parityCount][dataCount];
+        // Cauchy: C[j][i] = 1 / (x_j + y_i), con x_j = j e y_i = m + i, todos distintos
+        for (int j = 0; j < parityCount; j++) {
+            for (int i = 0; i < dataCount; i++) {
+                parityMatrix[j][i] = GaloisField.inv(j ^ (parityCount + i));
+            }
+        }
+        for (int i = 0; i < dataCount; i++) {
+            int scale = GaloisField.inv(parityMatrix[0][i]);
+            for (int j = 0; j < parityCount; j++) {
+                parityMatrix[j][i] = GaloisField.mul(parityMatrix[j][i], scale);
+            }
+        }
+    }
+
+    @Override
+    public int getDataCount() {
+        return dataCount;
+    }
+
+    @Override
+    public int getParityCount() {
+        return parityCount;
+    }
+
+    @Override
+    public void encode(byte[][] data, byte[][] parity, int length) {
+        for (int j = 0; j < parityCount; j++) {
+            encodeRow(j, data, parity[j], length);
+        }
+    }
+
+    /**
+     * Recorre los stripes por coeficiente: cada fila de la tabla de multiplicación se usa
+     * en todos los stripes del lote antes de pasar al siguiente coeficiente.
+     */
+    @Override
+    public void encodeBatch(List<byte[][]> data, List<byte[][]> parity, int length) {
+        for (int j = 0; j < parityCount; j++) {
+            for (byte[][] p : parity) {
+                Arrays.fill(p[j], 0, length, (byte) 0);
+            }
+            for (int i = 0; i < dataCount; i++) {
+                int coef = parityMatrix[j][i];
+                for (int s = 0; s < data.size(); s++) {
+                    GaloisField.mulAddInto(parity.get(s)[j], data.get(s)[i], coef, length);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void decode(byte[][] shards, boolean[] present, int length) {
+        int total = dataCount + parityCount;
+        int missing = 0;
+        int missingData = 0;
+        int lastMissingData = -1;
+        for (int i = 0; i < total; i++) {
+            if (!present[i]) {
+                missing++;
+                if (i < dataCount) {
+                    missingData++;
+                    lastMissingData = i;
+                }
+            }
+        }
+        if (missing > parityCount) {
+            throw new IllegalStateException("No hay suficientes bloques válidos para reconstruir: faltan "
+                    + missing + " de " + total + " y el código tolera " + parityCount);
+        }
+
+        byte[][] data = Arrays.copyOf(shards, dataCount);
+        if (missingData == 1 && present[dataCount]) {
+            // Camino rápido: la paridad 0 es el XOR de los datos
+            byte[] rebuilt = Arrays.copyOf(shards[dataCount], length);
+            for (int i = 0; i < dataCount; i++) {
+                if (i != lastMissingData) {
+                    XorKernel.xorInto(rebuilt, data[i], length);
+                }
+            }
+            data[lastMissingData] = rebuilt;
+        } else if (missingData > 0) {
+            recoverData(shards, present, data, length);
+        }
+        System.arraycopy(data, 0, shards, 0, dataCount);
+
+        for (int j = 0; j < parityCount; j++) {
+            if (!present[dataCount + j]) {
+                shards[dataCount + j] = new byte[length];
+                encodeRow(j, data, shards[dataCount + j], length);
+            }
+        }
+    }
+
+    /**
+     * Recupera los datos ausentes con los primeros k bloques presentes (datos antes que paridades).
+     */
+    private void recoverData(byte[][] shards, boolean[] present, byte[][] data, int length) {
+        int[] rows = new int[dataCount];
+        int mask = 0;
+        for (int i = 0, r = 0; r < dataCount; i++) {
+            if (present[i]) {
+                rows[r++] = i;
+                mask |= 1 << i;
+            }
+        }
+        int[][] inverse = inverses.computeIfAbsent(mask, m -> invert(rows));
+        for (int x = 0; x < dataCount; x++) {
+            if (present[x]) {
+                continue;
+            }
+            byte[] out = new byte[length];
+            for (int r = 0; r < dataCount; r++) {
+                GaloisField.mulAddInto(out, shards[rows[r]], inverse[x][r], length);
+            }
+            data[x] = out;
+        }
+    }
+
+    /**
+     * Invierte por Gauss-Jordan la submatriz de la matriz generadora [I; C] formada por rows.
+     */
+    private int[][] invert(int[] rows) {
+        int k = dataCount;
+        int[][] a = new int[k][];
+        int[][] inv = new int[k][k];
+        for (int r = 0; r < k; r++) {
+            if (rows[r] < k) {
+                a[r] = new int[k];
+                a[r][rows[r]] = 1;
+            } else {
+                a[r] = parityMatrix[rows[r] - k].clone();
+            }
+            inv[r][r] = 1;
+        }
+        for (int col = 0; col < k; col++) {
+            int pivot = col;
+            while (pivot < k && a[pivot][col] == 0) {
+                pivot++;
+            }
+            if (pivot == k) {
+                throw new IllegalStateException("Submatriz singular en el código " + dataCount + "+" + parityCount);
+            }
+            int[] tmp = a[pivot]; a[pivot] = a[col]; a[col] = tmp;
+            tmp = inv[pivot]; inv[pivot] = inv[col]; inv[col] = tmp;
+
+            int scale = GaloisField.inv(a[col][col]);
+            for (int c = 0; c < k; c++) {
+                a[col][c] = GaloisField.mul(a[col][c], scale);
+                inv[col][c] = GaloisField.mul(inv[col][c], scale);
+            }
+            for (int r = 0; r < k; r++) {
+                int factor = a[r][col];
+                if (r == col || factor == 0) {
+                    continue;
+                }
+                for (int c = 0; c < k; c++) {
+                    a[r][c] ^= GaloisField.mul(factor, a[col][c]);
+                    inv[r][c] ^= GaloisField.mul(factor, inv[col][c]);
+                }
+            }
+        }
+        return inv;
+    }
+
+    private void encodeRow(int j, byte[][] data, byte[] dest, int length) {
+        Arrays.fill(dest, 0, length, (byte) 0);
+        for (int i = 0; i < dataCount; i++) {
+            GaloisField.mulAddInto(dest, data[i], parityMatrix[j][i], length);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.tecmfs.common.util;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Modelo de ejecución de los servidores HTTP (Controller y Disk Nodes).
+ * Por defecto cada petición corre en su propio hilo virtual; como alternativa se usa
+ * un pool acotado de hilos de plataforma. Cada endpoint puede limitar cuántas peticiones
+ * atiende a la vez, para que un tipo de tráfico no acapare al servidor.
+ */
+public final class ServerExecution {
+    private static final Logger logger = Logger.getLogger(ServerExecution.class.getName());
+
+    public static final String MODE_VIRTUAL = "virtual";
+    public static final String MODE_PLATFORM = "platform";
+    public static final int DEFAULT_PLATFORM_THREADS = 64;
+
+    private ServerExecution() {
+    }
+
+    /**
+     * @return true si mode es un modo de ejecución conocido
+     */
+    public static boolean isValidMode(String mode) {
+        return MODE_VIRTUAL.equals(mode) || MODE_PLATFORM.equals(mode);
+    }
+
+    /**
+     * Lee los límites por endpoint de un elemento de configuración:
+     * &lt;endpointLimits&gt;&lt;limit path="/uploadFile"&gt;8&lt;/limit&gt;...&lt;/endpointLimits&gt;
+     * @return ruta → máximo de peticiones simultáneas (vacío si no hay límites)
+     */
+    public static Map<String, Integer> readEndpointLimits(Element parent) {
+        Map<String, Integer> limits = new HashMap<>();
+        NodeList sections = parent.getElementsByTagName("endpointLimits");
+        if (sections.getLength() == 0) {
+            return limits;
+        }
+        NodeList entries = ((Element) sections.item(0)).getElementsByTagName("limit");
+        for (int i = 0; i < entries.getLength(); i++) {
+            Element entry = (Element) entries.item(i);
+            String path = entry.getAttribute("path").trim();
+            int max = Integer.parseInt(entry.getTextContent().trim());
+            if (path.isEmpty() || max <= 0) {
+                throw new IllegalArgumentException("endpointLimits.limit requiere path y un valor positivo");
+            }
+            limits.put(path, max);
+        }
+        return limits;
+    }
+
+    /**
+     * Crea un HttpServer con TCP_NODELAY en sus conexiones. El HttpServer del JDK envía los encabezados
+     * y el cuerpo en escrituras separadas; con Nagle activo la segunda espera el ACK retardado del
+     * cliente y cada respuesta de una conexión persistente tarda ~40 ms. La propiedad se lee al crear
+     * el primer servidor de la JVM; si ya viene fijada se respeta.
+     */
+    public static HttpServer createServer(InetSocketAddress address) throws IOException {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        return HttpServer.create(address, 0);
+    }
+
+    /**
+     * Crea el executor de peticiones de un servidor.
+     * @param mode            {@link #MODE_VIRTUAL} o {@link #MODE_PLATFORM}
+     * @param platformThreads tamaño del pool en modo platform
+     * @param name            prefijo del nombre de los hilos
+     */
+    public static ExecutorService newExecutor(String mode, int platformThreads, String name) {
+        if (MODE_PLATFORM.equals(mode.toLowerCase(Locale.ROOT))) {
+            AtomicInteger counter = new AtomicInteger();
+            logger.info(name + ": pool de " + platformThreads + " hilos de plataforma");
+            return Executors.newFixedThreadPool(platformThreads,
+                    r -> new Thread(r, name + "-" + counter.incrementAndGet()));
+        }
+        logger.info(name + ": un hilo virtual por petición");
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+
+    /**
+     * Envuelve un handler para que atienda como máximo maxConcurrent peticiones a la vez;
+     * las demás esperan su turno.
+     * @param maxConcurrent límite; 0 o negativo deja el handler sin límite
+     */
+    public static HttpHandler limit(HttpHandler handler, int maxConcurrent) {
+        if (maxConcurrent <= 0) {
+            return handler;
+        }
+        Semaphore permits = new Semaphore(maxConcurrent, true);
+        return exchange -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exchange.close();
+                throw new InterruptedIOException("Interrumpido esperando turno en " + exchange.getRequestURI());
+            }
+            try {
+                handler.handle(exchange);
+            } finally {
+                permits.release();
+            }
+        };
+    }
+}
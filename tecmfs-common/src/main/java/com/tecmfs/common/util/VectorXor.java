@@ -0,0 +1,31 @@
+package com.tecmfs.common.util;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Versión SIMD del XOR. Se carga solo si {@link XorKernel} detecta el módulo jdk.incubator.vector,
+ * para que la aplicación siga funcionando cuando se ejecuta sin él.
+ */
+final class VectorXor {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private VectorXor() {
+    }
+
+    /**
+     * Aplica dest ^= src sobre los vectores completos de [0, length).
+     * @return primer índice no procesado; el resto lo completa el llamador
+     */
+    static int xorInto(byte[] dest, byte[] src, int length) {
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            ByteVector a = ByteVector.fromArray(SPECIES, dest, i);
+            ByteVector b = ByteVector.fromArray(SPECIES, src, i);
+            a.lanewise(VectorOperators.XOR, b).intoArray(dest, i);
+        }
+        return i;
+    }
+}
@@ -0,0 +1,83 @@
+package com.tecmfs.common.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.logging.Logger;
+
+/**
+ * Núcleo XOR usado para calcular y reconstruir paridad.
+ * Procesa 8 bytes por operación leyendo los arreglos como long mediante un VarHandle.
+ * Si el módulo jdk.incubator.vector está disponible en tiempo de ejecución
+ * (--add-modules jdk.incubator.vector) se usan instrucciones SIMD del ancho preferido
+ * de la CPU. La propiedad del sistema tecmfs.xor.vector=false fuerza la versión escalar.
+ */
+public final class XorKernel {
+    private static final Logger logger = Logger.getLogger(XorKernel.class.getName());
+
+    private static final VarHandle LONGS =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final boolean VECTOR = detectVector();
+
+    private XorKernel() {
+    }
+
+    /**
+     * dest ^= src para cada fuente, sobre todo el largo de dest.
+     * @throws IllegalArgumentException si alguna fuente es más corta que dest
+     */
+    public static void xorInto(byte[] dest, byte[]... sources) {
+        for (byte[] src : sources) {
+            if (src.length < dest.length) {
+                throw new IllegalArgumentException("Todos los bloques deben tener el mismo tamaño.");
+            }
+            xorInto(dest, src, dest.length);
+        }
+    }
+
+    /**
+     * dest[i] ^= src[i] para i en [0, length).
+     */
+    public static void xorInto(byte[] dest, byte[] src, int length) {
+        int from = VECTOR ? VectorXor.xorInto(dest, src, length) : 0;
+        xorWords(dest, src, from, length);
+    }
+
+    /**
+     * Versión escalar: dest[i] ^= src[i] para i en [from, length), de a 8 bytes y luego el resto.
+     * También completa la cola que deja la versión SIMD.
+     */
+    static void xorWords(byte[] dest, byte[] src, int from, int length) {
+        int i = from;
+        for (int limit = length - 7; i < limit; i += 8) {
+            LONGS.set(dest, i, (long) LONGS.get(dest, i) ^ (long) LONGS.get(src, i));
+        }
+        for (; i < length; i++) {
+            dest[i] ^= src[i];
+        }
+    }
+
+    /**
+     * @return true si se usa la versión SIMD
+     */
+    public static boolean isVectorized() {
+        return VECTOR;
+    }
+
+    private static boolean detectVector() {
+        if (!Boolean.parseBoolean(System.getProperty("tecmfs.xor.vector", "true"))) {
+            return false;
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            VectorXor.xorInto(new byte[64], new byte[64], 64);
+            logger.info("XorKernel: usando jdk.incubator.vector");
+            return true;
+        } catch (LinkageError | RuntimeException e) {
+            logger.warning("XorKernel: vector API no disponible, se usa XOR por palabras: " + e);
+            return false;
+        }
+    }
+}
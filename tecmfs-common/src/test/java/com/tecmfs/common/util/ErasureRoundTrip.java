@@ -0,0 +1,69 @@
+package com.tecmfs.common.util;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Comprobaciones compartidas por las pruebas de los códigos de borrado.
+ */
+final class ErasureRoundTrip {
+
+    private ErasureRoundTrip() {
+    }
+
+    /**
+     * @return k bloques de datos aleatorios de length bytes
+     */
+    static byte[][] randomData(int k, int length, Random random) {
+        byte[][] data = new byte[k][length];
+        for (byte[] block : data) {
+            random.nextBytes(block);
+        }
+        return data;
+    }
+
+    /**
+     * Codifica un stripe y comprueba que decode reconstruye todos los bloques para cada
+     * combinación de hasta m pérdidas, y que con m+1 pérdidas falla.
+     * Se repite con dos stripes distintos para cubrir también las inversas en caché.
+     */
+    static void assertEveryErasureRecovers(ErasureCodec codec, int length, long seed) {
+        int k = codec.getDataCount();
+        int m = codec.getParityCount();
+        int total = k + m;
+        Random random = new Random(seed);
+        for (int round = 0; round < 2; round++) {
+            byte[][] data = randomData(k, length, random);
+            byte[][] parity = new byte[m][length];
+            codec.encode(data, parity, length);
+            byte[][] expected = new byte[total][];
+            System.arraycopy(data, 0, expected, 0, k);
+            System.arraycopy(parity, 0, expected, k, m);
+
+            for (int lost = 0; lost < 1 << total; lost++) {
+                if (Integer.bitCount(lost) > m) {
+                    continue;
+                }
+                byte[][] shards = new byte[total][];
+                boolean[] present = new boolean[total];
+                for (int i = 0; i < total; i++) {
+                    present[i] = (lost & (1 << i)) == 0;
+                    shards[i] = present[i] ? expected[i].clone() : null;
+                }
+                codec.decode(shards, present, length);
+                for (int i = 0; i < total; i++) {
+                    assertArrayEquals(expected[i], shards[i],
+                            k + "+" + m + ": bloque " + i + " mal reconstruido con pérdidas " + Integer.toBinaryString(lost));
+                }
+            }
+        }
+
+        boolean[] present = new boolean[total];
+        for (int i = m + 1; i < total; i++) {
+            present[i] = true;
+        }
+        assertThrows(IllegalStateException.class, () -> codec.decode(new byte[total][length], present, length));
+    }
+}
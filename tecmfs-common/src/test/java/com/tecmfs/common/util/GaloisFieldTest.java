@@ -0,0 +1,94 @@
+package com.tecmfs.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GaloisFieldTest {
+
+    /**
+     * Producto de referencia: multiplicación sin acarreo reducida por 0x11D, bit a bit.
+     */
+    private static int slowMul(int a, int b) {
+        int product = 0;
+        for (int i = 0; i < 8; i++) {
+            if ((b & (1 << i)) != 0) {
+                product ^= a << i;
+            }
+        }
+        for (int bit = 14; bit >= 8; bit--) {
+            if ((product & (1 << bit)) != 0) {
+                product ^= 0x11D << (bit - 8);
+            }
+        }
+        return product;
+    }
+
+    @Test
+    void mulMatchesPolynomialProduct() {
+        for (int a = 0; a < 256; a++) {
+            for (int b = 0; b < 256; b++) {
+                assertEquals(slowMul(a, b), GaloisField.mul(a, b), a + "·" + b);
+            }
+        }
+    }
+
+    @Test
+    void everyNonZeroElementHasInverse() {
+        for (int a = 1; a < 256; a++) {
+            assertEquals(1, GaloisField.mul(a, GaloisField.inv(a)), "inv(" + a + ")");
+            for (int b = 1; b < 256; b++) {
+                assertEquals(a, GaloisField.div(GaloisField.mul(a, b), b));
+            }
+        }
+        assertEquals(0, GaloisField.div(0, 7));
+        assertThrows(ArithmeticException.class, () -> GaloisField.div(5, 0));
+    }
+
+    @Test
+    void expIsGeneratorPower() {
+        assertEquals(1, GaloisField.exp(0));
+        assertEquals(1, GaloisField.exp(255));
+        assertEquals(GaloisField.inv(2), GaloisField.exp(-1));
+        int power = 1;
+        for (int e = 0; e < 300; e++) {
+            assertEquals(power, GaloisField.exp(e), "2^" + e);
+            power = slowMul(power, 2);
+        }
+    }
+
+    @Test
+    void regionOperationsMatchScalarProduct() {
+        Random random = new Random(14);
+        int[] lengths = {1, 7, 64, 259};
+        int[] coefs = {0, 1, 2, 0x1D, 0x8E, 0xFF};
+        for (int length : lengths) {
+            for (int coef : coefs) {
+                byte[] src = new byte[length + 5];
+                byte[] dest = new byte[length + 5];
+                random.nextBytes(src);
+                random.nextBytes(dest);
+
+                byte[] expectedAdd = dest.clone();
+                byte[] expectedMul = dest.clone();
+                for (int i = 0; i < length; i++) {
+                    int product = GaloisField.mul(coef, src[i] & 0xFF);
+                    expectedAdd[i] ^= (byte) product;
+                    expectedMul[i] = (byte) product;
+                }
+
+                byte[] added = dest.clone();
+                GaloisField.mulAddInto(added, src, coef, length);
+                assertArrayEquals(expectedAdd, added, "mulAddInto coef " + coef + " largo " + length);
+
+                byte[] multiplied = dest.clone();
+                GaloisField.mulInto(multiplied, src, coef, length);
+                assertArrayEquals(expectedMul, multiplied, "mulInto coef " + coef + " largo " + length);
+            }
+        }
+    }
+}
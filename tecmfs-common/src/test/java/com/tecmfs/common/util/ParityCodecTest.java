@@ -0,0 +1,67 @@
+package com.tecmfs.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParityCodecTest {
+    private static final int LENGTH = 259;
+
+    @Test
+    void raid5RecoversAnySingleLoss() {
+        for (int k = 2; k <= 15; k++) {
+            ErasureRoundTrip.assertEveryErasureRecovers(new ParityCodec(k, 1), LENGTH, k);
+        }
+    }
+
+    @Test
+    void raid6RecoversAnyTwoLosses() {
+        for (int k = 2; k <= 14; k++) {
+            ErasureRoundTrip.assertEveryErasureRecovers(new ParityCodec(k, 2), LENGTH, 100 + k);
+        }
+    }
+
+    @Test
+    void raid6ParitiesAreXorAndGeneratorSum() {
+        Random random = new Random(17);
+        int k = 6;
+        byte[][] data = ErasureRoundTrip.randomData(k, LENGTH, random);
+        byte[][] parity = new byte[2][LENGTH];
+        new ParityCodec(k, 2).encode(data, parity, LENGTH);
+
+        // P = D0 ^ ... ^ Dk-1, Q = g^0·D0 ^ ... ^ g^(k-1)·Dk-1
+        byte[] p = new byte[LENGTH];
+        byte[] q = new byte[LENGTH];
+        for (int i = 0; i < k; i++) {
+            GaloisField.mulAddInto(p, data[i], 1, LENGTH);
+            GaloisField.mulAddInto(q, data[i], GaloisField.exp(i), LENGTH);
+        }
+        assertArrayEquals(p, parity[0]);
+        assertArrayEquals(q, parity[1]);
+    }
+
+    @Test
+    void encodesOnlyTheRequestedLength() {
+        Random random = new Random(3);
+        byte[][] data = ErasureRoundTrip.randomData(4, LENGTH + 13, random);
+        byte[][] parity = new byte[2][LENGTH + 13];
+        Arrays.fill(parity[0], (byte) 0x5A);
+        Arrays.fill(parity[1], (byte) 0x5A);
+        new ParityCodec(4, 2).encode(data, parity, LENGTH);
+        for (byte[] p : parity) {
+            for (int i = LENGTH; i < p.length; i++) {
+                assertEquals((byte) 0x5A, p[i], "byte " + i + " fuera del largo");
+            }
+        }
+    }
+
+    @Test
+    void rejectsMoreThanTwoParities() {
+        assertThrows(IllegalArgumentException.class, () -> new ParityCodec(4, 3));
+    }
+}
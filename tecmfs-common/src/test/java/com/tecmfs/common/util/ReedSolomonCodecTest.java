@@ -0,0 +1,70 @@
+package com.tecmfs.common.util;
+
+import com.tecmfs.common.models.Stripe;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReedSolomonCodecTest {
+    private static final int LENGTH = 259;
+
+    @Test
+    void recoversEveryErasureUpToFourParities() {
+        for (int m = 1; m <= 4; m++) {
+            for (int k = 1; k + m <= Stripe.MAX_TOTAL_BLOCKS; k++) {
+                ErasureRoundTrip.assertEveryErasureRecovers(new ReedSolomonCodec(k, m), LENGTH, 31L * k + m);
+            }
+        }
+    }
+
+    @Test
+    void recoversEveryErasureWithHalfParity() {
+        ErasureRoundTrip.assertEveryErasureRecovers(new ReedSolomonCodec(8, 8), LENGTH, 88);
+    }
+
+    @Test
+    void firstParityIsXorOfData() {
+        Random random = new Random(18);
+        byte[][] data = ErasureRoundTrip.randomData(10, LENGTH, random);
+        byte[][] parity = new byte[4][LENGTH];
+        new ReedSolomonCodec(10, 4).encode(data, parity, LENGTH);
+
+        byte[] xor = new byte[LENGTH];
+        for (byte[] block : data) {
+            XorKernel.xorInto(xor, block, LENGTH);
+        }
+        assertArrayEquals(xor, parity[0]);
+    }
+
+    @Test
+    void encodeBatchMatchesEncode() {
+        Random random = new Random(19);
+        ReedSolomonCodec codec = new ReedSolomonCodec(6, 3);
+        List<byte[][]> data = new ArrayList<>();
+        List<byte[][]> batchParity = new ArrayList<>();
+        for (int s = 0; s < 5; s++) {
+            data.add(ErasureRoundTrip.randomData(6, LENGTH, random));
+            batchParity.add(new byte[3][LENGTH]);
+        }
+        codec.encodeBatch(data, batchParity, LENGTH);
+        for (int s = 0; s < data.size(); s++) {
+            byte[][] parity = new byte[3][LENGTH];
+            codec.encode(data.get(s), parity, LENGTH);
+            for (int j = 0; j < 3; j++) {
+                assertArrayEquals(parity[j], batchParity.get(s)[j], "stripe " + s + " paridad " + j);
+            }
+        }
+    }
+
+    @Test
+    void rejectsCodesWiderThanAStripe() {
+        assertThrows(IllegalArgumentException.class, () -> new ReedSolomonCodec(Stripe.MAX_TOTAL_BLOCKS, 1));
+        assertThrows(IllegalArgumentException.class, () -> new ReedSolomonCodec(0, 2));
+        assertThrows(IllegalArgumentException.class, () -> new ReedSolomonCodec(4, 0));
+    }
+}
@@ -0,0 +1,165 @@
+package com.tecmfs.common.util;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Prueba de carga: subidas que se quedan a mitad del cuerpo mientras llegan muchas descargas.
+ * Con el hilo despachador único del HttpServer la primera subida detenida bloqueaba todo lo demás.
+ */
+class ServerExecutionTest {
+    private static final int DOWNLOAD_BYTES = 64 * 1024;
+    private static final int DOWNLOADS = 200;
+    private static final int CLIENT_THREADS = 16;
+
+    private final AtomicInteger uploadsEntered = new AtomicInteger();
+    private final AtomicInteger uploadsCompleted = new AtomicInteger();
+    private final List<Socket> stalledUploads = new ArrayList<>();
+    private HttpServer server;
+    private ExecutorService requestExecutor;
+
+    @AfterEach
+    void stop() throws IOException {
+        for (Socket socket : stalledUploads) {
+            socket.close();
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+        if (requestExecutor != null) {
+            requestExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    void stalledUploadsDoNotDelayDownloadsOnVirtualThreads() throws Exception {
+        start(ServerExecution.MODE_VIRTUAL, 0, 0);
+        stallUploads(8);
+        awaitUploadsEntered(8);
+
+        assertDownloadsComplete();
+        assertEquals(0, uploadsCompleted.get());
+    }
+
+    @Test
+    void stalledUploadsDoNotDelayDownloadsOnPlatformPool() throws Exception {
+        start(ServerExecution.MODE_PLATFORM, 16, 0);
+        stallUploads(8);
+        awaitUploadsEntered(8);
+
+        assertDownloadsComplete();
+        assertEquals(0, uploadsCompleted.get());
+    }
+
+    @Test
+    void endpointLimitQueuesOnlyItsOwnRoute() throws Exception {
+        start(ServerExecution.MODE_VIRTUAL, 0, 2);
+        stallUploads(4);
+        awaitUploadsEntered(2);
+        Thread.sleep(200);
+        assertEquals(2, uploadsEntered.get());
+
+        assertDownloadsComplete();
+    }
+
+    private void start(String mode, int platformThreads, int uploadLimit) throws IOException {
+        byte[] payload = new byte[DOWNLOAD_BYTES];
+        HttpHandler upload = exchange -> {
+            try (exchange; InputStream in = exchange.getRequestBody()) {
+                uploadsEntered.incrementAndGet();
+                in.readAllBytes();
+                uploadsCompleted.incrementAndGet();
+                exchange.sendResponseHeaders(200, -1);
+            }
+        };
+        HttpHandler download = exchange -> {
+            try (exchange; OutputStream out = exchange.getResponseBody()) {
+                exchange.getRequestBody().readAllBytes();
+                exchange.sendResponseHeaders(200, payload.length);
+                out.write(payload);
+            }
+        };
+
+        server = ServerExecution.createServer(new InetSocketAddress("127.0.0.1", 0));
+        server.createContext("/upload", ServerExecution.limit(upload, uploadLimit));
+        server.createContext("/download", download);
+        requestExecutor = ServerExecution.newExecutor(mode, platformThreads, "load-test");
+        server.setExecutor(requestExecutor);
+        server.start();
+    }
+
+    /**
+     * Abre subidas que anuncian 1 MB y envían solo 1 KB, dejando su handler bloqueado leyendo el cuerpo.
+     */
+    private void stallUploads(int count) throws IOException {
+        String request = "POST /upload HTTP/1.1\r\nHost: localhost\r\nContent-Length: 1048576\r\n\r\n";
+        for (int i = 0; i < count; i++) {
+            Socket socket = new Socket("127.0.0.1", server.getAddress().getPort());
+            OutputStream out = socket.getOutputStream();
+            out.write(request.getBytes(StandardCharsets.US_ASCII));
+            out.write(new byte[1024]);
+            out.flush();
+            stalledUploads.add(socket);
+        }
+    }
+
+    private void awaitUploadsEntered(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (uploadsEntered.get() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, uploadsEntered.get());
+    }
+
+    private void assertDownloadsComplete() throws Exception {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/download";
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENT_THREADS);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < DOWNLOADS; i++) {
+                results.add(clients.submit(() -> download(url)));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(DOWNLOAD_BYTES, (int) result.get(10, TimeUnit.SECONDS));
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMillis < 10_000, DOWNLOADS + " descargas tardaron " + elapsedMillis + " ms");
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private static int download(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(2000);
+        conn.setReadTimeout(5000);
+        try (InputStream in = conn.getInputStream()) {
+            assertEquals(200, conn.getResponseCode());
+            return in.readAllBytes().length;
+        } finally {
+            conn.disconnect();
+        }
+    }
+}
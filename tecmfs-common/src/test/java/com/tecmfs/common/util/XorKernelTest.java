@@ -0,0 +1,111 @@
+package com.tecmfs.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XorKernelTest {
+    // Largos alrededor de una palabra, de los anchos SIMD habituales (16, 32, 64 bytes) y sin múltiplo común
+    private static final int[] LENGTHS = {0, 1, 7, 8, 9, 15, 17, 31, 33, 63, 65, 127, 129, 259, 1031, 4099};
+
+    @Test
+    void vectorPathIsActiveUnderTests() {
+        // Surefire agrega jdk.incubator.vector; sin él las pruebas solo cubrirían el camino escalar
+        assertTrue(XorKernel.isVectorized());
+    }
+
+    @Test
+    void kernelMatchesByteLoopForOddLengthsAndManySources() {
+        Random random = new Random(11);
+        for (int length : LENGTHS) {
+            for (int count = 1; count <= 5; count++) {
+                byte[][] sources = randomBlocks(count, length, random);
+                byte[] dest = randomBlock(length, random);
+                byte[] expected = dest.clone();
+                for (byte[] src : sources) {
+                    byteLoop(expected, src, length);
+                }
+                XorKernel.xorInto(dest, sources);
+                assertArrayEquals(expected, dest, "largo " + length + ", " + count + " fuentes");
+            }
+        }
+    }
+
+    @Test
+    void wordPathMatchesByteLoop() {
+        Random random = new Random(12);
+        for (int length : LENGTHS) {
+            byte[][] sources = randomBlocks(3, length, random);
+            byte[] dest = randomBlock(length, random);
+            byte[] expected = dest.clone();
+            for (byte[] src : sources) {
+                byteLoop(expected, src, length);
+                XorKernel.xorWords(dest, src, 0, length);
+            }
+            assertArrayEquals(expected, dest, "largo " + length);
+        }
+    }
+
+    @Test
+    void vectorPathLeavesTailForScalarCompletion() {
+        Random random = new Random(13);
+        for (int length : LENGTHS) {
+            byte[][] sources = randomBlocks(3, length, random);
+            byte[] dest = randomBlock(length, random);
+            byte[] expected = dest.clone();
+            for (byte[] src : sources) {
+                byteLoop(expected, src, length);
+                byte[] before = dest.clone();
+                int from = VectorXor.xorInto(dest, src, length);
+                assertTrue(from <= length && length - from < 64, "cola de " + (length - from) + " bytes");
+                for (int i = from; i < length; i++) {
+                    assertEquals(before[i], dest[i], "byte " + i + " tocado por la versión SIMD");
+                }
+                XorKernel.xorWords(dest, src, from, length);
+            }
+            assertArrayEquals(expected, dest, "largo " + length);
+        }
+    }
+
+    @Test
+    void partialLengthLeavesRestUntouched() {
+        Random random = new Random(14);
+        byte[] src = randomBlock(200, random);
+        byte[] dest = randomBlock(200, random);
+        byte[] expected = dest.clone();
+        byteLoop(expected, src, 101);
+        XorKernel.xorInto(dest, src, 101);
+        assertArrayEquals(expected, dest);
+    }
+
+    @Test
+    void shorterSourceIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> XorKernel.xorInto(new byte[16], new byte[16], new byte[15]));
+    }
+
+    private static void byteLoop(byte[] dest, byte[] src, int length) {
+        for (int i = 0; i < length; i++) {
+            dest[i] ^= src[i];
+        }
+    }
+
+    private static byte[][] randomBlocks(int count, int length, Random random) {
+        byte[][] blocks = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            blocks[i] = randomBlock(length, random);
+        }
+        return blocks;
+    }
+
+    private static byte[] randomBlock(int length, Random random) {
+        byte[] block = new byte[length];
+        random.nextBytes(block);
+        return block;
+    }
+}
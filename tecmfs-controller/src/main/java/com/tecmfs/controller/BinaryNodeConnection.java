@@ -0,0 +1,165 @@
+package com.tecmfs.controller;
+
+import com.tecmfs.disknode.protocol.BlockProtocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Conexión persistente con el protocolo binario de un Disk Node (ver {@link BlockProtocol}).
+ * Varios hilos comparten la conexión: cada petición lleva un requestId, se escribe sin esperar
+ * a las anteriores y un hilo lector entrega cada respuesta al futuro que la espera.
+ */
+class BinaryNodeConnection {
+    private static final Logger logger = Logger.getLogger(BinaryNodeConnection.class.getName());
+
+    /**
+     * Respuesta de un nodo: código de estado y payload.
+     */
+    static class Response {
+        final byte status;
+        final byte[] payload;
+
+        Response(byte status, byte[] payload) {
+            this.status = status;
+            this.payload = payload;
+        }
+    }
+
+    private final InetSocketAddress address;
+    private final SocketChannel channel;
+    private final Object writeLock = new Object();
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final ConcurrentMap<Long, CompletableFuture<Response>> pending = new ConcurrentHashMap<>();
+    private volatile boolean open;
+
+    /**
+     * Abre la conexión e inicia el hilo lector.
+     */
+    BinaryNodeConnection(InetSocketAddress address, int connectTimeoutMs) throws IOException {
+        this.address = address;
+        this.channel = SocketChannel.open();
+        channel.socket().connect(address, connectTimeoutMs);
+        channel.socket().setTcpNoDelay(true);
+        this.open = true;
+
+        Thread reader = new Thread(this::readLoop, "binary-client-" + address);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Envía una petición sin esperar la respuesta.
+     * @param payload datos a enviar, los bytes restantes del buffer sin moverlo (puede ser null)
+     * @return futuro que se completa con la respuesta del nodo
+     */
+    CompletableFuture<Response> send(byte opcode, String blockId, ByteBuffer payload) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        if (!open) {
+            future.completeExceptionally(new IOException("Conexión binaria cerrada con " + address));
+            return future;
+        }
+
+        long requestId = nextRequestId.incrementAndGet();
+        byte[] id = BlockProtocol.encodeId(blockId);
+        int payloadSize = payload == null ? 0 : payload.remaining();
+        ByteBuffer header = ByteBuffer.allocate(4 + BlockProtocol.REQUEST_HEADER + id.length);
+        header.putInt(BlockProtocol.REQUEST_HEADER + id.length + payloadSize);
+        header.put(opcode);
+        header.putLong(requestId);
+        header.putShort((short) id.length);
+        header.put(id);
+        header.flip();
+
+        pending.put(requestId, future);
+        future.whenComplete((resp, ex) -> pending.remove(requestId));
+        if (!open) {
+            pending.remove(requestId);
+            future.completeExceptionally(new IOException("Conexión binaria cerrada con " + address));
+            return future;
+        }
+        try {
+            synchronized (writeLock) {
+                writeFully(header);
+                if (payload != null) {
+                    writeFully(payload.duplicate());
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+        return future;
+    }
+
+    /**
+     * Cierra la conexión; las peticiones pendientes fallan.
+     */
+    void close() {
+        fail(new IOException("Conexión binaria cerrada con " + address));
+    }
+
+    private void readLoop() {
+        ByteBuffer header = ByteBuffer.allocate(4 + BlockProtocol.RESPONSE_HEADER);
+        try {
+            while (open) {
+                header.clear();
+                readFully(header);
+                header.flip();
+                int length = header.getInt();
+                byte status = header.get();
+                long requestId = header.getLong();
+                int payloadSize = length - BlockProtocol.RESPONSE_HEADER;
+                if (payloadSize < 0 || payloadSize > BlockProtocol.MAX_FRAME) {
+                    throw new IOException("Respuesta inválida de " + address + ": " + length + " bytes");
+                }
+
+                byte[] payload = new byte[payloadSize];
+                readFully(ByteBuffer.wrap(payload));
+                CompletableFuture<Response> future = pending.remove(requestId);
+                if (future != null) {
+                    future.complete(new Response(status, payload));
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException cause) {
+        if (open) {
+            logger.warning("Conexión binaria con " + address + " terminada: " + cause.getMessage());
+        }
+        open = false;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        pending.values().forEach(f -> f.completeExceptionally(cause));
+        pending.clear();
+    }
+
+    private void writeFully(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    private void readFully(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf) < 0) {
+                throw new IOException("El nodo cerró la conexión");
+            }
+        }
+    }
+}
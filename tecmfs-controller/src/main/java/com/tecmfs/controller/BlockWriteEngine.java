@@ -0,0 +1,144 @@
+package com.tecmfs.controller;
+
+import com.tecmfs.common.models.Block;
+import com.tecmfs.common.models.Stripe;
+
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+/**
+ * Motor de escritura concurrente de bloques hacia los Disk Nodes.
+ * Envía lotes de stripes en paralelo, con una petición /storeBlocks por nodo en lugar de
+ * una por bloque, limitando la cantidad de peticiones en vuelo por nodo.
+ * Los datos se leen de la vista de cada bloque, sin copiarlos; el llamador los conserva
+ * hasta que el futuro termina.
+ */
+public class BlockWriteEngine {
+    private static final Logger logger = Logger.getLogger(BlockWriteEngine.class.getName());
+
+    private final NodeClient nodeClient;
+    private final int maxInFlightPerNode;
+    // Mapa endpoint -> permisos de escritura disponibles
+    private final ConcurrentMap<String, Semaphore> nodePermits = new ConcurrentHashMap<>();
+
+    /**
+     * @param nodeClient         cliente HTTP compartido hacia los nodos
+     * @param maxInFlightPerNode máximo de escrituras simultáneas hacia un mismo nodo
+     */
+    public BlockWriteEngine(NodeClient nodeClient, int maxInFlightPerNode) {
+        this.nodeClient = nodeClient;
+        this.maxInFlightPerNode = maxInFlightPerNode;
+    }
+
+    /**
+     * Envía un lote de stripes con una sola petición por nodo: el nodo de la posición i
+     * recibe el bloque i de cada stripe. Como el nodo guarda el lote completo o nada,
+     * si su petición falla la posición i queda fallida en todos los stripes del lote.
+     *
+     * @return futuro con el resultado de cada stripe, en el orden del lote
+     * @throws InterruptedIOException si el hilo es interrumpido esperando permisos
+     */
+    public CompletableFuture<List<StripeWriteResult>> writeStripes(List<Stripe> stripes, List<String> nodes)
+            throws InterruptedIOException {
+        Map<Integer, String> failures = new ConcurrentHashMap<>();
+        CompletableFuture<?>[] writes = new CompletableFuture<?>[nodes.size()];
+
+        for (int pos = 0; pos < nodes.size(); pos++) {
+            final int position = pos;
+            String endpoint = nodes.get(pos);
+            Map<String, ByteBuffer> blocks = new LinkedHashMap<>();
+            for (Stripe stripe : stripes) {
+                Block block = stripe.getBlock(pos);
+                blocks.put(block.getBlockId(), block.dataView());
+            }
+            Semaphore permits = acquire(endpoint);
+            writes[pos] = nodeClient.storeBlocksAsync(endpoint, blocks)
+                    .whenComplete((v, ex) -> permits.release())
+                    .exceptionally(ex -> {
+                        Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                        logger.warning("Fallo escribiendo lote de " + blocks.size() + " bloques en " + endpoint
+                                + ": " + cause.getMessage());
+                        failures.put(position, endpoint + ": " + cause.getMessage());
+                        return null;
+                    });
+        }
+
+        return CompletableFuture.allOf(writes).thenApply(v -> {
+            List<StripeWriteResult> results = new ArrayList<>(stripes.size());
+            for (Stripe stripe : stripes) {
+                results.add(new StripeWriteResult(stripe, failures));
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Envía un bloque a un nodo de forma asíncrona, respetando el límite de peticiones del nodo.
+     *
+     * @return futuro que falla con IOException si el nodo no confirmó la escritura
+     * @throws InterruptedIOException si el hilo es interrumpido esperando permisos
+     */
+    public CompletableFuture<Void> writeBlock(String endpoint, Block block) throws InterruptedIOException {
+        Semaphore permits = acquire(endpoint);
+        return nodeClient.storeBlockAsync(endpoint, block.getBlockId(), block.dataView())
+                .whenComplete((v, ex) -> {
+                    permits.release();
+                    if (ex != null) {
+                        logger.warning("Fallo escribiendo " + block.getBlockId() + " en " + endpoint
+                                + ": " + ex.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Toma un permiso de escritura del nodo, esperando si está saturado.
+     */
+    private Semaphore acquire(String endpoint) throws InterruptedIOException {
+        Semaphore permits = nodePermits.computeIfAbsent(endpoint, e -> new Semaphore(maxInFlightPerNode));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido esperando al nodo " + endpoint);
+        }
+        return permits;
+    }
+
+    /**
+     * Resultado de escribir un stripe: posiciones que fallaron y el motivo.
+     */
+    public static class StripeWriteResult {
+        private final Stripe stripe;
+        private final Map<Integer, String> failures;
+
+        StripeWriteResult(Stripe stripe, Map<Integer, String> failures) {
+            this.stripe = stripe;
+            this.failures = Collections.unmodifiableMap(new TreeMap<>(failures));
+        }
+
+        public Stripe getStripe() {
+            return stripe;
+        }
+
+        /** @return mapa posición -> descripción del error */
+        public Map<Integer, String> getFailures() {
+            return failures;
+        }
+
+        public boolean isSuccess() {
+            return failures.isEmpty();
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package com.tecmfs.controller;
 
-import com.tecmfs.common.models.Block;
-import com.tecmfs.common.models.Stripe;
+import com.tecmfs.common.models.RaidLevel;
+import com.tecmfs.common.models.StripeLayout;
+import com.tecmfs.common.util.ServerExecution;
 import com.tecmfs.controller.config.ControllerConfig;
+import com.tecmfs.controller.metadata.FileNameIndex;
+import com.tecmfs.controller.metadata.InventoryRecovery;
 import com.tecmfs.controller.models.NodeStatus;
 import com.tecmfs.controller.models.StoredFile;
+import com.tecmfs.controller.models.StripeDescriptor;
+import com.tecmfs.disknode.protocol.BlockBatch;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
@@ -13,14 +18,21 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
-import java.net.URL;
-import java.net.HttpURLConnection;
 import java.util.stream.Collectors;
 
 /**
@@ -34,26 +46,40 @@ public class ControllerServer {
     private final MetadataManager metadataManager;
     private final FileDistributor distributor;
     private final NodeMonitor nodeMonitor;
+    private final NodeClient nodeClient;
     private HttpServer server;
 
     public ControllerServer(ControllerConfig config,
                             MetadataManager metadataManager,
                             FileDistributor distributor,
-                            NodeMonitor nodeMonitor) throws IOException {
+                            NodeMonitor nodeMonitor,
+                            NodeClient nodeClient) throws IOException {
         this.config = config;
         this.metadataManager = metadataManager;
         this.distributor = distributor;
         this.nodeMonitor = nodeMonitor;
+        this.nodeClient = nodeClient;
+
+        server = ServerExecution.createServer(new InetSocketAddress(config.getPort()));
+        addContext("/uploadFile", new UploadHandler());
+        addContext("/downloadFile", new DownloadHandler());
+        addContext("/nodeStatus", new NodeStatusHandler());
+        addContext("/listFiles", new ListFilesHandler());
+        addContext("/deleteFile", new DeleteHandler());
+        addContext("/getNodes", new GetNodesHandler());
+        addContext("/detailedClusterStatus", new DetailedClusterStatusHandler());
+        addContext("/readStats", new ReadStatsHandler());
+        addContext("/nodeBlocks", new NodeBlocksHandler());
+        // Cada petición en su propio hilo: una subida lenta no bloquea a los demás clientes
+        server.setExecutor(ServerExecution.newExecutor(config.getExecutorMode(),
+                config.getPlatformThreads(), "controller-http"));
+    }
 
-        server = HttpServer.create(new InetSocketAddress(config.getPort()), 0);
-        server.createContext("/uploadFile", new UploadHandler());
-        server.createContext("/downloadFile", new DownloadHandler());
-        server.createContext("/nodeStatus", new NodeStatusHandler());
-        server.createContext("/listFiles", new ListFilesHandler());
-        server.createContext("/deleteFile", new DeleteHandler());
-        server.createContext("/getNodes", new GetNodesHandler());
-        server.createContext("/detailedClusterStatus", new DetailedClusterStatusHandler());
-        server.setExecutor(null);
+    /**
+     * Registra un handler aplicando el límite de concurrencia configurado para su ruta.
+     */
+    private void addContext(String path, HttpHandler handler) {
+        server.createContext(path, ServerExecution.limit(handler, config.getEndpointLimit(path)));
     }
 
     /**
@@ -66,7 +92,8 @@ public class ControllerServer {
     }
 
     /**
-     * Handler para subir un archivo PDF.
+     * Handler para subir un archivo PDF. ?raid=5 o ?raid=6 elige el nivel RAID del archivo;
+     * ?layout=k+m elige una disposición Reed-Solomon.
      */
     class UploadHandler implements HttpHandler {
         @Override
@@ -86,8 +113,25 @@ public class ControllerServer {
                 return;
             }
 
+            // Nivel RAID (?raid=5 o ?raid=6) o disposición Reed-Solomon (?layout=6+2) opcionales por archivo
+            RaidLevel raidLevel = null;
+            StripeLayout layout = null;
+            try {
+                if (params.containsKey("raid")) {
+                    raidLevel = RaidLevel.fromString(params.get("raid"));
+                } else if (params.containsKey("layout")) {
+                    layout = StripeLayout.parse(params.get("layout"));
+                }
+            } catch (IllegalArgumentException e) {
+                exchange.sendResponseHeaders(400, -1);
+                exchange.close();
+                return;
+            }
+
             try (InputStream is = new BufferedInputStream(exchange.getRequestBody())) {
-                String fileId = distributor.distribute(fileName, is);
+                String fileId = raidLevel != null ? distributor.distribute(fileName, is, raidLevel)
+                        : layout != null ? distributor.distribute(fileName, is, layout)
+                        : distributor.distribute(fileName, is);
                 String response = "{\"fileId\":\"" + fileId + "\"}";
                 exchange.getResponseHeaders().add("Content-Type", "application/json");
                 byte[] bytes = response.getBytes();
@@ -132,27 +176,106 @@ public class ControllerServer {
                 return;
             }
 
-            // Reconstrucción: FileDistributor debe implementar reconstruct()
-            try (InputStream reconstructed = distributor.reconstruct(fileId)) {
+            // Rango pedido (Range: bytes=a-b); sin encabezado se envía el archivo completo
+            long size = sf.getFileSize();
+            long[] range;
+            try {
+                range = parseRange(exchange.getRequestHeaders().getFirst("Range"), size);
+            } catch (IllegalArgumentException e) {
+                exchange.getResponseHeaders().add("Content-Range", "bytes */" + size);
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            long start = range == null ? 0 : range[0];
+            long end = range == null ? size : range[1];
+            long length = end - start;
+
+            // Los stripes se envían al cliente a medida que se descargan de los nodos
+            try (InputStream reconstructed = distributor.reconstruct(fileId, start, end)) {
                 exchange.getResponseHeaders().add("Content-Type", "application/pdf");
-                exchange.sendResponseHeaders(200, 0);
-                byte[] buf = new byte[8192];
-                int len;
-                while ((len = reconstructed.read(buf)) != -1) {
-                    exchange.getResponseBody().write(buf, 0, len);
+                exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+                if (range != null) {
+                    exchange.getResponseHeaders().add("Content-Range",
+                            "bytes " + start + "-" + (end - 1) + "/" + size);
                 }
-            } catch (NoSuchMethodError e) {
-                logger.severe("FileDistributor.reconstruct no implementado");
-                exchange.sendResponseHeaders(501, -1);
-            } catch (Exception e) {
+                exchange.sendResponseHeaders(range != null ? 206 : 200, length == 0 ? -1 : length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    byte[] buf = new byte[8192];
+                    int len;
+                    while ((len = reconstructed.read(buf)) != -1) {
+                        os.write(buf, 0, len);
+                    }
+                }
+            } catch (IOException e) {
+                // Los encabezados ya se enviaron: solo queda cortar la conexión
                 logger.severe("Error en DownloadHandler: " + e.getMessage());
-                exchange.sendResponseHeaders(500, -1);
             } finally {
                 exchange.close();
             }
         }
     }
 
+    /**
+     * Interpreta un encabezado Range de un solo rango en bytes.
+     * Soporta "bytes=a-b", "bytes=a-" y "bytes=-n" (últimos n bytes).
+     *
+     * @return {inicio, fin exclusivo}, o null si no hay encabezado, no es un rango simple en bytes
+     *         o es inválido (fin menor que inicio); en ese caso se ignora y se envía el archivo completo
+     * @throws IllegalArgumentException si el rango no se puede satisfacer
+     */
+    static long[] parseRange(String header, long size) {
+        if (header == null || !header.startsWith("bytes=") || header.contains(",")) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    throw new IllegalArgumentException("Rango vacío: " + header);
+                }
+                start = Math.max(size - suffix, 0);
+                end = size;
+            } else {
+                start = Long.parseLong(first);
+                if (last.isEmpty()) {
+                    end = size;
+                } else {
+                    long lastByte = Long.parseLong(last);
+                    if (lastByte < start) {
+                        // RFC 7233 §2.1: un byte-range-spec con fin menor que inicio es inválido
+                        return null;
+                    }
+                    end = Math.min(lastByte + 1, size);
+                }
+            }
+            if (start >= size || start >= end) {
+                throw new IllegalArgumentException("Rango no satisfacible: " + header);
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lista archivos ordenados por fileId, escribiendo el JSON a medida que se recorre el índice.
+     * Parámetros opcionales:
+     *   name, match=exact|prefix|contains  filtro por nombre
+     *   limit=N                            tamaño de página; sin él se envían todos
+     *   after=fileId                       cursor: último fileId de la página anterior
+     *   fields=size,stripes                campos adicionales de cada archivo
+     * Si quedan más archivos tras la página, el encabezado X-Next-Cursor trae el after siguiente.
+     */
     class ListFilesHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
@@ -163,30 +286,60 @@ public class ControllerServer {
             }
             Map<String, String> params = queryToMap(exchange.getRequestURI().getQuery());
             String nameFilter = params.get("name"); // puede ser null
+            String after = params.get("after");     // puede ser null
+            List<String> fields = List.of(params.getOrDefault("fields", "").split(","));
+            FileNameIndex.Match match;
+            int limit;
+            try {
+                match = FileNameIndex.Match.valueOf(params.getOrDefault("match", "contains").toUpperCase(Locale.ROOT));
+                limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : Integer.MAX_VALUE;
+                if (limit <= 0) {
+                    throw new IllegalArgumentException("limit debe ser positivo");
+                }
+            } catch (IllegalArgumentException e) {
+                exchange.sendResponseHeaders(400, -1);
+                exchange.close();
+                return;
+            }
 
-            List<StoredFile> files = metadataManager.getAllStoredFiles();
-
-
+            Iterator<StoredFile> files;
             if (nameFilter != null && !nameFilter.isEmpty()) {
-                String lowerFilter = nameFilter.toLowerCase();
-                files = files.stream()
-                        .filter(f -> f.getFileName().toLowerCase().contains(lowerFilter))
-                        .collect(Collectors.toList());
+                // El índice arma la página en orden de fileId; uno de más indica que hay otra página
+                files = metadataManager.findFilesByName(match, nameFilter, after,
+                        limit == Integer.MAX_VALUE ? limit : limit + 1).iterator();
+            } else {
+                files = metadataManager.getStoredFilesAfter(after).iterator();
             }
 
-            StringBuilder sb = new StringBuilder("[");
-            for (int i = 0; i < files.size(); i++) {
-                StoredFile f = files.get(i);
-                sb.append("{\"fileId\":\"").append(f.getFileId())
-                        .append("\",\"fileName\":\"").append(f.getFileName()).append("\"}");
-                if (i < files.size() - 1) sb.append(",");
+            // Con límite se separa la página antes de responder, para anunciar el cursor en los encabezados
+            if (limit != Integer.MAX_VALUE) {
+                List<StoredFile> page = new ArrayList<>(Math.min(limit, 1024));
+                while (page.size() < limit && files.hasNext()) {
+                    page.add(files.next());
+                }
+                if (files.hasNext()) {
+                    exchange.getResponseHeaders().add("X-Next-Cursor", page.get(page.size() - 1).getFileId());
+                }
+                files = page.iterator();
             }
-            sb.append("]");
-            byte[] bytes = sb.toString().getBytes();
+
             exchange.getResponseHeaders().add("Content-Type", "application/json");
-            exchange.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(bytes);
+            exchange.sendResponseHeaders(200, 0);
+            try (JsonArrayWriter json = new JsonArrayWriter(exchange.getResponseBody())) {
+                while (files.hasNext()) {
+                    StoredFile f = files.next();
+                    json.beginObject();
+                    json.field("fileId", f.getFileId());
+                    json.field("fileName", f.getFileName());
+                    json.field("layout", f.getLayout().toString());
+                    if (fields.contains("size")) {
+                        json.field("size", f.getFileSize());
+                    }
+                    if (fields.contains("stripes")) {
+                        json.field("stripes", f.getStripes().size());
+                    }
+                    json.endObject();
+                }
             }
             exchange.close();
         }
@@ -216,33 +369,15 @@ public class ControllerServer {
                 return;
             }
 
-            // Enviar orden de borrar a cada nodo
-            for (Stripe stripe : sf.getStripes()) {
-                for (int i = 0; i < config.getDiskNodeEndpoints().size(); i++) {
-                    Block b = stripe.getBlock(i);
-                    if (b != null) {
-                        try {
-                            String nodeUrl = config.getDiskNodeEndpoints().get(i);
-                            String fullUrl = nodeUrl + "/deleteBlock?blockId=" + b.getBlockId();
-                            logger.info("Enviando DELETE a: " + fullUrl);
-
-                            try {
-                                URL url = new URL(fullUrl);
-                                HttpURLConnection c = (HttpURLConnection) url.openConnection();
-                                c.setRequestMethod("DELETE");
-                                int responseCode = c.getResponseCode();
-                                logger.info("Respuesta desde " + nodeUrl + ": " + responseCode);
-                                c.disconnect();
-                            } catch (Exception e) {
-                                logger.warning("Error al enviar DELETE a " + fullUrl + ": " + e.getMessage());
-                            }
-
-                        } catch (Exception e) {
-                            logger.warning("Error eliminando bloque en nodo " + i + ": " + e.getMessage());
-                        }
-                    }
-                }
+            // Cada nodo recibe sus bloques en lotes de /deleteBlocks, uno tras otro, para no abrir
+            // una conexión por bloque; los nodos se atienden en paralelo
+            List<String> nodes = sf.getNodeEndpoints();
+            CompletableFuture<?>[] deletes = new CompletableFuture<?>[nodes.size()];
+            for (int i = 0; i < nodes.size(); i++) {
+                deletes[i] = deleteBlocksOnNode(nodes.get(i), sf.getStripes(), i);
             }
+            CompletableFuture.allOf(deletes).join();
+            logger.info("DELETE enviado para " + sf.getStripes().size() * nodes.size() + " bloques de " + fileId);
 
             metadataManager.removeFile(fileId);
             exchange.sendResponseHeaders(200, -1);
@@ -250,6 +385,27 @@ public class ControllerServer {
         }
     }
 
+    /**
+     * Borra del nodo los bloques de la posición indicada de cada stripe, en lotes sucesivos:
+     * cada lote se envía cuando el anterior termina. Un lote fallido se registra y se sigue con el próximo.
+     */
+    private CompletableFuture<Void> deleteBlocksOnNode(String nodeUrl, List<StripeDescriptor> stripes, int position) {
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+        for (int from = 0; from < stripes.size(); from += BlockBatch.MAX_BLOCKS) {
+            List<String> blockIds = new ArrayList<>();
+            for (StripeDescriptor stripe : stripes.subList(from, Math.min(from + BlockBatch.MAX_BLOCKS, stripes.size()))) {
+                blockIds.add(stripe.getBlockId(position));
+            }
+            chain = chain.thenCompose(v -> nodeClient.deleteBlocksAsync(nodeUrl, blockIds)
+                    .exceptionally(ex -> {
+                        logger.warning("Error al enviar DELETE de " + blockIds.size() + " bloques a " + nodeUrl
+                                + ": " + ex.getMessage());
+                        return null;
+                    }));
+        }
+        return chain;
+    }
+
     /**
      * Handler para consultar estado de los Disk Nodes (detallado).
      * Usa metadataManager, que NodeMonitor actualiza periódicamente.
@@ -302,6 +458,41 @@ public class ControllerServer {
         }
     }
 
+    /**
+     * Handler con los contadores de lectura: stripes leídos normalmente (sin paridad)
+     * y stripes que necesitaron reconstrucción. Incluye el uso de los pools de buffers
+     * y las recolecciones del GC, para observar la asignación de memoria por bloque.
+     */
+    class ReadStatsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+                return;
+            }
+            long gcCount = 0;
+            long gcTimeMs = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcCount += Math.max(0, gc.getCollectionCount());
+                gcTimeMs += Math.max(0, gc.getCollectionTime());
+            }
+            String json = String.format("{\"normalReads\":%d,\"degradedReads\":%d,"
+                            + "\"blockPool\":%s,\"readPool\":%s,\"responsePool\":%s,"
+                            + "\"gcCollections\":%d,\"gcTimeMs\":%d}",
+                    distributor.getNormalReads(), distributor.getDegradedReads(),
+                    distributor.getBlockPool().toJson(), distributor.getReadPool().toJson(),
+                    distributor.getResponsePool().toJson(), gcCount, gcTimeMs);
+
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            byte[] resp = json.getBytes();
+            exchange.sendResponseHeaders(200, resp.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(resp);
+            }
+        }
+    }
+
     /**
      * Handler para devolver solo nodos activos con detalles extra.
      * Incluye nodeId, active, storedBlockCount y lastResponseTime.
@@ -334,6 +525,54 @@ public class ControllerServer {
         }
     }
 
+    /**
+     * Lista los bloques que los metadatos ubican en un nodo (?node=endpoint, codificado en la URL),
+     * con su archivo, stripe y posición; es la lista de trabajo para reconstruir un nodo caído.
+     * Se arma con el índice inverso, sin recorrer los archivos alojados en otros nodos.
+     */
+    class NodeBlocksHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+                return;
+            }
+            String node = queryToMap(exchange.getRequestURI().getRawQuery()).get("node");
+            if (node == null || node.isEmpty()) {
+                exchange.sendResponseHeaders(400, -1);
+                exchange.close();
+                return;
+            }
+            String endpoint = URLDecoder.decode(node, StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            try (JsonArrayWriter json = new JsonArrayWriter(exchange.getResponseBody())) {
+                IOException[] failure = new IOException[1];
+                metadataManager.forEachBlockOnNode(endpoint, location -> {
+                    if (failure[0] != null) {
+                        return;
+                    }
+                    try {
+                        json.beginObject();
+                        json.field("blockId", location.getBlockId());
+                        json.field("fileId", location.getFile().getFileId());
+                        json.field("stripe", location.getStripeIndex());
+                        json.field("position", location.getPosition());
+                        json.endObject();
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+            }
+            exchange.close();
+        }
+    }
+
     private static Map<String, String> queryToMap(String query) {
         Map<String, String> map = new HashMap<>();
         if (query == null || query.isEmpty()) return map;
@@ -353,15 +592,37 @@ public class ControllerServer {
 
             // 2) Lo pasamos al loadFromFile:
             ControllerConfig cfg = ControllerConfig.loadFromFile(configPath);
-
-            MetadataManager mm = new MetadataManager();
+            // El pool de java.net.http se configura con propiedades de la JVM leídas una sola vez,
+            // al crear el primer cliente: se fijan aquí, antes de que exista ninguno
+            System.setProperty("jdk.httpclient.connectionPoolSize", String.valueOf(cfg.getHttpPoolSize()));
+            System.setProperty("jdk.httpclient.keepalive.timeout", String.valueOf(cfg.getKeepAliveSeconds()));
+
+            MetadataManager mm = cfg.getMetadataDir().isEmpty()
+                    ? new MetadataManager()
+                    : new MetadataManager(Path.of(cfg.getMetadataDir()), cfg.getSnapshotIntervalSeconds());
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    mm.close();
+                } catch (IOException e) {
+                    logger.warning("Error cerrando los metadatos: " + e.getMessage());
+                }
+            }, "metadata-close"));
+            NodeClient nc = new NodeClient(cfg.getConnectTimeoutMs(), cfg.getReadTimeoutMs());
+            if (cfg.isRecoverFromNodes()) {
+                InventoryRecovery.Result recovered = new InventoryRecovery(nc, cfg.getReadTimeoutMs(), cfg.isRecoverChecksums())
+                        .restore(mm, cfg.getDiskNodeEndpoints());
+                if (!recovered.getUnrecoverableStripes().isEmpty()) {
+                    logger.warning("Stripes irrecuperables tras la recuperación: " + recovered.getUnrecoverableStripes());
+                }
+            }
             NodeMonitor nm = new NodeMonitor(
                     "tecmfs-disknode/disknodes.xml",
                     cfg.getMonitorInterval(),
-                    mm
+                    mm,
+                    nc
             );
-            FileDistributor fd = new FileDistributor(mm, cfg, nm);
-            ControllerServer server = new ControllerServer(cfg, mm, fd, nm);
+            FileDistributor fd = new FileDistributor(mm, cfg, nm, nc);
+            ControllerServer server = new ControllerServer(cfg, mm, fd, nm, nc);
             server.start();
         } catch (Exception e) {
             logger.severe("Error al iniciar ControllerServer: " + e.getMessage());
@@ -1,212 +1,711 @@
 package com.tecmfs.controller;
 
 import com.tecmfs.common.models.Block;
+import com.tecmfs.common.models.RaidLevel;
 import com.tecmfs.common.models.Stripe;
-import com.tecmfs.common.util.ParityCalculator;
+import com.tecmfs.common.models.StripeLayout;
+import com.tecmfs.common.util.BufferPool;
+import com.tecmfs.common.util.ErasureCodec;
+import com.tecmfs.common.util.PooledBuffer;
 import com.tecmfs.controller.config.ControllerConfig;
 import com.tecmfs.controller.models.StoredFile;
+import com.tecmfs.controller.models.StripeDescriptor;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
- * Divide archivos en bloques, calcula paridad RAID5 y distribuye bloques entre nodos activos.
+ * Divide archivos en bloques, calcula paridad RAID5 (o P+Q en RAID6, o m paridades Reed-Solomon en una
+ * disposición k+m) y distribuye bloques entre nodos activos.
  * También reconstruye archivos completos leyendo bloques desde nodos activos.
  * <p>
- * Validación de nodos: RAID5 típico utiliza 4 nodos, pero en modo degradado
- * permite operar con 2 o 3 nodos con advertencia.
+ * Ancho de stripe: cada archivo se escribe con stripeWidth bloques por stripe (3 a 16),
+ * o con todos los nodos activos si no está configurado; el ancho queda registrado en el
+ * StoredFile y la lectura usa ese, no la cantidad actual de nodos. Las disposiciones Reed-Solomon
+ * fijan su propio ancho k+m; archivos con distintas disposiciones conviven en los mismos nodos.
  */
 public class FileDistributor {
     private static final Logger logger = Logger.getLogger(FileDistributor.class.getName());
+    // Reescrituras de bloques reconstruidos pendientes; cada una retiene una copia del bloque
+    private static final int REPAIR_QUEUE = 16;
 
     private final MetadataManager metadataManager;
     private final ControllerConfig config;
     private final NodeMonitor nodeMonitor;
+    private final NodeClient nodeClient;
     private final int blockSize;
+    private final int maxInFlightStripes;
+    private final int readAheadStripes;
+    private final int batchStripes;
+    private final int readAheadGroups;
+    private final BufferPool blockPool;
+    private final BufferPool readPool;
+    private final BufferPool responsePool;
+    private final BlockWriteEngine writeEngine;
+    private final ExecutorService readExecutor;
+    private final ExecutorService repairExecutor;
+    private final AtomicLong normalReads = new AtomicLong();
+    private final AtomicLong degradedReads = new AtomicLong();
 
     public FileDistributor(MetadataManager metadataManager,
                            ControllerConfig config,
-                           NodeMonitor nodeMonitor) {
+                           NodeMonitor nodeMonitor,
+                           NodeClient nodeClient) {
         this.metadataManager = metadataManager;
         this.config = config;
         this.nodeMonitor = nodeMonitor;
+        this.nodeClient = nodeClient;
         this.blockSize = config.getBlockSize();
+        this.maxInFlightStripes = config.getMaxInFlightStripes();
+        this.readAheadStripes = config.getReadAheadStripes();
+        this.batchStripes = config.getBatchStripes();
+        this.readAheadGroups = (readAheadStripes + batchStripes - 1) / batchStripes;
+        int nodes = config.getDiskNodeEndpoints().size();
+        int maxWidth = Math.min(nodes, config.getStripeWidth() > 0 ? config.getStripeWidth() : Stripe.MAX_TOTAL_BLOCKS);
+        if (config.getLayout() != null) {
+            maxWidth = Math.min(nodes, Math.max(maxWidth, config.getLayout().getWidth()));
+        }
+        // Bloques de los stripes en vuelo más los del lote que se está armando
+        this.blockPool = new BufferPool(blockSize, (maxInFlightStripes + batchStripes) * nodes, false);
+        // Un buffer por grupo de lectura; alcanza para unas pocas descargas simultáneas
+        this.readPool = new BufferPool(batchStripes * Math.max(1, maxWidth - 1) * blockSize,
+                4 * (readAheadGroups + 1), false);
+        // Respuestas /getBlocks: a lo sumo un bloque por stripe del grupo, más sus encabezados
+        this.responsePool = new BufferPool(4 + batchStripes * (blockSize + 128),
+                4 * (readAheadGroups + 1) * nodes, false);
+        this.writeEngine = new BlockWriteEngine(nodeClient, config.getMaxInFlightPerNode());
+        this.readExecutor = Executors.newCachedThreadPool();
+        // Las reescrituras de bloques reconstruidos no frenan la descarga: si la cola está llena
+        // se descartan y el bloque sigue degradado hasta la próxima lectura que lo reconstruya
+        this.repairExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(REPAIR_QUEUE), r -> {
+                    Thread t = new Thread(r, "block-repair");
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.DiscardPolicy());
     }
 
     /**
      * Distribuye un archivo: particiona, calcula paridad y envía bloques a nodos activos.
+     * El archivo se procesa stripe por stripe: se leen dataCount bloques en buffers del pool,
+     * se calcula la paridad y el stripe se envía mientras se lee el siguiente. Los bloques envuelven
+     * esos buffers sin copiarlos y los devuelven al pool cuando su lote fue confirmado; en los
+     * metadatos solo quedan id, tamaño y checksum.
+     * Como máximo hay maxInFlightStripes stripes en memoria a la vez, sin importar el tamaño
+     * del archivo. Los stripes se agrupan en lotes de batchStripes: las paridades del lote se
+     * codifican juntas y cada lote viaja en una petición por nodo. Los metadatos se registran
+     * solo cuando todos los stripes fueron confirmados.
+     * Se usa la disposición de la configuración (&lt;layout&gt;) o, si no hay, su nivel RAID.
      * @param fileName nombre original
      * @param in stream de datos del archivo
      * @return fileId generado
-     * @throws IOException si hay fallo I/O o nodos insuficientes (<2)
+     * @throws IOException si hay fallo I/O
+     * @throws IllegalStateException si hay menos nodos activos que el ancho mínimo del nivel RAID
      */
     public String distribute(String fileName, InputStream in) throws IOException {
-        // 1. Creamos ID único
+        if (config.getLayout() != null) {
+            return distribute(fileName, in, config.getLayout());
+        }
+        return distribute(fileName, in, config.getRaidLevel());
+    }
+
+    /**
+     * Igual que {@link #distribute(String, InputStream)} con el nivel RAID indicado:
+     * RAID5 guarda P por stripe; RAID6 guarda P y Q y tolera dos bloques perdidos por stripe.
+     */
+    public String distribute(String fileName, InputStream in, RaidLevel raidLevel) throws IOException {
         String fileId = UUID.randomUUID().toString();
+        int configured = config.getStripeWidth();
+        int wanted = Math.max(configured > 0 ? configured : Stripe.MAX_TOTAL_BLOCKS, raidLevel.getMinWidth());
+        List<String> stripeNodes = selectStripeNodes(fileId, raidLevel.getMinWidth(), wanted, raidLevel.toString());
+        if (configured > 0 && stripeNodes.size() < wanted) {
+            logger.warning("Solo " + stripeNodes.size() + " nodos activos; stripeWidth=" + wanted
+                    + ". El archivo " + fileId + " se escribe con ancho " + stripeNodes.size());
+        }
+        return distribute(fileId, fileName, in, stripeNodes, StripeLayout.of(raidLevel, stripeNodes.size()));
+    }
+
+    /**
+     * Igual que {@link #distribute(String, InputStream)} con una disposición fija, por ejemplo
+     * Reed-Solomon 6+2: cada stripe ocupa exactamente k+m nodos y tolera m bloques perdidos.
+     * @throws IllegalStateException si hay menos nodos activos que el ancho de la disposición
+     */
+    public String distribute(String fileName, InputStream in, StripeLayout layout) throws IOException {
+        String fileId = UUID.randomUUID().toString();
+        List<String> stripeNodes = selectStripeNodes(fileId, layout.getWidth(), layout.getWidth(), layout.toString());
+        return distribute(fileId, fileName, in, stripeNodes, layout);
+    }
+
+    private String distribute(String fileId, String fileName, InputStream in, List<String> stripeNodes,
+                              StripeLayout layout) throws IOException {
+        int n = stripeNodes.size();
+        int dataCount = layout.getDataBlocks();
+
+        // Leemos, calculamos paridad y enviamos lote por lote
+        List<Stripe> stripeList = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(maxInFlightStripes);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long fileSize = 0;
+        int stripeCapacity = dataCount * blockSize;
+        List<PooledBuffer[]> pending = new ArrayList<>(batchStripes);
 
-        // 2. Leemos todo en bloques de tamaño fijo
-        List<byte[]> dataBlocks = new ArrayList<>();
         try (BufferedInputStream bis = new BufferedInputStream(in)) {
-            byte[] buf = new byte[blockSize];
-            int read;
-            while ((read = bis.read(buf)) != -1) {
-                byte[] chunk = (read == blockSize) ? buf.clone() : Arrays.copyOf(buf, read);
-                dataBlocks.add(chunk);
+            for (int s = 0; failure.get() == null; s++) {
+                // 1. esperamos a que haya espacio para otro stripe en vuelo
+                inFlight.acquire();
+                PooledBuffer[] buffers = new PooledBuffer[n];
+                byte[][] slice = new byte[dataCount][];
+                for (int i = 0; i < n; i++) {
+                    buffers[i] = blockPool.acquire();
+                }
+                for (int d = 0; d < dataCount; d++) {
+                    slice[d] = buffers[d].array();
+                }
+                int bytesRead = fillStripe(bis, slice);
+                if (bytesRead == 0) {
+                    release(buffers);
+                    inFlight.release();
+                    break;
+                }
+                fileSize += bytesRead;
+
+                // 2. al completar un lote calculamos sus paridades y lo enviamos en paralelo a todos los nodos
+                pending.add(buffers);
+                boolean lastStripe = bytesRead < stripeCapacity;
+                if (pending.size() == batchStripes || lastStripe) {
+                    List<Stripe> batch = encodeBatch(fileId, s - pending.size() + 1, layout, pending);
+                    stripeList.addAll(batch);
+                    sendBatch(batch, stripeNodes, inFlight, failure);
+                    pending = new ArrayList<>(batchStripes);
+                }
+                if (lastStripe) {
+                    break;
+                }
+            }
+            if (!pending.isEmpty()) {
+                if (failure.get() == null) {
+                    List<Stripe> batch = encodeBatch(fileId, stripeList.size(), layout, pending);
+                    stripeList.addAll(batch);
+                    sendBatch(batch, stripeNodes, inFlight, failure);
+                } else {
+                    pending.forEach(FileDistributor::release);
+                    inFlight.release(pending.size());
+                }
             }
+
+            // 3. Esperamos la confirmación de todos los stripes en vuelo
+            inFlight.acquire(maxInFlightStripes);
+            inFlight.release(maxInFlightStripes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Subida interrumpida: " + fileId);
         }
 
-        // 3. Obtenemos nodos activos
-        // Obtener nodos activos manteniendo el orden definido en config
+        Throwable error = failure.get();
+        if (error != null) {
+            throw new IOException("Error distribuyendo " + fileId + ": " + error.getMessage(), error);
+        }
+
+        // 4. Guardamos metadatos: solo descriptores, los bloques ya devolvieron sus datos al pool
+        List<StripeDescriptor> descriptors = stripeList.stream().map(StripeDescriptor::of).collect(Collectors.toList());
+        metadataManager.saveStoredFile(new StoredFile(fileId, fileName, fileSize, descriptors, stripeNodes, layout));
+        return fileId;
+    }
+
+    /**
+     * Elige los nodos del archivo entre los activos, en el orden definido en config: wanted nodos,
+     * o todos si hay menos, pero nunca menos de minWidth. Si sobran nodos, el primero se rota
+     * según el fileId para repartir la carga entre archivos.
+     * @param layoutName disposición pedida, para el mensaje de error
+     * @return endpoint de cada posición de los stripes
+     * @throws IllegalStateException si hay menos nodos activos que minWidth
+     */
+    private List<String> selectStripeNodes(String fileId, int minWidth, int wanted, String layoutName) {
         List<String> activeNodes = config.getDiskNodeEndpoints().stream()
                 .filter(nodeMonitor.getAvailableNodes()::contains)
                 .collect(Collectors.toList());
-        int n = activeNodes.size();
-        // Validación de nodos para RAID5
-        if (n < 2) {
-            throw new IllegalStateException("Se requieren al menos 2 nodos activos, encontrados: " + n);
+        int active = activeNodes.size();
+        int width = Math.min(active, wanted);
+        if (width < minWidth) {
+            throw new IllegalStateException("Se requieren al menos " + minWidth
+                    + " nodos activos para " + layoutName + ", encontrados: " + active);
         }
-        if (n < 4) {
-            logger.warning("Solo " + n + " nodos activos; RAID5 típico requiere 4 nodos. Operando en modo degradado.");
+        int first = Math.floorMod(fileId.hashCode(), active);
+        List<String> nodes = new ArrayList<>(width);
+        for (int i = 0; i < width; i++) {
+            nodes.add(activeNodes.get((first + i) % active));
         }
-        int dataCount = n - 1;
+        return nodes;
+    }
 
-        // 4. Calculamos número de stripes
-        int stripes = (int) Math.ceil((double) dataBlocks.size() / dataCount);
-        List<Stripe> stripeList = new ArrayList<>();
-        int idx = 0;
-
-        for (int s = 0; s < stripes; s++) {
-            // 4.1 recolectamos dataCount bloques (pad con ceros si hace falta)
-            List<byte[]> slice = new ArrayList<>();
-            for (int i = 0; i < dataCount; i++) {
-                if (idx < dataBlocks.size()) {
-                    slice.add(dataBlocks.get(idx++));
+    /**
+     * Calcula juntas las paridades de un lote y crea sus stripes.
+     * @param firstIndex índice del primer stripe del lote
+     * @param pending    buffers de cada stripe: datos seguidos de las paridades; pasan a ser de los bloques
+     */
+    private List<Stripe> encodeBatch(String fileId, int firstIndex, StripeLayout layout, List<PooledBuffer[]> pending) {
+        ErasureCodec codec = layout.codec();
+        int dataCount = layout.getDataBlocks();
+        List<byte[][]> data = new ArrayList<>(pending.size());
+        List<byte[][]> parity = new ArrayList<>(pending.size());
+        for (PooledBuffer[] buffers : pending) {
+            byte[][] d = new byte[dataCount][];
+            byte[][] p = new byte[layout.getParityBlocks()][];
+            for (int i = 0; i < buffers.length; i++) {
+                if (i < dataCount) {
+                    d[i] = buffers[i].array();
                 } else {
-                    slice.add(new byte[blockSize]);
+                    p[i - dataCount] = buffers[i].array();
                 }
             }
-            // 4.2 aseguramos tamaño uniforme
-            for (int i = 0; i < slice.size(); i++) {
-                byte[] b = slice.get(i);
-                if (b.length != blockSize) {
-                    slice.set(i, Arrays.copyOf(b, blockSize));
+            data.add(d);
+            parity.add(p);
+        }
+        codec.encodeBatch(data, parity, blockSize);
+
+        List<Stripe> batch = new ArrayList<>(pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            batch.add(buildStripe(fileId, firstIndex + i, layout, pending.get(i)));
+        }
+        return batch;
+    }
+
+    /**
+     * Envía un lote de stripes; al terminar registra fallos o stripes degradados
+     * y libera un permiso de vuelo por stripe.
+     */
+    private void sendBatch(List<Stripe> batch, List<String> nodes, Semaphore inFlight,
+                           AtomicReference<Throwable> failure) throws InterruptedIOException {
+        int size = batch.size();
+        writeEngine.writeStripes(batch, nodes).whenComplete((results, ex) -> {
+            try {
+                if (ex != null) {
+                    failure.compareAndSet(null, ex);
+                    return;
                 }
-            }
-            // 4.3 calculamos paridad
-            byte[] parity = ParityCalculator.calculateParity(slice);
-
-            // 4.4 creamos Stripe y asignamos bloques en round-robin
-            Stripe stripe = new Stripe(fileId + "_stripe" + s, fileId, s);
-            int parityPos = s % n;
-            int dataIdx = 0;
-            for (int pos = 0; pos < n; pos++) {
-                Block blk;
-                if (pos == parityPos) {
-                    blk = new Block(stripe.getStripeId() + "_p", parity, Block.BlockType.PARITY);
-                } else {
-                    blk = new Block(stripe.getStripeId() + "_d" + dataIdx, slice.get(dataIdx), Block.BlockType.DATA);
-                    dataIdx++;
+                for (BlockWriteEngine.StripeWriteResult result : results) {
+                    Stripe stripe = result.getStripe();
+                    if (result.getFailures().size() > stripe.getParityCount()) {
+                        failure.compareAndSet(null, new IOException("Stripe " + stripe.getStripeId()
+                                + " perdió más bloques de los que cubre su paridad: " + result.getFailures()));
+                    } else if (!result.isSuccess()) {
+                        result.getFailures().keySet().forEach(stripe::markDegraded);
+                        logger.warning("Stripe " + stripe.getStripeId() + " degradado: " + result.getFailures());
+                    }
                 }
-                stripe.setBlock(pos, blk);
-                sendBlock(activeNodes.get(pos), blk);
+                logger.info("Lote de " + size + " stripes distribuido hasta " + batch.get(size - 1).getStripeId());
+            } finally {
+                releaseData(batch);
+                inFlight.release(size);
             }
-            stripeList.add(stripe);
-            logger.info("Stripe " + stripe.getStripeId() + " distribuido");
+        });
+    }
+
+    /**
+     * Llena el buffer del stripe con los siguientes bloques del stream.
+     * Los bloques incompletos o sin datos se rellenan con ceros.
+     * @return número de bytes del archivo leídos en este stripe
+     */
+    private int fillStripe(InputStream in, byte[][] slice) throws IOException {
+        int total = 0;
+        boolean eof = false;
+        for (byte[] block : slice) {
+            int read = eof ? 0 : in.readNBytes(block, 0, blockSize);
+            if (read < blockSize) {
+                Arrays.fill(block, read, blockSize, (byte) 0);
+                eof = true;
+            }
+            total += read;
         }
+        return total;
+    }
 
-        // 5. Guardamos metadatos
-        metadataManager.saveStoredFile(new StoredFile(fileId, fileName, stripeList));
-        return fileId;
+    /**
+     * Crea un Stripe asignando bloques de datos y paridad en round-robin.
+     * @param buffers los buffers de datos seguidos de las paridades (P, Q en RAID 6); pasan a ser de los bloques
+     */
+    private Stripe buildStripe(String fileId, int s, StripeLayout layout, PooledBuffer[] buffers) {
+        Stripe stripe = new Stripe(StripeDescriptor.stripeIdFor(fileId, s), fileId, s, layout);
+        int dataCount = stripe.getDataBlockCount();
+        int[] parityPositions = stripe.getParityPositions();
+        for (int j = 0; j < parityPositions.length; j++) {
+            stripe.setBlock(parityPositions[j], Block.wrap(stripe.getStripeId() + layout.parityBlockSuffix(j),
+                    buffers[dataCount + j], Block.BlockType.PARITY));
+        }
+        int[] dataPositions = stripe.getDataPositions();
+        for (int d = 0; d < dataCount; d++) {
+            stripe.setBlock(dataPositions[d], Block.wrap(stripe.getStripeId() + "_d" + d, buffers[d],
+                    Block.BlockType.DATA));
+        }
+        return stripe;
+    }
+
+    private static void release(PooledBuffer[] buffers) {
+        for (PooledBuffer buffer : buffers) {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Devuelve al pool los datos de los bloques de los stripes; quedan solo sus metadatos.
+     */
+    private static void releaseData(List<Stripe> stripes) {
+        for (Stripe stripe : stripes) {
+            for (Block block : stripe.getBlocks()) {
+                if (block != null) {
+                    block.releaseData();
+                }
+            }
+        }
     }
 
     /**
-     * Reconstruye el archivo completo leyendo y recuperando bloques en nodos activos.
+     * Reconstruye el archivo leyendo y recuperando bloques de los nodos donde se guardó.
+     * Devuelve un stream perezoso: los stripes se descargan en orden, en grupos de batchStripes
+     * (una petición /getBlocks por nodo y grupo), con una ventana de readAheadStripes stripes
+     * en paralelo; cada grupo se entrega apenas está listo, en un buffer del pool que vuelve
+     * a él cuando el consumidor lo termina de leer.
+     * El relleno de ceros del último stripe no se incluye.
      */
     public InputStream reconstruct(String fileId) throws IOException {
+        StoredFile sf = getRequiredFile(fileId);
+        return reconstruct(sf, 0, sf.getFileSize());
+    }
+
+    /**
+     * Reconstruye solo el rango [start, end) del archivo.
+     * El rango se traduce a los stripes y bloques de datos que lo contienen y solo esos se descargan.
+     * @param start primer byte (inclusive)
+     * @param end   último byte (exclusivo), a lo sumo el tamaño del archivo
+     */
+    public InputStream reconstruct(String fileId, long start, long end) throws IOException {
+        return reconstruct(getRequiredFile(fileId), start, end);
+    }
+
+    private InputStream reconstruct(StoredFile sf, long start, long end) {
+        long stripeData = (long) sf.getDataBlocksPerStripe() * blockSize;
+        end = Math.min(end, sf.getFileSize());
+        if (start < 0 || start >= end) {
+            return InputStream.nullInputStream();
+        }
+
+        int first = (int) (start / stripeData);
+        int last = (int) ((end - 1) / stripeData);
+        List<StripeDescriptor> stripes = sf.getStripes().subList(first, last + 1);
+        List<List<StripeDescriptor>> groups = new ArrayList<>();
+        for (int i = 0; i < stripes.size(); i += batchStripes) {
+            groups.add(stripes.subList(i, Math.min(i + batchStripes, stripes.size())));
+        }
+
+        final long rangeEnd = end;
+        return new StripeReadAheadStream(groups, group -> {
+            // Rango [from, to) de los datos de cada stripe del grupo
+            int[][] ranges = new int[group.size()][];
+            int total = 0;
+            for (int i = 0; i < group.size(); i++) {
+                long base = group.get(i).getStripeIndex() * stripeData;
+                int from = (int) Math.max(start - base, 0);
+                int to = (int) Math.min(rangeEnd - base, stripeData);
+                ranges[i] = new int[]{from, to};
+                total += to - from;
+            }
+
+            // Un grupo más ancho que el previsto por la configuración recibe un buffer a medida
+            PooledBuffer out = readPool.acquire(total);
+            List<NodeClient.BlockViews> responses = prefetchData(sf, group, ranges);
+            try {
+                Map<String, ByteBuffer> prefetched = new HashMap<>();
+                for (NodeClient.BlockViews response : responses) {
+                    prefetched.putAll(response.blocks());
+                }
+                for (int i = 0, written = 0; i < group.size(); i++) {
+                    readStripe(sf, group.get(i), ranges[i][0], ranges[i][1], prefetched, out.array(), written);
+                    written += ranges[i][1] - ranges[i][0];
+                }
+                out.buffer().limit(total);
+                return out;
+            } catch (IOException | RuntimeException e) {
+                out.release();
+                throw e;
+            } finally {
+                // Los bloques ya se copiaron a out: las respuestas vuelven al pool
+                responses.forEach(NodeClient.BlockViews::close);
+            }
+        }, readExecutor, readAheadGroups);
+    }
+
+    /**
+     * Pide a cada nodo sano, en una sola petición /getBlocks, los bloques de datos
+     * de los rangos del grupo que tiene guardados.
+     * @return respuestas recibidas, con blockId → vista sin verificar sobre el buffer de su nodo;
+     *         un bloque ausente se vuelve a pedir individualmente. Quien llama las cierra
+     */
+    private List<NodeClient.BlockViews> prefetchData(StoredFile sf, List<StripeDescriptor> group, int[][] ranges) {
+        List<String> nodes = sf.getNodeEndpoints();
+        Set<String> healthy = nodeMonitor.getAvailableNodes();
+        Map<Integer, List<String>> idsByPosition = new TreeMap<>();
+        for (int i = 0; i < group.size(); i++) {
+            StripeDescriptor stripe = group.get(i);
+            int[] dataPositions = stripe.getDataPositions();
+            for (int d = ranges[i][0] / blockSize; d <= (ranges[i][1] - 1) / blockSize; d++) {
+                int pos = dataPositions[d];
+                if (!stripe.isDegraded(pos) && healthy.contains(nodes.get(pos))) {
+                    idsByPosition.computeIfAbsent(pos, k -> new ArrayList<>()).add(stripe.getBlockId(pos));
+                }
+            }
+        }
+
+        List<CompletableFuture<NodeClient.BlockViews>> requests = idsByPosition.entrySet().stream()
+                .map(e -> {
+                    String endpoint = nodes.get(e.getKey());
+                    return nodeClient.getBlocksAsync(endpoint, e.getValue(), responsePool)
+                            .exceptionally(ex -> {
+                                logger.warning("Lote de lectura fallido en " + endpoint + ": " + ex.getMessage());
+                                return null;
+                            });
+                })
+                .collect(Collectors.toList());
+        List<NodeClient.BlockViews> responses = new ArrayList<>(requests.size());
+        for (CompletableFuture<NodeClient.BlockViews> request : requests) {
+            NodeClient.BlockViews response = request.join();
+            if (response != null) {
+                responses.add(response);
+            }
+        }
+        return responses;
+    }
+
+    private StoredFile getRequiredFile(String fileId) throws FileNotFoundException {
         StoredFile sf = metadataManager.getStoredFile(fileId);
         if (sf == null) {
             throw new FileNotFoundException("StoredFile " + fileId + " no existe");
         }
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        List<String> activeNodes = new ArrayList<>(nodeMonitor.getAvailableNodes());
-        int n = activeNodes.size();
-
-        for (Stripe stripe : sf.getStripes()) {
-            // recolectamos bloques
-            byte[][] blocks = new byte[n][];
-            boolean[] available = new boolean[n];
-            List<Integer> missingPositions = new ArrayList<>();
-            for (int i = 0; i < n; i++) {
-                try {
-                    blocks[i] = fetchBlock(activeNodes.get(i), stripe.getBlock(i).getBlockId());
-                    available[i] = true;
-                } catch (IOException e) {
-                    missingPositions.add(i);
-                    available[i] = false;
-                }
+        return sf;
+    }
+
+    /**
+     * Lee los bytes [from, to) de los datos de un stripe y los copia en dest a partir de destOffset.
+     * Lectura normal: solo se usan los bloques de datos que cubren el rango, tomados del lote
+     * precargado o pedidos a nodos sanos; la paridad no se toca. Lectura degradada: si uno de esos bloques falta, falla su checksum
+     * o excede el tiempo de espera, se piden los demás bloques y la paridad, se reconstruye con
+     * Stripe.reconstructBlocks y se reescribe en su nodo.
+     * @throws IOException si no hay bloques suficientes para reconstruir
+     */
+    private void readStripe(StoredFile sf, StripeDescriptor stripe, int from, int to, Map<String, ByteBuffer> prefetched,
+                            byte[] dest, int destOffset) throws IOException {
+        List<String> nodes = sf.getNodeEndpoints();
+        Set<String> healthy = nodeMonitor.getAvailableNodes();
+        int n = sf.getStripeWidth();
+        int firstData = from / blockSize;
+        int lastData = (to - 1) / blockSize;
+
+        // 1. Posición de cada bloque de datos del rango
+        int[] dataPositions = stripe.getDataPositions();
+
+        // 2. Bloques de datos del rango desde nodos sanos
+        ByteBuffer[] blocks = new ByteBuffer[n];
+        List<Integer> missingPositions = new ArrayList<>();
+        for (int d = firstData; d <= lastData; d++) {
+            int pos = dataPositions[d];
+            blocks[pos] = fetchIfHealthy(nodes, healthy, stripe, pos, prefetched);
+            if (blocks[pos] == null) {
+                missingPositions.add(pos);
             }
-    // Verificamos cuántos bloques faltan
-                if (missingPositions.size() > 1) {
-                    logger.warning(" No se puede reconstruir stripe " + stripe.getStripeId()
-                            + ": múltiples bloques perdidos → " + missingPositions);
-                    continue;
-                }
+        }
 
-                if (missingPositions.size() == 1) {
-                    int missing = missingPositions.get(0);
-                    Block recovered = stripe.reconstructBlock(missing);
-                    blocks[missing] = recovered.getData();
-                    sendBlock(activeNodes.get(missing), recovered);
-                    logger.info(" Reconstruido bloque " + missing + " de stripe " + stripe.getStripeId());
+        if (missingPositions.isEmpty()) {
+            normalReads.incrementAndGet();
+        } else {
+            degradedReads.incrementAndGet();
+            // Para reconstruir hacen falta también los bloques de datos fuera del rango
+            for (int d = 0; d < dataPositions.length; d++) {
+                if (d >= firstData && d <= lastData) {
+                    continue;
                 }
-            // escribimos datos (ignoramos paridad)
-            for (int i = 0; i < n; i++) {
-                Block b = stripe.getBlock(i);
-                if (b.getType() == Block.BlockType.DATA) {
-                    baos.write(blocks[i]);
+                int pos = dataPositions[d];
+                blocks[pos] = fetchIfHealthy(nodes, healthy, stripe, pos, prefetched);
+                if (blocks[pos] == null) {
+                    missingPositions.add(pos);
                 }
             }
+            recoverBlocks(sf, stripe, blocks, missingPositions);
+        }
+
+        // 3. Copiamos solo los bytes pedidos (ignoramos paridad)
+        for (int d = firstData, written = destOffset; d <= lastData; d++) {
+            int blockStart = d * blockSize;
+            int offset = Math.max(from - blockStart, 0);
+            int length = Math.min(to - blockStart, blockSize) - offset;
+            blocks[dataPositions[d]].get(offset, dest, written, length);
+            written += length;
         }
-        return new ByteArrayInputStream(baos.toByteArray());
     }
 
     /**
-     * Envía un bloque a un Disk Node.
+     * @return el bloque en la posición indicada, o null si su nodo no está sano o la lectura falla
      */
-    private void sendBlock(String endpoint, Block block) throws IOException {
-        URL url = new URL(endpoint + "/storeBlock?blockId=" + block.getBlockId());
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setDoOutput(true);
-        conn.setRequestMethod("POST");
-        try (OutputStream os = conn.getOutputStream()) {
-            os.write(block.getData());
+    private ByteBuffer fetchIfHealthy(List<String> nodes, Set<String> healthy, StripeDescriptor stripe, int pos,
+                                      Map<String, ByteBuffer> prefetched) {
+        if (stripe.isDegraded(pos) || !healthy.contains(nodes.get(pos))) {
+            return null;
         }
-        if (conn.getResponseCode() != 200) {
-            logger.warning("Error " + conn.getResponseCode() + " al enviar bloque a " + endpoint);
+        ByteBuffer data = prefetched.get(stripe.getBlockId(pos));
+        if (data != null) {
+            return verify(nodes.get(pos), stripe, pos, data);
         }
-        conn.disconnect();
+        return fetchVerifiedBlock(nodes.get(pos), stripe, pos);
     }
 
     /**
-     * Descarga un bloque de un Disk Node.
+     * Recupera los bloques de datos faltantes con la paridad y los reescribe en sus nodos en segundo plano.
+     * Se leen solo las paridades necesarias, una por bloque faltante: P primero y Q (RAID 6)
+     * si falta un segundo bloque o P no está disponible.
+     * La lectura degradada es poco frecuente, así que aquí sí se copian los bloques leídos; el Stripe
+     * de trabajo y sus copias viven solo durante esta lectura.
      */
-    private byte[] fetchBlock(String endpoint, String blockId) throws IOException {
-        URL url = new URL(endpoint + "/getBlock?blockId=" + blockId);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-        if (conn.getResponseCode() != 200) {
-            throw new IOException("HTTP " + conn.getResponseCode());
+    private void recoverBlocks(StoredFile sf, StripeDescriptor stripe, ByteBuffer[] blocks,
+                               List<Integer> missingPositions) throws IOException {
+        List<String> nodes = sf.getNodeEndpoints();
+        if (missingPositions.size() > stripe.getParityCount()) {
+            throw new IOException("No se puede reconstruir stripe " + stripe.getStripeId()
+                    + ": múltiples bloques perdidos → " + missingPositions);
         }
-        try (InputStream is = conn.getInputStream(); ByteArrayOutputStream buf = new ByteArrayOutputStream()) {
-            byte[] b = new byte[8192]; int r;
-            while ((r = is.read(b)) != -1) buf.write(b, 0, r);
-            return buf.toByteArray();
-        } finally {
-            conn.disconnect();
+        int available = 0;
+        for (int parityPos : stripe.getParityPositions()) {
+            if (available == missingPositions.size()) {
+                break;
+            }
+            if (!stripe.isDegraded(parityPos)) {
+                blocks[parityPos] = fetchVerifiedBlock(nodes.get(parityPos), stripe, parityPos);
+            }
+            if (blocks[parityPos] != null) {
+                available++;
+            }
+        }
+        if (available < missingPositions.size()) {
+            throw new IOException("No se puede reconstruir stripe " + stripe.getStripeId()
+                    + ": paridad no disponible y faltan bloques " + missingPositions);
         }
+
+        // Stripe de trabajo con los bloques leídos de los nodos
+        Stripe working = stripe.newWorkingStripe();
+        for (int i = 0; i < blocks.length; i++) {
+            if (blocks[i] != null) {
+                working.setBlock(i, Block.wrap(stripe.getBlockId(i), toArray(blocks[i]), typeOf(stripe, i)));
+            }
+        }
+        int[] missing = missingPositions.stream().mapToInt(Integer::intValue).toArray();
+        Block[] rebuilt = working.reconstructBlocks(missing);
+
+        for (int i = 0; i < missing.length; i++) {
+            int pos = missing[i];
+            Block repaired = Block.wrap(stripe.getBlockId(pos), rebuilt[i].getData(), typeOf(stripe, pos));
+            blocks[pos] = repaired.dataView();
+            logger.info(" Reconstruido bloque " + pos + " de stripe " + stripe.getStripeId());
+
+            // Reescribimos el bloque con su id original si su nodo está disponible
+            String endpoint = nodes.get(pos);
+            if (nodeMonitor.getAvailableNodes().contains(endpoint)) {
+                repairExecutor.execute(() -> rewriteBlock(sf.getFileId(), stripe, pos, endpoint, repaired));
+            }
+        }
+    }
+
+    /**
+     * Reescribe un bloque reconstruido en su nodo y registra la reparación en los metadatos.
+     * Corre en el hilo de reparación, que puede esperar permisos del nodo sin frenar lecturas.
+     */
+    private void rewriteBlock(String fileId, StripeDescriptor stripe, int pos, String endpoint, Block repaired) {
+        try {
+            writeEngine.writeBlock(endpoint, repaired).join();
+            if (stripe.isDegraded(pos)) {
+                metadataManager.markRepaired(fileId, stripe.getStripeIndex(), pos);
+            }
+        } catch (IOException | CompletionException e) {
+            // writeBlock ya registró el fallo del nodo
+            logger.warning("No se pudo reparar " + repaired.getBlockId() + ": " + e.getMessage());
+        }
+    }
+
+    private static Block.BlockType typeOf(StripeDescriptor stripe, int pos) {
+        return stripe.isParityPosition(pos) ? Block.BlockType.PARITY : Block.BlockType.DATA;
+    }
+
+    /**
+     * Descarga el bloque de una posición y valida tamaño y checksum contra los metadatos.
+     * @return bytes del bloque, o null si falta, está corrupto o el nodo no respondió a tiempo
+     */
+    private ByteBuffer fetchVerifiedBlock(String endpoint, StripeDescriptor stripe, int pos) {
+        String blockId = stripe.getBlockId(pos);
+        try {
+            return verify(endpoint, stripe, pos, ByteBuffer.wrap(nodeClient.getBlock(endpoint, blockId)));
+        } catch (IOException e) {
+            logger.warning("No se pudo leer " + blockId + " de " + endpoint + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return data si su tamaño y checksum coinciden con los metadatos de la posición, o null si no;
+     *         si el checksum es desconocido (archivo recuperado de los nodos) solo se valida el tamaño
+     */
+    private ByteBuffer verify(String endpoint, StripeDescriptor stripe, int pos, ByteBuffer data) {
+        long expected = stripe.getChecksum(pos);
+        if (data.remaining() != stripe.getBlockLength()
+                || (expected != StripeDescriptor.UNKNOWN_CHECKSUM && Block.checksumValueOf(data) != expected)) {
+            logger.warning("Checksum inválido para " + stripe.getBlockId(pos) + " en " + endpoint);
+            return null;
+        }
+        return data;
+    }
+
+    private static byte[] toArray(ByteBuffer data) {
+        byte[] copy = new byte[data.remaining()];
+        data.duplicate().get(copy);
+        return copy;
+    }
+
+    /** @return stripes leídos solo con bloques de datos */
+    public long getNormalReads() {
+        return normalReads.get();
+    }
+
+    /** @return stripes que necesitaron paridad para reconstruir un bloque */
+    public long getDegradedReads() {
+        return degradedReads.get();
+    }
+
+    /** @return pool de buffers de bloques de subida */
+    public BufferPool getBlockPool() {
+        return blockPool;
+    }
+
+    /** @return pool de buffers de grupos de descarga */
+    public BufferPool getReadPool() {
+        return readPool;
+    }
+
+    /** @return pool de buffers de respuestas /getBlocks */
+    public BufferPool getResponsePool() {
+        return responsePool;
+    }
+
+    /** Detiene los hilos de lectura de bloques */
+    public void shutdown() {
+        readExecutor.shutdownNow();
+        repairExecutor.shutdownNow();
     }
 }
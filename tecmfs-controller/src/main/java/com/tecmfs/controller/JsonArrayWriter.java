@@ -0,0 +1,100 @@
+package com.tecmfs.controller;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escribe un arreglo JSON de objetos planos directamente en el cuerpo de una respuesta,
+ * a medida que se generan sus elementos, sin armar el documento completo en memoria.
+ * <p>
+ * Uso: beginObject(), field(...) por cada campo, endObject(); close() cierra el arreglo.
+ */
+class JsonArrayWriter implements Closeable {
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final Writer out;
+    private boolean firstObject = true;
+    private boolean firstField;
+
+    JsonArrayWriter(OutputStream body) throws IOException {
+        this.out = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), BUFFER_SIZE);
+        out.write('[');
+    }
+
+    void beginObject() throws IOException {
+        if (!firstObject) {
+            out.write(',');
+        }
+        firstObject = false;
+        firstField = true;
+        out.write('{');
+    }
+
+    void field(String name, String value) throws IOException {
+        name(name);
+        string(value);
+    }
+
+    void field(String name, long value) throws IOException {
+        name(name);
+        out.write(Long.toString(value));
+    }
+
+    void endObject() throws IOException {
+        out.write('}');
+    }
+
+    /**
+     * Cierra el arreglo y el cuerpo de la respuesta.
+     */
+    @Override
+    public void close() throws IOException {
+        out.write(']');
+        out.close();
+    }
+
+    private void name(String name) throws IOException {
+        if (!firstField) {
+            out.write(',');
+        }
+        firstField = false;
+        string(name);
+        out.write(':');
+    }
+
+    private void string(String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
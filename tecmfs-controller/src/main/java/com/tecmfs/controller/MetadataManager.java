@@ -1,34 +1,79 @@
 package com.tecmfs.controller;
 
+import com.tecmfs.controller.metadata.BlockLocationIndex;
+import com.tecmfs.controller.metadata.FileNameIndex;
+import com.tecmfs.controller.metadata.MetadataStore;
 import com.tecmfs.controller.models.NodeStatus;
 import com.tecmfs.controller.models.StoredFile;
+import com.tecmfs.controller.models.StripeDescriptor;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 /**
  * Gestiona los metadatos de archivos y estados de Disk Nodes.
  * Incluye almacenamiento de información detallada obtenida de cada nodo.
+ * Con un {@link MetadataStore} las altas, bajas y reparaciones de archivos quedan en disco antes de
+ * aplicarse y se recuperan al reiniciar; sin él los metadatos viven solo en memoria.
  */
-public class MetadataManager {
+public class MetadataManager implements Closeable {
     private static final Logger logger = Logger.getLogger(MetadataManager.class.getName());
 
-    // Mapa fileId -> StoredFile
-    private final ConcurrentMap<String, StoredFile> filesMap = new ConcurrentHashMap<>();
+    // Mapa fileId -> StoredFile, ordenado por fileId para paginar los listados
+    private final ConcurrentNavigableMap<String, StoredFile> filesMap = new ConcurrentSkipListMap<>();
     // Mapa nodeId -> NodeStatus
     private final ConcurrentMap<String, NodeStatus> nodeStatusMap = new ConcurrentHashMap<>();
     // Mapa nodeId -> JSON detallado (/detailedNodeStatus)
     private final ConcurrentMap<String, String> detailedStatusMap = new ConcurrentHashMap<>();
+    // Nombres de los archivos de filesMap para las búsquedas
+    private final FileNameIndex nameIndex = new FileNameIndex();
+    // Nodo y blockId -> archivo, stripe y posición
+    private final BlockLocationIndex locationIndex = new BlockLocationIndex();
+    // Persistencia de filesMap; null = solo en memoria
+    private final MetadataStore store;
+
+    /**
+     * Metadatos solo en memoria.
+     */
+    public MetadataManager() {
+        this.store = null;
+    }
+
+    /**
+     * Metadatos persistentes en dir: recupera los archivos guardados y registra los cambios en el WAL.
+     * @param snapshotIntervalSeconds período entre snapshots; 0 los desactiva
+     */
+    public MetadataManager(Path dir, long snapshotIntervalSeconds) throws IOException {
+        this.store = new MetadataStore(dir);
+        filesMap.putAll(store.recover());
+        for (StoredFile file : filesMap.values()) {
+            nameIndex.add(file.getFileId(), file.getFileName());
+            locationIndex.add(file);
+        }
+        store.start(() -> new ArrayList<>(filesMap.values()), snapshotIntervalSeconds);
+    }
 
     /**
      * Registra un nuevo archivo en el sistema.
      */
-    public void saveStoredFile(StoredFile storedFile) {
-        filesMap.put(storedFile.getFileId(), storedFile);
+    public void saveStoredFile(StoredFile storedFile) throws IOException {
+        if (store != null) {
+            store.logCreate(storedFile, () -> put(storedFile));
+        } else {
+            put(storedFile);
+        }
         logger.info("StoredFile registrado: " + storedFile.getFileId());
     }
 
@@ -42,10 +87,94 @@ public class MetadataManager {
     /**
      * Elimina un StoredFile por su ID.
      */
-    public void removeFile(String fileId) {
-        if (filesMap.remove(fileId) != null) {
-            logger.info("StoredFile eliminado: " + fileId);
+    public void removeFile(String fileId) throws IOException {
+        if (!filesMap.containsKey(fileId)) {
+            return;
+        }
+        if (store != null) {
+            store.logDelete(fileId, () -> remove(fileId));
+        } else {
+            remove(fileId);
+        }
+        logger.info("StoredFile eliminado: " + fileId);
+    }
+
+    /**
+     * Registra que el bloque de una posición degradada se reescribió en su nodo y le quita la marca.
+     * No hace nada si el archivo ya no existe.
+     */
+    public void markRepaired(String fileId, int stripeIndex, int position) throws IOException {
+        StoredFile file = filesMap.get(fileId);
+        if (file == null) {
+            return;
+        }
+        StripeDescriptor stripe = file.getStripes().get(stripeIndex);
+        if (store != null) {
+            store.logRepair(fileId, stripeIndex, position, () -> stripe.clearDegraded(position));
+        } else {
+            stripe.clearDegraded(position);
         }
+        logger.info("Bloque " + stripe.getBlockId(position) + " reparado");
+    }
+
+    private void put(StoredFile storedFile) {
+        filesMap.put(storedFile.getFileId(), storedFile);
+        nameIndex.add(storedFile.getFileId(), storedFile.getFileName());
+        locationIndex.add(storedFile);
+    }
+
+    private void remove(String fileId) {
+        filesMap.remove(fileId);
+        nameIndex.remove(fileId);
+        locationIndex.remove(fileId);
+    }
+
+    /**
+     * @return archivo, stripe y posición del bloque, o null si no pertenece a ningún archivo
+     */
+    public BlockLocationIndex.Location locateBlock(String blockId) {
+        return locationIndex.locate(blockId);
+    }
+
+    /**
+     * Recorre los bloques que los metadatos ubican en un nodo, por ejemplo para reconstruirlo
+     * tras una falla; el costo depende solo de los bloques de ese nodo.
+     */
+    public void forEachBlockOnNode(String endpoint, Consumer<BlockLocationIndex.Location> action) {
+        locationIndex.forEachBlockOnNode(endpoint, action);
+    }
+
+    public long countBlocksOnNode(String endpoint) {
+        return locationIndex.countBlocksOnNode(endpoint);
+    }
+
+    /**
+     * Busca archivos por nombre con el índice, sin distinguir mayúsculas, y devuelve una página en
+     * orden de fileId; el índice elige la página sin ordenar todas las coincidencias.
+     * @param match coincidencia exacta, por prefijo o por subcadena
+     * @param after último fileId ya entregado, o null para empezar desde el primero
+     * @param limit máximo de archivos
+     */
+    public List<StoredFile> findFilesByName(FileNameIndex.Match match, String text, String after, int limit) {
+        List<String> ids = nameIndex.findPage(match, text, after, limit);
+        List<StoredFile> files = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            StoredFile file = filesMap.get(id);
+            if (file != null) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Vista de los archivos ordenados por fileId, a partir del siguiente a after.
+     * Se recorre sin copiar; refleja las altas y bajas concurrentes.
+     * @param after último fileId ya entregado, o null para empezar desde el primero
+     */
+    public Collection<StoredFile> getStoredFilesAfter(String after) {
+        return Collections.unmodifiableCollection(
+                after == null ? filesMap.values() : filesMap.tailMap(after, false).values());
     }
 
     /**
@@ -89,4 +218,14 @@ public class MetadataManager {
     public Map<String, String> getAllDetailedNodeStatus() {
         return Map.copyOf(detailedStatusMap);
     }
+
+    /**
+     * Cierra el WAL; los cambios ya confirmados están en disco.
+     */
+    @Override
+    public void close() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+    }
 }
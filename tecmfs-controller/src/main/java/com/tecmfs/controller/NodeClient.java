@@ -0,0 +1,530 @@
+package com.tecmfs.controller;
+
+import com.tecmfs.common.util.BufferPool;
+import com.tecmfs.common.util.PooledBuffer;
+import com.tecmfs.disknode.protocol.BlockBatch;
+import com.tecmfs.disknode.protocol.BlockInventory;
+import com.tecmfs.disknode.protocol.BlockProtocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Cliente HTTP compartido para todo el tráfico del controller hacia los Disk Nodes.
+ * Usa un único java.net.http.HttpClient que mantiene conexiones persistentes (keep-alive)
+ * por nodo y las reutiliza entre peticiones, en lugar de abrir un HttpURLConnection por bloque.
+ * Si un nodo anuncia el protocolo binario, las operaciones de bloques usan esa conexión
+ * y vuelven a HTTP cuando no está disponible.
+ */
+public class NodeClient {
+    private static final Logger logger = Logger.getLogger(NodeClient.class.getName());
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final int connectTimeoutMs;
+    // Mapa endpoint -> puerto binario anunciado por el nodo
+    private final ConcurrentMap<String, Integer> binaryPorts = new ConcurrentHashMap<>();
+    // Mapa endpoint -> conexión binaria abierta
+    private final ConcurrentMap<String, BinaryNodeConnection> binaryConnections = new ConcurrentHashMap<>();
+
+    /**
+     * El tamaño y la vida del pool de conexiones son propiedades de la JVM
+     * (jdk.httpclient.connectionPoolSize y jdk.httpclient.keepalive.timeout) que el JDK lee una sola vez;
+     * se fijan al arrancar el proceso, antes de crear cualquier cliente HTTP.
+     *
+     * @param connectTimeoutMs tiempo máximo para establecer una conexión
+     * @param readTimeoutMs    tiempo máximo para recibir la respuesta completa
+     */
+    public NodeClient(int connectTimeoutMs, int readTimeoutMs) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        this.requestTimeout = Duration.ofMillis(readTimeoutMs);
+        this.connectTimeoutMs = connectTimeoutMs;
+        logger.info(String.format("NodeClient creado: connectTimeout=%dms, readTimeout=%dms",
+                connectTimeoutMs, readTimeoutMs));
+    }
+
+    /**
+     * Registra el puerto binario que anuncia un nodo en /nodeStatus.
+     * @param binaryPort puerto anunciado; 0 deshabilita el protocolo binario para ese nodo
+     */
+    public void setBinaryPort(String endpoint, int binaryPort) {
+        Integer previous = binaryPort > 0 ? binaryPorts.put(endpoint, binaryPort) : binaryPorts.remove(endpoint);
+        if (previous == null || previous != binaryPort) {
+            BinaryNodeConnection old = binaryConnections.remove(endpoint);
+            if (old != null) {
+                old.close();
+            }
+        }
+    }
+
+    /**
+     * Envía un bloque a un nodo (POST /storeBlock o STORE binario).
+     * @param data bytes restantes del buffer; se envían sin copiarlos ni mover su posición
+     * @return futuro que falla con IOException si el nodo no confirma la escritura
+     */
+    public CompletableFuture<Void> storeBlockAsync(String endpoint, String blockId, ByteBuffer data) {
+        BinaryNodeConnection conn = binaryConnection(endpoint);
+        if (conn != null) {
+            return sendBinary(conn, endpoint, BlockProtocol.OP_STORE, blockId, data).thenApply(resp -> null);
+        }
+        HttpRequest request = request(endpoint + "/storeBlock?blockId=" + blockId)
+                .POST(ofBuffers(List.of(data)))
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(resp -> {
+                    if (resp.statusCode() != 200) {
+                        throw new CompletionException(statusError(resp, endpoint));
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Descarga un bloque de un nodo (GET /getBlock).
+     * @return futuro con los bytes del bloque; falla con IOException si el nodo no responde 200
+     */
+    public CompletableFuture<byte[]> getBlockAsync(String endpoint, String blockId) {
+        BinaryNodeConnection conn = binaryConnection(endpoint);
+        if (conn != null) {
+            return sendBinary(conn, endpoint, BlockProtocol.OP_GET, blockId, null).thenApply(resp -> resp.payload);
+        }
+        HttpRequest request = request(endpoint + "/getBlock?blockId=" + blockId).GET().build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(resp -> {
+                    if (resp.statusCode() != 200) {
+                        throw new CompletionException(statusError(resp, endpoint));
+                    }
+                    return resp.body();
+                });
+    }
+
+    /**
+     * Envía varios bloques a un nodo en una sola petición (POST /storeBlocks).
+     * El nodo los guarda todos o ninguno. Con protocolo binario los bloques ya comparten
+     * una conexión con pipelining, así que se envían como peticiones individuales.
+     * Los bloques se envían desde sus vistas, intercalados con encabezados pequeños, sin armar
+     * un cuerpo contiguo.
+     * @param blocks blockId → vista de los bytes del bloque
+     * @return futuro que falla con IOException si el nodo no confirma el lote
+     */
+    public CompletableFuture<Void> storeBlocksAsync(String endpoint, Map<String, ByteBuffer> blocks) {
+        if (binaryConnection(endpoint) != null) {
+            return CompletableFuture.allOf(blocks.entrySet().stream()
+                    .map(e -> storeBlockAsync(endpoint, e.getKey(), e.getValue()))
+                    .toArray(CompletableFuture[]::new));
+        }
+        HttpRequest request = request(endpoint + "/storeBlocks")
+                .POST(ofBuffers(BlockBatch.encodeBlockBuffers(blocks)))
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(resp -> {
+                    if (resp.statusCode() != 200) {
+                        throw new CompletionException(statusError(resp, endpoint));
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Descarga varios bloques de un nodo en una sola petición (POST /getBlocks).
+     * La respuesta se recibe directamente en un buffer de pool, que crece con otro del mismo pool
+     * si el cuerpo no cabe.
+     * @param pool buffers para recibir la respuesta
+     * @return futuro con blockId → vista de solo lectura del bloque, sin copias sobre la respuesta;
+     *         los bloques que el nodo no tiene no aparecen. Quien llama cierra el resultado
+     */
+    public CompletableFuture<BlockViews> getBlocksAsync(String endpoint, List<String> blockIds, BufferPool pool) {
+        if (binaryConnection(endpoint) != null) {
+            Map<String, ByteBuffer> result = new ConcurrentHashMap<>();
+            return CompletableFuture.allOf(blockIds.stream()
+                    .map(id -> getBlockAsync(endpoint, id)
+                            .thenAccept(data -> result.put(id, ByteBuffer.wrap(data)))
+                            .exceptionally(ex -> null))
+                    .toArray(CompletableFuture[]::new))
+                    .thenApply(v -> new BlockViews(result, null));
+        }
+        byte[] body;
+        try {
+            body = BlockBatch.encodeIds(blockIds);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest request = request(endpoint + "/getBlocks")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        HttpResponse.BodyHandler<PooledBuffer> handler = info -> info.statusCode() == 200
+                ? new PooledBodySubscriber(pool) : HttpResponse.BodySubscribers.replacing(null);
+        return client.sendAsync(request, handler)
+                .thenApply(resp -> {
+                    if (resp.statusCode() != 200) {
+                        throw new CompletionException(statusError(resp, endpoint));
+                    }
+                    PooledBuffer received = resp.body();
+                    try {
+                        return new BlockViews(BlockBatch.sliceBlocks(received.buffer()), received);
+                    } catch (IOException e) {
+                        received.release();
+                        throw new CompletionException(e);
+                    }
+                });
+    }
+
+    /**
+     * Bloques de una respuesta /getBlocks. Con HTTP son vistas sobre un buffer de pool, válidas
+     * hasta {@link #close()}, que lo devuelve.
+     */
+    public static final class BlockViews implements AutoCloseable {
+        private final Map<String, ByteBuffer> blocks;
+        private final PooledBuffer buffer;
+
+        BlockViews(Map<String, ByteBuffer> blocks, PooledBuffer buffer) {
+            this.blocks = blocks;
+            this.buffer = buffer;
+        }
+
+        /**
+         * @return blockId → vista de solo lectura del bloque
+         */
+        public Map<String, ByteBuffer> blocks() {
+            return blocks;
+        }
+
+        @Override
+        public void close() {
+            if (buffer != null) {
+                buffer.release();
+            }
+        }
+    }
+
+    /**
+     * Elimina un bloque de un nodo (DELETE /deleteBlock).
+     * @return futuro con el código HTTP de la respuesta
+     */
+    public CompletableFuture<Integer> deleteBlockAsync(String endpoint, String blockId) {
+        BinaryNodeConnection conn = binaryConnection(endpoint);
+        if (conn != null) {
+            return conn.send(BlockProtocol.OP_DELETE, blockId, null)
+                    .orTimeout(requestTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .thenApply(resp -> resp.status == BlockProtocol.STATUS_OK ? 200
+                            : resp.status == BlockProtocol.STATUS_NOT_FOUND ? 404 : 500);
+        }
+        HttpRequest request = request(endpoint + "/deleteBlock?blockId=" + blockId).DELETE().build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(HttpResponse::statusCode);
+    }
+
+    /**
+     * Elimina varios bloques de un nodo en una sola petición (POST /deleteBlocks).
+     * Con protocolo binario se envían como peticiones DELETE individuales por la misma conexión.
+     * @param blockIds a lo sumo {@link BlockBatch#MAX_BLOCKS} ids
+     * @return futuro que falla con IOException si el nodo no confirma el lote
+     */
+    public CompletableFuture<Void> deleteBlocksAsync(String endpoint, List<String> blockIds) {
+        if (binaryConnection(endpoint) != null) {
+            return CompletableFuture.allOf(blockIds.stream()
+                    .map(id -> deleteBlockAsync(endpoint, id))
+                    .toArray(CompletableFuture[]::new));
+        }
+        byte[] body;
+        try {
+            body = BlockBatch.encodeIds(blockIds);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HttpRequest request = request(endpoint + "/deleteBlocks")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(resp -> {
+                    if (resp.statusCode() != 200) {
+                        throw new CompletionException(statusError(resp, endpoint));
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Descarga un bloque de forma síncrona.
+     * @throws IOException si el nodo no responde 200 o excede el tiempo de espera
+     */
+    public byte[] getBlock(String endpoint, String blockId) throws IOException {
+        if (binaryConnection(endpoint) != null) {
+            return await(getBlockAsync(endpoint, blockId));
+        }
+        HttpRequest request = request(endpoint + "/getBlock?blockId=" + blockId).GET().build();
+        HttpResponse<byte[]> resp = send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (resp.statusCode() != 200) {
+            throw statusError(resp, endpoint);
+        }
+        return resp.body();
+    }
+
+    /**
+     * Abre el inventario de bloques de un nodo (GET /blockInventory) en el formato de {@link BlockInventory}.
+     * La respuesta se lee a medida que llega; solo el tiempo hasta recibir los encabezados
+     * está limitado por timeoutMs.
+     * @param withChecksums true para que el nodo calcule el checksum de cada bloque (los lee todos)
+     * @return flujo ya descomprimido; quien llama debe cerrarlo
+     * @throws IOException si el nodo no responde 200
+     */
+    public InputStream openBlockInventory(String endpoint, int timeoutMs, boolean withChecksums) throws IOException {
+        String url = endpoint + "/blockInventory" + (withChecksums ? "?checksums=true" : "");
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .GET()
+                .build();
+        HttpResponse<InputStream> resp = send(request, HttpResponse.BodyHandlers.ofInputStream());
+        if (resp.statusCode() != 200) {
+            resp.body().close();
+            throw statusError(resp, endpoint);
+        }
+        return new GZIPInputStream(resp.body(), 64 * 1024);
+    }
+
+    /**
+     * GET asíncrono con plazo estricto: el futuro falla con TimeoutException si la respuesta completa
+     * no llega en timeoutMs, aunque el nodo acepte la conexión y luego no conteste.
+     * @param url       URL completa
+     * @param timeoutMs tiempo máximo para toda la petición
+     */
+    public CompletableFuture<HttpResponse<String>> getStringAsync(String url, int timeoutMs) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .GET()
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return conexión binaria abierta con el nodo, o null si no la anuncia o no se pudo conectar
+     */
+    private BinaryNodeConnection binaryConnection(String endpoint) {
+        Integer port = binaryPorts.get(endpoint);
+        if (port == null) {
+            return null;
+        }
+        BinaryNodeConnection conn = binaryConnections.get(endpoint);
+        if (conn != null && conn.isOpen()) {
+            return conn;
+        }
+        synchronized (binaryConnections) {
+            conn = binaryConnections.get(endpoint);
+            if (conn != null && conn.isOpen()) {
+                return conn;
+            }
+            try {
+                String host = URI.create(endpoint).getHost();
+                conn = new BinaryNodeConnection(new InetSocketAddress(host, port), connectTimeoutMs);
+                binaryConnections.put(endpoint, conn);
+                logger.info("Conexión binaria abierta con " + endpoint + " (puerto " + port + ")");
+                return conn;
+            } catch (IOException e) {
+                logger.warning("Protocolo binario no disponible en " + endpoint + ", usando HTTP: " + e.getMessage());
+                binaryConnections.remove(endpoint);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Envía una petición binaria y convierte un estado distinto de OK en IOException.
+     */
+    private CompletableFuture<BinaryNodeConnection.Response> sendBinary(BinaryNodeConnection conn, String endpoint,
+                                                                        byte opcode, String blockId, ByteBuffer payload) {
+        return conn.send(opcode, blockId, payload)
+                .orTimeout(requestTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(resp -> {
+                    if (resp.status != BlockProtocol.STATUS_OK) {
+                        throw new CompletionException(new IOException(
+                                BlockProtocol.statusName(resp.status) + " desde " + endpoint));
+                    }
+                    return resp;
+                });
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Petición interrumpida");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Cuerpo HTTP que publica en orden los bytes restantes de cada buffer, sin copiarlos a un
+     * arreglo nuevo ni mover su posición. Cada suscripción (p. ej. un reintento) parte de cero.
+     */
+    private static HttpRequest.BodyPublisher ofBuffers(List<ByteBuffer> buffers) {
+        long length = 0;
+        for (ByteBuffer b : buffers) {
+            length += b.remaining();
+        }
+        Flow.Publisher<ByteBuffer> publisher = subscriber -> {
+            Iterator<ByteBuffer> body = buffers.stream().map(ByteBuffer::duplicate).iterator();
+            subscriber.onSubscribe(new Flow.Subscription() {
+                private long demand;
+                private boolean emitting;
+                private boolean done;
+
+                @Override
+                public void request(long n) {
+                    synchronized (this) {
+                        if (done) {
+                            return;
+                        }
+                        if (n <= 0) {
+                            done = true;
+                        } else {
+                            demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                            // Un request() desde onNext solo suma demanda; la emite el bucle en curso
+                            if (emitting) {
+                                return;
+                            }
+                            emitting = true;
+                        }
+                    }
+                    if (n <= 0) {
+                        subscriber.onError(new IllegalArgumentException("Demanda no positiva: " + n));
+                        return;
+                    }
+                    while (true) {
+                        ByteBuffer next;
+                        synchronized (this) {
+                            if (done || demand == 0) {
+                                emitting = false;
+                                return;
+                            }
+                            if (!body.hasNext()) {
+                                done = true;
+                                break;
+                            }
+                            demand--;
+                            next = body.next();
+                        }
+                        subscriber.onNext(next);
+                    }
+                    subscriber.onComplete();
+                }
+
+                @Override
+                public synchronized void cancel() {
+                    done = true;
+                }
+            });
+        };
+        return HttpRequest.BodyPublishers.fromPublisher(publisher, length);
+    }
+
+    /**
+     * Recibe el cuerpo de una respuesta directamente en un buffer del pool. Si no alcanza se pasa
+     * a uno del doble de tamaño (a medida si excede el del pool) y se devuelve el anterior.
+     */
+    private static final class PooledBodySubscriber implements HttpResponse.BodySubscriber<PooledBuffer> {
+        private final BufferPool pool;
+        private final CompletableFuture<PooledBuffer> result = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+        private PooledBuffer target;
+
+        PooledBodySubscriber(BufferPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public CompletionStage<PooledBuffer> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            target = pool.acquire();
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            for (ByteBuffer item : items) {
+                ensureRoom(item.remaining());
+                target.buffer().put(item);
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            if (target != null) {
+                target.release();
+                target = null;
+            }
+            result.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            target.buffer().flip();
+            result.complete(target);
+        }
+
+        private void ensureRoom(int bytes) {
+            ByteBuffer current = target.buffer();
+            if (current.remaining() >= bytes) {
+                return;
+            }
+            long wanted = Math.max(2L * current.capacity(), (long) current.position() + bytes);
+            PooledBuffer bigger = pool.acquire((int) Math.min(wanted, Integer.MAX_VALUE - 8));
+            bigger.buffer().put(current.flip());
+            target.release();
+            target = bigger;
+        }
+    }
+
+    private HttpRequest.Builder request(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).timeout(requestTimeout);
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return client.send(request, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Petición interrumpida: " + request.uri());
+        }
+    }
+
+    private static IOException statusError(HttpResponse<?> resp, String endpoint) {
+        return new IOException("HTTP " + resp.statusCode() + " desde " + endpoint);
+    }
+}
@@ -1,15 +1,16 @@
 package com.tecmfs.controller;
 
 import com.tecmfs.disknode.config.DiskNodeConfig;
-import java.net.HttpURLConnection;
-import java.io.IOException;
-import java.net.URL;
+import java.net.http.HttpResponse;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -24,6 +25,17 @@ public class NodeMonitor {
 
     // Para guardar el estado resumido en MetadataManager
     private final MetadataManager metadataManager;
+    // Cliente HTTP compartido con conexiones persistentes
+    private final NodeClient nodeClient;
+
+    // Plazo de cada petición de sondeo, desde el envío hasta recibir la respuesta completa
+    private static final int PROBE_TIMEOUT_MS = 2000;
+    private static final int PROBE_GRACE_MS = 500;
+
+    // Patterns para extraer blockSize, capacityBytes y binaryPort de /nodeStatus
+    private static final Pattern BLOCK_SIZE = Pattern.compile("\"blockSize\"\\s*:\\s*(\\d+)");
+    private static final Pattern CAPACITY = Pattern.compile("\"capacityBytes\"\\s*:\\s*(\\d+)");
+    private static final Pattern BINARY_PORT = Pattern.compile("\"binaryPort\"\\s*:\\s*(\\d+)");
 
     // Parámetros esperados (del primer nodo)
     private final int expectedBlockSize;
@@ -35,8 +47,10 @@ public class NodeMonitor {
      * @param xmlPath         ruta a disknodes.xml
      * @param intervalSeconds frecuencia de chequeo en segundos
      * @param mm              instancia de MetadataManager donde se guardarán los estados
+     * @param nodeClient      cliente HTTP usado para consultar los nodos
      */
-    public NodeMonitor(String xmlPath, long intervalSeconds, MetadataManager mm) throws Exception {
+    public NodeMonitor(String xmlPath, long intervalSeconds, MetadataManager mm, NodeClient nodeClient)
+            throws Exception {
         this.nodeConfigs = DiskNodeConfig.loadAllFromFile(xmlPath);
         if (nodeConfigs.isEmpty()) {
             throw new IllegalStateException("No se encontraron configuraciones de Disk Nodes en " + xmlPath);
@@ -45,6 +59,7 @@ public class NodeMonitor {
         this.intervalSeconds = intervalSeconds;
         this.executor = Executors.newSingleThreadScheduledExecutor();
         this.metadataManager = mm;
+        this.nodeClient = nodeClient;
 
         // Tomamos como referencia el primer nodo
         DiskNodeConfig ref = nodeConfigs.get(0);
@@ -66,85 +81,106 @@ public class NodeMonitor {
         logger.info("NodeMonitor detenido");
     }
 
-    /** Ejecuta un ciclo de chequeo de todos los nodos */
+    /**
+     * Ejecuta un ciclo de chequeo de todos los nodos.
+     * Los sondeos salen a la vez y cada nodo se marca disponible o no apenas llega su resultado,
+     * así que un nodo colgado solo retrasa su propio estado y el ciclo dura a lo sumo un plazo
+     * de sondeo (más el del estado detallado de los nodos sanos).
+     */
     private void checkNodes() {
-        Set<String> goodSummaries = new HashSet<>();
+        List<CompletableFuture<Void>> probes = new ArrayList<>(nodeConfigs.size());
+        for (DiskNodeConfig cfg : nodeConfigs) {
+            probes.add(probe(String.format("http://%s:%d", cfg.getIp(), cfg.getPort())));
+        }
+        try {
+            CompletableFuture.allOf(probes.toArray(new CompletableFuture<?>[0]))
+                    .get(2L * PROBE_TIMEOUT_MS + PROBE_GRACE_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException | TimeoutException e) {
+            // Cada sondeo ya registró su propio error
+        }
+        logger.info("Nodos disponibles: " + availableNodes);
+    }
 
-        // Patterns para extraer blockSize y capacityBytes de /nodeStatus
-        Pattern patBS = Pattern.compile("\"blockSize\"\\s*:\\s*(\\d+)");
-        Pattern patCap = Pattern.compile("\"capacityBytes\"\\s*:\\s*(\\d+)");
+    /**
+     * Sondea /nodeStatus de un nodo y, si está sano, pide su estado detallado.
+     * @return futuro que termina cuando el nodo quedó actualizado; nunca falla
+     */
+    private CompletableFuture<Void> probe(String base) {
+        String summaryUrl = base + "/nodeStatus";
+        return nodeClient.getStringAsync(summaryUrl, PROBE_TIMEOUT_MS)
+                .handle((resp, ex) -> {
+                    if (ex != null) {
+                        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                        logger.warning("Error contactando a " + summaryUrl + ": " + cause);
+                        return false;
+                    }
+                    return isHealthy(summaryUrl, base, resp);
+                })
+                .thenCompose(healthy -> {
+                    setAvailable(base, summaryUrl, healthy);
+                    return healthy ? fetchDetailedStatus(base, summaryUrl) : CompletableFuture.completedFuture(null);
+                });
+    }
 
-        for (DiskNodeConfig cfg : nodeConfigs) {
-            String base = String.format("http://%s:%d", cfg.getIp(), cfg.getPort());
-            String summaryUrl = base + "/nodeStatus";
-
-            try {
-                var conn = (HttpURLConnection) new URL(summaryUrl).openConnection();
-                conn.setRequestMethod("GET");
-                conn.setConnectTimeout(2000);
-                if (conn.getResponseCode() != 200) {
-                    logger.warning("No responde 200 en /nodeStatus: " + summaryUrl);
-                    conn.disconnect();
-                    metadataManager.updateNodeStatus(summaryUrl, false);
-                    continue;
-                }
-
-                String body;
-                try (var is = conn.getInputStream()) {
-                    body = new String(is.readAllBytes());
-                }
-                conn.disconnect();
-
-                Matcher mBS = patBS.matcher(body);
-                Matcher mCap = patCap.matcher(body);
-                if (!mBS.find() || !mCap.find()) {
-                    logger.warning("JSON inesperado en /nodeStatus de " + summaryUrl);
-                    metadataManager.updateNodeStatus(summaryUrl, false);
-                    continue;
-                }
-
-                int bs = Integer.parseInt(mBS.group(1));
-                long cap = Long.parseLong(mCap.group(1));
-                if (bs != expectedBlockSize || cap != expectedCapacity) {
-                    logger.warning("Config difiere en " + summaryUrl + " (bs=" + bs + ", cap=" + cap + ")");
-                    metadataManager.updateNodeStatus(summaryUrl, false);
-                    continue;
-                }
-
-                // Nodo OK: actualizo summary en MetadataManager
-                metadataManager.updateNodeStatus(summaryUrl, true);
-                goodSummaries.add(base);
-
-                // Ahora solicito el estado detallado
-                String detailUrl = base + "/detailedNodeStatus";
-                try {
-                    var c2 = (HttpURLConnection) new URL(detailUrl).openConnection();
-                    c2.setRequestMethod("GET");
-                    c2.setConnectTimeout(2000);
-                    if (c2.getResponseCode() == 200) {
-                        String detailJson;
-                        try (var is2 = c2.getInputStream()) {
-                            detailJson = new String(is2.readAllBytes());
-                        }
-                        metadataManager.updateDetailedNodeStatus(summaryUrl, detailJson);
+    /**
+     * @return true si el nodo respondió 200 con la configuración esperada; registra su puerto binario
+     */
+    private boolean isHealthy(String summaryUrl, String base, HttpResponse<String> resp) {
+        if (resp.statusCode() != 200) {
+            logger.warning("No responde 200 en /nodeStatus: " + summaryUrl);
+            return false;
+        }
+        String body = resp.body();
+
+        Matcher mBS = BLOCK_SIZE.matcher(body);
+        Matcher mCap = CAPACITY.matcher(body);
+        if (!mBS.find() || !mCap.find()) {
+            logger.warning("JSON inesperado en /nodeStatus de " + summaryUrl);
+            return false;
+        }
+
+        int bs = Integer.parseInt(mBS.group(1));
+        long cap = Long.parseLong(mCap.group(1));
+        if (bs != expectedBlockSize || cap != expectedCapacity) {
+            logger.warning("Config difiere en " + summaryUrl + " (bs=" + bs + ", cap=" + cap + ")");
+            return false;
+        }
+
+        // Protocolo binario anunciado por el nodo (opcional)
+        Matcher mBin = BINARY_PORT.matcher(body);
+        nodeClient.setBinaryPort(base, mBin.find() ? Integer.parseInt(mBin.group(1)) : 0);
+        return true;
+    }
+
+    /**
+     * Actualiza el estado de un solo nodo; los demás no se tocan.
+     */
+    private void setAvailable(String base, String summaryUrl, boolean healthy) {
+        metadataManager.updateNodeStatus(summaryUrl, healthy);
+        if (healthy) {
+            availableNodes.add(base);
+        } else {
+            availableNodes.remove(base);
+        }
+    }
+
+    private CompletableFuture<Void> fetchDetailedStatus(String base, String summaryUrl) {
+        String detailUrl = base + "/detailedNodeStatus";
+        return nodeClient.getStringAsync(detailUrl, PROBE_TIMEOUT_MS)
+                .handle((detail, ex) -> {
+                    if (ex != null) {
+                        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                        logger.warning("Error en detallado de " + detailUrl + ": " + cause);
+                    } else if (detail.statusCode() == 200) {
+                        metadataManager.updateDetailedNodeStatus(summaryUrl, detail.body());
                     } else {
                         logger.warning("No responde 200 en /detailedNodeStatus: " + detailUrl);
                     }
-                    c2.disconnect();
-                } catch (IOException e) {
-                    logger.warning("Error en detallado de " + detailUrl + ": " + e.getMessage());
-                }
-
-            } catch (IOException e) {
-                logger.warning("Error contactando a " + summaryUrl + ": " + e.getMessage());
-                metadataManager.updateNodeStatus(summaryUrl, false);
-            }
-        }
-
-        // Actualizo la lista interna
-        availableNodes.clear();
-        availableNodes.addAll(goodSummaries);
-        logger.info("Nodos disponibles: " + availableNodes);
+                    return null;
+                });
     }
 
     /** Devuelve la lista de endpoints de nodeStatus que están activos */
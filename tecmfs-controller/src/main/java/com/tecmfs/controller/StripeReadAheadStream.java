@@ -0,0 +1,150 @@
+package com.tecmfs.controller;
+
+import com.tecmfs.common.util.PooledBuffer;
+import com.tecmfs.controller.models.StripeDescriptor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * InputStream que produce el contenido de un archivo por grupos de stripes consecutivos y en orden.
+ * Mantiene una ventana de lectura anticipada: hasta readAhead grupos se descargan
+ * en paralelo mientras el consumidor lee el grupo actual, de modo que solo esos
+ * grupos ocupan memoria y el primer byte sale apenas llega el primer grupo.
+ * Cada grupo llega en un buffer del pool que se libera al terminar de leerlo o al cerrar el stream.
+ */
+class StripeReadAheadStream extends InputStream {
+
+    /**
+     * Obtiene los bytes de datos de un grupo de stripes (sin paridad), concatenados en orden
+     * entre la posición y el límite del buffer devuelto. El stream toma su referencia.
+     */
+    @FunctionalInterface
+    interface StripeFetcher {
+        PooledBuffer fetch(List<StripeDescriptor> group) throws IOException;
+    }
+
+    private final Iterator<List<StripeDescriptor>> groups;
+    private final StripeFetcher fetcher;
+    private final Executor executor;
+    private final int readAhead;
+    private final Deque<CompletableFuture<PooledBuffer>> window = new ArrayDeque<>();
+
+    private PooledBuffer current;
+    private boolean closed;
+
+    StripeReadAheadStream(List<List<StripeDescriptor>> groups, StripeFetcher fetcher, Executor executor, int readAhead) {
+        this.groups = groups.iterator();
+        this.fetcher = fetcher;
+        this.executor = executor;
+        this.readAhead = Math.max(1, readAhead);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) {
+            return -1;
+        }
+        return current.buffer().get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureData()) {
+            return -1;
+        }
+        ByteBuffer data = current.buffer();
+        int n = Math.min(len, data.remaining());
+        data.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.buffer().remaining();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (CompletableFuture<PooledBuffer> pending : window) {
+            // Si ya terminó, su buffer vuelve al pool; si no, el resultado se descarta
+            pending.thenAccept(PooledBuffer::release);
+            pending.cancel(true);
+        }
+        window.clear();
+        releaseCurrent();
+    }
+
+    /**
+     * Avanza al siguiente grupo si el actual se consumió.
+     * @return false si no quedan más datos
+     */
+    private boolean ensureData() throws IOException {
+        if (closed) {
+            throw new IOException("Stream cerrado");
+        }
+        while (current == null || !current.buffer().hasRemaining()) {
+            releaseCurrent();
+            fillWindow();
+            CompletableFuture<PooledBuffer> next = window.pollFirst();
+            if (next == null) {
+                return false;
+            }
+            current = await(next);
+        }
+        return true;
+    }
+
+    private void releaseCurrent() {
+        if (current != null) {
+            current.release();
+            current = null;
+        }
+    }
+
+    /** Lanza descargas hasta completar la ventana de lectura anticipada. */
+    private void fillWindow() {
+        while (window.size() < readAhead && groups.hasNext()) {
+            List<StripeDescriptor> group = groups.next();
+            window.addLast(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return fetcher.fetch(group);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+    }
+
+    private PooledBuffer await(CompletableFuture<PooledBuffer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new InterruptedIOException("Lectura interrumpida");
+        } catch (ExecutionException | CancellationException e) {
+            close();
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Error leyendo stripe: " + cause.getMessage(), cause);
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.tecmfs.controller.config;
 
+import com.tecmfs.common.models.RaidLevel;
+import com.tecmfs.common.models.StripeLayout;
+import com.tecmfs.common.models.Stripe;
+import com.tecmfs.common.util.ServerExecution;
 import org.w3c.dom.*;
 import javax.xml.parsers.*;
 import org.xml.sax.SAXException;
@@ -7,6 +11,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -19,12 +24,53 @@ public class ControllerConfig {
     private final int blockSize;
     private final int monitorInterval;
     private final List<String> diskNodeEndpoints;
+    private final int maxInFlightStripes;   // Stripes en vuelo durante una subida
+    private final int maxInFlightPerNode;   // Peticiones de escritura simultáneas por nodo
+    private final int readAheadStripes;     // Stripes descargados por adelantado en una lectura
+    private final int batchStripes;         // Stripes agrupados en una petición por nodo
+    private final int stripeWidth;          // Bloques por stripe; 0 = todos los nodos activos
+    private final RaidLevel raidLevel;      // Nivel por defecto de los archivos nuevos
+    private final StripeLayout layout;      // Disposición Reed-Solomon por defecto; null = usar raidLevel
+    private final int readTimeoutMs;        // Tiempo máximo para leer un bloque de un nodo
+    private final int connectTimeoutMs;     // Tiempo máximo para conectar con un nodo
+    private final int httpPoolSize;         // Conexiones inactivas conservadas hacia los nodos
+    private final int keepAliveSeconds;     // Vida de una conexión inactiva en el pool
+    private final String executorMode;      // "virtual" o "platform"
+    private final int platformThreads;      // Tamaño del pool en modo platform
+    private final Map<String, Integer> endpointLimits; // Peticiones simultáneas por ruta
+    private final String metadataDir;       // Directorio del WAL y snapshots; vacío = solo en memoria
+    private final int snapshotIntervalSeconds; // Período entre snapshots de metadatos
+    private final boolean recoverFromNodes; // Reconstruir metadatos con el inventario de los nodos al arrancar
+    private final boolean recoverChecksums; // Pedir a los nodos el checksum de cada bloque al recuperar
 
-    private ControllerConfig(int port, int blockSize, int monitorInterval, List<String> diskNodeEndpoints) {
+    private ControllerConfig(int port, int blockSize, int monitorInterval, List<String> diskNodeEndpoints,
+                             int maxInFlightStripes, int maxInFlightPerNode, int readAheadStripes,
+                             int batchStripes, int stripeWidth, RaidLevel raidLevel, StripeLayout layout, int readTimeoutMs, int connectTimeoutMs, int httpPoolSize, int keepAliveSeconds,
+                             String executorMode, int platformThreads, Map<String, Integer> endpointLimits,
+                             String metadataDir, int snapshotIntervalSeconds, boolean recoverFromNodes,
+                             boolean recoverChecksums) {
         this.port = port;
         this.blockSize = blockSize;
         this.monitorInterval = monitorInterval;
         this.diskNodeEndpoints = diskNodeEndpoints;
+        this.maxInFlightStripes = maxInFlightStripes;
+        this.maxInFlightPerNode = maxInFlightPerNode;
+        this.readAheadStripes = readAheadStripes;
+        this.batchStripes = batchStripes;
+        this.stripeWidth = stripeWidth;
+        this.raidLevel = raidLevel;
+        this.layout = layout;
+        this.readTimeoutMs = readTimeoutMs;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.httpPoolSize = httpPoolSize;
+        this.keepAliveSeconds = keepAliveSeconds;
+        this.executorMode = executorMode;
+        this.platformThreads = platformThreads;
+        this.endpointLimits = endpointLimits;
+        this.metadataDir = metadataDir;
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+        this.recoverFromNodes = recoverFromNodes;
+        this.recoverChecksums = recoverChecksums;
     }
 
     /**
@@ -34,6 +80,26 @@ public class ControllerConfig {
      *   <port>...</port>
      *   <blockSize>...</blockSize>
      *   <monitorInterval>...</monitorInterval>
+     *   <maxInFlightStripes>...</maxInFlightStripes>   (opcional)
+     *   <maxInFlightPerNode>...</maxInFlightPerNode>   (opcional)
+     *   <readAheadStripes>...</readAheadStripes>       (opcional)
+     *   <batchStripes>...</batchStripes>               (opcional)
+     *   <stripeWidth>...</stripeWidth>                 (opcional, 3 a 16; 0 = todos los nodos activos)
+     *   <raidLevel>5|6</raidLevel>                     (opcional, por defecto 5)
+     *   <layout>k+m</layout>                           (opcional, Reed-Solomon; si está, reemplaza a raidLevel)
+     *   <readTimeoutMs>...</readTimeoutMs>             (opcional)
+     *   <connectTimeoutMs>...</connectTimeoutMs>       (opcional)
+     *   <httpPoolSize>...</httpPoolSize>               (opcional)
+     *   <keepAliveSeconds>...</keepAliveSeconds>       (opcional)
+     *   <executorMode>virtual|platform</executorMode>  (opcional)
+     *   <platformThreads>...</platformThreads>         (opcional)
+     *   <endpointLimits>                               (opcional)
+     *     <limit path="/uploadFile">...</limit>
+     *   </endpointLimits>
+     *   <metadataDir>...</metadataDir>                 (opcional, por defecto "metadata"; vacío = solo en memoria)
+     *   <snapshotIntervalSeconds>...</snapshotIntervalSeconds> (opcional, 0 = sin snapshots periódicos)
+     *   <recoverFromNodes>true|false</recoverFromNodes> (opcional, por defecto false)
+     *   <recoverChecksums>true|false</recoverChecksums> (opcional, por defecto false)
      *   <diskNodes>
      *     <node>http://...</node>
      *     ...
@@ -72,6 +138,99 @@ public class ControllerConfig {
             throw new IllegalArgumentException("monitorInterval debe ser positivo");
         }
 
+        int maxInFlightStripes = getOptionalInt(root, "maxInFlightStripes", 4);
+        if (maxInFlightStripes <= 0) {
+            throw new IllegalArgumentException("maxInFlightStripes debe ser positivo");
+        }
+        int maxInFlightPerNode = getOptionalInt(root, "maxInFlightPerNode", 4);
+        if (maxInFlightPerNode <= 0) {
+            throw new IllegalArgumentException("maxInFlightPerNode debe ser positivo");
+        }
+        int readAheadStripes = getOptionalInt(root, "readAheadStripes", 4);
+        if (readAheadStripes <= 0) {
+            throw new IllegalArgumentException("readAheadStripes debe ser positivo");
+        }
+        int batchStripes = getOptionalInt(root, "batchStripes", 1);
+        if (batchStripes <= 0) {
+            throw new IllegalArgumentException("batchStripes debe ser positivo");
+        }
+        // Un lote se envía cuando está completo, así que debe caber entre los stripes en vuelo
+        if (batchStripes > maxInFlightStripes) {
+            throw new IllegalArgumentException("batchStripes no puede superar maxInFlightStripes");
+        }
+        int stripeWidth = getOptionalInt(root, "stripeWidth", 0);
+        if (stripeWidth != 0 && !Stripe.isValidWidth(stripeWidth)) {
+            throw new IllegalArgumentException("stripeWidth debe ser 0 o estar entre "
+                    + Stripe.MIN_TOTAL_BLOCKS + " y " + Stripe.MAX_TOTAL_BLOCKS);
+        }
+        RaidLevel raidLevel = RaidLevel.RAID5;
+        NodeList raidList = root.getElementsByTagName("raidLevel");
+        if (raidList.getLength() > 0) {
+            try {
+                raidLevel = RaidLevel.fromString(raidList.item(0).getTextContent());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("raidLevel debe ser 5 o 6");
+            }
+        }
+        if (stripeWidth != 0 && stripeWidth < raidLevel.getMinWidth()) {
+            throw new IllegalArgumentException("stripeWidth debe ser al menos " + raidLevel.getMinWidth()
+                    + " para " + raidLevel);
+        }
+        StripeLayout layout = null;
+        NodeList layoutList = root.getElementsByTagName("layout");
+        if (layoutList.getLength() > 0 && !layoutList.item(0).getTextContent().isBlank()) {
+            layout = StripeLayout.parse(layoutList.item(0).getTextContent());
+        }
+        int readTimeoutMs = getOptionalInt(root, "readTimeoutMs", 5000);
+        if (readTimeoutMs <= 0) {
+            throw new IllegalArgumentException("readTimeoutMs debe ser positivo");
+        }
+        int connectTimeoutMs = getOptionalInt(root, "connectTimeoutMs", 2000);
+        if (connectTimeoutMs <= 0) {
+            throw new IllegalArgumentException("connectTimeoutMs debe ser positivo");
+        }
+        int httpPoolSize = getOptionalInt(root, "httpPoolSize", 64);
+        if (httpPoolSize <= 0) {
+            throw new IllegalArgumentException("httpPoolSize debe ser positivo");
+        }
+        int keepAliveSeconds = getOptionalInt(root, "keepAliveSeconds", 60);
+        if (keepAliveSeconds <= 0) {
+            throw new IllegalArgumentException("keepAliveSeconds debe ser positivo");
+        }
+
+        String executorMode = ServerExecution.MODE_VIRTUAL;
+        NodeList modeList = root.getElementsByTagName("executorMode");
+        if (modeList.getLength() > 0) {
+            executorMode = modeList.item(0).getTextContent().trim();
+            if (!ServerExecution.isValidMode(executorMode)) {
+                throw new IllegalArgumentException("executorMode debe ser virtual o platform");
+            }
+        }
+        int platformThreads = getOptionalInt(root, "platformThreads", ServerExecution.DEFAULT_PLATFORM_THREADS);
+        if (platformThreads <= 0) {
+            throw new IllegalArgumentException("platformThreads debe ser positivo");
+        }
+        Map<String, Integer> endpointLimits = ServerExecution.readEndpointLimits(root);
+        String metadataDir = "metadata";
+        NodeList metadataList = root.getElementsByTagName("metadataDir");
+        if (metadataList.getLength() > 0) {
+            metadataDir = metadataList.item(0).getTextContent().trim();
+        }
+        int snapshotIntervalSeconds = getOptionalInt(root, "snapshotIntervalSeconds", 300);
+        if (snapshotIntervalSeconds < 0) {
+            throw new IllegalArgumentException("snapshotIntervalSeconds no puede ser negativo");
+        }
+        boolean recoverFromNodes = false;
+        NodeList recoverList = root.getElementsByTagName("recoverFromNodes");
+        if (recoverList.getLength() > 0) {
+            recoverFromNodes = Boolean.parseBoolean(recoverList.item(0).getTextContent().trim());
+        }
+        boolean recoverChecksums = false;
+        NodeList checksumsList = root.getElementsByTagName("recoverChecksums");
+        if (checksumsList.getLength() > 0) {
+            recoverChecksums = Boolean.parseBoolean(checksumsList.item(0).getTextContent().trim());
+        }
+
         // Leer endpoints de diskNodes
         List<String> endpoints = new ArrayList<>();
         NodeList nodesList = root.getElementsByTagName("diskNodes");
@@ -89,10 +248,27 @@ public class ControllerConfig {
         if (endpoints.isEmpty()) {
             throw new IllegalArgumentException("Debe especificar al menos un disk node en <diskNodes>");
         }
+        if (layout != null && layout.getWidth() > endpoints.size()) {
+            throw new IllegalArgumentException("layout " + layout + " requiere " + layout.getWidth()
+                    + " disk nodes y hay " + endpoints.size());
+        }
 
-        ControllerConfig cfg = new ControllerConfig(port, blockSize, monitorInterval, endpoints);
-        logger.info(String.format("ControllerConfig cargado: port=%d, blockSize=%d, monitorInterval=%d, nodes=%s",
-                cfg.port, cfg.blockSize, cfg.monitorInterval, cfg.diskNodeEndpoints));
+        ControllerConfig cfg = new ControllerConfig(port, blockSize, monitorInterval, endpoints,
+                maxInFlightStripes, maxInFlightPerNode, readAheadStripes, batchStripes, stripeWidth, raidLevel, layout, readTimeoutMs,
+                connectTimeoutMs, httpPoolSize, keepAliveSeconds, executorMode, platformThreads, endpointLimits,
+                metadataDir, snapshotIntervalSeconds, recoverFromNodes, recoverChecksums);
+        logger.info(String.format("ControllerConfig cargado: port=%d, blockSize=%d, monitorInterval=%d, "
+                        + "maxInFlightStripes=%d, maxInFlightPerNode=%d, readAheadStripes=%d, batchStripes=%d, "
+                        + "stripeWidth=%d, raidLevel=%s, layout=%s, "
+                        + "readTimeoutMs=%d, "
+                        + "connectTimeoutMs=%d, httpPoolSize=%d, keepAliveSeconds=%d, executorMode=%s, "
+                        + "platformThreads=%d, endpointLimits=%s, metadataDir=%s, snapshotIntervalSeconds=%d, "
+                        + "recoverFromNodes=%b, recoverChecksums=%b, nodes=%s",
+                cfg.port, cfg.blockSize, cfg.monitorInterval, cfg.maxInFlightStripes, cfg.maxInFlightPerNode,
+                cfg.readAheadStripes, cfg.batchStripes, cfg.stripeWidth, cfg.raidLevel, cfg.layout, cfg.readTimeoutMs, cfg.connectTimeoutMs, cfg.httpPoolSize,
+                cfg.keepAliveSeconds, cfg.executorMode, cfg.platformThreads, cfg.endpointLimits,
+                cfg.metadataDir, cfg.snapshotIntervalSeconds, cfg.recoverFromNodes, cfg.recoverChecksums,
+                cfg.diskNodeEndpoints));
         return cfg;
     }
 
@@ -104,6 +280,17 @@ public class ControllerConfig {
         return nl.item(0).getTextContent();
     }
 
+    /**
+     * Lee un valor entero opcional; si la etiqueta no existe devuelve el valor por defecto.
+     */
+    private static int getOptionalInt(Element parent, String tagName, int defaultValue) {
+        NodeList nl = parent.getElementsByTagName(tagName);
+        if (nl.getLength() == 0) {
+            return defaultValue;
+        }
+        return Integer.parseInt(nl.item(0).getTextContent().trim());
+    }
+
     public int getPort() {
         return port;
     }
@@ -116,7 +303,101 @@ public class ControllerConfig {
         return monitorInterval;
     }
 
+    public int getMaxInFlightStripes() {
+        return maxInFlightStripes;
+    }
+
+    public int getMaxInFlightPerNode() {
+        return maxInFlightPerNode;
+    }
+
+    public int getReadAheadStripes() {
+        return readAheadStripes;
+    }
+
+    public int getBatchStripes() {
+        return batchStripes;
+    }
+
+    /**
+     * @return bloques por stripe de los archivos nuevos, o 0 para usar todos los nodos activos
+     */
+    public int getStripeWidth() {
+        return stripeWidth;
+    }
+
+    /**
+     * @return nivel RAID de los archivos subidos sin indicar uno
+     */
+    public RaidLevel getRaidLevel() {
+        return raidLevel;
+    }
+
+    /**
+     * @return disposición Reed-Solomon de los archivos subidos sin indicar una, o null si se usa getRaidLevel()
+     */
+    public StripeLayout getLayout() {
+        return layout;
+    }
+
+    public int getReadTimeoutMs() {
+        return readTimeoutMs;
+    }
+
+    public int getConnectTimeoutMs() {
+        return connectTimeoutMs;
+    }
+
+    public int getHttpPoolSize() {
+        return httpPoolSize;
+    }
+
+    public int getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public String getExecutorMode() {
+        return executorMode;
+    }
+
+    public int getPlatformThreads() {
+        return platformThreads;
+    }
+
+    /**
+     * @return máximo de peticiones simultáneas de la ruta, o 0 si no tiene límite
+     */
+    public int getEndpointLimit(String path) {
+        return endpointLimits.getOrDefault(path, 0);
+    }
+
     public List<String> getDiskNodeEndpoints() {
         return List.copyOf(diskNodeEndpoints);
     }
+
+    /**
+     * @return directorio del WAL y los snapshots de metadatos, o vacío si viven solo en memoria
+     */
+    public String getMetadataDir() {
+        return metadataDir;
+    }
+
+    public int getSnapshotIntervalSeconds() {
+        return snapshotIntervalSeconds;
+    }
+
+    /**
+     * @return true si al arrancar se deben reconstruir los metadatos a partir de los bloques de los nodos
+     */
+    public boolean isRecoverFromNodes() {
+        return recoverFromNodes;
+    }
+
+    /**
+     * @return true si la recuperación pide el checksum de cada bloque; los nodos leen todos sus datos,
+     *         pero los archivos recuperados conservan la validación de checksum al descargarlos
+     */
+    public boolean isRecoverChecksums() {
+        return recoverChecksums;
+    }
 }
@@ -0,0 +1,296 @@
+package com.tecmfs.controller.metadata;
+
+import com.tecmfs.controller.models.StoredFile;
+import com.tecmfs.controller.models.StripeDescriptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Índice inverso de ubicaciones de bloques: qué bloques aloja cada nodo y a qué archivo,
+ * stripe y posición pertenece un blockId.
+ * <p>
+ * Todos los stripes de un archivo ponen la misma posición en el mismo nodo, así que por nodo
+ * basta guardar los pares (archivo, posición) que aloja, empaquetados en un long con el ordinal
+ * del archivo; de ellos se derivan sus bloques, uno por stripe. Recorrer los bloques de un nodo
+ * cuesta lo que esos bloques, sin revisar los metadatos de los demás.
+ * Un blockId se ubica por su nombre (&lt;fileId&gt;_stripe&lt;N&gt;&lt;sufijo&gt;), sin guardar una
+ * entrada por bloque.
+ * <p>
+ * Las altas y bajas lo actualizan de forma incremental.
+ */
+public class BlockLocationIndex {
+    private static final String STRIPE_MARK = "_stripe";
+    private static final int POSITION_BITS = 8;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> fileOrdinals = new HashMap<>();
+    private StoredFile[] files = new StoredFile[1024];
+    // Ordinales libres por bajas, para reutilizarlos
+    private int[] freeOrdinals = new int[16];
+    private int freeCount;
+    private int nextOrdinal;
+    // endpoint -> pares (ordinal de archivo, posición) que aloja
+    private final Map<String, LongSet> nodes = new HashMap<>();
+
+    /**
+     * Ubicación de un bloque.
+     */
+    public static final class Location {
+        private final StoredFile file;
+        private final int stripeIndex;
+        private final int position;
+
+        Location(StoredFile file, int stripeIndex, int position) {
+            this.file = file;
+            this.stripeIndex = stripeIndex;
+            this.position = position;
+        }
+
+        public StoredFile getFile() {
+            return file;
+        }
+
+        public int getStripeIndex() {
+            return stripeIndex;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        public StripeDescriptor getStripe() {
+            return file.getStripes().get(stripeIndex);
+        }
+
+        public String getBlockId() {
+            return getStripe().getBlockId(position);
+        }
+
+        /**
+         * @return endpoint del nodo que aloja el bloque
+         */
+        public String getEndpoint() {
+            return file.getNodeEndpoints().get(position);
+        }
+    }
+
+    /**
+     * Agrega un archivo; si el fileId ya estaba, lo reemplaza.
+     */
+    public void add(StoredFile file) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(file.getFileId());
+            int ordinal = freeCount > 0 ? freeOrdinals[--freeCount] : nextOrdinal++;
+            if (ordinal == files.length) {
+                files = Arrays.copyOf(files, ordinal * 2);
+            }
+            files[ordinal] = file;
+            fileOrdinals.put(file.getFileId(), ordinal);
+            List<String> endpoints = file.getNodeEndpoints();
+            for (int pos = 0; pos < endpoints.size(); pos++) {
+                nodes.computeIfAbsent(endpoints.get(pos), e -> new LongSet()).add(pack(ordinal, pos));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String fileId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(fileId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return ubicación del bloque, o null si no pertenece a ningún archivo registrado (huérfano)
+     */
+    public Location locate(String blockId) {
+        int mark = blockId.lastIndexOf(STRIPE_MARK);
+        if (mark <= 0) {
+            return null;
+        }
+        StoredFile file;
+        lock.readLock().lock();
+        try {
+            Integer ordinal = fileOrdinals.get(blockId.substring(0, mark));
+            if (ordinal == null) {
+                return null;
+            }
+            file = files[ordinal];
+        } finally {
+            lock.readLock().unlock();
+        }
+        int position = file.getBlockLocation(blockId);
+        if (position < 0) {
+            return null;
+        }
+        int end = blockId.indexOf('_', mark + STRIPE_MARK.length());
+        return new Location(file, Integer.parseInt(blockId.substring(mark + STRIPE_MARK.length(), end)), position);
+    }
+
+    /**
+     * Recorre los bloques que aloja un nodo, archivo por archivo y en orden de stripe.
+     * Se toma una foto de los pares del nodo y se recorre sin bloquear el índice.
+     */
+    public void forEachBlockOnNode(String endpoint, Consumer<Location> action) {
+        List<StoredFile> hostedFiles = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            LongSet hosted = nodes.get(endpoint);
+            if (hosted == null) {
+                return;
+            }
+            hosted.forEach(packed -> {
+                hostedFiles.add(files[(int) (packed >>> POSITION_BITS)]);
+                positions.add((int) (packed & ((1 << POSITION_BITS) - 1)));
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int i = 0; i < hostedFiles.size(); i++) {
+            StoredFile file = hostedFiles.get(i);
+            for (int s = 0; s < file.getStripes().size(); s++) {
+                action.accept(new Location(file, s, positions.get(i)));
+            }
+        }
+    }
+
+    /**
+     * @return cantidad de bloques que aloja un nodo
+     */
+    public long countBlocksOnNode(String endpoint) {
+        long[] count = new long[1];
+        lock.readLock().lock();
+        try {
+            LongSet hosted = nodes.get(endpoint);
+            if (hosted != null) {
+                hosted.forEach(packed -> count[0] += files[(int) (packed >>> POSITION_BITS)].getStripes().size());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return count[0];
+    }
+
+    private void removeLocked(String fileId) {
+        Integer ordinal = fileOrdinals.remove(fileId);
+        if (ordinal == null) {
+            return;
+        }
+        List<String> endpoints = files[ordinal].getNodeEndpoints();
+        for (int pos = 0; pos < endpoints.size(); pos++) {
+            LongSet hosted = nodes.get(endpoints.get(pos));
+            hosted.remove(pack(ordinal, pos));
+            if (hosted.size() == 0) {
+                nodes.remove(endpoints.get(pos));
+            }
+        }
+        files[ordinal] = null;
+        if (freeCount == freeOrdinals.length) {
+            freeOrdinals = Arrays.copyOf(freeOrdinals, freeCount * 2);
+        }
+        freeOrdinals[freeCount++] = ordinal;
+    }
+
+    private static long pack(int ordinal, int position) {
+        return ((long) ordinal << POSITION_BITS) | position;
+    }
+
+    private interface LongConsumer {
+        void accept(long value);
+    }
+
+    /**
+     * Conjunto de longs no negativos con direccionamiento abierto y sondeo lineal, sin objetos por entrada.
+     */
+    private static final class LongSet {
+        private static final long EMPTY = -1L;
+
+        private long[] table = newTable(16);
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void add(long key) {
+            if ((size + 1) * 4 > table.length * 3) {
+                resize(table.length * 2);
+            }
+            int mask = table.length - 1;
+            int i = slot(key, mask);
+            while (table[i] != EMPTY) {
+                if (table[i] == key) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = key;
+            size++;
+        }
+
+        void remove(long key) {
+            int mask = table.length - 1;
+            int i = slot(key, mask);
+            while (table[i] != key) {
+                if (table[i] == EMPTY) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = EMPTY;
+            size--;
+            // Corre hacia atrás las entradas siguientes del grupo para no dejar huecos en sus sondeos
+            for (int j = (i + 1) & mask; table[j] != EMPTY; j = (j + 1) & mask) {
+                int home = slot(table[j], mask);
+                boolean reachable = i <= j ? (home > i && home <= j) : (home > i || home <= j);
+                if (!reachable) {
+                    table[i] = table[j];
+                    table[j] = EMPTY;
+                    i = j;
+                }
+            }
+        }
+
+        void forEach(LongConsumer action) {
+            for (long key : table) {
+                if (key != EMPTY) {
+                    action.accept(key);
+                }
+            }
+        }
+
+        private void resize(int capacity) {
+            long[] old = table;
+            table = newTable(capacity);
+            size = 0;
+            for (long key : old) {
+                if (key != EMPTY) {
+                    add(key);
+                }
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        private static long[] newTable(int capacity) {
+            long[] t = new long[capacity];
+            Arrays.fill(t, EMPTY);
+            return t;
+        }
+    }
+}
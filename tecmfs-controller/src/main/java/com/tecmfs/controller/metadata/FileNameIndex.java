@@ -0,0 +1,390 @@
+package com.tecmfs.controller.metadata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Índice de nombres de archivo para las búsquedas de /listFiles, sin distinguir mayúsculas.
+ * <p>
+ * Cada archivo recibe un ordinal creciente. Los nombres se guardan ordenados (nombre + fileId)
+ * para las búsquedas exactas y por prefijo, y cada n-grama del nombre de uno, dos y tres caracteres
+ * apunta a la lista ordenada de ordinales que lo contienen. Una búsqueda por subcadena de uno o dos
+ * caracteres es la lista de ese n-grama; una más larga intersecta las listas de sus trigramas,
+ * empezando por la más corta, y confirma cada candidato con contains(). Así el costo depende de los
+ * candidatos y no de la cantidad de archivos.
+ * <p>
+ * Las altas y bajas actualizan el índice de forma incremental. Las bajas solo vacían su ordinal:
+ * las listas de n-gramas lo conservan y las búsquedas lo saltan. Cuando los vacíos superan a los
+ * archivos vivos se compactan los ordinales, conservando su orden, y se quitan los vacíos de todas
+ * las listas de una vez, para que la memoria y los recorridos dependan de los archivos vivos.
+ */
+public class FileNameIndex {
+    private static final char SEPARATOR = '\0';
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Tipo de coincidencia de una búsqueda.
+     */
+    public enum Match { EXACT, PREFIX, CONTAINS }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // nombre en minúsculas + SEPARATOR + fileId -> fileId
+    private final NavigableMap<String, String> byName = new TreeMap<>();
+    // n-grama de 1 a 3 caracteres -> ordinales de los nombres que lo contienen, incluidos los vacíos
+    private final Map<Long, Posting> grams = new HashMap<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    // Por ordinal: fileId y nombre en minúsculas; null si el archivo fue eliminado
+    private String[] fileIds = new String[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int nextOrdinal;
+
+    /**
+     * Agrega un archivo; si el fileId ya estaba, reemplaza su nombre.
+     */
+    public void add(String fileId, String fileName) {
+        String name = normalize(fileName);
+        lock.writeLock().lock();
+        try {
+            removeLocked(fileId);
+            int ordinal = nextOrdinal++;
+            if (ordinal == fileIds.length) {
+                fileIds = Arrays.copyOf(fileIds, ordinal * 2);
+                names = Arrays.copyOf(names, ordinal * 2);
+            }
+            fileIds[ordinal] = fileId;
+            names[ordinal] = name;
+            ordinals.put(fileId, ordinal);
+            byName.put(name + SEPARATOR + fileId, fileId);
+            for (int n = 1; n <= 3; n++) {
+                for (long gram : gramsOf(name, n)) {
+                    // Los ordinales crecen, así que agregar al final mantiene la lista ordenada
+                    grams.computeIfAbsent(gram, g -> new Posting()).append(ordinal);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String fileId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(fileId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return fileIds cuyo nombre coincide con text según match
+     */
+    public List<String> find(Match match, String text) {
+        switch (match) {
+            case EXACT:
+                return exact(text);
+            case PREFIX:
+                return prefix(text);
+            default:
+                return contains(text);
+        }
+    }
+
+    /**
+     * @return fileIds cuyo nombre es exactamente name
+     */
+    public List<String> exact(String name) {
+        String key = normalize(name) + SEPARATOR;
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(byName.subMap(key, true, key + Character.MAX_VALUE, false).values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return fileIds cuyo nombre empieza con prefix, ordenados por nombre
+     */
+    public List<String> prefix(String prefix) {
+        String key = normalize(prefix);
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(byName.subMap(key, true, key + Character.MAX_VALUE, false).values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return fileIds cuyo nombre contiene fragment, en orden de alta
+     */
+    public List<String> contains(String fragment) {
+        String query = normalize(fragment);
+        lock.readLock().lock();
+        try {
+            List<String> result = new ArrayList<>();
+            containsLocked(query, result::add);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Página de una búsqueda en orden de fileId: los primeros limit fileIds mayores que after.
+     * Las coincidencias exactas ya están ordenadas por fileId dentro de su nombre y se leen desde
+     * el cursor. Para prefijo y subcadena se recorren las coincidencias conservando solo las limit
+     * menores en un heap acotado, sin copiar ni ordenar las demás.
+     * @param after último fileId de la página anterior, o null para empezar desde el primero
+     */
+    public List<String> findPage(Match match, String text, String after, int limit) {
+        String query = normalize(text);
+        lock.readLock().lock();
+        try {
+            if (match == Match.EXACT) {
+                String key = query + SEPARATOR;
+                List<String> page = new ArrayList<>(Math.min(limit, INITIAL_CAPACITY));
+                for (String fileId : byName.subMap(after == null ? key : key + after, after == null,
+                        key + Character.MAX_VALUE, false).values()) {
+                    if (page.size() == limit) {
+                        break;
+                    }
+                    page.add(fileId);
+                }
+                return page;
+            }
+            PageCollector page = new PageCollector(after, limit);
+            if (match == Match.PREFIX) {
+                byName.subMap(query, true, query + Character.MAX_VALUE, false).values().forEach(page);
+            } else {
+                containsLocked(query, page);
+            }
+            return page.sorted();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Entrega a sink, en orden de alta, los fileIds cuyo nombre contiene query, ya normalizado.
+     */
+    private void containsLocked(String query, Consumer<String> sink) {
+        if (query.isEmpty()) {
+            for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+                if (fileIds[ordinal] != null) {
+                    sink.accept(fileIds[ordinal]);
+                }
+            }
+            return;
+        }
+        if (query.length() < 3) {
+            // El n-grama es el texto completo: su lista ya es el resultado
+            Posting posting = grams.get(gramsOf(query, query.length())[0]);
+            for (int i = 0; posting != null && i < posting.size; i++) {
+                if (fileIds[posting.ordinals[i]] != null) {
+                    sink.accept(fileIds[posting.ordinals[i]]);
+                }
+            }
+            return;
+        }
+
+        long[] keys = gramsOf(query, 3);
+        Posting[] postings = new Posting[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            postings[i] = grams.get(keys[i]);
+            if (postings[i] == null) {
+                return;
+            }
+        }
+        Arrays.sort(postings, (a, b) -> Integer.compare(a.size, b.size));
+        int[] candidates = Arrays.copyOf(postings[0].ordinals, postings[0].size);
+        int count = candidates.length;
+        for (int i = 1; i < postings.length && count > 0; i++) {
+            count = intersect(candidates, count, postings[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            // Los trigramas pueden coincidir en otro orden: se confirma con el nombre
+            String name = names[candidates[i]];
+            if (name != null && name.contains(query)) {
+                sink.accept(fileIds[candidates[i]]);
+            }
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(String fileId) {
+        Integer ordinal = ordinals.remove(fileId);
+        if (ordinal == null) {
+            return;
+        }
+        byName.remove(names[ordinal] + SEPARATOR + fileId);
+        // Las listas de n-gramas conservan el ordinal hasta la próxima compactación
+        fileIds[ordinal] = null;
+        names[ordinal] = null;
+        int removed = nextOrdinal - ordinals.size();
+        if (removed > INITIAL_CAPACITY && removed > ordinals.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Renumera los archivos vivos con ordinales consecutivos en el mismo orden. Como la nueva
+     * numeración conserva el orden, cada lista de n-gramas se traduce en su lugar, sin los ordinales
+     * vacíos, y sigue ordenada; las listas que quedan vacías se eliminan.
+     */
+    private void compact() {
+        int live = ordinals.size();
+        int[] renumbered = new int[nextOrdinal];
+        Arrays.fill(renumbered, -1);
+        String[] newFileIds = new String[Math.max(INITIAL_CAPACITY, live * 2)];
+        String[] newNames = new String[newFileIds.length];
+        int next = 0;
+        for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+            if (fileIds[ordinal] != null) {
+                renumbered[ordinal] = next;
+                newFileIds[next] = fileIds[ordinal];
+                newNames[next] = names[ordinal];
+                ordinals.put(fileIds[ordinal], next);
+                next++;
+            }
+        }
+        grams.values().removeIf(posting -> posting.renumber(renumbered) == 0);
+        fileIds = newFileIds;
+        names = newNames;
+        nextOrdinal = next;
+    }
+
+    /**
+     * Deja en candidates[0..n) los ordinales que también están en posting.
+     * @return cantidad resultante
+     */
+    private static int intersect(int[] candidates, int n, Posting posting) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < n && j < posting.size; i++) {
+            while (j < posting.size && posting.ordinals[j] < candidates[i]) {
+                j++;
+            }
+            if (j < posting.size && posting.ordinals[j] == candidates[i]) {
+                candidates[kept++] = candidates[i];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return n-gramas distintos de n caracteres de name, cada uno empaquetado en un long con n en
+     *         los bits altos, para que n-gramas de distinto largo no coincidan
+     */
+    private static long[] gramsOf(String name, int n) {
+        if (name.length() < n) {
+            return new long[0];
+        }
+        long[] keys = new long[name.length() - n + 1];
+        for (int i = 0; i < keys.length; i++) {
+            long key = n;
+            for (int j = 0; j < n; j++) {
+                key = (key << 16) | name.charAt(i + j);
+            }
+            keys[i] = key;
+        }
+        Arrays.sort(keys);
+        int distinct = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                keys[distinct++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, distinct);
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Conserva los limit fileIds menores mayores que after; la raíz del heap es el mayor conservado.
+     */
+    private static final class PageCollector implements Consumer<String> {
+        private final String after;
+        private final int limit;
+        private final PriorityQueue<String> heap;
+
+        PageCollector(String after, int limit) {
+            this.after = after;
+            this.limit = limit;
+            this.heap = new PriorityQueue<>(Math.min(limit, INITIAL_CAPACITY), Comparator.reverseOrder());
+        }
+
+        @Override
+        public void accept(String fileId) {
+            if (after != null && fileId.compareTo(after) <= 0) {
+                return;
+            }
+            if (heap.size() < limit) {
+                heap.add(fileId);
+            } else if (fileId.compareTo(heap.peek()) < 0) {
+                heap.poll();
+                heap.add(fileId);
+            }
+        }
+
+        List<String> sorted() {
+            List<String> page = new ArrayList<>(heap);
+            page.sort(null);
+            return page;
+        }
+    }
+
+    /**
+     * Lista ordenada de ordinales de un n-grama.
+     */
+    private static final class Posting {
+        int[] ordinals = new int[4];
+        int size;
+
+        void append(int ordinal) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+
+        /**
+         * Traduce los ordinales con renumbered y quita los que quedan en -1.
+         * @return cantidad resultante
+         */
+        int renumber(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int ordinal = renumbered[ordinals[i]];
+                if (ordinal >= 0) {
+                    ordinals[kept++] = ordinal;
+                }
+            }
+            size = kept;
+            if (ordinals.length > 4 && size < ordinals.length / 4) {
+                ordinals = Arrays.copyOf(ordinals, Math.max(4, size * 2));
+            }
+            return size;
+        }
+    }
+}
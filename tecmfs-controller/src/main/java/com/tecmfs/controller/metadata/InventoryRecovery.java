@@ -0,0 +1,466 @@
+package com.tecmfs.controller.metadata;
+
+import com.tecmfs.common.models.RaidLevel;
+import com.tecmfs.common.models.StripeLayout;
+import com.tecmfs.controller.MetadataManager;
+import com.tecmfs.controller.NodeClient;
+import com.tecmfs.controller.models.StoredFile;
+import com.tecmfs.controller.models.StripeDescriptor;
+import com.tecmfs.disknode.protocol.BlockInventory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reconstruye los metadatos de archivos a partir de los bloques que guardan los Disk Nodes,
+ * para cuando se pierden el snapshot y el WAL del Controller.
+ * <p>
+ * Se pide a todos los nodos en paralelo su inventario (/blockInventory, una petición por nodo)
+ * y cada entrada se agrupa por fileId e índice de stripe según el nombre del bloque:
+ * &lt;fileId&gt;_stripe&lt;N&gt;_d&lt;i&gt;, _p y _q (RAID 5/6) o _p&lt;j&gt; (Reed-Solomon).
+ * De los sufijos se deduce la disposición del archivo y de la rotación de la paridad,
+ * el nodo que aloja cada posición. Los bloques ausentes quedan marcados como degradados;
+ * los stripes con más bloques ausentes que paridades se informan como irrecuperables.
+ * <p>
+ * Los nodos no guardan el nombre ni el tamaño real del archivo: el nombre pasa a ser el fileId
+ * y el tamaño incluye el relleno de ceros del último stripe. Sin checksums, los bloques de los
+ * archivos recuperados quedan con {@link StripeDescriptor#UNKNOWN_CHECKSUM} y al descargarlos
+ * solo se valida su tamaño.
+ */
+public class InventoryRecovery {
+    private static final Logger logger = Logger.getLogger(InventoryRecovery.class.getName());
+
+    private static final Pattern BLOCK_ID = Pattern.compile("(.+)_stripe(\\d+)_(?:d(\\d+)|p(\\d*)|(q))");
+    private static final short NO_NODE = -1;
+
+    private final NodeClient nodeClient;
+    private final int timeoutMs;
+    private final boolean withChecksums;
+
+    /**
+     * @param timeoutMs     tiempo máximo para que cada nodo empiece a responder su inventario
+     * @param withChecksums true para pedir el checksum de cada bloque; los nodos leen todos sus datos
+     */
+    public InventoryRecovery(NodeClient nodeClient, int timeoutMs, boolean withChecksums) {
+        this.nodeClient = nodeClient;
+        this.timeoutMs = timeoutMs;
+        this.withChecksums = withChecksums;
+    }
+
+    /**
+     * Reconstruye los archivos de los nodos y registra en mm los que no conoce.
+     * @return resumen de la recuperación
+     */
+    public Result restore(MetadataManager mm, List<String> endpoints) throws IOException {
+        Result result = scan(endpoints);
+        List<StoredFile> missing = new ArrayList<>();
+        for (StoredFile file : result.getFiles()) {
+            if (mm.getStoredFile(file.getFileId()) == null) {
+                missing.add(file);
+            }
+        }
+        // En paralelo, para que el WAL agrupe las altas en pocas escrituras a disco
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<Future<?>> saves = new ArrayList<>(missing.size());
+            for (StoredFile file : missing) {
+                saves.add(executor.submit(() -> {
+                    mm.saveStoredFile(file);
+                    return null;
+                }));
+            }
+            for (Future<?> save : saves) {
+                await(save);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        logger.info(String.format("Recuperación desde nodos: %d archivos registrados de %d encontrados",
+                missing.size(), result.getFiles().size()));
+        return result;
+    }
+
+    /**
+     * Lee el inventario de todos los nodos y reconstruye los archivos, sin registrarlos.
+     * Un nodo que no responde no detiene la recuperación: sus bloques quedan como ausentes.
+     */
+    public Result scan(List<String> endpoints) throws IOException {
+        long start = System.nanoTime();
+        ConcurrentMap<String, FileScan> files = new ConcurrentHashMap<>();
+        AtomicLong blocks = new AtomicLong();
+        List<String> unreachable = Collections.synchronizedList(new ArrayList<>());
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            List<Future<?>> reads = new ArrayList<>(endpoints.size());
+            for (int i = 0; i < endpoints.size(); i++) {
+                short node = (short) i;
+                String endpoint = endpoints.get(i);
+                reads.add(executor.submit(() -> {
+                    try {
+                        blocks.addAndGet(readInventory(endpoint, node, files));
+                    } catch (IOException e) {
+                        logger.warning("No se pudo leer el inventario de " + endpoint + ": " + e.getMessage());
+                        unreachable.add(endpoint);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> read : reads) {
+                await(read);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Result result = new Result(blocks.get(), unreachable);
+        for (FileScan scan : files.values()) {
+            scan.build(endpoints, unreachable, result);
+        }
+        logger.info(String.format("Inventario de %d nodos: %d bloques, %d archivos, %d stripes degradados, "
+                        + "%d irrecuperables en %d ms", endpoints.size(), result.blocks, result.files.size(),
+                result.degradedStripes, result.unrecoverableStripes.size(), (System.nanoTime() - start) / 1_000_000));
+        return result;
+    }
+
+    /**
+     * @return cantidad de bloques leídos del nodo
+     */
+    private long readInventory(String endpoint, short node, ConcurrentMap<String, FileScan> files)
+            throws IOException {
+        long count = 0;
+        long ignored = 0;
+        try (InputStream body = nodeClient.openBlockInventory(endpoint, timeoutMs, withChecksums);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(body, 64 * 1024))) {
+            BlockInventory.Entry entry;
+            while ((entry = BlockInventory.readEntry(in)) != null) {
+                count++;
+                Matcher m = BLOCK_ID.matcher(entry.getBlockId());
+                if (!m.matches()) {
+                    ignored++;
+                    continue;
+                }
+                FileScan file = files.computeIfAbsent(m.group(1), FileScan::new);
+                int stripe = Integer.parseInt(m.group(2));
+                if (m.group(3) != null) {
+                    file.addData(stripe, Integer.parseInt(m.group(3)), node, entry);
+                } else if (m.group(5) != null) {
+                    file.addParity(stripe, 1, false, true, node, entry);
+                } else if (m.group(4).isEmpty()) {
+                    file.addParity(stripe, 0, false, false, node, entry);
+                } else {
+                    file.addParity(stripe, Integer.parseInt(m.group(4)), true, false, node, entry);
+                }
+            }
+        }
+        if (ignored > 0) {
+            logger.warning(endpoint + ": " + ignored + " bloques con nombre desconocido ignorados");
+        }
+        return count;
+    }
+
+    private static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Recuperación interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Bloques vistos de un stripe: nodo, largo y checksum de cada índice de datos y de paridad.
+     */
+    private static final class StripeScan {
+        short[] dataNodes = new short[0];
+        long[] dataChecksums = new long[0];
+        short[] parityNodes = new short[0];
+        long[] parityChecksums = new long[0];
+        int blockLength = -1;
+
+        void put(boolean parity, int index, short node, BlockInventory.Entry entry) {
+            if (blockLength < 0) {
+                blockLength = entry.getLength();
+            } else if (blockLength != entry.getLength()) {
+                // Un bloque con otro largo no puede pertenecer al stripe: se trata como ausente
+                return;
+            }
+            if (parity) {
+                if (index >= parityNodes.length) {
+                    parityNodes = grow(parityNodes, index + 1);
+                    parityChecksums = Arrays.copyOf(parityChecksums, index + 1);
+                }
+                parityNodes[index] = node;
+                parityChecksums[index] = checksumOf(entry);
+            } else {
+                if (index >= dataNodes.length) {
+                    dataNodes = grow(dataNodes, index + 1);
+                    dataChecksums = Arrays.copyOf(dataChecksums, index + 1);
+                }
+                dataNodes[index] = node;
+                dataChecksums[index] = checksumOf(entry);
+            }
+        }
+
+        private static long checksumOf(BlockInventory.Entry entry) {
+            return entry.getChecksum() == BlockInventory.UNKNOWN_CHECKSUM
+                    ? StripeDescriptor.UNKNOWN_CHECKSUM : entry.getChecksum();
+        }
+
+        private static short[] grow(short[] nodes, int length) {
+            int old = nodes.length;
+            short[] grown = Arrays.copyOf(nodes, length);
+            Arrays.fill(grown, old, length, NO_NODE);
+            return grown;
+        }
+    }
+
+    /**
+     * Bloques vistos de un archivo, agrupados por índice de stripe. Los hilos de lectura
+     * de los distintos nodos agregan entradas a la vez.
+     */
+    private static final class FileScan {
+        final String fileId;
+        final Map<Integer, StripeScan> stripes = new HashMap<>();
+        int maxStripe = -1;
+        int maxData = -1;
+        int maxParity = -1;
+        boolean raidParity;
+        boolean reedSolomonParity;
+        boolean qParity;
+
+        FileScan(String fileId) {
+            this.fileId = fileId;
+        }
+
+        synchronized void addData(int stripe, int index, short node, BlockInventory.Entry entry) {
+            maxData = Math.max(maxData, index);
+            stripe(stripe).put(false, index, node, entry);
+        }
+
+        /**
+         * @param reedSolomon true si el sufijo es _p&lt;j&gt;
+         * @param q           true si el sufijo es _q (RAID 6)
+         */
+        synchronized void addParity(int stripe, int index, boolean reedSolomon, boolean q, short node,
+                                    BlockInventory.Entry entry) {
+            maxParity = Math.max(maxParity, index);
+            raidParity |= !reedSolomon;
+            reedSolomonParity |= reedSolomon;
+            qParity |= q;
+            stripe(stripe).put(true, index, node, entry);
+        }
+
+        private StripeScan stripe(int index) {
+            maxStripe = Math.max(maxStripe, index);
+            return stripes.computeIfAbsent(index, i -> new StripeScan());
+        }
+
+        /**
+         * @return la disposición que indican los sufijos vistos, o null si son contradictorios
+         */
+        private StripeLayout layout() {
+            int k = maxData + 1;
+            if (raidParity && reedSolomonParity) {
+                return null;
+            }
+            if (reedSolomonParity) {
+                return StripeLayout.reedSolomon(k, maxParity + 1);
+            }
+            RaidLevel level = qParity ? RaidLevel.RAID6 : RaidLevel.RAID5;
+            return StripeLayout.of(level, k + level.getParityCount());
+        }
+
+        /**
+         * Arma el StoredFile y lo agrega a result; si no se puede, lo informa y lo omite.
+         */
+        void build(List<String> endpoints, List<String> unreachable, Result result) {
+            StripeLayout layout;
+            try {
+                layout = layout();
+            } catch (IllegalArgumentException e) {
+                layout = null;
+            }
+            if (layout == null) {
+                logger.warning("No se pudo deducir la disposición de " + fileId + ": datos hasta _d" + maxData
+                        + ", paridades hasta " + maxParity + (raidParity && reedSolomonParity ? ", sufijos mezclados" : ""));
+                result.skippedFiles.add(fileId);
+                return;
+            }
+
+            // Nodo de cada posición: el primero donde aparece un bloque que la ocupa
+            short[] positionNodes = new short[layout.getWidth()];
+            Arrays.fill(positionNodes, NO_NODE);
+            for (Map.Entry<Integer, StripeScan> e : stripes.entrySet()) {
+                forEachBlock(layout, e.getKey(), e.getValue(), (pos, node, checksum) -> {
+                    if (positionNodes[pos] == NO_NODE) {
+                        positionNodes[pos] = node;
+                    }
+                });
+            }
+            List<String> nodes = assignNodes(positionNodes, endpoints, unreachable);
+            if (nodes == null) {
+                logger.warning("No hay nodos suficientes para ubicar las posiciones de " + fileId);
+                result.skippedFiles.add(fileId);
+                return;
+            }
+
+            int blockLength = 0;
+            for (StripeScan scan : stripes.values()) {
+                blockLength = Math.max(blockLength, scan.blockLength);
+            }
+            List<StripeDescriptor> descriptors = new ArrayList<>(maxStripe + 1);
+            for (int s = 0; s <= maxStripe; s++) {
+                StripeScan scan = stripes.get(s);
+                long[] checksums = new long[layout.getWidth()];
+                boolean[] present = new boolean[layout.getWidth()];
+                if (scan != null) {
+                    forEachBlock(layout, s, scan, (pos, node, checksum) -> {
+                        // Un bloque fuera del nodo de su posición no se lee al descargar
+                        if (node == positionNodes[pos]) {
+                            checksums[pos] = checksum;
+                            present[pos] = true;
+                        }
+                    });
+                }
+                StripeDescriptor descriptor = new StripeDescriptor(fileId, s, layout,
+                        scan != null ? scan.blockLength : blockLength, checksums);
+                int missing = 0;
+                for (int pos = 0; pos < present.length; pos++) {
+                    if (!present[pos]) {
+                        descriptor.markDegraded(pos);
+                        missing++;
+                    }
+                }
+                if (missing > layout.getParityBlocks()) {
+                    result.unrecoverableStripes.add(descriptor.getStripeId());
+                } else if (missing > 0) {
+                    result.degradedStripes++;
+                }
+                descriptors.add(descriptor);
+            }
+            long fileSize = (long) descriptors.size() * layout.getDataBlocks() * blockLength;
+            result.files.add(new StoredFile(fileId, fileId, fileSize, descriptors, nodes, layout));
+        }
+
+        /**
+         * Completa las posiciones sin bloques con nodos que el archivo no usa, primero los que
+         * no respondieron, que son los que más probablemente las alojaban.
+         * @return endpoint de cada posición, o null si no alcanzan los nodos
+         */
+        private static List<String> assignNodes(short[] positionNodes, List<String> endpoints,
+                                                List<String> unreachable) {
+            Set<String> free = new LinkedHashSet<>(unreachable);
+            free.addAll(endpoints);
+            for (short node : positionNodes) {
+                if (node != NO_NODE) {
+                    free.remove(endpoints.get(node));
+                }
+            }
+            List<String> nodes = new ArrayList<>(positionNodes.length);
+            Iterator<String> candidates = free.iterator();
+            for (short node : positionNodes) {
+                if (node != NO_NODE) {
+                    nodes.add(endpoints.get(node));
+                } else if (candidates.hasNext()) {
+                    nodes.add(candidates.next());
+                } else {
+                    return null;
+                }
+            }
+            return nodes;
+        }
+
+        private static void forEachBlock(StripeLayout layout, int stripeIndex, StripeScan scan, BlockVisitor visitor) {
+            int[] dataPositions = layout.dataPositions(stripeIndex);
+            for (int d = 0; d < scan.dataNodes.length && d < dataPositions.length; d++) {
+                if (scan.dataNodes[d] != NO_NODE) {
+                    visitor.visit(dataPositions[d], scan.dataNodes[d], scan.dataChecksums[d]);
+                }
+            }
+            int[] parityPositions = layout.parityPositions(stripeIndex);
+            for (int j = 0; j < scan.parityNodes.length && j < parityPositions.length; j++) {
+                if (scan.parityNodes[j] != NO_NODE) {
+                    visitor.visit(parityPositions[j], scan.parityNodes[j], scan.parityChecksums[j]);
+                }
+            }
+        }
+    }
+
+    private interface BlockVisitor {
+        void visit(int position, short node, long checksum);
+    }
+
+    /**
+     * Resumen de una recuperación.
+     */
+    public static final class Result {
+        private final long blocks;
+        private final List<String> unreachableNodes;
+        private final List<StoredFile> files = new ArrayList<>();
+        private final List<String> unrecoverableStripes = new ArrayList<>();
+        private final List<String> skippedFiles = new ArrayList<>();
+        private int degradedStripes;
+
+        private Result(long blocks, List<String> unreachableNodes) {
+            this.blocks = blocks;
+            this.unreachableNodes = List.copyOf(unreachableNodes);
+        }
+
+        /** @return bloques listados por los nodos */
+        public long getBlocks() {
+            return blocks;
+        }
+
+        /** @return nodos cuyo inventario no se pudo leer */
+        public List<String> getUnreachableNodes() {
+            return unreachableNodes;
+        }
+
+        /** @return archivos reconstruidos */
+        public List<StoredFile> getFiles() {
+            return Collections.unmodifiableList(files);
+        }
+
+        /** @return stripes con más bloques ausentes que paridades */
+        public List<String> getUnrecoverableStripes() {
+            return Collections.unmodifiableList(unrecoverableStripes);
+        }
+
+        /** @return archivos cuyos bloques no permitieron deducir la disposición */
+        public List<String> getSkippedFiles() {
+            return Collections.unmodifiableList(skippedFiles);
+        }
+
+        /** @return stripes con bloques ausentes que la paridad todavía cubre */
+        public int getDegradedStripes() {
+            return degradedStripes;
+        }
+    }
+}
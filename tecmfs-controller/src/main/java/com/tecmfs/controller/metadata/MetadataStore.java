@@ -0,0 +1,354 @@
+package com.tecmfs.controller.metadata;
+
+import com.tecmfs.controller.models.StoredFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Persistencia de los metadatos de archivos del Controller: un WAL de altas, bajas y reparaciones
+ * de bloques más snapshots binarios periódicos.
+ * <p>
+ * Cada cambio se agrega al WAL de la generación actual (wal-N.log) y el cambio se aplica
+ * en memoria recién cuando quedó en disco, en el orden del WAL. Un snapshot abre la generación siguiente, guarda el
+ * estado de ese momento en snapshot.bin y borra los WAL anteriores. Al arrancar se carga el
+ * snapshot y se reproducen los WAL de su generación en adelante.
+ * <p>
+ * Reparación: [UTF fileId][int stripe][byte posición]; quita la marca de degradado de la posición.
+ * <p>
+ * Snapshot: [int MAGIC][long generación][int archivos]{StoredFile}[int crc32]
+ */
+public class MetadataStore implements Closeable {
+    private static final Logger logger = Logger.getLogger(MetadataStore.class.getName());
+
+    private static final int SNAPSHOT_MAGIC = 0x4D455441;     // "META"
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String WAL_PREFIX = "wal-";
+    private static final String WAL_SUFFIX = ".log";
+    private static final byte TYPE_CREATE = 1;
+    private static final byte TYPE_DELETE = 2;
+    private static final byte TYPE_REPAIR = 3;
+    private static final long SNAPSHOT_WAL_BYTES = 256L * 1024 * 1024;
+    private static final int IO_BUFFER = 1 << 20;
+
+    private final Path dir;
+    // Las mutaciones toman la lectura; el snapshot toma la escritura para cortar la generación
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object snapshotLock = new Object();
+    private long generation;
+    private long replayed;
+    private volatile WriteAheadLog wal;
+    private ScheduledExecutorService snapshotter;
+    private Supplier<Collection<StoredFile>> state;
+
+    /**
+     * @param dir directorio de los metadatos; se crea si no existe
+     */
+    public MetadataStore(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+    }
+
+    /**
+     * Carga el snapshot y reproduce los WAL posteriores.
+     * @return fileId → StoredFile recuperados
+     */
+    public Map<String, StoredFile> recover() throws IOException {
+        long start = System.nanoTime();
+        Map<String, StoredFile> files = new HashMap<>();
+        Path snapshot = dir.resolve(SNAPSHOT_FILE);
+        long snapshotGeneration = 0;
+        if (Files.exists(snapshot)) {
+            snapshotGeneration = readSnapshot(snapshot, files);
+        }
+
+        long lastGeneration = snapshotGeneration;
+        for (Map.Entry<Long, Path> entry : walFiles().entrySet()) {
+            long gen = entry.getKey();
+            if (gen < snapshotGeneration) {
+                // Ya incluido en el snapshot; quedó por una caída antes de borrarlo
+                Files.deleteIfExists(entry.getValue());
+                continue;
+            }
+            try {
+                replayed += WriteAheadLog.replay(entry.getValue(), record -> apply(record, files));
+            } catch (UncheckedIOException e) {
+                throw new IOException("WAL ilegible " + entry.getValue() + ": " + e.getCause().getMessage(), e.getCause());
+            }
+            lastGeneration = Math.max(lastGeneration, gen);
+        }
+        this.generation = lastGeneration + 1;
+        logger.info(String.format("Metadatos recuperados: %d archivos, %d registros de WAL, %.1f ms",
+                files.size(), replayed, (System.nanoTime() - start) / 1e6));
+        return files;
+    }
+
+    /**
+     * Abre el WAL y programa los snapshots. Si al recuperar se reprodujeron registros, se hace
+     * un snapshot en seguida para no volver a reproducirlos en el próximo arranque.
+     * @param state           proveedor de una copia del estado actual, para los snapshots
+     * @param intervalSeconds período entre snapshots; 0 desactiva los periódicos
+     */
+    public void start(Supplier<Collection<StoredFile>> state, long intervalSeconds) throws IOException {
+        this.state = state;
+        this.wal = new WriteAheadLog(walPath(generation));
+        if (replayed > 0) {
+            snapshot();
+        }
+        if (intervalSeconds > 0) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "metadata-snapshot");
+                t.setDaemon(true);
+                return t;
+            });
+            snapshotter.scheduleWithFixedDelay(this::snapshotIfNeeded, intervalSeconds, intervalSeconds,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Registra el alta de un archivo y, una vez en disco, ejecuta apply.
+     */
+    public void logCreate(StoredFile file, Runnable apply) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        StoredFileCodec.write(new DataOutputStream(buf), file);
+        log(TYPE_CREATE, buf.toByteArray(), apply);
+    }
+
+    /**
+     * Registra la baja de un archivo y, una vez en disco, ejecuta apply.
+     */
+    public void logDelete(String fileId, Runnable apply) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        new DataOutputStream(buf).writeUTF(fileId);
+        log(TYPE_DELETE, buf.toByteArray(), apply);
+    }
+
+    /**
+     * Registra que un bloque degradado se reescribió en su nodo y, una vez en disco, ejecuta apply.
+     */
+    public void logRepair(String fileId, int stripeIndex, int position, Runnable apply) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buf);
+        out.writeUTF(fileId);
+        out.writeInt(stripeIndex);
+        out.writeByte(position);
+        log(TYPE_REPAIR, buf.toByteArray(), apply);
+    }
+
+    private void log(byte type, byte[] payload, Runnable apply) throws IOException {
+        boolean snapshotDue;
+        lock.readLock().lock();
+        try {
+            // El hilo del WAL aplica el cambio en el orden del archivo. Con el lock tomado snapshot()
+            // no puede cerrar este WAL ni copiar el estado antes de que el cambio se aplique
+            wal.append(type, payload, apply).join();
+            snapshotDue = walExceedsLimit();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (snapshotDue && snapshotter != null) {
+            snapshotter.execute(this::snapshotIfNeeded);
+        }
+    }
+
+    /**
+     * El cambio ya está registrado: un error al medir el WAL solo posterga el snapshot.
+     */
+    private boolean walExceedsLimit() {
+        try {
+            return wal.size() > SNAPSHOT_WAL_BYTES;
+        } catch (IOException e) {
+            logger.warning("No se pudo medir el WAL de metadatos: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @return registros escritos en el WAL actual y fsync hechos para ellos
+     */
+    public long[] getWalStats() {
+        WriteAheadLog current = wal;
+        return new long[]{current.getRecords(), current.getCommits()};
+    }
+
+    private void snapshotIfNeeded() {
+        try {
+            if (wal.getRecords() > 0) {
+                snapshot();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warning("No se pudo guardar el snapshot de metadatos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Abre una generación nueva de WAL y guarda el estado en snapshot.bin; luego borra los WAL viejos.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long start = System.nanoTime();
+            Collection<StoredFile> files;
+            long snapshotGeneration;
+            WriteAheadLog previous;
+            lock.writeLock().lock();
+            try {
+                files = state.get();
+                previous = wal;
+                snapshotGeneration = ++generation;
+                wal = new WriteAheadLog(walPath(snapshotGeneration));
+            } finally {
+                lock.writeLock().unlock();
+            }
+            previous.close();
+
+            writeSnapshot(files, snapshotGeneration);
+            for (Map.Entry<Long, Path> entry : walFiles().entrySet()) {
+                if (entry.getKey() < snapshotGeneration) {
+                    Files.deleteIfExists(entry.getValue());
+                }
+            }
+            logger.info(String.format("Snapshot de metadatos: %d archivos, generación %d, %.1f ms",
+                    files.size(), snapshotGeneration, (System.nanoTime() - start) / 1e6));
+        }
+    }
+
+    private void writeSnapshot(Collection<StoredFile> files, long snapshotGeneration) throws IOException {
+        Path tmp = dir.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(ch), IO_BUFFER), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(snapshotGeneration);
+            out.writeInt(files.size());
+            for (StoredFile file : files) {
+                StoredFileCodec.write(out, file);
+            }
+            out.flush();
+            int crc = (int) checked.getChecksum().getValue();
+            out.writeInt(crc);
+            out.flush();
+            ch.force(true);
+        }
+        Files.move(tmp, dir.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return generación del snapshot
+     */
+    private static long readSnapshot(Path snapshot, Map<String, StoredFile> files) throws IOException {
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(snapshot), IO_BUFFER)) {
+            CheckedInputStream checked = new CheckedInputStream(raw, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Snapshot de metadatos inválido: " + snapshot);
+            }
+            long gen = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                StoredFile file = StoredFileCodec.read(in);
+                files.put(file.getFileId(), file);
+            }
+            int expected = (int) checked.getChecksum().getValue();
+            if (new DataInputStream(raw).readInt() != expected) {
+                throw new IOException("CRC inválido en el snapshot de metadatos: " + snapshot);
+            }
+            return gen;
+        }
+    }
+
+    private static void apply(ByteBuffer record, Map<String, StoredFile> files) {
+        byte type = record.get(0);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.array(),
+                record.arrayOffset() + record.position() + 1, record.remaining() - 1));
+        try {
+            if (type == TYPE_CREATE) {
+                StoredFile file = StoredFileCodec.read(in);
+                files.put(file.getFileId(), file);
+            } else if (type == TYPE_DELETE) {
+                files.remove(in.readUTF());
+            } else if (type == TYPE_REPAIR) {
+                StoredFile file = files.get(in.readUTF());
+                int stripeIndex = in.readInt();
+                int position = in.readUnsignedByte();
+                // El archivo pudo borrarse después de la reparación
+                if (file != null && stripeIndex < file.getStripes().size()) {
+                    file.getStripes().get(stripeIndex).clearDegraded(position);
+                }
+            } else {
+                throw new IOException("Tipo de registro desconocido en el WAL: " + type);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path walPath(long gen) {
+        return dir.resolve(WAL_PREFIX + gen + WAL_SUFFIX);
+    }
+
+    /**
+     * @return generación → archivo de WAL, en orden
+     */
+    private Map<Long, Path> walFiles() throws IOException {
+        try (Stream<Path> paths = Files.list(dir)) {
+            List<Path> wals = paths.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(WAL_PREFIX) && name.endsWith(WAL_SUFFIX);
+            }).collect(Collectors.toList());
+            Map<Long, Path> byGeneration = new TreeMap<>();
+            for (Path p : wals) {
+                String name = p.getFileName().toString();
+                byGeneration.put(Long.parseLong(name.substring(WAL_PREFIX.length(), name.length() - WAL_SUFFIX.length())), p);
+            }
+            return byGeneration;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+        if (wal != null) {
+            wal.close();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.tecmfs.controller.metadata;
+
+import com.tecmfs.common.models.RaidLevel;
+import com.tecmfs.common.models.StripeLayout;
+import com.tecmfs.controller.models.StoredFile;
+import com.tecmfs.controller.models.StripeDescriptor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Formato binario de un StoredFile, compartido por el WAL y los snapshots.
+ * <p>
+ * [UTF fileId][UTF fileName][long tamaño][byte nivel (5, 6 o 0 = Reed-Solomon)][byte k][byte m]
+ * [byte nodos]{[UTF endpoint]}[int stripes][int largoBloque]{[long checksum]×ancho [short degradados]}
+ * <p>
+ * Los ids de stripe no se guardan: el stripe i se llama {@link StripeDescriptor#stripeIdFor(String, int)}.
+ */
+final class StoredFileCodec {
+    private static final int LEVEL_REED_SOLOMON = 0;
+
+    private StoredFileCodec() {
+    }
+
+    static void write(DataOutput out, StoredFile file) throws IOException {
+        StripeLayout layout = file.getLayout();
+        out.writeUTF(file.getFileId());
+        out.writeUTF(file.getFileName());
+        out.writeLong(file.getFileSize());
+        out.writeByte(layout.isReedSolomon() ? LEVEL_REED_SOLOMON : layout.getRaidLevel() == RaidLevel.RAID5 ? 5 : 6);
+        out.writeByte(layout.getDataBlocks());
+        out.writeByte(layout.getParityBlocks());
+        List<String> nodes = file.getNodeEndpoints();
+        out.writeByte(nodes.size());
+        for (String node : nodes) {
+            out.writeUTF(node);
+        }
+
+        List<StripeDescriptor> stripes = file.getStripes();
+        int blockLength = stripes.isEmpty() ? 0 : stripes.get(0).getBlockLength();
+        out.writeInt(stripes.size());
+        out.writeInt(blockLength);
+        for (int i = 0; i < stripes.size(); i++) {
+            StripeDescriptor stripe = stripes.get(i);
+            if (stripe.getStripeIndex() != i || stripe.getBlockLength() != blockLength
+                    || !stripe.getFileId().equals(file.getFileId())) {
+                throw new IllegalStateException("Stripe fuera de formato en " + file.getFileId() + ": " + stripe);
+            }
+            int degraded = 0;
+            for (int pos = 0; pos < stripe.getTotalBlocks(); pos++) {
+                out.writeLong(stripe.getChecksum(pos));
+                if (stripe.isDegraded(pos)) {
+                    degraded |= 1 << pos;
+                }
+            }
+            out.writeShort(degraded);
+        }
+    }
+
+    static StoredFile read(DataInput in) throws IOException {
+        String fileId = in.readUTF();
+        String fileName = in.readUTF();
+        long fileSize = in.readLong();
+        int level = in.readUnsignedByte();
+        int k = in.readUnsignedByte();
+        int m = in.readUnsignedByte();
+        StripeLayout layout;
+        try {
+            layout = level == LEVEL_REED_SOLOMON ? StripeLayout.reedSolomon(k, m)
+                    : StripeLayout.of(RaidLevel.fromString(String.valueOf(level)), k + m);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Disposición inválida en los metadatos de " + fileId, e);
+        }
+        int nodeCount = in.readUnsignedByte();
+        List<String> nodes = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add(in.readUTF());
+        }
+
+        int stripeCount = in.readInt();
+        int blockLength = in.readInt();
+        if (stripeCount < 0 || blockLength < 0) {
+            throw new IOException("Metadatos corruptos para " + fileId);
+        }
+        int width = layout.getWidth();
+        List<StripeDescriptor> stripes = new ArrayList<>(stripeCount);
+        long[] checksums = new long[width];
+        for (int i = 0; i < stripeCount; i++) {
+            for (int pos = 0; pos < width; pos++) {
+                checksums[pos] = in.readLong();
+            }
+            int degraded = in.readUnsignedShort();
+            StripeDescriptor stripe = new StripeDescriptor(fileId, i, layout, blockLength, checksums);
+            for (int pos = 0; pos < width; pos++) {
+                if ((degraded & (1 << pos)) != 0) {
+                    stripe.markDegraded(pos);
+                }
+            }
+            stripes.add(stripe);
+        }
+        try {
+            return new StoredFile(fileId, fileName, fileSize, stripes, nodes, layout);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Metadatos inconsistentes para " + fileId + ": " + e.getMessage(), e);
+        }
+    }
+}
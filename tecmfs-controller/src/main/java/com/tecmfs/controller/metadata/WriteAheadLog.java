@@ -0,0 +1,220 @@
+package com.tecmfs.controller.metadata;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Archivo de WAL de solo agregado, con group commit: un hilo escribe juntos todos los
+ * registros pendientes y hace un único fsync por grupo, de modo que muchas escrituras
+ * concurrentes comparten el costo del fsync. Ese mismo hilo aplica en memoria los cambios del
+ * grupo en el orden en que quedaron en el archivo, así que el estado en memoria y el que se
+ * reproduce al arrancar siguen el mismo orden aunque varios hilos registren cambios a la vez.
+ * <p>
+ * Registro: [int largo][int crc32][byte tipo][datos]; largo cuenta tipo y datos.
+ */
+final class WriteAheadLog implements Closeable {
+    private static final Logger logger = Logger.getLogger(WriteAheadLog.class.getName());
+
+    private static final int HEADER_SIZE = 4 + 4;
+    private static final int MAX_RECORD = 64 * 1024 * 1024;
+    private static final int MAX_GROUP = 1024;
+
+    private static final class Pending {
+        final byte type;
+        final byte[] payload;
+        final Runnable apply;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Pending(byte type, byte[] payload, Runnable apply) {
+            this.type = type;
+            this.payload = payload;
+            this.apply = apply;
+        }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread committer;
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * Abre el archivo para agregar al final, creándolo si no existe.
+     */
+    WriteAheadLog(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        this.committer = new Thread(this::commitLoop, "metadata-wal-" + file.getFileName());
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Encola un registro.
+     * @param apply cambio en memoria; lo ejecuta el hilo del WAL una vez que el registro quedó en disco,
+     *              después de los de los registros anteriores
+     * @return futuro que se completa cuando el registro quedó en disco y se aplicó
+     */
+    CompletableFuture<Void> append(byte type, byte[] payload, Runnable apply) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new IOException("WAL cerrado: " + file));
+        }
+        Pending pending = new Pending(type, payload, apply);
+        queue.add(pending);
+        return pending.done;
+    }
+
+    long getRecords() {
+        return records.get();
+    }
+
+    long getCommits() {
+        return commits.get();
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    private void commitLoop() {
+        List<Pending> group = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, MAX_GROUP - 1);
+                commit(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void commit(List<Pending> group) {
+        try {
+            int total = 0;
+            for (Pending p : group) {
+                total += HEADER_SIZE + 1 + p.payload.length;
+            }
+            ByteBuffer buf = ByteBuffer.allocate(total);
+            CRC32 crc = new CRC32();
+            for (Pending p : group) {
+                crc.reset();
+                crc.update(p.type);
+                crc.update(p.payload);
+                buf.putInt(1 + p.payload.length).putInt((int) crc.getValue()).put(p.type).put(p.payload);
+            }
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(false);
+            records.addAndGet(group.size());
+            commits.incrementAndGet();
+            for (Pending p : group) {
+                apply(p);
+            }
+        } catch (IOException e) {
+            logger.severe("Error escribiendo el WAL " + file + ": " + e.getMessage());
+            for (Pending p : group) {
+                p.done.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static void apply(Pending p) {
+        try {
+            p.apply.run();
+            p.done.complete(null);
+        } catch (RuntimeException e) {
+            // El registro ya está en disco: el error se informa a quien lo escribió
+            logger.severe("Error aplicando un registro del WAL: " + e);
+            p.done.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Escribe lo pendiente y cierra el archivo.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Pending p; (p = queue.poll()) != null; ) {
+            p.done.completeExceptionally(new IOException("WAL cerrado: " + file));
+        }
+        channel.close();
+    }
+
+    /**
+     * Reproduce los registros de un archivo de WAL en orden. Un registro incompleto o con CRC
+     * inválido al final (una escritura cortada por una caída) se descarta y el archivo se trunca
+     * en el último registro válido.
+     * @param apply recibe el tipo en la primera posición del buffer, seguido de los datos
+     * @return cantidad de registros reproducidos
+     */
+    static long replay(Path file, Consumer<ByteBuffer> apply) throws IOException {
+        long count = 0;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = ch.size();
+            ByteBuffer data = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE - 8));
+            while (data.hasRemaining() && ch.read(data) >= 0) {
+                // leer todo el archivo
+            }
+            data.flip();
+            CRC32 crc = new CRC32();
+            int valid = 0;
+            while (data.remaining() >= HEADER_SIZE) {
+                int length = data.getInt(valid);
+                int expected = data.getInt(valid + 4);
+                if (length <= 0 || length > MAX_RECORD || valid + HEADER_SIZE + length > data.limit()) {
+                    break;
+                }
+                ByteBuffer record = data.slice(valid + HEADER_SIZE, length);
+                crc.reset();
+                crc.update(record.duplicate());
+                if ((int) crc.getValue() != expected) {
+                    break;
+                }
+                apply.accept(record);
+                count++;
+                valid += HEADER_SIZE + length;
+                data.position(valid);
+            }
+            if (valid < size) {
+                logger.warning("WAL " + file.getFileName() + ": se descartan " + (size - valid)
+                        + " bytes incompletos al final");
+                ch.truncate(valid);
+                ch.force(true);
+            }
+        }
+        return count;
+    }
+}
@@ -1,7 +1,7 @@
 package com.tecmfs.controller.models;
 
-import com.tecmfs.common.models.Block;
-import com.tecmfs.common.models.Stripe;
+import com.tecmfs.common.models.RaidLevel;
+import com.tecmfs.common.models.StripeLayout;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -9,35 +9,76 @@ import java.util.List;
 
 /**
  * Representa la información de un archivo almacenado de forma distribuida.
- * Incluye el mapeo de stripes y bloques en los Disk Nodes.
+ * Incluye el mapeo de stripes y bloques en los Disk Nodes y la disposición con que se escribió
+ * (k datos + m paridades y su código), que es la que manda al reconstruirlo aunque la cantidad
+ * de nodos o la configuración cambien.
+ * Los stripes se guardan como {@link StripeDescriptor}: solo metadatos, sin los datos de los bloques,
+ * de modo que la memoria del Controller depende de la cantidad de archivos y stripes, no de los bytes.
  */
 public class StoredFile {
     private final String fileId;
     private final String fileName;
-    private final List<Stripe> stripes;
+    private final long fileSize;
+    private final List<StripeDescriptor> stripes;
+    private final List<String> nodeEndpoints;
+    private final StripeLayout layout;
 
     /**
-     * @param fileId   identificador único del archivo
-     * @param fileName nombre original del archivo
-     * @param stripes  lista de stripes que componen el archivo
+     * @param fileId        identificador único del archivo
+     * @param fileName      nombre original del archivo
+     * @param fileSize      tamaño real en bytes, sin el relleno del último stripe
+     * @param stripes       metadatos de los stripes que componen el archivo
+     * @param nodeEndpoints endpoint del nodo que aloja cada posición de los stripes;
+     *                      su cantidad es el ancho de stripe
      */
-    public StoredFile(String fileId, String fileName, List<Stripe> stripes) {
+    public StoredFile(String fileId, String fileName, long fileSize, List<StripeDescriptor> stripes,
+                      List<String> nodeEndpoints) {
+        this(fileId, fileName, fileSize, stripes, nodeEndpoints, RaidLevel.RAID5);
+    }
+
+    /**
+     * @param raidLevel nivel RAID de todos los stripes del archivo
+     */
+    public StoredFile(String fileId, String fileName, long fileSize, List<StripeDescriptor> stripes,
+                      List<String> nodeEndpoints, RaidLevel raidLevel) {
+        this(fileId, fileName, fileSize, stripes, nodeEndpoints, StripeLayout.of(raidLevel, nodeEndpoints.size()));
+    }
+
+    /**
+     * @param nodeEndpoints ubicación de cada posición; debe haber tantos como el ancho de layout
+     * @param layout        disposición de todos los stripes del archivo
+     */
+    public StoredFile(String fileId, String fileName, long fileSize, List<StripeDescriptor> stripes,
+                      List<String> nodeEndpoints, StripeLayout layout) {
+        if (nodeEndpoints.size() != layout.getWidth()) {
+            throw new IllegalArgumentException("Ancho de stripe inválido para " + fileId + ": "
+                    + nodeEndpoints.size() + " nodos para " + layout);
+        }
+        for (StripeDescriptor stripe : stripes) {
+            if (!layout.equals(stripe.getLayout())) {
+                throw new IllegalArgumentException("El stripe " + stripe.getStripeId()
+                        + " no coincide con la disposición del archivo " + layout);
+            }
+        }
+        this.layout = layout;
         this.fileId = fileId;
         this.fileName = fileName;
+        this.fileSize = fileSize;
         this.stripes = new ArrayList<>(stripes);
+        this.nodeEndpoints = List.copyOf(nodeEndpoints);
     }
 
     /**
      * Añade un stripe al final de la lista.
      */
-    public void addStripe(Stripe stripe) {
+    public void addStripe(StripeDescriptor stripe) {
         stripes.add(stripe);
     }
 
     /**
      * Devuelve una vista inmutable de los stripes.
      */
-    public List<Stripe> getStripes() {
+    public List<StripeDescriptor> getStripes() {
         return Collections.unmodifiableList(stripes);
     }
 
@@ -50,32 +91,69 @@ public class StoredFile {
     }
 
     /**
-     * Localiza la posición (índice de nodo) del bloque indicado.
-     * @param blockId identificador del bloque
-     * @return índice de nodo donde se almacenó el bloque, o -1 si no se encontró
+     * @return tamaño real del archivo en bytes
      */
-    public int getBlockLocation(String blockId) {
-        for (Stripe stripe : stripes) {
-            for (int pos = 0; pos < stripe.getTotalBlocks(); pos++) {
-                Block b = stripe.getBlock(pos);
-                if (b != null && blockId.equals(b.getBlockId())) {
-                    return pos;
-                }
-            }
-        }
-        return -1;
+    public long getFileSize() {
+        return fileSize;
     }
 
     /**
-     * Verifica la integridad de todos los stripes del archivo.
-     * @return true si todos los stripes pasan la comprobación de paridad
+     * @return bloques por stripe, incluida la paridad
      */
-    public boolean verifyIntegrity() {
-        for (Stripe stripe : stripes) {
-            if (!stripe.verifyIntegrity()) {
-                return false;
-            }
+    public int getStripeWidth() {
+        return layout.getWidth();
+    }
+
+    /**
+     * @return RAID5 o RAID6, o null si el archivo usa Reed-Solomon
+     */
+    public RaidLevel getRaidLevel() {
+        return layout.getRaidLevel();
+    }
+
+    public StripeLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @return cantidad de bloques de datos por stripe (ancho menos los de paridad)
+     */
+    public int getDataBlocksPerStripe() {
+        return layout.getDataBlocks();
+    }
+
+    /**
+     * @return endpoints de los nodos en el orden de las posiciones de los stripes
+     */
+    public List<String> getNodeEndpoints() {
+        return nodeEndpoints;
+    }
+
+    /**
+     * Localiza la posición (índice de nodo) del bloque indicado.
+     * La posición se deduce del nombre del bloque (stripeId y sufijo), sin recorrer los stripes.
+     * @param blockId identificador del bloque
+     * @return índice de nodo donde se almacenó el bloque, o -1 si no pertenece al archivo
+     */
+    public int getBlockLocation(String blockId) {
+        String prefix = StripeDescriptor.stripeIdFor(fileId, 0);
+        prefix = prefix.substring(0, prefix.length() - 1);
+        if (!blockId.startsWith(prefix)) {
+            return -1;
+        }
+        int end = blockId.indexOf('_', prefix.length());
+        if (end < 0) {
+            return -1;
+        }
+        int stripeIndex;
+        try {
+            stripeIndex = Integer.parseInt(blockId.substring(prefix.length(), end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (stripeIndex < 0 || stripeIndex >= stripes.size()) {
+            return -1;
         }
-        return true;
+        return layout.positionOf(stripeIndex, blockId.substring(end));
     }
 }
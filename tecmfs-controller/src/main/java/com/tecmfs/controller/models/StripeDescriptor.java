@@ -0,0 +1,178 @@
+package com.tecmfs.controller.models;
+
+import com.tecmfs.common.models.Block;
+import com.tecmfs.common.models.Stripe;
+import com.tecmfs.common.models.StripeLayout;
+
+import java.util.Objects;
+
+/**
+ * Metadatos de un stripe ya almacenado, sin los datos de sus bloques: índice, disposición,
+ * largo y checksum de cada posición, y las posiciones cuya escritura falló.
+ * El id del stripe, los ids de bloque y las posiciones de datos y paridad se derivan del fileId,
+ * el índice y la disposición, igual que al escribirlos, así que no se guardan: todos los stripes
+ * de un archivo comparten la misma cadena fileId.
+ */
+public final class StripeDescriptor {
+    /** Checksum de una posición que no se conoce (archivo recuperado sin checksums de los nodos). */
+    public static final long UNKNOWN_CHECKSUM = -1L;
+
+    private final String fileId;
+    private final int stripeIndex;
+    private final StripeLayout layout;
+    private final int blockLength;
+    private final long[] checksums;         // Checksum de cada posición
+    // Bit por posición cuya escritura en el nodo falló; lo limpian los hilos de reparación
+    private volatile int degraded;
+
+    /**
+     * @param fileId    archivo al que pertenece el stripe
+     * @param checksums checksum del bloque de cada posición; su largo es el ancho de layout
+     */
+    public StripeDescriptor(String fileId, int stripeIndex, StripeLayout layout, int blockLength,
+                            long[] checksums) {
+        if (checksums.length != layout.getWidth()) {
+            throw new IllegalArgumentException("Se esperaban " + layout.getWidth() + " checksums para "
+                    + stripeIdFor(fileId, stripeIndex) + ", recibidos " + checksums.length);
+        }
+        this.fileId = fileId;
+        this.stripeIndex = stripeIndex;
+        this.layout = layout;
+        this.blockLength = blockLength;
+        this.checksums = checksums.clone();
+    }
+
+    /**
+     * Toma los metadatos de un stripe recién escrito; sus bloques pueden haber liberado ya los datos.
+     */
+    public static StripeDescriptor of(Stripe stripe) {
+        long[] checksums = new long[stripe.getTotalBlocks()];
+        int blockLength = 0;
+        for (int pos = 0; pos < checksums.length; pos++) {
+            Block block = stripe.getBlock(pos);
+            if (block == null) {
+                throw new IllegalArgumentException("El stripe " + stripe.getStripeId() + " no tiene bloque en " + pos);
+            }
+            checksums[pos] = Long.parseLong(block.getChecksum(), 16);
+            blockLength = block.getSize();
+        }
+        StripeDescriptor descriptor = new StripeDescriptor(stripe.getFileId(), stripe.getStripeIndex(),
+                stripe.getLayout(), blockLength, checksums);
+        for (int pos = 0; pos < checksums.length; pos++) {
+            if (stripe.isDegraded(pos)) {
+                descriptor.markDegraded(pos);
+            }
+        }
+        return descriptor;
+    }
+
+    /**
+     * @return id del stripe index de un archivo, el mismo con que se nombran sus bloques
+     */
+    public static String stripeIdFor(String fileId, int index) {
+        return fileId + "_stripe" + index;
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    /**
+     * @return id del stripe, derivado con {@link #stripeIdFor(String, int)}
+     */
+    public String getStripeId() {
+        return stripeIdFor(fileId, stripeIndex);
+    }
+
+    public int getStripeIndex() {
+        return stripeIndex;
+    }
+
+    public StripeLayout getLayout() {
+        return layout;
+    }
+
+    public int getTotalBlocks() {
+        return checksums.length;
+    }
+
+    /**
+     * @return largo en bytes de cada bloque del stripe
+     */
+    public int getBlockLength() {
+        return blockLength;
+    }
+
+    /**
+     * @return id del bloque guardado en la posición
+     */
+    public String getBlockId(int position) {
+        return getStripeId() + layout.blockSuffix(stripeIndex, position);
+    }
+
+    /**
+     * @return checksum del bloque de la posición, o {@link #UNKNOWN_CHECKSUM}
+     */
+    public long getChecksum(int position) {
+        return checksums[position];
+    }
+
+    /**
+     * @return posición de cada bloque de datos, en orden de datos
+     */
+    public int[] getDataPositions() {
+        return layout.dataPositions(stripeIndex);
+    }
+
+    /**
+     * @return posiciones de paridad en orden de uso
+     */
+    public int[] getParityPositions() {
+        return layout.parityPositions(stripeIndex);
+    }
+
+    public boolean isParityPosition(int position) {
+        return layout.isParityPosition(stripeIndex, position);
+    }
+
+    /**
+     * @return bloques perdidos por stripe que se pueden recuperar
+     */
+    public int getParityCount() {
+        return layout.getParityBlocks();
+    }
+
+    /**
+     * Marca una posición como degradada: el bloque no quedó almacenado en su nodo.
+     */
+    public synchronized void markDegraded(int position) {
+        degraded |= 1 << checkPosition(position);
+    }
+
+    /**
+     * Quita la marca de degradado, por ejemplo después de reescribir el bloque en su nodo.
+     */
+    public synchronized void clearDegraded(int position) {
+        degraded &= ~(1 << checkPosition(position));
+    }
+
+    public boolean isDegraded(int position) {
+        return (degraded & (1 << checkPosition(position))) != 0;
+    }
+
+    private int checkPosition(int position) {
+        return Objects.checkIndex(position, checksums.length);
+    }
+
+    /**
+     * Crea un Stripe de trabajo, sin bloques, para reconstruir posiciones de este stripe.
+     */
+    public Stripe newWorkingStripe() {
+        return new Stripe(getStripeId(), fileId, stripeIndex, layout);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StripeDescriptor{id='%s', index=%d, layout=%s}", getStripeId(), stripeIndex, layout);
+    }
+}
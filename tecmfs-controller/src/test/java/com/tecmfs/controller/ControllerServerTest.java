@@ -0,0 +1,66 @@
+package com.tecmfs.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ControllerServerTest {
+    private static final long SIZE = 1000;
+
+    @Test
+    void parsesClosedRange() {
+        assertArrayEquals(new long[]{0, 500}, ControllerServer.parseRange("bytes=0-499", SIZE));
+        assertArrayEquals(new long[]{7, 8}, ControllerServer.parseRange("bytes=7-7", SIZE));
+    }
+
+    @Test
+    void clampsLastByteToSize() {
+        assertArrayEquals(new long[]{900, SIZE}, ControllerServer.parseRange("bytes=900-5000", SIZE));
+    }
+
+    @Test
+    void parsesOpenEndedRange() {
+        assertArrayEquals(new long[]{250, SIZE}, ControllerServer.parseRange("bytes=250-", SIZE));
+    }
+
+    @Test
+    void parsesSuffixRange() {
+        assertArrayEquals(new long[]{900, SIZE}, ControllerServer.parseRange("bytes=-100", SIZE));
+        assertArrayEquals(new long[]{0, SIZE}, ControllerServer.parseRange("bytes=-5000", SIZE));
+    }
+
+    @Test
+    void toleratesSpaces() {
+        assertArrayEquals(new long[]{10, 21}, ControllerServer.parseRange("bytes= 10 - 20 ", SIZE));
+    }
+
+    @Test
+    void ignoresMissingOrUnsupportedHeaders() {
+        assertNull(ControllerServer.parseRange(null, SIZE));
+        assertNull(ControllerServer.parseRange("items=0-10", SIZE));
+        assertNull(ControllerServer.parseRange("bytes=0-10,20-30", SIZE));
+        assertNull(ControllerServer.parseRange("bytes=10", SIZE));
+        assertNull(ControllerServer.parseRange("bytes=a-b", SIZE));
+    }
+
+    @Test
+    void ignoresRangeEndingBeforeItStarts() {
+        assertNull(ControllerServer.parseRange("bytes=5-3", SIZE));
+        assertNull(ControllerServer.parseRange("bytes=5--3", SIZE));
+    }
+
+    @Test
+    void rejectsUnsatisfiableRanges() {
+        assertThrows(IllegalArgumentException.class, () -> ControllerServer.parseRange("bytes=1000-", SIZE));
+        assertThrows(IllegalArgumentException.class, () -> ControllerServer.parseRange("bytes=2000-3000", SIZE));
+        assertThrows(IllegalArgumentException.class, () -> ControllerServer.parseRange("bytes=-0", SIZE));
+    }
+
+    @Test
+    void rejectsAnyRangeOfAnEmptyFile() {
+        assertThrows(IllegalArgumentException.class, () -> ControllerServer.parseRange("bytes=0-", 0));
+        assertThrows(IllegalArgumentException.class, () -> ControllerServer.parseRange("bytes=-10", 0));
+    }
+}
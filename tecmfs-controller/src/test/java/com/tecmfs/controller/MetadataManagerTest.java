@@ -0,0 +1,137 @@
+package com.tecmfs.controller;
+
+import com.tecmfs.common.models.RaidLevel;
+import com.tecmfs.common.models.StripeLayout;
+import com.tecmfs.controller.models.StoredFile;
+import com.tecmfs.controller.models.StripeDescriptor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetadataManagerTest {
+    private static final List<String> NODES = List.of("http://n1", "http://n2", "http://n3", "http://n4");
+    private static final StripeLayout LAYOUT = StripeLayout.of(RaidLevel.RAID5, NODES.size());
+    private static final int WRITERS = 8;
+    private static final int CHANGES_PER_WRITER = 400;
+    private static final int FILE_IDS = 40;
+
+    private Path dir;
+
+    @BeforeEach
+    void createDir() throws IOException {
+        dir = Files.createTempDirectory("tecmfs-metadata-test");
+    }
+
+    @AfterEach
+    void deleteDir() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    void repairIsRecoveredFromWal() throws IOException {
+        try (MetadataManager manager = new MetadataManager(dir, 0)) {
+            StoredFile file = file("f1", 2);
+            file.getStripes().get(1).markDegraded(2);
+            file.getStripes().get(1).markDegraded(3);
+            manager.saveStoredFile(file);
+            manager.markRepaired("f1", 1, 2);
+            assertFalse(manager.getStoredFile("f1").getStripes().get(1).isDegraded(2));
+        }
+        try (MetadataManager manager = new MetadataManager(dir, 0)) {
+            StripeDescriptor stripe = manager.getStoredFile("f1").getStripes().get(1);
+            assertFalse(stripe.isDegraded(2));
+            assertTrue(stripe.isDegraded(3));
+        }
+    }
+
+    @Test
+    void repairOfDeletedFileIsIgnored() throws IOException {
+        try (MetadataManager manager = new MetadataManager(dir, 0)) {
+            StoredFile file = file("f1", 1);
+            file.getStripes().get(0).markDegraded(0);
+            manager.saveStoredFile(file);
+            manager.removeFile("f1");
+            manager.markRepaired("f1", 0, 0);
+        }
+        try (MetadataManager manager = new MetadataManager(dir, 0)) {
+            assertTrue(manager.getAllStoredFiles().isEmpty());
+        }
+    }
+
+    @Test
+    void concurrentChangesRecoverInMemoryOrder() throws Exception {
+        Map<String, String> expected = new TreeMap<>();
+        try (MetadataManager manager = new MetadataManager(dir, 0)) {
+            ExecutorService writers = Executors.newFixedThreadPool(WRITERS);
+            try {
+                List<Future<?>> results = new ArrayList<>();
+                for (int w = 0; w < WRITERS; w++) {
+                    final int writer = w;
+                    results.add(writers.submit(() -> {
+                        // Pocos fileIds para que los hilos se pisen registrando versiones del mismo archivo
+                        Random random = new Random(writer);
+                        for (int i = 0; i < CHANGES_PER_WRITER; i++) {
+                            String fileId = "f" + random.nextInt(FILE_IDS);
+                            if (random.nextInt(4) == 0) {
+                                manager.removeFile(fileId);
+                            } else {
+                                manager.saveStoredFile(file(fileId, "v" + (writer * CHANGES_PER_WRITER + i), 1));
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> result : results) {
+                    result.get(60, TimeUnit.SECONDS);
+                }
+            } finally {
+                writers.shutdownNow();
+            }
+            for (StoredFile file : manager.getAllStoredFiles()) {
+                expected.put(file.getFileId(), file.getFileName());
+            }
+        }
+        try (MetadataManager manager = new MetadataManager(dir, 0)) {
+            Map<String, String> recovered = new TreeMap<>();
+            for (StoredFile file : manager.getAllStoredFiles()) {
+                recovered.put(file.getFileId(), file.getFileName());
+            }
+            assertEquals(expected, recovered);
+        }
+    }
+
+    private static StoredFile file(String fileId, int stripes) {
+        return file(fileId, fileId + ".bin", stripes);
+    }
+
+    private static StoredFile file(String fileId, String fileName, int stripes) {
+        List<StripeDescriptor> descriptors = new ArrayList<>();
+        for (int s = 0; s < stripes; s++) {
+            descriptors.add(new StripeDescriptor(fileId, s, LAYOUT, 16, new long[]{1, 2, 3, 4}));
+        }
+        return new StoredFile(fileId, fileName, 16L * 3 * stripes, descriptors, NODES, LAYOUT);
+    }
+}
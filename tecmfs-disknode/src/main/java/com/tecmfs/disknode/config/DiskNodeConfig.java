@@ -1,5 +1,7 @@
 package com.tecmfs.disknode.config;
 
+import com.tecmfs.common.util.ServerExecution;
+import com.tecmfs.disknode.storage.MappedBlockStore;
 import org.w3c.dom.*;
 import javax.xml.parsers.*;
 import org.xml.sax.SAXException;
@@ -15,19 +17,58 @@ import java.util.logging.Logger;
 public class DiskNodeConfig {
     private static final Logger logger = Logger.getLogger(DiskNodeConfig.class.getName());
 
+    public static final String ENGINE_FILE = "file";
+    public static final String ENGINE_SEGMENT = "segment";
+    public static final String ENGINE_MAPPED = "mapped";
+
     private final String ip;
     private final int port;
     private final String storagePath;
     private final int blockSize;
     private final long capacityBytes;  // Capacidad total del nodo en bytes
+    private final int binaryPort;      // Puerto del protocolo binario (0 = deshabilitado)
+    private final String storageEngine; // Formato en disco: "file", "segment" o "mapped"
+    private final MappedBlockStore.ForcePolicy forcePolicy; // Solo para "mapped"
+    private final String executorMode;  // "virtual" o "platform"
+    private final int platformThreads;  // Tamaño del pool en modo platform
+    private final Map<String, Integer> endpointLimits; // Peticiones simultáneas por ruta
 
 
     public DiskNodeConfig(String ip, int port, String storagePath, int blockSize, long capacityBytes) {
+        this(ip, port, storagePath, blockSize, capacityBytes, 0);
+    }
+
+    public DiskNodeConfig(String ip, int port, String storagePath, int blockSize, long capacityBytes,
+                          int binaryPort) {
+        this(ip, port, storagePath, blockSize, capacityBytes, binaryPort, ENGINE_FILE);
+    }
+
+    public DiskNodeConfig(String ip, int port, String storagePath, int blockSize, long capacityBytes,
+                          int binaryPort, String storageEngine) {
+        this(ip, port, storagePath, blockSize, capacityBytes, binaryPort, storageEngine,
+                MappedBlockStore.ForcePolicy.PERIODIC);
+    }
+
+    public DiskNodeConfig(String ip, int port, String storagePath, int blockSize, long capacityBytes,
+                          int binaryPort, String storageEngine, MappedBlockStore.ForcePolicy forcePolicy) {
+        this(ip, port, storagePath, blockSize, capacityBytes, binaryPort, storageEngine, forcePolicy,
+                ServerExecution.MODE_VIRTUAL, ServerExecution.DEFAULT_PLATFORM_THREADS, Collections.emptyMap());
+    }
+
+    public DiskNodeConfig(String ip, int port, String storagePath, int blockSize, long capacityBytes,
+                          int binaryPort, String storageEngine, MappedBlockStore.ForcePolicy forcePolicy,
+                          String executorMode, int platformThreads, Map<String, Integer> endpointLimits) {
         this.ip = ip;
         this.port = port;
         this.storagePath = Paths.get(storagePath).toAbsolutePath().toString();
         this.blockSize = blockSize;
         this.capacityBytes = capacityBytes;
+        this.binaryPort = binaryPort;
+        this.storageEngine = storageEngine;
+        this.forcePolicy = forcePolicy;
+        this.executorMode = executorMode;
+        this.platformThreads = platformThreads;
+        this.endpointLimits = endpointLimits;
     }
 
 
@@ -101,10 +142,76 @@ public class DiskNodeConfig {
                 continue;
             }
 
-            configList.add(new DiskNodeConfig(ip, port, storage, bs, cap));
+            // Puerto binario opcional
+            int binaryPort = 0;
+            String binStr = getTagValue(node, "binaryPort");
+            if (!binStr.isEmpty()) {
+                try {
+                    binaryPort = Integer.parseInt(binStr);
+                } catch (NumberFormatException e) {
+                    logger.warning("binaryPort inválido, protocolo binario deshabilitado: " + binStr);
+                }
+                if (binaryPort < 0 || binaryPort > 65535) {
+                    logger.warning("binaryPort fuera de rango, protocolo binario deshabilitado.");
+                    binaryPort = 0;
+                }
+            }
+
+            // Motor de almacenamiento opcional
+            String engine = getTagValue(node, "storageEngine");
+            if (engine.isEmpty()) {
+                engine = ENGINE_FILE;
+            } else if (!engine.equals(ENGINE_FILE) && !engine.equals(ENGINE_SEGMENT)
+                    && !engine.equals(ENGINE_MAPPED)) {
+                logger.warning("storageEngine desconocido, se usa " + ENGINE_FILE + ": " + engine);
+                engine = ENGINE_FILE;
+            }
+
+            // Política de force() opcional para el dispositivo mapeado
+            MappedBlockStore.ForcePolicy force = MappedBlockStore.ForcePolicy.PERIODIC;
+            String forceStr = getTagValue(node, "forcePolicy");
+            if (!forceStr.isEmpty()) {
+                try {
+                    force = MappedBlockStore.ForcePolicy.fromString(forceStr);
+                } catch (IllegalArgumentException e) {
+                    logger.warning("forcePolicy inválido, se usa " + force + ": " + forceStr);
+                }
+            }
+
+            // Modelo de ejecución opcional
+            String executorMode = getTagValue(node, "executorMode");
+            if (executorMode.isEmpty()) {
+                executorMode = ServerExecution.MODE_VIRTUAL;
+            } else if (!ServerExecution.isValidMode(executorMode)) {
+                logger.warning("executorMode inválido, se usa " + ServerExecution.MODE_VIRTUAL + ": " + executorMode);
+                executorMode = ServerExecution.MODE_VIRTUAL;
+            }
+            int platformThreads = ServerExecution.DEFAULT_PLATFORM_THREADS;
+            String threadsStr = getTagValue(node, "platformThreads");
+            if (!threadsStr.isEmpty()) {
+                try {
+                    platformThreads = Integer.parseInt(threadsStr);
+                } catch (NumberFormatException e) {
+                    logger.warning("platformThreads inválido, se usa " + platformThreads + ": " + threadsStr);
+                }
+                if (platformThreads <= 0) {
+                    logger.warning("platformThreads debe ser positivo, se usa " + ServerExecution.DEFAULT_PLATFORM_THREADS);
+                    platformThreads = ServerExecution.DEFAULT_PLATFORM_THREADS;
+                }
+            }
+            Map<String, Integer> endpointLimits;
+            try {
+                endpointLimits = ServerExecution.readEndpointLimits(node);
+            } catch (IllegalArgumentException e) {
+                logger.warning("endpointLimits inválido, se ignora: " + e.getMessage());
+                endpointLimits = Collections.emptyMap();
+            }
+
+            configList.add(new DiskNodeConfig(ip, port, storage, bs, cap, binaryPort, engine, force,
+                    executorMode, platformThreads, endpointLimits));
             logger.info(String.format(
-                    "Nodo cargado: %s:%d → %s [blockSize=%d, capacityBytes=%d]",
-                    ip, port, storage, bs, cap
+                    "Nodo cargado: %s:%d → %s [blockSize=%d, capacityBytes=%d, storageEngine=%s]",
+                    ip, port, storage, bs, cap, engine
             ));
         }
         return configList;
@@ -123,4 +230,11 @@ public class DiskNodeConfig {
     public String getStoragePath() { return storagePath; }
     public int getBlockSize() { return blockSize; }
     public long getCapacityBytes() { return capacityBytes; }
+    public int getBinaryPort() { return binaryPort; }
+    public String getStorageEngine() { return storageEngine; }
+    public MappedBlockStore.ForcePolicy getForcePolicy() { return forcePolicy; }
+    public String getExecutorMode() { return executorMode; }
+    public int getPlatformThreads() { return platformThreads; }
+    /** @return máximo de peticiones simultáneas de la ruta, o 0 si no tiene límite */
+    public int getEndpointLimit(String path) { return endpointLimits.getOrDefault(path, 0); }
 }
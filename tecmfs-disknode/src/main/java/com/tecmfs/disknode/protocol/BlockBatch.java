@@ -0,0 +1,173 @@
+package com.tecmfs.disknode.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Formato de los cuerpos de /storeBlocks, /getBlocks y /deleteBlocks, que transportan varios bloques
+ * por petición.
+ * <p>
+ * Lista de ids:    [int cantidad]{[short largoId][blockId UTF-8]}
+ * Lista de bloques: [int cantidad]{[short largoId][blockId UTF-8][int largo][bytes]}
+ * <p>
+ * En una respuesta de /getBlocks un largo de -1 indica que el bloque no existe en el nodo.
+ */
+public final class BlockBatch {
+
+    /** Máximo de bloques por lote, para rechazar cuerpos corruptos */
+    public static final int MAX_BLOCKS = 4096;
+    /** Largo que indica un bloque ausente */
+    public static final int MISSING = -1;
+
+    private BlockBatch() {
+    }
+
+    /**
+     * @return cuerpo con la lista de ids
+     */
+    public static byte[] encodeIds(List<String> blockIds) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buf);
+        out.writeInt(blockIds.size());
+        for (String id : blockIds) {
+            writeId(out, id);
+        }
+        return buf.toByteArray();
+    }
+
+    public static List<String> decodeIds(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        int count = readCount(din);
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(readId(din));
+        }
+        return ids;
+    }
+
+    /**
+     * Arma el cuerpo sin copiar los bloques: alterna encabezados pequeños con una vista de cada
+     * bloque, para enviarlos en orden como un solo cuerpo.
+     * @param blocks blockId → bytes restantes de cada buffer, en el orden en que se escribirán
+     * @return buffers del cuerpo; la cantidad va en el primer encabezado
+     */
+    public static List<ByteBuffer> encodeBlockBuffers(Map<String, ByteBuffer> blocks) {
+        List<ByteBuffer> body = new ArrayList<>(2 * blocks.size() + 1);
+        boolean first = true;
+        for (Map.Entry<String, ByteBuffer> e : blocks.entrySet()) {
+            byte[] id = BlockProtocol.encodeId(e.getKey());
+            ByteBuffer header = ByteBuffer.allocate((first ? 4 : 0) + 2 + id.length + 4);
+            if (first) {
+                header.putInt(blocks.size());
+                first = false;
+            }
+            header.putShort((short) id.length).put(id).putInt(e.getValue().remaining()).flip();
+            body.add(header);
+            body.add(e.getValue().duplicate());
+        }
+        if (first) {
+            body.add(ByteBuffer.allocate(4).putInt(0).flip());
+        }
+        return body;
+    }
+
+    /**
+     * Lee una lista de bloques; los registros con largo {@link #MISSING} se omiten.
+     * @return blockId → bytes, en el orden del cuerpo
+     */
+    public static Map<String, byte[]> decodeBlocks(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        int count = readCount(din);
+        Map<String, byte[]> blocks = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String id = readId(din);
+            int length = din.readInt();
+            if (length == MISSING) {
+                continue;
+            }
+            if (length < 0 || length > BlockProtocol.MAX_FRAME) {
+                throw new IOException("Largo de bloque inválido en lote: " + length);
+            }
+            byte[] data = new byte[length];
+            din.readFully(data);
+            blocks.put(id, data);
+        }
+        return blocks;
+    }
+
+    /**
+     * Igual que {@link #decodeBlocks(InputStream)} pero sin copiar: cada bloque es una vista
+     * de solo lectura sobre body.
+     * @return blockId → vista del bloque, en el orden del cuerpo
+     */
+    public static Map<String, ByteBuffer> sliceBlocks(ByteBuffer body) throws IOException {
+        ByteBuffer in = body.duplicate();
+        try {
+            int count = in.getInt();
+            if (count < 0 || count > MAX_BLOCKS) {
+                throw new IOException("Cantidad de bloques inválida en lote: " + count);
+            }
+            Map<String, ByteBuffer> blocks = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                byte[] id = new byte[Short.toUnsignedInt(in.getShort())];
+                in.get(id);
+                int length = in.getInt();
+                if (length == MISSING) {
+                    continue;
+                }
+                if (length < 0 || length > in.remaining()) {
+                    throw new IOException("Largo de bloque inválido en lote: " + length);
+                }
+                blocks.put(new String(id, StandardCharsets.UTF_8), in.slice(in.position(), length).asReadOnlyBuffer());
+                in.position(in.position() + length);
+            }
+            return blocks;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Lote truncado", e);
+        }
+    }
+
+    public static void writeCount(OutputStream out, int count) throws IOException {
+        new DataOutputStream(out).writeInt(count);
+    }
+
+    /**
+     * Escribe el encabezado de un registro de bloque; le siguen length bytes de datos.
+     */
+    public static void writeRecordHeader(OutputStream out, String blockId, int length) throws IOException {
+        DataOutputStream dout = new DataOutputStream(out);
+        writeId(dout, blockId);
+        dout.writeInt(length);
+    }
+
+    private static void writeId(DataOutputStream out, String blockId) throws IOException {
+        byte[] id = BlockProtocol.encodeId(blockId);
+        out.writeShort(id.length);
+        out.write(id);
+    }
+
+    private static String readId(DataInputStream in) throws IOException {
+        byte[] id = new byte[in.readUnsignedShort()];
+        in.readFully(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_BLOCKS) {
+            throw new IOException("Cantidad de bloques inválida en lote: " + count);
+        }
+        return count;
+    }
+}
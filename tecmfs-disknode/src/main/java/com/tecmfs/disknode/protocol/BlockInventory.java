@@ -0,0 +1,90 @@
+package com.tecmfs.disknode.protocol;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Formato de la respuesta de /blockInventory: la lista de todos los bloques de un nodo,
+ * escrita a medida que se recorre el almacenamiento y comprimida con GZIP (los ids se repiten mucho).
+ * <p>
+ * Registro:   [short largoId][blockId UTF-8][int largo][long checksum]
+ * Fin:        [short 0]
+ * <p>
+ * El checksum es el mismo que registran los metadatos del Controller para cada bloque.
+ * Calcularlo obliga al nodo a leer todos sus bloques, así que solo se envía si se pide
+ * (/blockInventory?checksums=true); si no, cada registro lleva {@link #UNKNOWN_CHECKSUM}
+ * y la lista cuesta lo que la cantidad de bloques.
+ * Sin el marcador de fin la lista está truncada.
+ */
+public final class BlockInventory {
+    /** Checksum de un registro cuando no se pidió calcularlo; ningún checksum real es negativo. */
+    public static final long UNKNOWN_CHECKSUM = -1L;
+
+    private BlockInventory() {
+    }
+
+    /**
+     * Entrada de la lista: un bloque del nodo.
+     */
+    public static final class Entry {
+        private final String blockId;
+        private final int length;
+        private final long checksum;
+
+        public Entry(String blockId, int length, long checksum) {
+            this.blockId = blockId;
+            this.length = length;
+            this.checksum = checksum;
+        }
+
+        public String getBlockId() {
+            return blockId;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        public long getChecksum() {
+            return checksum;
+        }
+    }
+
+    public static void writeEntry(DataOutputStream out, String blockId, int length, long checksum)
+            throws IOException {
+        byte[] id = BlockProtocol.encodeId(blockId);
+        out.writeShort(id.length);
+        out.write(id);
+        out.writeInt(length);
+        out.writeLong(checksum);
+    }
+
+    public static void writeEnd(OutputStream out) throws IOException {
+        new DataOutputStream(out).writeShort(0);
+    }
+
+    /**
+     * Lee la siguiente entrada.
+     * @return la entrada, o null al llegar al marcador de fin
+     * @throws EOFException si el flujo termina antes del marcador
+     */
+    public static Entry readEntry(DataInputStream in) throws IOException {
+        int idLength = in.readUnsignedShort();
+        if (idLength == 0) {
+            return null;
+        }
+        byte[] id = new byte[idLength];
+        in.readFully(id);
+        int length = in.readInt();
+        long checksum = in.readLong();
+        if (length < 0) {
+            throw new IOException("Largo de bloque inválido en inventario: " + length);
+        }
+        return new Entry(new String(id, StandardCharsets.UTF_8), length, checksum);
+    }
+}
@@ -0,0 +1,60 @@
+package com.tecmfs.disknode.protocol;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Protocolo binario de bloques entre el Controller y los Disk Nodes.
+ * Alternativa opcional a los endpoints HTTP sobre una conexión TCP persistente.
+ * <p>
+ * Petición:  [int largo][byte opcode][long requestId][short largoId][blockId UTF-8][payload]
+ * Respuesta: [int largo][byte status][long requestId][payload]
+ * <p>
+ * El largo inicial cuenta los bytes que siguen a él. El requestId permite enviar varias
+ * peticiones sin esperar respuesta (pipelining) y compartir la conexión entre hilos:
+ * las respuestas pueden llegar en otro orden y se asocian por requestId.
+ */
+public final class BlockProtocol {
+
+    // Opcodes
+    public static final byte OP_STORE = 1;   // payload: bytes del bloque
+    public static final byte OP_GET = 2;     // respuesta: bytes del bloque
+    public static final byte OP_DELETE = 3;
+    public static final byte OP_STAT = 4;    // respuesta: long con el tamaño del bloque
+
+    // Códigos de estado
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_NOT_FOUND = 1;
+    public static final byte STATUS_INVALID = 2;
+    public static final byte STATUS_NO_SPACE = 3;
+    public static final byte STATUS_ERROR = 4;
+
+    /** Bytes de encabezado de una petición después del largo, sin contar el blockId */
+    public static final int REQUEST_HEADER = 1 + 8 + 2;
+    /** Bytes de encabezado de una respuesta después del largo */
+    public static final int RESPONSE_HEADER = 1 + 8;
+    /** Tamaño máximo de un frame, para rechazar datos corruptos */
+    public static final int MAX_FRAME = 64 * 1024 * 1024;
+
+    private BlockProtocol() {
+    }
+
+    /**
+     * @return bytes UTF-8 del blockId
+     */
+    public static byte[] encodeId(String blockId) {
+        return blockId.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return descripción legible de un código de estado
+     */
+    public static String statusName(byte status) {
+        switch (status) {
+            case STATUS_OK: return "OK";
+            case STATUS_NOT_FOUND: return "NOT_FOUND";
+            case STATUS_INVALID: return "INVALID";
+            case STATUS_NO_SPACE: return "NO_SPACE";
+            default: return "ERROR";
+        }
+    }
+}
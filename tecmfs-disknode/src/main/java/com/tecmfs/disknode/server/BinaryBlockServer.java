@@ -0,0 +1,251 @@
+package com.tecmfs.disknode.server;
+
+import com.tecmfs.disknode.config.DiskNodeConfig;
+import com.tecmfs.disknode.protocol.BlockProtocol;
+import com.tecmfs.disknode.storage.BlockStore;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+/**
+ * Servidor del protocolo binario de bloques (ver {@link BlockProtocol}).
+ * Atiende conexiones persistentes: un hilo por conexión lee frames y cada petición se procesa
+ * en un hilo virtual, así varias peticiones de la misma conexión avanzan en paralelo y sus respuestas
+ * se escriben en el orden en que terminan. Cada conexión tiene a lo sumo
+ * {@link #MAX_IN_FLIGHT} peticiones en curso; al llegar al límite deja de leer frames hasta que
+ * alguna termine. Los bloques se leen y escriben a través del
+ * {@link BlockStore} del nodo usando ByteBuffer; las lecturas se envían al socket con
+ * {@link BlockStore#transferTo}, sin copiarlas al heap cuando el motor lo permite.
+ */
+public class BinaryBlockServer {
+    private static final Logger logger = Logger.getLogger(BinaryBlockServer.class.getName());
+
+    // Peticiones en curso por conexión; acota hilos y buffers de frames que un cliente puede acumular
+    private static final int MAX_IN_FLIGHT = 32;
+
+    private final DiskNodeConfig config;
+    private final BlockStore store;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+    private final ExecutorService workers =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("binary-worker-", 0).factory());
+    private volatile boolean running;
+
+    public BinaryBlockServer(DiskNodeConfig config, BlockStore store) throws IOException {
+        this.config = config;
+        this.store = store;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(config.getIp(), config.getBinaryPort()));
+    }
+
+    /**
+     * Comienza a aceptar conexiones en un hilo propio.
+     */
+    public void start() {
+        running = true;
+        Thread acceptor = new Thread(this::acceptLoop, "binary-accept-" + config.getBinaryPort());
+        acceptor.start();
+        logger.info("Protocolo binario escuchando en " + config.getIp() + ":" + config.getBinaryPort());
+    }
+
+    /**
+     * Deja de aceptar conexiones y cierra las existentes.
+     */
+    public void stop() {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            logger.warning("Error cerrando socket binario: " + e.getMessage());
+        }
+        connections.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.socket().setTcpNoDelay(true);
+                connections.execute(() -> serve(channel));
+            } catch (IOException e) {
+                if (running) {
+                    logger.warning("Error aceptando conexión binaria: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Lee frames de una conexión hasta que el cliente la cierre.
+     */
+    private void serve(SocketChannel channel) {
+        Object writeLock = new Object();
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        ByteBuffer lengthBuf = ByteBuffer.allocate(4);
+        try (channel) {
+            while (running) {
+                lengthBuf.clear();
+                if (!readFully(channel, lengthBuf)) {
+                    break;
+                }
+                int length = lengthBuf.flip().getInt();
+                if (length < BlockProtocol.REQUEST_HEADER || length > BlockProtocol.MAX_FRAME) {
+                    logger.warning("Frame inválido de " + length + " bytes; cerrando conexión");
+                    break;
+                }
+                inFlight.acquire();
+                ByteBuffer frame = ByteBuffer.allocate(length);
+                if (!readFully(channel, frame)) {
+                    inFlight.release();
+                    break;
+                }
+                frame.flip();
+                workers.execute(() -> {
+                    try {
+                        handleFrame(channel, writeLock, frame);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } catch (IOException e) {
+            logger.fine("Conexión binaria cerrada: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Procesa una petición y escribe su respuesta.
+     */
+    private void handleFrame(SocketChannel channel, Object writeLock, ByteBuffer frame) {
+        byte opcode = frame.get();
+        long requestId = frame.getLong();
+        int idLength = frame.getShort() & 0xFFFF;
+        if (idLength > frame.remaining()) {
+            respond(channel, writeLock, requestId, BlockProtocol.STATUS_INVALID, null);
+            return;
+        }
+        byte[] idBytes = new byte[idLength];
+        frame.get(idBytes);
+        String blockId = new String(idBytes, StandardCharsets.UTF_8);
+        if (!DiskNodeServer.isValidBlockId(blockId)) {
+            respond(channel, writeLock, requestId, BlockProtocol.STATUS_INVALID, null);
+            return;
+        }
+
+        try {
+            switch (opcode) {
+                case BlockProtocol.OP_STORE:
+                    if (!DiskNodeServer.hasCapacity(store, config)) {
+                        respond(channel, writeLock, requestId, BlockProtocol.STATUS_NO_SPACE, null);
+                        return;
+                    }
+                    store.store(blockId, frame);
+                    respond(channel, writeLock, requestId, BlockProtocol.STATUS_OK, null);
+                    break;
+                case BlockProtocol.OP_GET:
+                    sendBlock(channel, writeLock, requestId, blockId);
+                    break;
+                case BlockProtocol.OP_DELETE:
+                    respond(channel, writeLock, requestId, store.delete(blockId)
+                            ? BlockProtocol.STATUS_OK : BlockProtocol.STATUS_NOT_FOUND, null);
+                    break;
+                case BlockProtocol.OP_STAT:
+                    long blockSize = store.size(blockId);
+                    if (blockSize >= 0) {
+                        ByteBuffer size = ByteBuffer.allocate(8).putLong(blockSize).flip();
+                        respond(channel, writeLock, requestId, BlockProtocol.STATUS_OK, size);
+                    } else {
+                        respond(channel, writeLock, requestId, BlockProtocol.STATUS_NOT_FOUND, null);
+                    }
+                    break;
+                default:
+                    respond(channel, writeLock, requestId, BlockProtocol.STATUS_INVALID, null);
+            }
+        } catch (IOException e) {
+            logger.severe("Error procesando petición binaria " + requestId + ": " + e.getMessage());
+            if (!channel.isOpen()) {
+                return;
+            }
+            respond(channel, writeLock, requestId, BlockProtocol.STATUS_ERROR, null);
+        }
+    }
+
+    /**
+     * Envía un bloque: encabezado y luego los datos directo del almacenamiento al socket.
+     * Si la lectura falla después de enviar el encabezado, el cliente ya espera el payload completo
+     * y una respuesta de error desincronizaría el flujo: se cierra la conexión.
+     */
+    private void sendBlock(SocketChannel channel, Object writeLock, long requestId, String blockId)
+            throws IOException {
+        boolean found;
+        boolean[] headerSent = new boolean[1];
+        synchronized (writeLock) {
+            try {
+                found = store.transferTo(blockId, channel, size -> {
+                    headerSent[0] = true;
+                    writeFully(channel, header(BlockProtocol.STATUS_OK, requestId, size));
+                });
+            } catch (IOException e) {
+                if (headerSent[0]) {
+                    channel.close();
+                }
+                throw e;
+            }
+        }
+        if (!found) {
+            respond(channel, writeLock, requestId, BlockProtocol.STATUS_NOT_FOUND, null);
+        }
+    }
+
+    private void respond(SocketChannel channel, Object writeLock, long requestId, byte status, ByteBuffer payload) {
+        long payloadSize = payload == null ? 0 : payload.remaining();
+        ByteBuffer header = header(status, requestId, payloadSize);
+        try {
+            synchronized (writeLock) {
+                writeFully(channel, header);
+                if (payload != null) {
+                    writeFully(channel, payload);
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("No se pudo responder petición " + requestId + ": " + e.getMessage());
+        }
+    }
+
+    private static ByteBuffer header(byte status, long requestId, long payloadSize) {
+        ByteBuffer header = ByteBuffer.allocate(4 + BlockProtocol.RESPONSE_HEADER);
+        header.putInt((int) (BlockProtocol.RESPONSE_HEADER + payloadSize));
+        header.put(status);
+        header.putLong(requestId);
+        return header.flip();
+    }
+
+    private static void writeFully(SocketChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    /**
+     * @return false si el cliente cerró la conexión antes de completar el buffer
+     */
+    private static boolean readFully(SocketChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,6 +1,16 @@
 package com.tecmfs.disknode.server;
 
+import com.tecmfs.common.models.Block;
+import com.tecmfs.common.util.ServerExecution;
 import com.tecmfs.disknode.config.DiskNodeConfig;
+import com.tecmfs.disknode.protocol.BlockBatch;
+import com.tecmfs.disknode.protocol.BlockInventory;
+import com.tecmfs.disknode.storage.AccountingBlockStore;
+import com.tecmfs.disknode.storage.BlockInfo;
+import com.tecmfs.disknode.storage.BlockStore;
+import com.tecmfs.disknode.storage.FileBlockStore;
+import com.tecmfs.disknode.storage.MappedBlockStore;
+import com.tecmfs.disknode.storage.SegmentLogBlockStore;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
@@ -9,20 +19,24 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 
 /**
@@ -30,22 +44,42 @@ import java.util.stream.Stream;
  */
 public class DiskNodeServer {
     private static final Logger logger = Logger.getLogger(DiskNodeServer.class.getName());
+    private static final Pattern BLOCK_ID = Pattern.compile("[a-zA-Z0-9_-]+");
+
     private final DiskNodeConfig config;
     private final HttpServer server;
+    private final ExecutorService requestExecutor;
+    private final AccountingBlockStore store;
+    private final BinaryBlockServer binaryServer;   // null si el protocolo binario está deshabilitado
 
     public DiskNodeServer(DiskNodeConfig config) throws IOException {
         this.config = config;
+        this.store = openStore(config);
         InetSocketAddress addr = new InetSocketAddress(config.getIp(), config.getPort());
-        server = HttpServer.create(addr, 0);
-        server.createContext("/storeBlock", new StoreHandler());
-        server.createContext("/getBlock", new GetHandler());
-        server.createContext("/deleteBlock", new DeleteHandler());
-        server.createContext("/nodeStatus", new StatusHandler());
-        server.createContext("/detailedNodeStatus", new DetailedStatusHandler()); // Nuevo endpoint
-        server.createContext("/shutdown", new ShutdownHandler());
-        server.setExecutor(null);
-
-        server.setExecutor(null);
+        server = ServerExecution.createServer(addr);
+        addContext("/storeBlock", new StoreHandler());
+        addContext("/getBlock", new GetHandler());
+        addContext("/storeBlocks", new StoreBatchHandler());
+        addContext("/getBlocks", new GetBatchHandler());
+        addContext("/blockInventory", new InventoryHandler());
+        addContext("/deleteBlock", new DeleteHandler());
+        addContext("/deleteBlocks", new DeleteBatchHandler());
+        addContext("/nodeStatus", new StatusHandler());
+        addContext("/detailedNodeStatus", new DetailedStatusHandler()); // Nuevo endpoint
+        addContext("/shutdown", new ShutdownHandler());
+        // Cada petición en su propio hilo: la E/S de un bloque no frena los sondeos de estado
+        requestExecutor = ServerExecution.newExecutor(config.getExecutorMode(),
+                config.getPlatformThreads(), "disknode-" + config.getPort());
+        server.setExecutor(requestExecutor);
+
+        binaryServer = config.getBinaryPort() > 0 ? new BinaryBlockServer(config, store) : null;
+    }
+
+    /**
+     * Registra un handler aplicando el límite de concurrencia configurado para su ruta.
+     */
+    private void addContext(String path, HttpHandler handler) {
+        server.createContext(path, ServerExecution.limit(handler, config.getEndpointLimit(path)));
     }
 
     /**
@@ -54,6 +88,9 @@ public class DiskNodeServer {
     public void start() {
         try {
             server.start();
+            if (binaryServer != null) {
+                binaryServer.start();
+            }
             logger.info("DiskNode iniciado en " + config.getIp() + ":" + config.getPort()
                     + " con capacidad=" + config.getCapacityBytes() + " bytes");
         } catch (Exception e) {
@@ -61,7 +98,43 @@ public class DiskNodeServer {
         }
     }
 
+    /**
+     * Valida que un blockId solo contenga caracteres seguros para usar como nombre de archivo.
+     */
+    static boolean isValidBlockId(String blockId) {
+        return blockId != null && !blockId.isEmpty() && BLOCK_ID.matcher(blockId).matches();
+    }
+
+    /**
+     * Abre el motor de almacenamiento indicado por storageEngine, con contadores de bloques.
+     */
+    static AccountingBlockStore openStore(DiskNodeConfig config) throws IOException {
+        Path root = Paths.get(config.getStoragePath());
+        BlockStore engine;
+        if (DiskNodeConfig.ENGINE_SEGMENT.equals(config.getStorageEngine())) {
+            engine = new SegmentLogBlockStore(root.resolve("segments"), SegmentLogBlockStore.DEFAULT_SEGMENT_BYTES);
+        } else if (DiskNodeConfig.ENGINE_MAPPED.equals(config.getStorageEngine())) {
+            engine = new MappedBlockStore(root.resolve("mapped"), config.getBlockSize(),
+                    config.getCapacityBytes(), config.getForcePolicy());
+        } else {
+            engine = new FileBlockStore(root);
+        }
+        return new AccountingBlockStore(engine, root.resolve("counters.properties"));
+    }
 
+    /**
+     * Indica si queda espacio para un bloque más según capacityBytes.
+     * Con un {@link AccountingBlockStore} es una consulta de contador en tiempo constante.
+     */
+    static boolean hasCapacity(BlockStore store, DiskNodeConfig config) {
+        try {
+            // Prever tamaño de bloque fija
+            return store.usedBytes() + config.getBlockSize() <= config.getCapacityBytes();
+        } catch (IOException e) {
+            logger.warning("No se pudo calcular espacio usado: " + e.getMessage());
+            return true;
+        }
+    }
 
     /**
      * Handler para almacenar un bloque.
@@ -83,7 +156,7 @@ public class DiskNodeServer {
 
             Map<String, String> params = queryToMap(exchange.getRequestURI().getQuery());
             String blockId = params.get("blockId");
-            if (blockId == null || blockId.isEmpty() || !blockId.matches("[a-zA-Z0-9_-]+")) {
+            if (!isValidBlockId(blockId)) {
                 try {
                     exchange.sendResponseHeaders(400, -1);
                 } catch (IOException e) {
@@ -94,42 +167,30 @@ public class DiskNodeServer {
                 return;
             }
 
-            Path root = Paths.get(config.getStoragePath());
-            try {
-                long usedBytes = Files.list(root)
-                        .mapToLong(p -> p.toFile().length())
-                        .sum();
-                // Prever tamaño de bloque fija
-                if (usedBytes + config.getBlockSize() > config.getCapacityBytes()) {
+            if (!hasCapacity(store, config)) {
+                try {
                     exchange.sendResponseHeaders(507, -1); // Storage Insufficient
-                    return;
+                } catch (IOException e) {
+                    logger.severe("Error al responder sin espacio: " + e.getMessage());
+                } finally {
+                    exchange.close();
                 }
-            } catch (IOException e) {
-                logger.warning("No se pudo calcular espacio usado: " + e.getMessage());
+                return;
             }
 
-            Path target = Paths.get(config.getStoragePath(), blockId + ".blk");
-            if (Files.exists(target)) {
-                logger.warning("El bloque " + blockId + " ya existe y será sobrescrito.");
-            }
             try {
-                Files.createDirectories(target.getParent());
-                try (InputStream is = new BufferedInputStream(exchange.getRequestBody());
-                     OutputStream os = new BufferedOutputStream(
-                             Files.newOutputStream(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING))) {
-                    byte[] buffer = new byte[8192];
-                    int read;
-                    int total = 0;
-                    while ((read = is.read(buffer)) != -1) {
-                        total += read;
-                        os.write(buffer, 0, read);
-                    }
-                    os.flush();
-                    if (total != config.getBlockSize()) {
-                        logger.warning("Tamaño de datos recibido (" + total + ") difiere de blockSize (" + config.getBlockSize() + ").");
-                    }
+                if (store.size(blockId) >= 0) {
+                    logger.warning("El bloque " + blockId + " ya existe y será sobrescrito.");
                 }
-                logger.info("Bloque guardado exitosamente en: " + target.toAbsolutePath());
+                byte[] data;
+                try (InputStream is = exchange.getRequestBody()) {
+                    data = is.readAllBytes();
+                }
+                if (data.length != config.getBlockSize()) {
+                    logger.warning("Tamaño de datos recibido (" + data.length + ") difiere de blockSize (" + config.getBlockSize() + ").");
+                }
+                store.store(blockId, ByteBuffer.wrap(data));
+                logger.info("Bloque guardado exitosamente: " + blockId);
 
                 exchange.sendResponseHeaders(200, 0);
                 try (OutputStream os2 = exchange.getResponseBody()) {
@@ -150,7 +211,9 @@ public class DiskNodeServer {
     }
     /**
      * Handler para estado del nodo.
-     * Devuelve JSON con: status, blockCount, usedBytes, blockSize, capacityBytes.
+     * Devuelve JSON con: status, blockCount, dataBlocks, parityBlocks, usedBytes, blockSize,
+     * capacityBytes, binaryPort. Los valores salen de los contadores del almacenamiento.
+     * Un binaryPort mayor que 0 anuncia que el nodo acepta el protocolo binario.
      */
     class StatusHandler implements HttpHandler {
         @Override
@@ -160,33 +223,22 @@ public class DiskNodeServer {
                 return;
             }
 
-            Path dir = Paths.get(config.getStoragePath());
-            long blockCount;
-            long usedBytes;
-            // Contar sólo archivos .blk
-            try (Stream<Path> listing = Files.list(dir)) {
-                blockCount = listing
-                        .filter(p -> p.toString().endsWith(".blk"))
-                        .count();
-            }
-            // Sumar todos los bytes de archivos regulares en subdirectorios
-            try (Stream<Path> walk = Files.walk(dir)) {
-                usedBytes = walk
-                        .filter(Files::isRegularFile)
-                        .mapToLong(p -> p.toFile().length())
-                        .sum();
-            }
-
             String json = String.format(
                     "{\"status\":\"active\","
                             + "\"blockCount\":%d,"
+                            + "\"dataBlocks\":%d,"
+                            + "\"parityBlocks\":%d,"
                             + "\"usedBytes\":%d,"
                             + "\"blockSize\":%d,"
-                            + "\"capacityBytes\":%d}",
-                    blockCount,
-                    usedBytes,
+                            + "\"capacityBytes\":%d,"
+                            + "\"binaryPort\":%d}",
+                    store.getBlockCount(),
+                    store.getDataBlocks(),
+                    store.getParityBlocks(),
+                    store.usedBytes(),
                     config.getBlockSize(),
-                    config.getCapacityBytes()
+                    config.getCapacityBytes(),
+                    config.getBinaryPort()
             );
 
             exchange.getResponseHeaders().add("Content-Type", "application/json");
@@ -207,26 +259,12 @@ public class DiskNodeServer {
                 return;
             }
 
-            Path dir = Paths.get(config.getStoragePath());
-            List<String> entries;
-            try (Stream<Path> files = Files.list(dir)) {
-                entries = files.filter(p -> p.toString().endsWith(".blk"))
-                        .map(p -> {
-                            try {
-                                String fileName = p.getFileName().toString();
-                                String blockId = fileName.replaceFirst("\\.blk$", "");
-                                String type = blockId.contains("_p") ? "PARITY" : "DATA";
-                                long size = Files.size(p);
-                                long lm = Files.getLastModifiedTime(p).toMillis();
-                                return String.format(
-                                        "{\"blockId\":\"%s\",\"type\":\"%s\",\"size\":%d,\"lastModified\":%d}",
-                                        blockId, type, size, lm);
-                            } catch (IOException e) {
-                                return null;
-                            }
-                        })
-                        .filter(s -> s != null)
-                        .collect(Collectors.toList());
+            List<String> entries = new ArrayList<>();
+            for (BlockInfo info : store.list()) {
+                entries.add(String.format(
+                        "{\"blockId\":\"%s\",\"type\":\"%s\",\"size\":%d,\"lastModified\":%d}",
+                        info.getBlockId(), info.isParity() ? "PARITY" : "DATA",
+                        info.getSize(), info.getLastModified()));
             }
 
             String json = "[" + String.join(",", entries) + "]";
@@ -252,8 +290,19 @@ public class DiskNodeServer {
             exchange.sendResponseHeaders(200, 0);
             exchange.getResponseBody().close();
             new Thread(() -> {
-                try { Thread.sleep(200); server.stop(0); }
+                try {
+                    Thread.sleep(200);
+                    server.stop(0);
+                    requestExecutor.shutdown();
+                    if (binaryServer != null) {
+                        binaryServer.stop();
+                    }
+                    store.close();
+                }
                 catch (InterruptedException ignored) {}
+                catch (IOException e) {
+                    logger.warning("Error cerrando almacenamiento: " + e.getMessage());
+                }
             }).start();
         }
     }
@@ -300,9 +349,8 @@ class DeleteHandler implements HttpHandler {
                 return;
             }
 
-            Path file = Paths.get(config.getStoragePath(), blockId + ".blk");
             try {
-                if (Files.deleteIfExists(file)) {
+                if (store.delete(blockId)) {
                     exchange.sendResponseHeaders(200, 0);
                     try (OutputStream os = exchange.getResponseBody()) {
                         os.write("Bloque eliminado".getBytes());
@@ -340,7 +388,7 @@ class DeleteHandler implements HttpHandler {
 
             Map<String, String> params = queryToMap(exchange.getRequestURI().getQuery());
             String blockId = params.get("blockId");
-            if (blockId == null || blockId.isEmpty() || !blockId.matches("[a-zA-Z0-9_-]+")) {
+            if (!isValidBlockId(blockId)) {
                 try {
                     exchange.sendResponseHeaders(400, -1);
                 } catch (IOException e) {
@@ -351,29 +399,14 @@ class DeleteHandler implements HttpHandler {
                 return;
             }
 
-            Path file = Paths.get(config.getStoragePath(), blockId + ".blk");
-            if (!Files.exists(file)) {
-                try {
+            try (WritableByteChannel out = Channels.newChannel(exchange.getResponseBody())) {
+                // Los datos van del almacenamiento al cuerpo de la respuesta sin buffer intermedio propio
+                boolean found = store.transferTo(blockId, out, size -> {
+                    exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+                    exchange.sendResponseHeaders(200, size);
+                });
+                if (!found) {
                     exchange.sendResponseHeaders(404, -1);
-                } catch (IOException e) {
-                    logger.severe("Error al responder no encontrado: " + e.getMessage());
-                } finally {
-                    exchange.close();
-                }
-                return;
-            }
-
-            try {
-                exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
-                long fileSize = Files.size(file);
-                exchange.sendResponseHeaders(200, fileSize);
-                try (InputStream is = new BufferedInputStream(Files.newInputStream(file));
-                     OutputStream os = exchange.getResponseBody()) {
-                    byte[] buffer = new byte[8192];
-                    int read;
-                    while ((read = is.read(buffer)) != -1) {
-                        os.write(buffer, 0, read);
-                    }
                 }
             } catch (IOException e) {
                 try {
@@ -388,6 +421,226 @@ class DeleteHandler implements HttpHandler {
         }
     }
 
+    /**
+     * Handler para almacenar varios bloques en una petición (ver {@link BlockBatch}).
+     * El lote es todo o nada: si un bloque falla se deshacen los ya escritos del mismo lote,
+     * restaurando el contenido previo de los que se sobrescribieron.
+     */
+    class StoreBatchHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try (exchange) {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+
+                Map<String, byte[]> blocks;
+                try (InputStream is = new BufferedInputStream(exchange.getRequestBody())) {
+                    blocks = BlockBatch.decodeBlocks(is);
+                } catch (IOException e) {
+                    logger.warning("Lote inválido: " + e.getMessage());
+                    exchange.sendResponseHeaders(400, -1);
+                    return;
+                }
+                for (String blockId : blocks.keySet()) {
+                    if (!isValidBlockId(blockId)) {
+                        exchange.sendResponseHeaders(400, -1);
+                        return;
+                    }
+                }
+                long needed = (long) blocks.size() * config.getBlockSize();
+                if (store.usedBytes() + needed > config.getCapacityBytes()) {
+                    exchange.sendResponseHeaders(507, -1); // Storage Insufficient
+                    return;
+                }
+
+                Map<String, ByteBuffer> previous = new HashMap<>();
+                List<String> written = new ArrayList<>();
+                try {
+                    for (Map.Entry<String, byte[]> e : blocks.entrySet()) {
+                        ByteBuffer old = store.read(e.getKey());
+                        if (old != null) {
+                            previous.put(e.getKey(), old);
+                        }
+                        store.store(e.getKey(), ByteBuffer.wrap(e.getValue()));
+                        written.add(e.getKey());
+                    }
+                } catch (IOException e) {
+                    logger.severe("Lote fallido tras " + written.size() + " bloques, deshaciendo: " + e.getMessage());
+                    rollback(written, previous);
+                    exchange.sendResponseHeaders(500, -1);
+                    return;
+                }
+                logger.info("Lote de " + blocks.size() + " bloques guardado");
+
+                byte[] resp = ("OK " + blocks.size()).getBytes();
+                exchange.sendResponseHeaders(200, resp.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(resp);
+                }
+            }
+        }
+
+        private void rollback(List<String> written, Map<String, ByteBuffer> previous) {
+            for (String blockId : written) {
+                try {
+                    ByteBuffer old = previous.get(blockId);
+                    if (old != null) {
+                        store.store(blockId, old);
+                    } else {
+                        store.delete(blockId);
+                    }
+                } catch (IOException e) {
+                    logger.severe("No se pudo deshacer " + blockId + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Handler para leer varios bloques en una petición.
+     * Recibe por POST una lista de ids y responde la lista de bloques en el mismo orden;
+     * los ausentes llevan largo {@link BlockBatch#MISSING}.
+     */
+    class GetBatchHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try (exchange) {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+
+                List<String> blockIds;
+                try (InputStream is = exchange.getRequestBody()) {
+                    blockIds = BlockBatch.decodeIds(is);
+                } catch (IOException e) {
+                    logger.warning("Lote inválido: " + e.getMessage());
+                    exchange.sendResponseHeaders(400, -1);
+                    return;
+                }
+                for (String blockId : blockIds) {
+                    if (!isValidBlockId(blockId)) {
+                        exchange.sendResponseHeaders(400, -1);
+                        return;
+                    }
+                }
+
+                exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream os = new BufferedOutputStream(exchange.getResponseBody())) {
+                    WritableByteChannel out = Channels.newChannel(os);
+                    BlockBatch.writeCount(os, blockIds.size());
+                    for (String blockId : blockIds) {
+                        boolean found = store.transferTo(blockId, out,
+                                size -> BlockBatch.writeRecordHeader(os, blockId, (int) size));
+                        if (!found) {
+                            BlockBatch.writeRecordHeader(os, blockId, BlockBatch.MISSING);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Handler para eliminar varios bloques en una petición.
+     * Recibe por POST una lista de ids y responde "OK n" con la cantidad que existía y se eliminó;
+     * los ausentes no son un error.
+     */
+    class DeleteBatchHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try (exchange) {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+
+                List<String> blockIds;
+                try (InputStream is = exchange.getRequestBody()) {
+                    blockIds = BlockBatch.decodeIds(is);
+                } catch (IOException e) {
+                    logger.warning("Lote inválido: " + e.getMessage());
+                    exchange.sendResponseHeaders(400, -1);
+                    return;
+                }
+                for (String blockId : blockIds) {
+                    if (!isValidBlockId(blockId)) {
+                        exchange.sendResponseHeaders(400, -1);
+                        return;
+                    }
+                }
+
+                int deleted = 0;
+                try {
+                    for (String blockId : blockIds) {
+                        if (store.delete(blockId)) {
+                            deleted++;
+                        }
+                    }
+                } catch (IOException e) {
+                    logger.severe("Error al eliminar lote tras " + deleted + " bloques: " + e.getMessage());
+                    exchange.sendResponseHeaders(500, -1);
+                    return;
+                }
+                logger.info("Lote de " + deleted + " bloques eliminado");
+
+                byte[] resp = ("OK " + deleted).getBytes();
+                exchange.sendResponseHeaders(200, resp.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(resp);
+                }
+            }
+        }
+    }
+
+    /**
+     * Handler que lista todos los bloques del nodo con su largo, en el formato de {@link BlockInventory}.
+     * La respuesta se escribe mientras se recorre el almacenamiento, así que el Controller puede
+     * reconstruir sus metadatos con una sola petición por nodo. Con ?checksums=true también
+     * se calcula el checksum de cada bloque, lo que implica leerlos todos.
+     */
+    class InventoryHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try (exchange) {
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+
+                String query = exchange.getRequestURI().getQuery();
+                boolean withChecksums = query != null && query.contains("checksums=true");
+                List<BlockInfo> blocks = store.list();
+                exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+                exchange.sendResponseHeaders(200, 0);
+                int skipped = 0;
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new GZIPOutputStream(exchange.getResponseBody(), 64 * 1024)))) {
+                    for (BlockInfo info : blocks) {
+                        if (!withChecksums) {
+                            BlockInventory.writeEntry(out, info.getBlockId(), (int) info.getSize(),
+                                    BlockInventory.UNKNOWN_CHECKSUM);
+                            continue;
+                        }
+                        ByteBuffer data = store.read(info.getBlockId());
+                        if (data == null) {
+                            // Borrado entre list() y la lectura
+                            skipped++;
+                            continue;
+                        }
+                        BlockInventory.writeEntry(out, info.getBlockId(), data.remaining(),
+                                Block.checksumValueOf(data));
+                    }
+                    BlockInventory.writeEnd(out);
+                }
+                logger.info("Inventario enviado: " + (blocks.size() - skipped) + " bloques");
+            }
+        }
+    }
+
     /**
      * Punto de entrada de la aplicación.
      */
@@ -0,0 +1,332 @@
+package com.tecmfs.disknode.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+/**
+ * Envoltorio de un {@link BlockStore} que mantiene contadores incrementales de bloques
+ * (total, datos, paridad) y bytes, de modo que el estado del nodo y la verificación de
+ * capacidad se responden sin recorrer el almacenamiento.
+ * <p>
+ * Los contadores se guardan cada SNAPSHOT_INTERVAL_SECONDS y al cerrar en un archivo de
+ * propiedades con un número de generación creciente. Entre dos snapshots, cada escritura o
+ * borrado anota en un diario [long generación][long tamaño previo][short largoId][blockId]
+ * antes de tocar el almacenamiento. Tras un cierre no limpio se parte del snapshot y solo se
+ * revisan los bloques del diario de su misma generación: el primer registro de cada bloque da
+ * su aporte en el snapshot y size() su aporte actual. Solo sin snapshot se reconcilia con list().
+ */
+public class AccountingBlockStore implements BlockStore {
+    private static final Logger logger = Logger.getLogger(AccountingBlockStore.class.getName());
+
+    private static final int LOCK_STRIPES = 64;
+    private static final long SNAPSHOT_INTERVAL_SECONDS = 30;
+
+    private final BlockStore delegate;
+    private final Path countersFile;
+    private final Path journalFile;
+    private final FileChannel journal;
+    private long generation;                    // generación del último snapshot, protegida por snapshotLock
+    private final AtomicLong dataBlocks = new AtomicLong();
+    private final AtomicLong parityBlocks = new AtomicLong();
+    private final AtomicLong usedBytes = new AtomicLong();
+    // Serializa operaciones sobre el mismo blockId para que el tamaño previo sea consistente
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    // Las operaciones lo toman compartido; el snapshot, exclusivo, para no cortar una operación a medias
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService persister;
+
+    /**
+     * @param delegate     motor de almacenamiento real
+     * @param countersFile archivo donde se persisten los contadores
+     */
+    public AccountingBlockStore(BlockStore delegate, Path countersFile) throws IOException {
+        this.delegate = delegate;
+        this.countersFile = countersFile;
+        this.journalFile = countersFile.resolveSibling(countersFile.getFileName() + ".journal");
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+        if (loadSnapshot()) {
+            replayJournal();
+        } else {
+            reconcile();
+        }
+        this.journal = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        snapshot();
+
+        persister = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "counters-persister");
+            t.setDaemon(true);
+            return t;
+        });
+        persister.scheduleWithFixedDelay(this::periodicSnapshot, SNAPSHOT_INTERVAL_SECONDS,
+                SNAPSHOT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // --- Contadores ---
+
+    public long getBlockCount() {
+        return dataBlocks.get() + parityBlocks.get();
+    }
+
+    public long getDataBlocks() {
+        return dataBlocks.get();
+    }
+
+    public long getParityBlocks() {
+        return parityBlocks.get();
+    }
+
+    // --- BlockStore ---
+
+    @Override
+    public void store(String blockId, ByteBuffer data) throws IOException {
+        long newSize = data.remaining();
+        snapshotLock.readLock().lock();
+        try {
+            synchronized (lockFor(blockId)) {
+                long oldSize = delegate.size(blockId);
+                appendJournal(blockId, oldSize);
+                delegate.store(blockId, data);
+                if (oldSize < 0) {
+                    counterFor(blockId).incrementAndGet();
+                    usedBytes.addAndGet(newSize);
+                } else {
+                    usedBytes.addAndGet(newSize - oldSize);
+                }
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public ByteBuffer read(String blockId) throws IOException {
+        return delegate.read(blockId);
+    }
+
+    @Override
+    public boolean transferTo(String blockId, WritableByteChannel target, SizeCallback beforeData)
+            throws IOException {
+        return delegate.transferTo(blockId, target, beforeData);
+    }
+
+    @Override
+    public boolean delete(String blockId) throws IOException {
+        snapshotLock.readLock().lock();
+        try {
+            synchronized (lockFor(blockId)) {
+                long oldSize = delegate.size(blockId);
+                if (oldSize < 0) {
+                    return delegate.delete(blockId);
+                }
+                appendJournal(blockId, oldSize);
+                if (!delegate.delete(blockId)) {
+                    return false;
+                }
+                counterFor(blockId).decrementAndGet();
+                usedBytes.addAndGet(-oldSize);
+                return true;
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long size(String blockId) throws IOException {
+        return delegate.size(blockId);
+    }
+
+    @Override
+    public List<BlockInfo> list() throws IOException {
+        return delegate.list();
+    }
+
+    /**
+     * @return suma de los tamaños de los bloques almacenados, según los contadores, más el
+     *         espacio extra que el motor ocupa en disco (p. ej. segmentos aún sin compactar)
+     */
+    @Override
+    public long usedBytes() throws IOException {
+        return usedBytes.get() + delegate.overheadBytes();
+    }
+
+    @Override
+    public long overheadBytes() throws IOException {
+        return delegate.overheadBytes();
+    }
+
+    @Override
+    public void close() throws IOException {
+        persister.shutdownNow();
+        delegate.close();
+        snapshot();
+        journal.close();
+    }
+
+    // --- Persistencia ---
+
+    private Object lockFor(String blockId) {
+        return locks[(blockId.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
+
+    private AtomicLong counterFor(String blockId) {
+        return BlockInfo.isParityId(blockId) ? parityBlocks : dataBlocks;
+    }
+
+    /**
+     * Recorre el almacenamiento una vez y recalcula los contadores.
+     */
+    private void reconcile() throws IOException {
+        long data = 0;
+        long parity = 0;
+        long bytes = 0;
+        for (BlockInfo info : delegate.list()) {
+            if (info.isParity()) {
+                parity++;
+            } else {
+                data++;
+            }
+            bytes += info.getSize();
+        }
+        dataBlocks.set(data);
+        parityBlocks.set(parity);
+        usedBytes.set(bytes);
+        logger.info(String.format("Contadores reconciliados: %d datos, %d paridad, %d bytes", data, parity, bytes));
+    }
+
+    /**
+     * @return true si se cargó un snapshot con generación; los archivos sin ella se reconcilian
+     */
+    private boolean loadSnapshot() {
+        if (!Files.exists(countersFile)) {
+            return false;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(countersFile)) {
+            props.load(in);
+            if (props.getProperty("generation") == null) {
+                return false;
+            }
+            generation = Long.parseLong(props.getProperty("generation"));
+            dataBlocks.set(Long.parseLong(props.getProperty("dataBlocks")));
+            parityBlocks.set(Long.parseLong(props.getProperty("parityBlocks")));
+            usedBytes.set(Long.parseLong(props.getProperty("usedBytes")));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Contadores guardados ilegibles, se reconcilian: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Corrige los contadores del snapshot con los bloques tocados después de él. Los registros
+     * de otra generación quedaron de antes del snapshot (corte entre guardarlo y vaciar el diario).
+     * Un registro final incompleto es una anotación que no llegó a escribirse entera.
+     */
+    private void replayJournal() throws IOException {
+        if (!Files.exists(journalFile)) {
+            return;
+        }
+        Map<String, Long> sizeAtSnapshot = new LinkedHashMap<>();
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(journalFile));
+        while (buf.remaining() >= 8 + 8 + 2) {
+            long recordGeneration = buf.getLong();
+            long oldSize = buf.getLong();
+            int idLength = buf.getShort();
+            if (idLength < 0 || buf.remaining() < idLength) {
+                break;
+            }
+            byte[] id = new byte[idLength];
+            buf.get(id);
+            if (recordGeneration == generation) {
+                sizeAtSnapshot.putIfAbsent(new String(id, StandardCharsets.UTF_8), oldSize);
+            }
+        }
+        for (Map.Entry<String, Long> e : sizeAtSnapshot.entrySet()) {
+            account(e.getKey(), e.getValue(), -1);
+            account(e.getKey(), delegate.size(e.getKey()), 1);
+        }
+        if (!sizeAtSnapshot.isEmpty()) {
+            logger.info(String.format("Contadores recuperados del snapshot %d y %d bloques del diario",
+                    generation, sizeAtSnapshot.size()));
+        }
+    }
+
+    /**
+     * Suma (sign = 1) o resta (sign = -1) el aporte de un bloque de tamaño size; -1 es ausente.
+     */
+    private void account(String blockId, long size, int sign) {
+        if (size >= 0) {
+            counterFor(blockId).addAndGet(sign);
+            usedBytes.addAndGet(sign * size);
+        }
+    }
+
+    private void appendJournal(String blockId, long oldSize) throws IOException {
+        byte[] id = blockId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(8 + 8 + 2 + id.length);
+        record.putLong(generation).putLong(oldSize).putShort((short) id.length).put(id).flip();
+        while (record.hasRemaining()) {
+            journal.write(record);
+        }
+    }
+
+    private void periodicSnapshot() {
+        try {
+            if (journal.size() > 0) {
+                snapshot();
+            }
+        } catch (IOException e) {
+            logger.warning("No se pudieron guardar los contadores: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Guarda los contadores con una generación nueva y vacía el diario. Bloquea las operaciones
+     * mientras tanto, así el snapshot no incluye operaciones a medias.
+     * Corre periódicamente en el hilo de fondo; las pruebas lo invocan directamente.
+     */
+    void snapshot() throws IOException {
+        snapshotLock.writeLock().lock();
+        try {
+            Properties props = new Properties();
+            props.setProperty("generation", String.valueOf(generation + 1));
+            props.setProperty("dataBlocks", String.valueOf(dataBlocks.get()));
+            props.setProperty("parityBlocks", String.valueOf(parityBlocks.get()));
+            props.setProperty("usedBytes", String.valueOf(usedBytes.get()));
+
+            Path tmp = countersFile.resolveSibling(countersFile.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                props.store(out, "Contadores del Disk Node");
+            }
+            Files.move(tmp, countersFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            generation++;
+            journal.truncate(0);
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.tecmfs.disknode.storage;
+
+/**
+ * Descripción de un bloque almacenado, usada por los endpoints de estado.
+ */
+public class BlockInfo {
+    private final String blockId;
+    private final long size;
+    private final long lastModified;
+
+    public BlockInfo(String blockId, long size, long lastModified) {
+        this.blockId = blockId;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public String getBlockId() {
+        return blockId;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return última modificación en milisegundos desde epoch
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return true si el bloque es de paridad según la convención de nombres (_p, o _q en RAID 6)
+     */
+    public boolean isParity() {
+        return isParityId(blockId);
+    }
+
+    /**
+     * @return true si blockId corresponde a un bloque de paridad (_p, o _q en RAID 6)
+     */
+    public static boolean isParityId(String blockId) {
+        return blockId.contains("_p") || blockId.endsWith("_q");
+    }
+}
@@ -0,0 +1,83 @@
+package com.tecmfs.disknode.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * Motor de almacenamiento de bloques de un Disk Node.
+ * Los handlers HTTP y el protocolo binario trabajan contra esta interfaz,
+ * de modo que el formato en disco es intercambiable.
+ */
+public interface BlockStore extends Closeable {
+
+    /**
+     * Recibe el tamaño de un bloque antes de que se escriban sus datos,
+     * para enviar encabezados que lo incluyan.
+     */
+    @FunctionalInterface
+    interface SizeCallback {
+        void accept(long size) throws IOException;
+    }
+
+    /**
+     * Guarda un bloque; si ya existe se sobrescribe.
+     * @param data bytes del bloque, desde su posición hasta su límite
+     */
+    void store(String blockId, ByteBuffer data) throws IOException;
+
+    /**
+     * @return bytes del bloque, o null si no existe
+     */
+    ByteBuffer read(String blockId) throws IOException;
+
+    /**
+     * Escribe el bloque en un canal. Los motores que lo permiten lo hacen sin copiarlo al heap
+     * (FileChannel.transferTo o regiones mapeadas); por defecto se usa {@link #read(String)}.
+     * @param beforeData se invoca con el tamaño del bloque antes de escribir los datos
+     * @return false si el bloque no existe; en ese caso no se invoca beforeData
+     */
+    default boolean transferTo(String blockId, WritableByteChannel target, SizeCallback beforeData)
+            throws IOException {
+        ByteBuffer data = read(blockId);
+        if (data == null) {
+            return false;
+        }
+        beforeData.accept(data.remaining());
+        while (data.hasRemaining()) {
+            target.write(data);
+        }
+        return true;
+    }
+
+    /**
+     * @return true si el bloque existía y fue eliminado
+     */
+    boolean delete(String blockId) throws IOException;
+
+    /**
+     * @return tamaño del bloque en bytes, o -1 si no existe
+     */
+    long size(String blockId) throws IOException;
+
+    /**
+     * @return información de todos los bloques almacenados
+     */
+    List<BlockInfo> list() throws IOException;
+
+    /**
+     * @return bytes ocupados en disco por el almacenamiento
+     */
+    long usedBytes() throws IOException;
+
+    /**
+     * Bytes en disco que no son datos de bloques vivos: espacio de bloques reemplazados o borrados
+     * que el motor aún no recuperó, encabezados de registro, etc.
+     * @return 0 si el motor no guarda nada además de los datos
+     */
+    default long overheadBytes() throws IOException {
+        return 0;
+    }
+}
@@ -0,0 +1,114 @@
+package com.tecmfs.disknode.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Almacenamiento de un archivo por bloque: cada bloque se guarda como &lt;blockId&gt;.blk
+ * dentro del directorio de almacenamiento. Es el formato original del Disk Node.
+ */
+public class FileBlockStore implements BlockStore {
+    private static final String EXTENSION = ".blk";
+
+    private final Path root;
+
+    public FileBlockStore(Path root) throws IOException {
+        this.root = root;
+        Files.createDirectories(root);
+    }
+
+    private Path pathOf(String blockId) {
+        return root.resolve(blockId + EXTENSION);
+    }
+
+    @Override
+    public void store(String blockId, ByteBuffer data) throws IOException {
+        try (FileChannel fc = FileChannel.open(pathOf(blockId), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) {
+                fc.write(data);
+            }
+        }
+    }
+
+    @Override
+    public ByteBuffer read(String blockId) throws IOException {
+        try {
+            return ByteBuffer.wrap(Files.readAllBytes(pathOf(blockId)));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean transferTo(String blockId, WritableByteChannel target, SizeCallback beforeData)
+            throws IOException {
+        FileChannel fc;
+        try {
+            fc = FileChannel.open(pathOf(blockId), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        try (fc) {
+            long size = fc.size();
+            beforeData.accept(size);
+            long sent = 0;
+            while (sent < size) {
+                sent += fc.transferTo(sent, size - sent, target);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean delete(String blockId) throws IOException {
+        return Files.deleteIfExists(pathOf(blockId));
+    }
+
+    @Override
+    public long size(String blockId) throws IOException {
+        Path file = pathOf(blockId);
+        return Files.exists(file) ? Files.size(file) : -1;
+    }
+
+    @Override
+    public List<BlockInfo> list() throws IOException {
+        List<BlockInfo> blocks = new ArrayList<>();
+        try (Stream<Path> files = Files.list(root)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String fileName = p.getFileName().toString();
+                if (!fileName.endsWith(EXTENSION)) {
+                    continue;
+                }
+                try {
+                    blocks.add(new BlockInfo(fileName.substring(0, fileName.length() - EXTENSION.length()),
+                            Files.size(p), Files.getLastModifiedTime(p).toMillis()));
+                } catch (NoSuchFileException ignored) {
+                    // Eliminado mientras se listaba
+                }
+            }
+        }
+        return blocks;
+    }
+
+    @Override
+    public long usedBytes() throws IOException {
+        try (Stream<Path> files = Files.list(root)) {
+            return files.mapToLong(p -> p.toFile().length()).sum();
+        }
+    }
+
+    @Override
+    public void close() {
+        // Sin recursos abiertos
+    }
+}
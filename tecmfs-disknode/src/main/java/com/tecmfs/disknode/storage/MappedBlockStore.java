@@ -0,0 +1,433 @@
+package com.tecmfs.disknode.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+/**
+ * Almacenamiento de slots fijos sobre un archivo preasignado de capacityBytes y mapeado en memoria.
+ * El dispositivo se divide en capacityBytes / blockSize slots; cada bloque ocupa un slot.
+ * <p>
+ * Un segundo archivo mapeado guarda el estado persistente:
+ * [int MAGIC][int blockSize][long slots][bitmap de slots ocupados][tabla de entradas por slot]
+ * con cada entrada = [short largoId][blockId][int largo][long lastModified].
+ * Leer o escribir un bloque es una copia de memoria sobre la región mapeada, y la capacidad
+ * se conoce con la cantidad de slots ocupados.
+ * <p>
+ * Sobrescribir un bloque lo escribe en un slot libre y luego libera el viejo, así un corte a mitad
+ * de la escritura deja visible la versión anterior completa; solo con el dispositivo lleno se
+ * escribe sobre el mismo slot. Con {@link ForcePolicy#ALWAYS} se fuerzan a disco únicamente el
+ * slot escrito, su entrada y el byte del bitmap, en ese orden.
+ * <p>
+ * Las lecturas fijan su slot con el read lock de su franja mientras copian o envían los datos.
+ * Un slot liberado (borrado o reemplazado) no se reutiliza hasta que sus lectores terminan.
+ */
+public class MappedBlockStore implements BlockStore {
+    private static final Logger logger = Logger.getLogger(MappedBlockStore.class.getName());
+
+    /**
+     * Cuándo se fuerzan a disco las regiones mapeadas.
+     */
+    public enum ForcePolicy {
+        ALWAYS,     // tras cada escritura o borrado
+        PERIODIC,   // cada FORCE_INTERVAL_SECONDS
+        NEVER;      // lo decide el sistema operativo
+
+        public static ForcePolicy fromString(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final int MAGIC = 0x4D415042;            // "MAPB"
+    private static final int HEADER_SIZE = 4 + 4 + 8;
+    private static final int MAX_ID_BYTES = 96;
+    private static final int ENTRY_SIZE = 2 + MAX_ID_BYTES + 4 + 8;
+    private static final long FORCE_INTERVAL_SECONDS = 5;
+    private static final long MAX_REGION_BYTES = 1L << 30;  // un MappedByteBuffer no supera 2 GB
+    private static final int LOCK_STRIPES = 256;
+
+    private final int blockSize;
+    private final long slots;
+    private final int slotsPerRegion;
+    private final ForcePolicy forcePolicy;
+    private final FileChannel dataChannel;
+    private final FileChannel indexChannel;
+    private final MappedByteBuffer[] regions;
+    private final MappedByteBuffer index;
+    private final int entriesOffset;
+
+    private final ConcurrentMap<String, Integer> slotOf = new ConcurrentHashMap<>();
+    private final BitSet used = new BitSet();   // copia en memoria del bitmap, protegida por this
+    private int nextFree;
+    private long lastStamp;                     // lastModified de la última escritura, protegido por this
+    // Slots liberados con lecturas en curso; se reutilizan cuando terminan. Protegido por this
+    private final List<Integer> pendingFree = new ArrayList<>();
+    private final ReentrantReadWriteLock[] slotLocks = new ReentrantReadWriteLock[LOCK_STRIPES];
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * Abre el dispositivo en dir, creándolo si no existe.
+     * @throws IOException si el dispositivo existente fue creado con otro blockSize o capacidad
+     */
+    public MappedBlockStore(Path dir, int blockSize, long capacityBytes, ForcePolicy forcePolicy) throws IOException {
+        this.blockSize = blockSize;
+        this.slots = capacityBytes / blockSize;
+        this.forcePolicy = forcePolicy;
+        if (slots > Integer.MAX_VALUE) {
+            throw new IOException("Demasiados slots para el dispositivo mapeado: " + slots);
+        }
+        Files.createDirectories(dir);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            slotLocks[i] = new ReentrantReadWriteLock();
+        }
+
+        int bitmapBytes = (int) ((slots + 7) / 8);
+        this.entriesOffset = HEADER_SIZE + bitmapBytes;
+        long indexSize = entriesOffset + slots * ENTRY_SIZE;
+        if (indexSize > Integer.MAX_VALUE) {
+            throw new IOException("Índice del dispositivo mapeado demasiado grande: " + indexSize);
+        }
+
+        this.dataChannel = FileChannel.open(dir.resolve("blocks.dev"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.indexChannel = FileChannel.open(dir.resolve("blocks.idx"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean created = indexChannel.size() == 0;
+        this.index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexSize);
+        if (created) {
+            index.putInt(0, MAGIC).putInt(4, blockSize).putLong(8, slots);
+        } else if (index.getInt(0) != MAGIC || index.getInt(4) != blockSize || index.getLong(8) != slots) {
+            throw new IOException("El dispositivo en " + dir + " fue creado con otra configuración");
+        }
+
+        this.slotsPerRegion = (int) Math.max(1, MAX_REGION_BYTES / blockSize);
+        int regionCount = (int) ((slots + slotsPerRegion - 1) / slotsPerRegion);
+        this.regions = new MappedByteBuffer[regionCount];
+        for (int r = 0; r < regionCount; r++) {
+            long first = (long) r * slotsPerRegion;
+            long count = Math.min(slotsPerRegion, slots - first);
+            regions[r] = dataChannel.map(FileChannel.MapMode.READ_WRITE, first * blockSize, count * blockSize);
+        }
+
+        loadTable();
+        if (forcePolicy == ForcePolicy.PERIODIC) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "mapped-flusher-" + dir.getFileName());
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::forceAll, FORCE_INTERVAL_SECONDS,
+                    FORCE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        } else {
+            flusher = null;
+        }
+        logger.info(String.format("MappedBlockStore en %s: %d slots de %d bytes, %d ocupados, force=%s",
+                dir, slots, blockSize, slotOf.size(), forcePolicy));
+    }
+
+    /**
+     * Reconstruye blockId → slot leyendo las entradas de los slots marcados en el bitmap.
+     * Un corte durante una sobrescritura en un slot nuevo puede dejar dos slots con el mismo
+     * blockId: se conserva el más reciente.
+     */
+    private void loadTable() {
+        for (int slot = 0; slot < slots; slot++) {
+            if ((index.get(HEADER_SIZE + slot / 8) & (1 << (slot % 8))) == 0) {
+                continue;
+            }
+            int entry = entryOffset(slot);
+            byte[] id = new byte[index.getShort(entry)];
+            index.get(entry + 2, id);
+            String blockId = new String(id, StandardCharsets.UTF_8);
+            Integer previous = slotOf.get(blockId);
+            if (previous != null) {
+                if (lastModified(previous) > lastModified(slot)) {
+                    setBit(slot, false);
+                    continue;
+                }
+                setBit(previous, false);
+                used.clear(previous);
+            }
+            slotOf.put(blockId, slot);
+            used.set(slot);
+        }
+        nextFree = used.nextClearBit(0);
+        for (int slot : slotOf.values()) {
+            lastStamp = Math.max(lastStamp, lastModified(slot));
+        }
+    }
+
+    // --- Operaciones ---
+
+    @Override
+    public synchronized void store(String blockId, ByteBuffer data) throws IOException {
+        int length = data.remaining();
+        if (length > blockSize) {
+            throw new IOException("El bloque " + blockId + " (" + length + " bytes) excede blockSize " + blockSize);
+        }
+        byte[] id = blockId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID_BYTES) {
+            throw new IOException("blockId demasiado largo para el dispositivo mapeado: " + blockId);
+        }
+
+        // Un bloque existente va a un slot libre y el viejo se libera después; solo si el
+        // dispositivo está lleno se sobrescribe su slot, esperando a que terminen sus lecturas
+        Integer existing = slotOf.get(blockId);
+        ReentrantReadWriteLock.WriteLock inPlace = null;
+        int slot;
+        if (existing != null && !hasFreeSlot()) {
+            inPlace = lockOf(existing).writeLock();
+            inPlace.lock();
+            slot = existing;
+        } else {
+            slot = allocate();
+        }
+
+        try {
+            // Orden: datos, entrada y por último el bit, para que un corte no deje un slot a medias visible.
+            // El sello es estrictamente creciente: ante dos slots con el mismo blockId gana el último
+            region(slot).put(regionOffset(slot), data, data.position(), length);
+            lastStamp = Math.max(System.currentTimeMillis(), lastStamp + 1);
+            int entry = entryOffset(slot);
+            index.putShort(entry, (short) id.length).put(entry + 2, id)
+                    .putInt(entry + 2 + MAX_ID_BYTES, length)
+                    .putLong(entry + 2 + MAX_ID_BYTES + 4, lastStamp);
+            if (forcePolicy == ForcePolicy.ALWAYS) {
+                region(slot).force(regionOffset(slot), length);
+                index.force(entry, ENTRY_SIZE);
+            }
+            setBit(slot, true);
+            forceBit(slot);
+            slotOf.put(blockId, slot);
+        } finally {
+            if (inPlace != null) {
+                inPlace.unlock();
+            }
+        }
+        if (existing != null && slot != existing) {
+            setBit(existing, false);
+            forceBit(existing);
+            release(existing);
+        }
+    }
+
+    @Override
+    public ByteBuffer read(String blockId) {
+        int slot = pin(blockId);
+        if (slot < 0) {
+            return null;
+        }
+        try {
+            byte[] copy = new byte[length(slot)];
+            region(slot).get(regionOffset(slot), copy);
+            return ByteBuffer.wrap(copy);
+        } finally {
+            lockOf(slot).readLock().unlock();
+        }
+    }
+
+    /**
+     * Escribe directamente la región mapeada del slot, sin copia intermedia en el heap.
+     */
+    @Override
+    public boolean transferTo(String blockId, WritableByteChannel target, SizeCallback beforeData)
+            throws IOException {
+        int slot = pin(blockId);
+        if (slot < 0) {
+            return false;
+        }
+        try {
+            int length = length(slot);
+            ByteBuffer view = region(slot).slice(regionOffset(slot), length);
+            beforeData.accept(length);
+            while (view.hasRemaining()) {
+                target.write(view);
+            }
+            return true;
+        } finally {
+            lockOf(slot).readLock().unlock();
+        }
+    }
+
+    @Override
+    public synchronized boolean delete(String blockId) {
+        Integer slot = slotOf.remove(blockId);
+        if (slot == null) {
+            return false;
+        }
+        setBit(slot, false);
+        forceBit(slot);
+        release(slot);
+        return true;
+    }
+
+    @Override
+    public long size(String blockId) {
+        int slot = pin(blockId);
+        if (slot < 0) {
+            return -1;
+        }
+        try {
+            return length(slot);
+        } finally {
+            lockOf(slot).readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<BlockInfo> list() {
+        List<BlockInfo> blocks = new ArrayList<>(slotOf.size());
+        for (Map.Entry<String, Integer> e : slotOf.entrySet()) {
+            int entry = entryOffset(e.getValue());
+            blocks.add(new BlockInfo(e.getKey(), index.getInt(entry + 2 + MAX_ID_BYTES),
+                    index.getLong(entry + 2 + MAX_ID_BYTES + 4)));
+        }
+        return blocks;
+    }
+
+    /**
+     * Cada bloque ocupa un slot completo, así que el espacio usado es slots ocupados × blockSize.
+     */
+    @Override
+    public long usedBytes() {
+        return (long) slotOf.size() * blockSize;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        if (forcePolicy != ForcePolicy.NEVER) {
+            forceAll();
+        }
+        dataChannel.close();
+        indexChannel.close();
+    }
+
+    // --- Slots ---
+
+    /**
+     * Fija el slot del bloque para leerlo; el llamador libera el read lock de su franja al terminar.
+     * Mientras el lock está tomado el slot no se libera ni se sobrescribe.
+     * @return el slot, o -1 si el bloque no existe
+     */
+    private int pin(String blockId) {
+        while (true) {
+            Integer slot = slotOf.get(blockId);
+            if (slot == null) {
+                return -1;
+            }
+            lockOf(slot).readLock().lock();
+            // Pudo borrarse o moverse antes de tomar el lock
+            if (slot.equals(slotOf.get(blockId))) {
+                return slot;
+            }
+            lockOf(slot).readLock().unlock();
+        }
+    }
+
+    /**
+     * Libera un slot ya desvinculado de su bloque; si tiene lecturas en curso queda pendiente.
+     * Debe llamarse con this tomado.
+     */
+    private void release(int slot) {
+        ReentrantReadWriteLock.WriteLock lock = lockOf(slot).writeLock();
+        if (!lock.tryLock()) {
+            pendingFree.add(slot);
+            return;
+        }
+        lock.unlock();
+        used.clear(slot);
+        nextFree = Math.min(nextFree, slot);
+    }
+
+    /**
+     * Debe llamarse con this tomado.
+     * @return true si hay un slot libre o pendiente de liberar
+     */
+    private boolean hasFreeSlot() {
+        return !pendingFree.isEmpty() || used.nextClearBit(nextFree) < slots;
+    }
+
+    private int allocate() throws IOException {
+        if (!pendingFree.isEmpty()) {
+            List<Integer> pending = new ArrayList<>(pendingFree);
+            pendingFree.clear();
+            for (int slot : pending) {
+                release(slot);
+            }
+        }
+        int slot = used.nextClearBit(nextFree);
+        if (slot >= slots) {
+            throw new IOException("Dispositivo mapeado lleno: " + slots + " slots ocupados");
+        }
+        used.set(slot);
+        nextFree = slot + 1;
+        return slot;
+    }
+
+    private void setBit(int slot, boolean value) {
+        int pos = HEADER_SIZE + slot / 8;
+        byte b = index.get(pos);
+        index.put(pos, (byte) (value ? b | (1 << (slot % 8)) : b & ~(1 << (slot % 8))));
+    }
+
+    /**
+     * Con {@link ForcePolicy#ALWAYS}, fuerza a disco el byte del bitmap que contiene el bit del slot.
+     */
+    private void forceBit(int slot) {
+        if (forcePolicy == ForcePolicy.ALWAYS) {
+            index.force(HEADER_SIZE + slot / 8, 1);
+        }
+    }
+
+    private MappedByteBuffer region(int slot) {
+        return regions[slot / slotsPerRegion];
+    }
+
+    private int regionOffset(int slot) {
+        return (slot % slotsPerRegion) * blockSize;
+    }
+
+    private int entryOffset(int slot) {
+        return entriesOffset + slot * ENTRY_SIZE;
+    }
+
+    private int length(int slot) {
+        return index.getInt(entryOffset(slot) + 2 + MAX_ID_BYTES);
+    }
+
+    private long lastModified(int slot) {
+        return index.getLong(entryOffset(slot) + 2 + MAX_ID_BYTES + 4);
+    }
+
+    private ReentrantReadWriteLock lockOf(int slot) {
+        return slotLocks[slot % LOCK_STRIPES];
+    }
+
+    private void forceAll() {
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+        index.force();
+    }
+}
@@ -0,0 +1,581 @@
+package com.tecmfs.disknode.storage;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Almacenamiento tipo log: los bloques se agregan al final de archivos de segmento grandes
+ * en lugar de crear un archivo por bloque.
+ * <p>
+ * Registro: [byte tipo][long timestamp][short largoId][blockId][int largoDatos][int crc32][datos]
+ * <p>
+ * Al llenarse, un segmento se sella escribiendo un footer con el índice de sus registros:
+ * [int cantidad][entradas...][long inicioFooter][int MAGIC]. Al arrancar, el índice en memoria
+ * blockId → (segmento, offset, largo) se reconstruye leyendo solo los footers; únicamente el
+ * segmento activo se recorre registro por registro. Los borrados agregan un tombstone.
+ * Un hilo de fondo compacta los segmentos sellados con mucho espacio muerto copiando sus
+ * registros vivos al segmento activo y eliminando el archivo viejo. Las lecturas fijan su segmento
+ * con un read lock mientras copian o envían los datos; la compactación cierra y borra el archivo
+ * solo cuando esas lecturas terminaron.
+ */
+public class SegmentLogBlockStore implements BlockStore {
+    private static final Logger logger = Logger.getLogger(SegmentLogBlockStore.class.getName());
+
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final double COMPACTION_THRESHOLD = 0.5;   // fracción de espacio muerto
+    private static final long COMPACTION_INTERVAL_SECONDS = 60;
+
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_TOMBSTONE = 2;
+    private static final int FOOTER_MAGIC = 0x5345474D;       // "SEGM"
+    private static final int TRAILER_SIZE = 8 + 4;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * Ubicación de los datos de un bloque dentro de un segmento.
+     */
+    private static final class Location {
+        final long segmentId;
+        final long offset;
+        final int length;
+        final long timestamp;
+
+        Location(long segmentId, long offset, int length, long timestamp) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.length = length;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Entrada del índice de un segmento (se escribe en su footer).
+     */
+    private static final class Entry {
+        final byte type;
+        final long timestamp;
+        final String blockId;
+        final long offset;
+        final int length;
+
+        Entry(byte type, long timestamp, String blockId, long offset, int length) {
+            this.type = type;
+            this.timestamp = timestamp;
+            this.blockId = blockId;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Archivo de segmento y su contabilidad de espacio.
+     */
+    private static final class Segment {
+        final long id;
+        final Path path;
+        final FileChannel channel;
+        long size;                                   // bytes de registros escritos
+        boolean sealed;
+        final List<Entry> entries = new ArrayList<>(); // solo para el segmento activo
+        final AtomicLong totalBytes = new AtomicLong(); // datos de todos los PUT
+        final AtomicLong deadBytes = new AtomicLong();  // datos reemplazados o borrados
+        // Lectores en curso (read lock) frente al cierre por compactación (write lock)
+        final ReentrantReadWriteLock readers = new ReentrantReadWriteLock();
+        boolean retired;                             // compactado: el canal está cerrado
+
+        Segment(long id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    private final Path dir;
+    private final long maxSegmentBytes;
+    private final ConcurrentMap<String, Location> index = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Object writeLock = new Object();
+    private final ScheduledExecutorService compactor;
+    private Segment active;
+
+    /**
+     * Abre (o crea) el almacenamiento y reconstruye el índice.
+     * @param dir             directorio donde viven los segmentos
+     * @param maxSegmentBytes tamaño a partir del cual se sella el segmento activo
+     */
+    public SegmentLogBlockStore(Path dir, long maxSegmentBytes) throws IOException {
+        this.dir = dir;
+        this.maxSegmentBytes = maxSegmentBytes;
+        Files.createDirectories(dir);
+        recover();
+
+        this.compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "segment-compactor-" + dir.getFileName());
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(this::compact, COMPACTION_INTERVAL_SECONDS,
+                COMPACTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // --- Operaciones ---
+
+    @Override
+    public void store(String blockId, ByteBuffer data) throws IOException {
+        synchronized (writeLock) {
+            long timestamp = System.currentTimeMillis();
+            Location loc = append(TYPE_PUT, blockId, data, timestamp);
+            markDead(index.put(blockId, loc));
+        }
+    }
+
+    @Override
+    public ByteBuffer read(String blockId) throws IOException {
+        // Un reintento cubre el caso en que la compactación movió el bloque durante la lectura
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Location loc = index.get(blockId);
+            if (loc == null) {
+                return null;
+            }
+            Segment seg = pin(loc);
+            if (seg == null) {
+                continue;   // segmento compactado; el índice ya apunta a la nueva ubicación
+            }
+            try {
+                ByteBuffer buf = ByteBuffer.allocate(loc.length);
+                readFully(seg.channel, buf, loc.offset);
+                return buf.flip();
+            } finally {
+                seg.readers.readLock().unlock();
+            }
+        }
+        throw new IOException("No se pudo leer " + blockId + " durante la compactación");
+    }
+
+    @Override
+    public boolean transferTo(String blockId, WritableByteChannel target, SizeCallback beforeData)
+            throws IOException {
+        Location loc = index.get(blockId);
+        Segment seg = loc == null ? null : pin(loc);
+        if (seg == null) {
+            // Ausente, o movido por la compactación justo ahora: se resuelve con read()
+            return BlockStore.super.transferTo(blockId, target, beforeData);
+        }
+        try {
+            beforeData.accept(loc.length);
+            long sent = 0;
+            while (sent < loc.length) {
+                sent += seg.channel.transferTo(loc.offset + sent, loc.length - sent, target);
+            }
+            return true;
+        } finally {
+            seg.readers.readLock().unlock();
+        }
+    }
+
+    /**
+     * Fija el segmento de loc para leerlo; el llamador libera su read lock al terminar.
+     * @return el segmento, o null si ya fue compactado
+     */
+    private Segment pin(Location loc) {
+        Segment seg = segments.get(loc.segmentId);
+        if (seg == null) {
+            return null;
+        }
+        seg.readers.readLock().lock();
+        if (seg.retired) {
+            seg.readers.readLock().unlock();
+            return null;
+        }
+        return seg;
+    }
+
+    @Override
+    public boolean delete(String blockId) throws IOException {
+        synchronized (writeLock) {
+            Location old = index.get(blockId);
+            if (old == null) {
+                return false;
+            }
+            append(TYPE_TOMBSTONE, blockId, ByteBuffer.allocate(0), System.currentTimeMillis());
+            index.remove(blockId);
+            markDead(old);
+            return true;
+        }
+    }
+
+    @Override
+    public long size(String blockId) {
+        Location loc = index.get(blockId);
+        return loc == null ? -1 : loc.length;
+    }
+
+    @Override
+    public List<BlockInfo> list() {
+        List<BlockInfo> blocks = new ArrayList<>(index.size());
+        for (Map.Entry<String, Location> e : index.entrySet()) {
+            blocks.add(new BlockInfo(e.getKey(), e.getValue().length, e.getValue().timestamp));
+        }
+        return blocks;
+    }
+
+    @Override
+    public long usedBytes() {
+        long used = 0;
+        for (Segment seg : segments.values()) {
+            used += seg.size;
+        }
+        return used;
+    }
+
+    /**
+     * Espacio muerto pendiente de compactación más encabezados y tombstones.
+     */
+    @Override
+    public long overheadBytes() {
+        long overhead = 0;
+        for (Segment seg : segments.values()) {
+            overhead += seg.size - (seg.totalBytes.get() - seg.deadBytes.get());
+        }
+        return overhead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactor.shutdownNow();
+        synchronized (writeLock) {
+            active.channel.force(true);
+            for (Segment seg : segments.values()) {
+                seg.channel.close();
+            }
+        }
+    }
+
+    // --- Escritura ---
+
+    /**
+     * Agrega un registro al segmento activo. Debe llamarse con writeLock tomado.
+     * @return ubicación de los datos del registro
+     */
+    private Location append(byte type, String blockId, ByteBuffer data, long timestamp) throws IOException {
+        byte[] id = blockId.getBytes(StandardCharsets.UTF_8);
+        int length = data.remaining();
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(headerSize(id.length));
+        header.put(type).putLong(timestamp).putShort((short) id.length).put(id)
+                .putInt(length).putInt((int) crc.getValue()).flip();
+
+        Segment seg = active;
+        long recordStart = seg.size;
+        long dataOffset = recordStart + header.remaining();
+        writeFully(seg.channel, header, recordStart);
+        writeFully(seg.channel, data, dataOffset);
+        seg.size = dataOffset + length;
+        seg.entries.add(new Entry(type, timestamp, blockId, dataOffset, length));
+        if (type == TYPE_PUT) {
+            seg.totalBytes.addAndGet(length);
+        }
+
+        Location loc = new Location(seg.id, dataOffset, length, timestamp);
+        if (seg.size >= maxSegmentBytes) {
+            seal(seg);
+            active = openSegment(seg.id + 1);
+        }
+        return loc;
+    }
+
+    private static int headerSize(int idLength) {
+        return 1 + 8 + 2 + idLength + 4 + 4;
+    }
+
+    private void markDead(Location old) {
+        if (old != null) {
+            Segment seg = segments.get(old.segmentId);
+            if (seg != null) {
+                seg.deadBytes.addAndGet(old.length);
+            }
+        }
+    }
+
+    /**
+     * Escribe el footer con el índice del segmento y lo marca como sellado.
+     */
+    private void seal(Segment seg) throws IOException {
+        int footerSize = 4;
+        List<byte[]> ids = new ArrayList<>(seg.entries.size());
+        for (Entry e : seg.entries) {
+            byte[] id = e.blockId.getBytes(StandardCharsets.UTF_8);
+            ids.add(id);
+            footerSize += 1 + 8 + 2 + id.length + 8 + 4;
+        }
+        ByteBuffer footer = ByteBuffer.allocate(footerSize + TRAILER_SIZE);
+        footer.putInt(seg.entries.size());
+        for (int i = 0; i < seg.entries.size(); i++) {
+            Entry e = seg.entries.get(i);
+            byte[] id = ids.get(i);
+            footer.put(e.type).putLong(e.timestamp).putShort((short) id.length).put(id)
+                    .putLong(e.offset).putInt(e.length);
+        }
+        footer.putLong(seg.size).putInt(FOOTER_MAGIC).flip();
+        writeFully(seg.channel, footer, seg.size);
+        seg.channel.force(true);
+        seg.sealed = true;
+        seg.entries.clear();
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Path path = dir.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment seg = new Segment(id, path, channel);
+        segments.put(id, seg);
+        return seg;
+    }
+
+    // --- Recuperación al arrancar ---
+
+    private void recover() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    ids.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())));
+                }
+            }
+        }
+        ids.sort(null);
+
+        for (int i = 0; i < ids.size(); i++) {
+            Segment seg = openSegment(ids.get(i));
+            List<Entry> entries = readFooter(seg);
+            if (entries != null) {
+                seg.sealed = true;
+            } else {
+                entries = scanRecords(seg);
+                seg.entries.addAll(entries);
+            }
+            for (Entry e : entries) {
+                apply(seg, e);
+            }
+            if (!seg.sealed && i < ids.size() - 1) {
+                // Segmento sin footer que no es el último: se sella ahora
+                seal(seg);
+            }
+        }
+
+        Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        active = (last == null || last.sealed) ? openSegment(last == null ? 1 : last.id + 1) : last;
+        logger.info(String.format("SegmentLogBlockStore en %s: %d segmentos, %d bloques",
+                dir, segments.size(), index.size()));
+    }
+
+    private void apply(Segment seg, Entry e) {
+        if (e.type == TYPE_PUT) {
+            seg.totalBytes.addAndGet(e.length);
+            markDead(index.put(e.blockId, new Location(seg.id, e.offset, e.length, e.timestamp)));
+        } else {
+            markDead(index.remove(e.blockId));
+        }
+    }
+
+    /**
+     * @return entradas del footer, o null si el segmento no está sellado
+     */
+    private List<Entry> readFooter(Segment seg) throws IOException {
+        long fileSize = seg.channel.size();
+        if (fileSize < TRAILER_SIZE) {
+            return null;
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+        readFully(seg.channel, trailer, fileSize - TRAILER_SIZE);
+        trailer.flip();
+        long footerStart = trailer.getLong();
+        if (trailer.getInt() != FOOTER_MAGIC || footerStart < 0 || footerStart > fileSize - TRAILER_SIZE) {
+            return null;
+        }
+
+        ByteBuffer footer = ByteBuffer.allocate((int) (fileSize - TRAILER_SIZE - footerStart));
+        readFully(seg.channel, footer, footerStart);
+        footer.flip();
+        int count = footer.getInt();
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte type = footer.get();
+            long timestamp = footer.getLong();
+            byte[] id = new byte[footer.getShort() & 0xFFFF];
+            footer.get(id);
+            entries.add(new Entry(type, timestamp, new String(id, StandardCharsets.UTF_8),
+                    footer.getLong(), footer.getInt()));
+        }
+        seg.size = footerStart;
+        return entries;
+    }
+
+    /**
+     * Recorre los registros del segmento activo; un registro incompleto o con CRC inválido
+     * al final (escritura interrumpida) se descarta truncando el archivo.
+     */
+    private List<Entry> scanRecords(Segment seg) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        long fileSize = seg.channel.size();
+        long pos = 0;
+        ByteBuffer fixed = ByteBuffer.allocate(1 + 8 + 2);
+        while (pos < fileSize) {
+            try {
+                fixed.clear();
+                readFully(seg.channel, fixed, pos);
+                fixed.flip();
+                byte type = fixed.get();
+                long timestamp = fixed.getLong();
+                int idLength = fixed.getShort() & 0xFFFF;
+                if (type != TYPE_PUT && type != TYPE_TOMBSTONE) {
+                    break;
+                }
+                ByteBuffer rest = ByteBuffer.allocate(idLength + 8);
+                readFully(seg.channel, rest, pos + fixed.capacity());
+                rest.flip();
+                byte[] id = new byte[idLength];
+                rest.get(id);
+                int length = rest.getInt();
+                int crc = rest.getInt();
+                long dataOffset = pos + headerSize(idLength);
+                if (length < 0 || dataOffset + length > fileSize) {
+                    break;
+                }
+                ByteBuffer data = ByteBuffer.allocate(length);
+                readFully(seg.channel, data, dataOffset);
+                CRC32 check = new CRC32();
+                check.update(data.flip());
+                if ((int) check.getValue() != crc) {
+                    break;
+                }
+                entries.add(new Entry(type, timestamp, new String(id, StandardCharsets.UTF_8), dataOffset, length));
+                pos = dataOffset + length;
+            } catch (EOFException e) {
+                break;
+            }
+        }
+        if (pos < fileSize) {
+            logger.warning("Registro incompleto en " + seg.path + " desde el byte " + pos + "; se trunca");
+            seg.channel.truncate(pos);
+        }
+        seg.size = pos;
+        return entries;
+    }
+
+    // --- Compactación ---
+
+    /**
+     * Compacta los segmentos sellados cuyo espacio muerto supera el umbral.
+     * Corre periódicamente en el hilo de fondo; las pruebas lo invocan directamente.
+     */
+    void compact() {
+        for (Segment seg : segments.values()) {
+            long total = seg.totalBytes.get();
+            if (!seg.sealed || seg == active) {
+                continue;
+            }
+            boolean mostlyDead = total == 0 || (double) seg.deadBytes.get() / total >= COMPACTION_THRESHOLD;
+            if (!mostlyDead) {
+                continue;
+            }
+            try {
+                compactSegment(seg);
+            } catch (IOException e) {
+                logger.warning("Error compactando " + seg.path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void compactSegment(Segment seg) throws IOException {
+        List<Entry> entries = readFooter(seg);
+        if (entries == null) {
+            return;
+        }
+        int moved = 0;
+        for (Entry e : entries) {
+            if (e.type == TYPE_PUT) {
+                Location loc = index.get(e.blockId);
+                if (loc == null || loc.segmentId != seg.id || loc.offset != e.offset) {
+                    continue;   // registro muerto
+                }
+                ByteBuffer data = ByteBuffer.allocate(e.length);
+                readFully(seg.channel, data, e.offset);
+                data.flip();
+                synchronized (writeLock) {
+                    // Puede haberse sobrescrito mientras se leía
+                    if (index.get(e.blockId) == loc) {
+                        index.put(e.blockId, append(TYPE_PUT, e.blockId, data, e.timestamp));
+                        moved++;
+                    }
+                }
+            } else if (segments.firstKey() < seg.id) {
+                // El tombstone debe sobrevivir mientras existan segmentos más viejos con el bloque
+                synchronized (writeLock) {
+                    if (!index.containsKey(e.blockId)) {
+                        append(TYPE_TOMBSTONE, e.blockId, ByteBuffer.allocate(0), e.timestamp);
+                    }
+                }
+            }
+        }
+
+        synchronized (writeLock) {
+            active.channel.force(false);
+            segments.remove(seg.id);
+        }
+        // Espera a que terminen las lecturas que aún usan el segmento; las nuevas lo verán retirado
+        seg.readers.writeLock().lock();
+        try {
+            seg.retired = true;
+            seg.channel.close();
+            Files.deleteIfExists(seg.path);
+        } finally {
+            seg.readers.writeLock().unlock();
+        }
+        logger.info("Segmento " + seg.path.getFileName() + " compactado; " + moved + " bloques movidos");
+    }
+
+    // --- Utilidades de I/O ---
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            position += n;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.tecmfs.disknode.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AccountingBlockStoreTest {
+    private static final int BLOCK = 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void cleanCloseReopensWithoutListing() throws IOException {
+        CountingStore engine = new CountingStore(dir.resolve("blocks"));
+        try (AccountingBlockStore store = open(engine)) {
+            store.store("f_stripe0_block0", block(BLOCK));
+            store.store("f_stripe0_p", block(BLOCK));
+        }
+        engine = new CountingStore(dir.resolve("blocks"));
+        try (AccountingBlockStore store = open(engine)) {
+            assertCounters(store, 1, 1, 2L * BLOCK);
+            assertEquals(0, engine.lists);
+        }
+    }
+
+    @Test
+    void crashAfterSnapshotReplaysOnlyJournaledBlocks() throws IOException {
+        CountingStore engine = new CountingStore(dir.resolve("blocks"));
+        AccountingBlockStore crashed = open(engine);
+        crashed.store("f_stripe0_block0", block(BLOCK));
+        crashed.store("f_stripe0_block1", block(BLOCK));
+        crashed.store("f_stripe0_p", block(BLOCK));
+        crashed.snapshot();
+        // Después del snapshot: sobrescritura con otro tamaño, borrado, alta y borrado de un ausente
+        crashed.store("f_stripe0_block0", block(BLOCK / 2));
+        crashed.delete("f_stripe0_block1");
+        crashed.store("f_stripe1_block0", block(BLOCK));
+        crashed.store("f_stripe1_block0", block(BLOCK));
+        crashed.delete("missing_block0");
+        engine.close();
+
+        engine = new CountingStore(dir.resolve("blocks"));
+        try (AccountingBlockStore store = open(engine)) {
+            assertCounters(store, 2, 1, BLOCK / 2 + 2L * BLOCK);
+            assertEquals(0, engine.lists);
+        }
+    }
+
+    @Test
+    void crashBeforeFirstPeriodicSnapshotUsesOpeningSnapshot() throws IOException {
+        CountingStore engine = new CountingStore(dir.resolve("blocks"));
+        AccountingBlockStore crashed = open(engine);
+        for (int i = 0; i < 5; i++) {
+            crashed.store("f_stripe" + i + "_block0", block(BLOCK));
+        }
+        crashed.delete("f_stripe2_block0");
+        engine.close();
+
+        engine = new CountingStore(dir.resolve("blocks"));
+        try (AccountingBlockStore store = open(engine)) {
+            assertCounters(store, 4, 0, 4L * BLOCK);
+            assertEquals(0, engine.lists);
+        }
+    }
+
+    @Test
+    void journalRecordsFromBeforeSnapshotAreIgnored() throws IOException {
+        CountingStore engine = new CountingStore(dir.resolve("blocks"));
+        AccountingBlockStore crashed = open(engine);
+        crashed.store("f_stripe0_block0", block(BLOCK));
+        crashed.store("f_stripe0_block1", block(BLOCK));
+        Path journal = dir.resolve("counters.properties.journal");
+        byte[] stale = Files.readAllBytes(journal);
+        crashed.snapshot();
+        engine.close();
+        // Corte entre guardar el snapshot y vaciar el diario
+        Files.write(journal, stale);
+
+        engine = new CountingStore(dir.resolve("blocks"));
+        try (AccountingBlockStore store = open(engine)) {
+            assertCounters(store, 2, 0, 2L * BLOCK);
+            assertEquals(0, engine.lists);
+        }
+    }
+
+    @Test
+    void tornJournalTailIsIgnored() throws IOException {
+        CountingStore engine = new CountingStore(dir.resolve("blocks"));
+        AccountingBlockStore crashed = open(engine);
+        crashed.store("f_stripe0_block0", block(BLOCK));
+        engine.close();
+        Path journal = dir.resolve("counters.properties.journal");
+        Files.write(journal, new byte[]{0, 0, 0}, StandardOpenOption.APPEND);
+
+        engine = new CountingStore(dir.resolve("blocks"));
+        try (AccountingBlockStore store = open(engine)) {
+            assertCounters(store, 1, 0, BLOCK);
+        }
+    }
+
+    @Test
+    void missingSnapshotReconcilesOnce() throws IOException {
+        CountingStore engine = new CountingStore(dir.resolve("blocks"));
+        engine.store("f_stripe0_block0", block(BLOCK));
+        engine.store("f_stripe0_p", block(BLOCK));
+        try (AccountingBlockStore store = open(engine)) {
+            assertCounters(store, 1, 1, 2L * BLOCK);
+            assertEquals(1, engine.lists);
+        }
+    }
+
+    private AccountingBlockStore open(BlockStore engine) throws IOException {
+        return new AccountingBlockStore(engine, dir.resolve("counters.properties"));
+    }
+
+    private static void assertCounters(AccountingBlockStore store, long data, long parity, long bytes)
+            throws IOException {
+        assertEquals(data, store.getDataBlocks());
+        assertEquals(parity, store.getParityBlocks());
+        assertEquals(bytes, store.usedBytes());
+    }
+
+    private static ByteBuffer block(int size) {
+        return ByteBuffer.wrap(new byte[size]);
+    }
+
+    /**
+     * Motor en archivos que cuenta las llamadas a list().
+     */
+    private static class CountingStore extends FileBlockStore {
+        int lists;
+
+        CountingStore(Path root) throws IOException {
+            super(root);
+        }
+
+        @Override
+        public List<BlockInfo> list() throws IOException {
+            lists++;
+            return super.list();
+        }
+    }
+}
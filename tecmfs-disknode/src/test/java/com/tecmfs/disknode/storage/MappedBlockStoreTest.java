@@ -0,0 +1,154 @@
+package com.tecmfs.disknode.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedBlockStoreTest {
+    private static final int BLOCK = 4096;
+    private static final int HEADER_SIZE = 4 + 4 + 8;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void storesReadsAndDeletesAcrossReopen() throws IOException {
+        try (MappedBlockStore store = open(8)) {
+            for (int i = 0; i < 5; i++) {
+                store.store("b" + i, ByteBuffer.wrap(data(i)));
+            }
+            assertTrue(store.delete("b2"));
+            assertFalse(store.delete("b2"));
+            store.store("b4", ByteBuffer.wrap(data(40)));
+        }
+        try (MappedBlockStore store = open(8)) {
+            assertEquals(4, store.list().size());
+            assertNull(store.read("b2"));
+            assertArrayEquals(data(40), read(store, "b4"));
+            assertArrayEquals(data(0), read(store, "b0"));
+            assertEquals(4L * BLOCK, store.usedBytes());
+        }
+    }
+
+    @Test
+    void overwriteGoesToFreeSlotAndKeepsOldDataUntilCommitted() throws IOException {
+        try (MappedBlockStore store = open(4)) {
+            store.store("a", ByteBuffer.wrap(data(1)));
+            store.store("a", ByteBuffer.wrap(data(2)));
+            assertArrayEquals(data(2), read(store, "a"));
+            assertEquals(1, store.list().size());
+        }
+        // El slot 0 no se tocó: la nueva versión está en el slot 1
+        assertArrayEquals(data(1), deviceSlot(0));
+        assertArrayEquals(data(2), deviceSlot(1));
+    }
+
+    @Test
+    void reopenAfterCutDuringOverwriteKeepsNewestCopy() throws IOException {
+        try (MappedBlockStore store = open(4)) {
+            store.store("a", ByteBuffer.wrap(data(1)));
+            store.store("a", ByteBuffer.wrap(data(2)));
+        }
+        // Corte antes de limpiar el bit del slot viejo: ambos slots quedan marcados con el mismo blockId
+        setBitmapByte(0, (byte) 0b11);
+
+        try (MappedBlockStore store = open(4)) {
+            assertEquals(1, store.list().size());
+            assertArrayEquals(data(2), read(store, "a"));
+            // El slot viejo volvió a quedar libre y se reutiliza
+            store.store("b", ByteBuffer.wrap(data(3)));
+            store.store("c", ByteBuffer.wrap(data(4)));
+            store.store("d", ByteBuffer.wrap(data(5)));
+        }
+        try (MappedBlockStore store = open(4)) {
+            assertEquals(4, store.list().size());
+            assertArrayEquals(data(2), read(store, "a"));
+        }
+    }
+
+    @Test
+    void overwriteOnFullDeviceReusesOwnSlot() throws IOException {
+        try (MappedBlockStore store = open(2)) {
+            store.store("a", ByteBuffer.wrap(data(1)));
+            store.store("b", ByteBuffer.wrap(data(2)));
+            assertThrows(IOException.class, () -> store.store("c", ByteBuffer.wrap(data(3))));
+
+            store.store("a", ByteBuffer.wrap(data(11)));
+            assertArrayEquals(data(11), read(store, "a"));
+            assertArrayEquals(data(2), read(store, "b"));
+        }
+        assertArrayEquals(data(11), deviceSlot(0));
+    }
+
+    @Test
+    void deletedSlotIsReused() throws IOException {
+        try (MappedBlockStore store = open(2)) {
+            store.store("a", ByteBuffer.wrap(data(1)));
+            store.store("b", ByteBuffer.wrap(data(2)));
+            store.delete("a");
+            store.store("c", ByteBuffer.wrap(data(3)));
+            assertArrayEquals(data(3), read(store, "c"));
+        }
+        try (MappedBlockStore store = open(2)) {
+            assertNull(store.read("a"));
+            assertArrayEquals(data(3), read(store, "c"));
+        }
+    }
+
+    @Test
+    void shortBlocksKeepTheirLength() throws IOException {
+        byte[] small = new byte[BLOCK / 3 + 1];
+        new Random(7).nextBytes(small);
+        try (MappedBlockStore store = open(2)) {
+            store.store("s", ByteBuffer.wrap(small));
+            assertEquals(small.length, store.size("s"));
+        }
+        try (MappedBlockStore store = open(2)) {
+            assertArrayEquals(small, read(store, "s"));
+        }
+    }
+
+    private MappedBlockStore open(int slots) throws IOException {
+        return new MappedBlockStore(dir, BLOCK, (long) slots * BLOCK, MappedBlockStore.ForcePolicy.ALWAYS);
+    }
+
+    private byte[] deviceSlot(int slot) throws IOException {
+        try (FileChannel ch = FileChannel.open(dir.resolve("blocks.dev"), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(BLOCK);
+            ch.read(buf, (long) slot * BLOCK);
+            return buf.array();
+        }
+    }
+
+    private void setBitmapByte(int index, byte value) throws IOException {
+        try (FileChannel ch = FileChannel.open(dir.resolve("blocks.idx"), StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.wrap(new byte[]{value}), HEADER_SIZE + index);
+        }
+    }
+
+    private static byte[] read(BlockStore store, String blockId) throws IOException {
+        ByteBuffer buf = store.read(blockId);
+        byte[] out = new byte[buf.remaining()];
+        buf.get(out);
+        return out;
+    }
+
+    private static byte[] data(int seed) {
+        byte[] block = new byte[BLOCK];
+        new Random(seed).nextBytes(block);
+        return block;
+    }
+}